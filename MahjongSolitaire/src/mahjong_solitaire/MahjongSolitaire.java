@@ -53,6 +53,10 @@ public class MahjongSolitaire
             // NOW WE CAN LOAD THE UI, WHICH WILL USE ALL THE FLAVORED CONTENT
             String appTitle = props.getProperty(MahjongSolitairePropertyType.GAME_TITLE_TEXT);
             int fps = Integer.parseInt(props.getProperty(MahjongSolitairePropertyType.FPS));
+
+            // WE DRAW A LOT OF TILES, SO WE'LL DRAW THEM OURSELVES
+            // RATHER THAN WAIT ON SWING TO GET AROUND TO IT
+            miniGame.setActiveRendering(true);
             miniGame.initMiniGame(appTitle, fps);
             miniGame.startGame();
         }
@@ -2,6 +2,7 @@ package mahjong_solitaire;
 
 import java.awt.Color;
 import java.awt.Font;
+import mini_game.SpriteType;
 
 /**
  * This class stores the types of controls and their possible states which
@@ -60,6 +61,15 @@ public class MahjongSolitaireConstants
     public static final String INCORRECTLY_SELECTED_STATE = "NOT_AVAILABLE_STATE";
     public static final String MOUSE_OVER_STATE = "MOUSE_OVER_STATE";
 
+    // AND THE IDS OF THOSE STATES, WHICH ARE WHAT WE TEST AGAINST
+    // WHILE UPDATING AND RENDERING, SINCE COMPARING NUMBERS IS
+    // MUCH CHEAPER THAN COMPARING STRINGS
+    public static final int INVISIBLE_STATE_ID = SpriteType.getStateID(INVISIBLE_STATE);
+    public static final int VISIBLE_STATE_ID = SpriteType.getStateID(VISIBLE_STATE);
+    public static final int SELECTED_STATE_ID = SpriteType.getStateID(SELECTED_STATE);
+    public static final int INCORRECTLY_SELECTED_STATE_ID = SpriteType.getStateID(INCORRECTLY_SELECTED_STATE);
+    public static final int MOUSE_OVER_STATE_ID = SpriteType.getStateID(MOUSE_OVER_STATE);
+
     // THE BUTTONS MAY HAVE 2 STATES:
         // - INVISIBLE_STATE: MEANS A BUTTON IS NOT DRAWN AND CAN'T BE CLICKED
         // - VISIBLE_STATE: MEANS A BUTTON IS DRAWN AND CAN BE CLICKED
@@ -73,6 +83,12 @@ public class MahjongSolitaireConstants
     public static final int LEVEL_BUTTON_MARGIN = 5;
     public static final int LEVEL_BUTTON_Y = 570;
 
+    // FOR THE LOADING BAR SHOWN ON THE SPLASH SCREEN WHILE ART IS LOADING
+    public static final int LOADING_BAR_X = 340;
+    public static final int LOADING_BAR_Y = 670;
+    public static final int LOADING_BAR_WIDTH = 600;
+    public static final int LOADING_BAR_HEIGHT = 10;
+
     // FOR STACKING TILES ON THE GRID
     public static final int NUM_TILES = 144;
     public static final int TILE_IMAGE_OFFSET = 1;
@@ -80,6 +96,9 @@ public class MahjongSolitaireConstants
     public static final int TILE_IMAGE_HEIGHT = 55;
     public static final int Z_TILE_OFFSET = 5;
 
+    // HOW HARD NEW DEALS ARE, FROM 0 TO 1
+    public static final float DEFAULT_DEAL_DIFFICULTY = 0.5f;
+
     // FOR MOVING TILES AROUND
     public static final int MAX_TILE_VELOCITY = 70;
     
@@ -122,11 +141,18 @@ public class MahjongSolitaireConstants
     // COLOR KEY, WHICH REFERS TO THE COLOR TO IGNORE WHEN
     // LOADING ART.
     public static final Color COLOR_KEY = new Color(255, 174, 201);
+
+    // ONCE ART HAS BEEN LOADED WITH THE COLOR KEY IT'S SAVED IN THIS
+    // DIRECTORY, INSIDE THE IMAGE DIRECTORY, SO THAT IT DOESN'T HAVE
+    // TO BE KEYED AGAIN THE NEXT TIME THE GAME STARTS
+    public static final String KEYED_IMAGE_DIR = "keyed/";
     public static final Color DEBUG_TEXT_COLOR = Color.BLACK;
     public static final Color TEXT_DISPLAY_COLOR = new Color (10, 160, 10);
     public static final Color SELECTED_TILE_COLOR = new Color(255,255,0,100);
     public static final Color INCORRECTLY_SELECTED_TILE_COLOR = new Color(255, 0, 0, 100);
     public static final Color STATS_COLOR = new Color(0, 60, 0);
+    public static final Color LOADING_BAR_COLOR = new Color(10, 160, 10);
+    public static final Color LOADING_BAR_BACKGROUND_COLOR = new Color(0, 0, 0, 100);
 
     // FONTS USED DURING FOR TEXTUAL GAME DISPLAYS
     public static final Font TEXT_DISPLAY_FONT = new Font(Font.SANS_SERIF, Font.BOLD, 48);
@@ -137,4 +163,10 @@ public class MahjongSolitaireConstants
     public static final String SUCCESS_AUDIO_TYPE = "SUCCESS_AUDIO_TYPE";
     public static final String FAILURE_AUDIO_TYPE = "FAILURE_AUDIO_TYPE";
     public static final String THEME_SONG_TYPE = "THEME_SONG_TYPE";
+
+    // THE GROUPS OF ASSETS WE PRELOAD. THE SPLASH SCREEN ART AND
+    // THE AUDIO ARE NEEDED TO START, THE GAME SCREEN ART ISN'T
+    public static final String SPLASH_SCREEN_ASSETS = "SPLASH_SCREEN_ASSETS";
+    public static final String AUDIO_ASSETS = "AUDIO_ASSETS";
+    public static final String GAME_SCREEN_ASSETS = "GAME_SCREEN_ASSETS";
 }
\ No newline at end of file
@@ -0,0 +1,288 @@
+package mahjong_solitaire.data;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import mini_game.MiniGameHistogram;
+
+/**
+ * This class keeps the statistics for one level that go beyond the counts
+ * in MahjongLevelRecord: how long wins take, how many moves games take,
+ * winning and losing streaks, and the results of the most recent games.
+ * Everything here is a fixed size, so it doesn't grow no matter how many
+ * games are played, and the stats for two sets of games may be merged.
+ *
+ * @author Richard McKenna
+ */
+public class MahjongLevelStats
+{
+    // THE MOST RECENT GAMES WE KNOW THE RESULT OF, ONE BIT EACH
+    public static final int MAX_RECENT_GAMES = 64;
+
+    // HOW LONG EACH WIN TOOK, IN MILLISECONDS
+    private MiniGameHistogram winTimes;
+
+    // HOW MANY MOVES WERE MADE IN EACH WIN AND EACH LOSS
+    private MiniGameHistogram winMoves;
+    private MiniGameHistogram lossMoves;
+
+    // THE CURRENT STREAK, POSITIVE FOR WINS AND NEGATIVE FOR
+    // LOSSES, AND THE LONGEST OF EACH
+    private int currentStreak;
+    private int longestWinStreak;
+    private int longestLossStreak;
+
+    // THE RESULTS OF THE MOST RECENT GAMES, A 1 FOR EACH WIN,
+    // WITH THE LATEST GAME IN THE LOWEST BIT
+    private long recentResults;
+    private int numRecentGames;
+
+    /**
+     * This constructor makes the stats for a level that hasn't been
+     * played.
+     */
+    public MahjongLevelStats()
+    {
+        winTimes = new MiniGameHistogram("Win Times");
+        winMoves = new MiniGameHistogram("Win Moves");
+        lossMoves = new MiniGameHistogram("Loss Moves");
+    }
+
+    // ACCESSOR METHODS
+        // - getWinTimes
+        // - getWinMoves
+        // - getLossMoves
+        // - getCurrentStreak
+        // - getLongestWinStreak
+        // - getLongestLossStreak
+        // - getNumRecentGames
+        // - getRecentWinRate
+
+    /**
+     * Accessor method for how long wins took.
+     *
+     * @return The histogram of win times, in milliseconds.
+     */
+    public MiniGameHistogram getWinTimes()
+    {
+        return winTimes;
+    }
+
+    /**
+     * Accessor method for how many moves wins took.
+     *
+     * @return The histogram of move counts for wins.
+     */
+    public MiniGameHistogram getWinMoves()
+    {
+        return winMoves;
+    }
+
+    /**
+     * Accessor method for how many moves were made before losing.
+     *
+     * @return The histogram of move counts for losses.
+     */
+    public MiniGameHistogram getLossMoves()
+    {
+        return lossMoves;
+    }
+
+    /**
+     * Accessor method for the current streak.
+     *
+     * @return The number of games in a row won, or minus the number
+     * lost, counting back from the latest game.
+     */
+    public int getCurrentStreak()
+    {
+        return currentStreak;
+    }
+
+    /**
+     * Accessor method for the longest winning streak.
+     *
+     * @return The most games won in a row.
+     */
+    public int getLongestWinStreak()
+    {
+        return longestWinStreak;
+    }
+
+    /**
+     * Accessor method for the longest losing streak.
+     *
+     * @return The most games lost in a row.
+     */
+    public int getLongestLossStreak()
+    {
+        return longestLossStreak;
+    }
+
+    /**
+     * Accessor method for the number of recent games whose results
+     * are known.
+     *
+     * @return The number of games, up to MAX_RECENT_GAMES.
+     */
+    public int getNumRecentGames()
+    {
+        return numRecentGames;
+    }
+
+    /**
+     * Calculates the win rate over the latest games.
+     *
+     * @param numGames How many of the latest games to count, up to
+     * MAX_RECENT_GAMES.
+     *
+     * @return The fraction of those games that were won, or 0 if
+     * none have been played.
+     */
+    public double getRecentWinRate(int numGames)
+    {
+        numGames = Math.min(numGames, numRecentGames);
+        if (numGames <= 0)
+        {
+            return 0.0;
+        }
+        long mask = (numGames == 64) ? -1L : ((1L << numGames) - 1);
+        return (double)Long.bitCount(recentResults & mask) / (double)numGames;
+    }
+
+    // MUTATOR METHODS
+        // - addWin
+        // - addLoss
+        // - merge
+
+    /**
+     * Adds a win to the stats.
+     *
+     * @param winTime How long the game took, in milliseconds.
+     *
+     * @param numMoves How many moves were made.
+     */
+    public void addWin(long winTime, int numMoves)
+    {
+        winTimes.record(winTime);
+        winMoves.record(numMoves);
+        currentStreak = (currentStreak > 0) ? (currentStreak + 1) : 1;
+        longestWinStreak = Math.max(longestWinStreak, currentStreak);
+        addRecentGame(true);
+    }
+
+    /**
+     * Adds a loss to the stats.
+     *
+     * @param numMoves How many moves were made before the game was lost.
+     */
+    public void addLoss(int numMoves)
+    {
+        lossMoves.record(numMoves);
+        currentStreak = (currentStreak < 0) ? (currentStreak - 1) : -1;
+        longestLossStreak = Math.max(longestLossStreak, -currentStreak);
+        addRecentGame(false);
+    }
+
+    /**
+     * Adds the stats for games played after the ones in these stats, like
+     * those from another computer. Streaks that carry over from these games
+     * into those are joined up.
+     *
+     * @param laterStats The stats for the later games. They aren't changed.
+     */
+    public void merge(MahjongLevelStats laterStats)
+    {
+        winTimes.merge(laterStats.winTimes);
+        winMoves.merge(laterStats.winMoves);
+        lossMoves.merge(laterStats.lossMoves);
+
+        // IF EVERY ONE OF THE LATER GAMES WAS PART OF ITS CURRENT
+        // STREAK, OUR STREAK MAY CONTINUE INTO IT
+        int laterGames = laterStats.getTotalGames();
+        int laterStreak = laterStats.currentStreak;
+        if ((Math.abs(laterStreak) == laterGames) && (Integer.signum(laterStreak) == Integer.signum(currentStreak)))
+        {
+            currentStreak += laterStreak;
+        }
+        else if (laterGames > 0)
+        {
+            currentStreak = laterStreak;
+        }
+        longestWinStreak = Math.max(Math.max(longestWinStreak, laterStats.longestWinStreak), currentStreak);
+        longestLossStreak = Math.max(Math.max(longestLossStreak, laterStats.longestLossStreak), -currentStreak);
+
+        // THE LATER GAMES ARE THE MOST RECENT ONES
+        if (laterStats.numRecentGames >= MAX_RECENT_GAMES)
+        {
+            recentResults = laterStats.recentResults;
+        }
+        else
+        {
+            recentResults = (recentResults << laterStats.numRecentGames) | laterStats.recentResults;
+        }
+        numRecentGames = Math.min(MAX_RECENT_GAMES, numRecentGames + laterStats.numRecentGames);
+    }
+
+    // SAVING AND LOADING METHODS
+        // - writeTo
+        // - readFrom
+
+    /**
+     * Writes all the stats.
+     *
+     * @param dos Where to write them.
+     *
+     * @throws IOException If they couldn't be written.
+     */
+    public void writeTo(DataOutputStream dos) throws IOException
+    {
+        winTimes.writeTo(dos);
+        winMoves.writeTo(dos);
+        lossMoves.writeTo(dos);
+        dos.writeInt(currentStreak);
+        dos.writeInt(longestWinStreak);
+        dos.writeInt(longestLossStreak);
+        dos.writeLong(recentResults);
+        dos.writeByte(numRecentGames);
+    }
+
+    /**
+     * Replaces these stats with ones written by writeTo.
+     *
+     * @param dis Where to read them from.
+     *
+     * @throws IOException If they couldn't be read.
+     */
+    public void readFrom(DataInputStream dis) throws IOException
+    {
+        winTimes.readFrom(dis);
+        winMoves.readFrom(dis);
+        lossMoves.readFrom(dis);
+        currentStreak = dis.readInt();
+        longestWinStreak = dis.readInt();
+        longestLossStreak = dis.readInt();
+        recentResults = dis.readLong();
+        numRecentGames = Math.min(MAX_RECENT_GAMES, dis.readByte());
+    }
+
+    // PRIVATE HELPER METHODS
+
+    /**
+     * The number of games these stats know about.
+     */
+    private int getTotalGames()
+    {
+        return (int)(winMoves.getCount() + lossMoves.getCount());
+    }
+
+    /**
+     * Adds a game's result to the recent games, forgetting the oldest
+     * if there are already as many as we keep.
+     */
+    private void addRecentGame(boolean won)
+    {
+        recentResults = (recentResults << 1) | (won ? 1 : 0);
+        numRecentGames = Math.min(MAX_RECENT_GAMES, numRecentGames + 1);
+    }
+}
@@ -0,0 +1,347 @@
+package mahjong_solitaire.data;
+
+/**
+ * This class stores which tiles are where on the game grid using nothing
+ * but arrays of numbers. Each tile is known by its ID, which is its index in
+ * the data model's list of tiles, and each cell has a height and a stack of
+ * tile IDs, bottom first. All the game's rules are checked using a board,
+ * while the tile sprites are only used for drawing, so a board may be copied
+ * cheaply to try out moves without touching what's on the screen.
+ *
+ * Cells are indexed by (column * gridRows) + row, and the tile at height z
+ * in a cell is stored at (cell * maxHeight) + z.
+ *
+ * @author Richard McKenna
+ */
+public class MahjongSolitaireBoard
+{
+    // USED FOR CELLS WITH NO TILE
+    public static final int NO_TILE = -1;
+
+    // GRID DIMENSIONS
+    private int gridColumns;
+    private int gridRows;
+    private int maxHeight;
+
+    // THE HEIGHT OF EACH CELL'S STACK, AND THE TILES IN EACH
+    private short[] heights;
+    private short[] tileIDs;
+
+    // THE MATCH CLASS OF EACH TILE, BY TILE ID. THIS NEVER CHANGES
+    // SO ALL COPIES OF A BOARD SHARE IT
+    private int[] matchClasses;
+
+    /**
+     * Constructor for an empty board.
+     *
+     * @param initGridColumns The number of columns in the grid.
+     *
+     * @param initGridRows The number of rows in the grid.
+     *
+     * @param initMaxHeight The most tiles any cell may have.
+     *
+     * @param initMatchClasses The match class of each tile, by tile ID.
+     */
+    public MahjongSolitaireBoard(int initGridColumns, int initGridRows, int initMaxHeight, int[] initMatchClasses)
+    {
+        gridColumns = initGridColumns;
+        gridRows = initGridRows;
+        maxHeight = initMaxHeight;
+        heights = new short[gridColumns * gridRows];
+        tileIDs = new short[gridColumns * gridRows * maxHeight];
+        matchClasses = initMatchClasses;
+    }
+
+    /**
+     * Constructor for a copy of another board, which may then be changed
+     * without changing the original.
+     *
+     * @param boardToCopy The board to copy.
+     */
+    public MahjongSolitaireBoard(MahjongSolitaireBoard boardToCopy)
+    {
+        gridColumns = boardToCopy.gridColumns;
+        gridRows = boardToCopy.gridRows;
+        maxHeight = boardToCopy.maxHeight;
+        heights = boardToCopy.heights.clone();
+        tileIDs = boardToCopy.tileIDs.clone();
+        matchClasses = boardToCopy.matchClasses;
+    }
+
+    // ACCESSOR METHODS
+        // - getGridColumns
+        // - getGridRows
+        // - getMaxHeight
+        // - getHeight
+        // - getTileID
+        // - getTopTileID
+        // - getMatchClass
+        // - getTopMatchClass
+        // - getNumTiles
+        // - isTopTile
+        // - isFree
+        // - getMatchClassStacks
+
+    /**
+     * Accessor method for the number of columns in the grid.
+     *
+     * @return The number of columns.
+     */
+    public int getGridColumns()
+    {
+        return gridColumns;
+    }
+
+    /**
+     * Accessor method for the number of rows in the grid.
+     *
+     * @return The number of rows.
+     */
+    public int getGridRows()
+    {
+        return gridRows;
+    }
+
+    /**
+     * Accessor method for the most tiles any cell may have.
+     *
+     * @return The maximum stack height.
+     */
+    public int getMaxHeight()
+    {
+        return maxHeight;
+    }
+
+    /**
+     * Accessor method for the number of tiles in a cell.
+     *
+     * @param col The column of the cell.
+     *
+     * @param row The row of the cell.
+     *
+     * @return The height of the cell's stack.
+     */
+    public int getHeight(int col, int row)
+    {
+        return heights[(col * gridRows) + row];
+    }
+
+    /**
+     * Accessor method for the ID of the tile at the given height in a cell.
+     *
+     * @param col The column of the cell.
+     *
+     * @param row The row of the cell.
+     *
+     * @param z The height in the stack, where 0 is the bottom.
+     *
+     * @return The ID of the tile, or NO_TILE if the stack isn't that tall.
+     */
+    public int getTileID(int col, int row, int z)
+    {
+        int cell = (col * gridRows) + row;
+        if (z >= heights[cell])
+        {
+            return NO_TILE;
+        }
+        return tileIDs[(cell * maxHeight) + z];
+    }
+
+    /**
+     * Accessor method for the ID of the top tile in a cell.
+     *
+     * @param col The column of the cell.
+     *
+     * @param row The row of the cell.
+     *
+     * @return The ID of the top tile, or NO_TILE if the cell is empty.
+     */
+    public int getTopTileID(int col, int row)
+    {
+        int cell = (col * gridRows) + row;
+        int height = heights[cell];
+        if (height == 0)
+        {
+            return NO_TILE;
+        }
+        return tileIDs[(cell * maxHeight) + height - 1];
+    }
+
+    /**
+     * Accessor method for the match class of a tile.
+     *
+     * @param tileID The ID of the tile.
+     *
+     * @return The tile's match class.
+     */
+    public int getMatchClass(int tileID)
+    {
+        return matchClasses[tileID];
+    }
+
+    /**
+     * Accessor method for the match class of the top tile in a cell.
+     *
+     * @param col The column of the cell.
+     *
+     * @param row The row of the cell.
+     *
+     * @return The top tile's match class, or NO_TILE if the cell is empty.
+     */
+    public int getTopMatchClass(int col, int row)
+    {
+        int tileID = getTopTileID(col, row);
+        if (tileID == NO_TILE)
+        {
+            return NO_TILE;
+        }
+        return matchClasses[tileID];
+    }
+
+    /**
+     * Accessor method for the number of tiles on the board.
+     *
+     * @return The total of all the cells' heights.
+     */
+    public int getNumTiles()
+    {
+        int numTiles = 0;
+        for (int i = 0; i < heights.length; i++)
+        {
+            numTiles += heights[i];
+        }
+        return numTiles;
+    }
+
+    /**
+     * Tests to see if the given tile is on top of the given cell's stack.
+     *
+     * @param col The column of the cell.
+     *
+     * @param row The row of the cell.
+     *
+     * @param tileID The ID of the tile.
+     *
+     * @return true if the tile is on top, false otherwise.
+     */
+    public boolean isTopTile(int col, int row, int tileID)
+    {
+        return (tileID != NO_TILE) && (getTopTileID(col, row) == tileID);
+    }
+
+    /**
+     * Tests to see if the top tile in a cell is free, meaning it's in the
+     * first or last column, or its stack is taller than the one to its left
+     * or to its right.
+     *
+     * @param col The column of the cell.
+     *
+     * @param row The row of the cell.
+     *
+     * @return true if the cell has a tile and its top tile is free, false
+     * otherwise.
+     */
+    public boolean isFree(int col, int row)
+    {
+        int cell = (col * gridRows) + row;
+        int height = heights[cell];
+        if (height == 0)
+        {
+            return false;
+        }
+        return (col == 0) || (col == (gridColumns - 1))
+                || (height > heights[cell - gridRows])
+                || (height > heights[cell + gridRows]);
+    }
+
+    /**
+     * Builds the match class of every tile on the board, in the form the
+     * solver uses.
+     *
+     * @return The match classes, indexed [column][row][z], bottom tile
+     * first.
+     */
+    public int[][][] getMatchClassStacks()
+    {
+        int[][][] stacks = new int[gridColumns][gridRows][];
+        for (int i = 0; i < gridColumns; i++)
+        {
+            for (int j = 0; j < gridRows; j++)
+            {
+                int cell = (i * gridRows) + j;
+                stacks[i][j] = new int[heights[cell]];
+                for (int k = 0; k < heights[cell]; k++)
+                {
+                    stacks[i][j][k] = matchClasses[tileIDs[(cell * maxHeight) + k]];
+                }
+            }
+        }
+        return stacks;
+    }
+
+    // MUTATOR METHODS
+        // - clear
+        // - copyFrom
+        // - push
+        // - pop
+
+    /**
+     * Empties all the cells.
+     */
+    public void clear()
+    {
+        for (int i = 0; i < heights.length; i++)
+        {
+            heights[i] = 0;
+        }
+    }
+
+    /**
+     * Makes this board the same as another board of the same size, without
+     * making any new arrays.
+     *
+     * @param boardToCopy The board to copy.
+     */
+    public void copyFrom(MahjongSolitaireBoard boardToCopy)
+    {
+        System.arraycopy(boardToCopy.heights, 0, heights, 0, heights.length);
+        System.arraycopy(boardToCopy.tileIDs, 0, tileIDs, 0, tileIDs.length);
+    }
+
+    /**
+     * Puts a tile on top of a cell's stack.
+     *
+     * @param col The column of the cell.
+     *
+     * @param row The row of the cell.
+     *
+     * @param tileID The ID of the tile.
+     */
+    public void push(int col, int row, int tileID)
+    {
+        int cell = (col * gridRows) + row;
+        tileIDs[(cell * maxHeight) + heights[cell]] = (short) tileID;
+        heights[cell]++;
+    }
+
+    /**
+     * Takes the top tile off a cell's stack.
+     *
+     * @param col The column of the cell.
+     *
+     * @param row The row of the cell.
+     *
+     * @return The ID of the tile that was on top, or NO_TILE if the cell was
+     * empty.
+     */
+    public int pop(int col, int row)
+    {
+        int cell = (col * gridRows) + row;
+        if (heights[cell] == 0)
+        {
+            return NO_TILE;
+        }
+        heights[cell]--;
+        return tileIDs[(cell * maxHeight) + heights[cell]];
+    }
+}
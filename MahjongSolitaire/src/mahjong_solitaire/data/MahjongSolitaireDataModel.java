@@ -4,12 +4,16 @@ import mahjong_solitaire.ui.MahjongSolitaireTile;
 import java.awt.Image;
 import java.awt.image.BufferedImage;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.GregorianCalendar;
 import java.util.Iterator;
+import java.util.Random;
 import mahjong_solitaire.MahjongSolitaire.MahjongSolitairePropertyType;
 import mini_game.MiniGame;
 import mini_game.MiniGameDataModel;
+import mini_game.MiniGameLevelFile;
+import mini_game.Sprite;
 import mini_game.SpriteType;
 import properties_manager.PropertiesManager;
 import static mahjong_solitaire.MahjongSolitaireConstants.*;
@@ -35,14 +39,43 @@ public class MahjongSolitaireDataModel extends MiniGameDataModel
     private int gridColumns;
     private int gridRows;
     
-    // THIS STORES THE TILES ON THE GRID DURING THE GAME
-    private ArrayList<MahjongSolitaireTile>[][] tileGrid;
+    // THIS STORES WHICH TILES ARE ON THE GRID DURING THE GAME, BY ID.
+    // ALL THE GAME RULES ARE CHECKED USING THE BOARD, THE TILES
+    // THEMSELVES ARE ONLY USED FOR RENDERING
+    private MahjongSolitaireBoard board;
+    
+    // ALL THE TILES, INDEXED BY TILE ID, AND THEIR MATCH CLASSES
+    private MahjongSolitaireTile[] tiles;
+    private int[] tileMatchClasses;
+    
+    // THIS KEEPS TRACK OF WHICH TILES IN THE GRID ARE FREE, SO WE
+    // CAN FIND MOVES WITHOUT SEARCHING THE WHOLE GRID
+    private MahjongSolitaireFreeTileIndex freeTiles;
+    
+    // THE NUMBER OF DIFFERENT GROUPS OF MATCHING TILES, AND HOW
+    // MANY TILES ARE IN EACH GROUP
+    private int numMatchClasses;
+    private int[] matchClassSizes;
+    
+    // THIS DEALS THE TILES SO THAT EVERY GAME CAN BE WON
+    private MahjongSolitaireDealGenerator dealGenerator;
+    private Random dealRandom;
+    private float dealDifficulty;
+    
+    // THE LEVEL FILE MAY COME WITH DEALS MADE AHEAD OF TIME, WHICH
+    // WE USE INSTEAD OF MAKING NEW ONES WHEN THEY'RE THE SAME KIND
+    private MiniGameLevelFile levelDeals;
     
     // THESE ARE THE TILES THE PLAYER HAS MATCHED
     private ArrayList<MahjongSolitaireTile> stackTiles;
     
-    // THESE ARE THE TILES THAT ARE MOVING AROUND, AND SO WE HAVE TO UPDATE
+    // THIS RECORDS ALL THE MOVES MADE SO THEY CAN BE UNDONE AND REDONE
+    private MahjongSolitaireMoveJournal journal;
+    
+    // THESE ARE THE TILES THAT ARE MOVING AROUND, AND SO WE HAVE TO
+    // UPDATE, AND WHICH TILES THEY ARE, BY TILE ID
     private ArrayList<MahjongSolitaireTile> movingTiles;
+    private boolean[] tileMoving;
     
     // THIS IS A SELECTED TILE, MEANING THE FIRST OF A PAIR THE PLAYER
     // IS TRYING TO MATCH. THERE CAN ONLY BE ONE OF THESE AT ANY TIME
@@ -51,6 +84,10 @@ public class MahjongSolitaireDataModel extends MiniGameDataModel
     // THIS IS A INCORRECTLY SELECTED TILE, THERE CAN ONLY BE ONE
     private MahjongSolitaireTile badSelectedTile;
     
+    // THIS GOES UP EVERY TIME A TILE RESTING ON THE GRID MAY LOOK
+    // DIFFERENT, SO THE PANEL KNOWS WHEN TO REDRAW THE BOARD
+    private int boardVersion;
+    
     // THE INITIAL LOCATION OF TILES BEFORE BEING PLACED IN THE GRID
     private int unassignedTilesX;
     private int unassignedTilesY;
@@ -78,6 +115,10 @@ public class MahjongSolitaireDataModel extends MiniGameDataModel
         // INIT THESE FOR HOLDING MATCHED AND MOVING TILES
         stackTiles = new ArrayList();
         movingTiles = new ArrayList();
+        freeTiles = new MahjongSolitaireFreeTileIndex();
+        journal = new MahjongSolitaireMoveJournal();
+        dealRandom = new Random();
+        dealDifficulty = DEFAULT_DEAL_DIFFICULTY;
     }
     
     // INIT METHODS - AFTER CONSTRUCTION, THESE METHODS SETUP A GAME FOR USE
@@ -109,15 +150,18 @@ public class MahjongSolitaireDataModel extends MiniGameDataModel
         ((MahjongSolitairePanel)(miniGame.getCanvas())).setBlankTileSelectedImage(blankTileSelectedImage);
         
         // FIRST THE TYPE A TILES, OF WHICH THERE IS ONLY ONE OF EACH
-        // THIS IS ANALOGOUS TO THE SEASON TILES IN FLAVORLESS MAHJONG
+        // THIS IS ANALOGOUS TO THE SEASON TILES IN FLAVORLESS MAHJONG.
+        // NOTE THAT ALL TYPE A TILES MATCH, SO THEY SHARE A MATCH CLASS
         ArrayList<String> typeATiles = props.getPropertyOptionsList(MahjongSolitairePropertyType.TYPE_A_TILES);
+        numMatchClasses = 0;
         for (int i = 0; i < typeATiles.size(); i++)
         {
             String imgFile = imgPath + typeATiles.get(i);            
             sT = initTileSpriteType(imgFile, TILE_SPRITE_TYPE_PREFIX + spriteTypeID);
-            initTile(sT, TILE_A_TYPE);
+            initTile(sT, TILE_A_TYPE, numMatchClasses);
             spriteTypeID++;
         }
+        numMatchClasses++;
         
         // THEN THE TYPE B TILES, WHICH ALSO ONLY HAVE ONE OF EACH
         // THIS IS ANALOGOUS TO THE FLOWER TILES IN FLAVORLESS MAHJONG
@@ -126,9 +170,10 @@ public class MahjongSolitaireDataModel extends MiniGameDataModel
         {
             String imgFile = imgPath + typeBTiles.get(i);            
             sT = initTileSpriteType(imgFile, TILE_SPRITE_TYPE_PREFIX + spriteTypeID);
-            initTile(sT, TILE_B_TYPE);
+            initTile(sT, TILE_B_TYPE, numMatchClasses);
             spriteTypeID++;
         }
+        numMatchClasses++;
         
         // AND THEN TYPE C, FOR WHICH THERE ARE 4 OF EACH 
         // THIS IS ANALOGOUS TO THE CHARACTER AND NUMBER TILES IN FLAVORLESS MAHJONG
@@ -139,9 +184,23 @@ public class MahjongSolitaireDataModel extends MiniGameDataModel
             sT = initTileSpriteType(imgFile, TILE_SPRITE_TYPE_PREFIX + spriteTypeID);            
             for (int j = 0; j < 4; j++)
             {
-                initTile(sT, TILE_C_TYPE);
+                initTile(sT, TILE_C_TYPE, numMatchClasses);
             }
             spriteTypeID++;
+            numMatchClasses++;
+        }
+        
+        // KEEP ALL THE TILES BY ID, AND COUNT HOW MANY TILES ARE IN
+        // EACH CLASS, WHICH THE DEAL GENERATOR NEEDS
+        tiles = new MahjongSolitaireTile[stackTiles.size()];
+        tileMatchClasses = new int[stackTiles.size()];
+        tileMoving = new boolean[stackTiles.size()];
+        matchClassSizes = new int[numMatchClasses];
+        for (MahjongSolitaireTile tile : stackTiles)
+        {
+            tiles[tile.getTileID()] = tile;
+            tileMatchClasses[tile.getTileID()] = tile.getMatchClass();
+            matchClassSizes[tile.getMatchClass()]++;
         }
     }
 
@@ -152,11 +211,15 @@ public class MahjongSolitaireDataModel extends MiniGameDataModel
      * @param sT The sprite type to use to represent this tile during rendering.
      * 
      * @param tileType The type of tile. Note that there are 3 broad categories.
+     * 
+     * @param matchClass The match class shared by all tiles this one matches.
      */
-    private void initTile(SpriteType sT, String tileType)
+    private void initTile(SpriteType sT, String tileType, int matchClass)
     {
         // CONSTRUCT THE TILE
         MahjongSolitaireTile newTile = new MahjongSolitaireTile(sT, unassignedTilesX, unassignedTilesY, 0, 0, INVISIBLE_STATE, tileType);
+        newTile.setMatchClass(matchClass);
+        newTile.setTileID(stackTiles.size());
         
         // AND ADD IT TO THE STACK
         stackTiles.add(newTile);        
@@ -180,18 +243,20 @@ public class MahjongSolitaireDataModel extends MiniGameDataModel
         gridColumns = initGridColumns;
         gridRows = initGridRows;
 
-        // AND BUILD THE TILE GRID FOR STORING THE TILES
+        // AND BUILD THE BOARD FOR STORING THE TILES
         // SINCE WE NOW KNOW ITS DIMENSIONS
-        tileGrid = new ArrayList[gridColumns][gridRows];
+        int maxHeight = 0;
         for (int i = 0; i < gridColumns; i++)
         {
             for (int j = 0; j < gridRows; j++)
             {
-                // EACH CELL HAS A STACK OF TILES, WE'LL USE
-                // AN ARRAY LIST FOR THE STACK
-                tileGrid[i][j] = new ArrayList();
+                maxHeight = Math.max(maxHeight, levelGrid[i][j]);
             }
         }
+        board = new MahjongSolitaireBoard(gridColumns, gridRows, maxHeight, tileMatchClasses);
+        freeTiles.init(gridColumns, gridRows, numMatchClasses);
+        dealGenerator = new MahjongSolitaireDealGenerator(levelGrid, gridColumns, gridRows, matchClassSizes);
+        
         // MAKE ALL THE TILES VISIBLE
         enableTiles(true);
     }
@@ -222,6 +287,16 @@ public class MahjongSolitaireDataModel extends MiniGameDataModel
         
     // ACCESSOR METHODS
 
+    /**
+     * Accessor method for how hard new deals are made.
+     * 
+     * @return The deal difficulty, from 0 to 1.
+     */
+    public float getDealDifficulty()
+    {
+        return dealDifficulty;
+    }
+
     /**
      * Accessor method for getting the level currently being played.
      * 
@@ -255,14 +330,48 @@ public class MahjongSolitaireDataModel extends MiniGameDataModel
     }
 
     /**
-     * Accessor method for getting the tile grid, which has all the
-     * tiles the user may select from.
+     * Accessor method for getting the board, which knows which tiles
+     * are where in the grid the user selects tiles from.
      * 
-     * @return The main 2D grid of tiles the user selects tiles from.
+     * @return The board, which stores tiles by ID.
      */
-    public ArrayList<MahjongSolitaireTile>[][] getTileGrid() 
+    public MahjongSolitaireBoard getBoard() 
     { 
-        return tileGrid; 
+        return board; 
+    }
+
+    /**
+     * Accessor method for the board version, which changes whenever
+     * a move is made or undone, a tile is selected, or a tile comes
+     * to rest.
+     * 
+     * @return The number of times the board has changed.
+     */
+    public int getBoardVersion()
+    {
+        return boardVersion;
+    }
+
+    /**
+     * Accessor method for getting the journal of moves made this game.
+     * 
+     * @return The move journal, which knows what can be undone and redone.
+     */
+    public MahjongSolitaireMoveJournal getMoveJournal()
+    {
+        return journal;
+    }
+
+    /**
+     * Accessor method for getting a tile using its ID.
+     * 
+     * @param tileID The ID of the tile to get.
+     * 
+     * @return The tile with that ID.
+     */
+    public MahjongSolitaireTile getTile(int tileID)
+    {
+        return tiles[tileID];
     }
     
     /**
@@ -287,6 +396,31 @@ public class MahjongSolitaireDataModel extends MiniGameDataModel
         return movingTiles.iterator();
     }
     
+    /**
+     * Mutator method for how hard new deals are made. Note that every deal
+     * can be won no matter how hard it is.
+     * 
+     * @param initDealDifficulty The deal difficulty, from 0 to 1.
+     */
+    public void setDealDifficulty(float initDealDifficulty)
+    {
+        dealDifficulty = initDealDifficulty;
+    }
+
+    /**
+     * Mutator method for the deals made ahead of time for the current
+     * level. They're only used if they were made with the current deal
+     * difficulty and the same number of tiles in each match class as
+     * this game has, otherwise new deals are made.
+     * 
+     * @param initLevelDeals The level file with the deals, or null
+     * if there are none.
+     */
+    public void setLevelDeals(MiniGameLevelFile initLevelDeals)
+    {
+        levelDeals = initLevelDeals;
+    }
+
     /**
      * Mutator method for setting the currently loaded level.
      * 
@@ -409,10 +543,12 @@ public class MahjongSolitaireDataModel extends MiniGameDataModel
     // GAME DATA SERVICE METHODS
         // -enableTiles
         // -findMove
+        // -isTileFree
+        // -jumpToMove
         // -moveAllTilesToStack
-        // -moveTiles
         // -playWinAnimation
         // -processMove
+        // -redoMove
         // -selectTile
         // -undoLastMove
 
@@ -427,6 +563,7 @@ public class MahjongSolitaireDataModel extends MiniGameDataModel
     {
         // PUT ALL THE TILES IN ONE PLACE WHERE WE CAN PROCESS THEM TOGETHER
         moveAllTilesToStack();
+        boardVersion++;
         
         // GO THROUGH ALL OF THEM 
         for (MahjongSolitaireTile tile : stackTiles)
@@ -441,60 +578,53 @@ public class MahjongSolitaireDataModel extends MiniGameDataModel
 
     /**
      * This method examines the current game grid and finds and returns
-     * a valid move that is available.
+     * a valid move that is available. Note that this doesn't search the
+     * grid, it simply asks the free tile index, which always knows which
+     * free tiles match.
      * 
      * @return A move that can be made, or null if none exist.
      */
     public MahjongSolitaireMove findMove()
     {
-        // MAKE A MOVE TO FILL IN 
         MahjongSolitaireMove move = new MahjongSolitaireMove();
-
-        // GO THROUGH THE ENTIRE GRID TO FIND A MATCH BETWEEN AVAILABLE TILES
-        for (int i = 0; i < gridColumns; i++)
-        {
-            for (int j = 0; j < gridRows; j++)
-            {
-                ArrayList<MahjongSolitaireTile> stack1 = tileGrid[i][j];
-                if (stack1.size() > 0)
-                {
-                    // GET THE FIRST TILE
-                    
-                    MahjongSolitaireTile testTile1 = stack1.get(stack1.size()-1);
-                    for (int k = 0; k < gridColumns; k++)
-                    {
-                        for (int l = 0; l < gridRows; l++)
-                        {
-                            if (!((i == k) && (j == l)))
-                            {      
-                                ArrayList<MahjongSolitaireTile> stack2 = tileGrid[k][l];
-                                if (stack2.size() > 0) 
-                                {
-                                    // AND TEST IT AGAINST THE SECOND TILE
-                                    MahjongSolitaireTile testTile2 = stack2.get(stack2.size()-1);
-                                    
-                                    // DO THEY MATCH
-                                    if (testTile1.match(testTile2))
-                                    {
-                                        // YES, FILL IN THE MOVE AND RETURN IT
-                                        move.col1 = i;
-                                        move.row1 = j;
-                                        move.col2 = k;
-                                        move.row2 = l;
-                                        return move;
-                                    }
-                                }
-                            }
-                        }
-                    }
-                }
-            }
-        }
-        // WE'VE SEARCHED THE ENTIRE GRID AND THERE
-        // ARE NO POSSIBLE MOVES REMAINING
+        if (freeTiles.findMove(move))
+            return move;
+        
+        // THERE ARE NO POSSIBLE MOVES REMAINING
         return null;
     }
 
+    /**
+     * This method tests to see if the top tile at the given grid cell is
+     * free, meaning it can be selected.
+     * 
+     * @param col The column of the cell to test.
+     * 
+     * @param row The row of the cell to test.
+     * 
+     * @return true if the cell's top tile is free, false otherwise.
+     */
+    public boolean isTileFree(int col, int row)
+    {
+        return freeTiles.isFree(col, row);
+    }
+
+    /**
+     * This method searches for a sequence of moves that clears the grid
+     * from where it is now, or proves there isn't one. The grid itself is
+     * not changed.
+     * 
+     * @param timeBudgetInMillis The most time to spend searching.
+     * 
+     * @return What the search found, including the moves if it was solved.
+     */
+    public MahjongSolitaireSolution solve(long timeBudgetInMillis)
+    {
+        int[][][] stacks = board.getMatchClassStacks();
+        MahjongSolitaireSolver solver = new MahjongSolitaireSolver(gridColumns, gridRows, stacks, numMatchClasses);
+        return solver.solve(timeBudgetInMillis);
+    }
+
     /**
      * This method moves all the tiles not currently in the stack 
      * to the stack.
@@ -505,31 +635,74 @@ public class MahjongSolitaireDataModel extends MiniGameDataModel
         {
             for (int j = 0; j < gridRows; j++)
             {
-                ArrayList<MahjongSolitaireTile> cellStack = tileGrid[i][j];
-                moveTiles(cellStack, stackTiles);
+                // TAKE THE TILES OFF TOP TO BOTTOM
+                int tileID = board.pop(i, j);
+                while (tileID != MahjongSolitaireBoard.NO_TILE)
+                {
+                    // ONLY ADD IT IF IT'S NOT THERE ALREADY
+                    MahjongSolitaireTile tile = tiles[tileID];
+                    if (!stackTiles.contains(tile))
+                        stackTiles.add(tile);
+                    tileID = board.pop(i, j);
+                }
             }
         }        
+        freeTiles.clear();
+        boardVersion++;
+    }
+
+    /**
+     * This method tells the free tile index about the current stack
+     * at the given cell. It must be called each time a cell's stack
+     * changes.
+     * 
+     * @param col The column of the cell that changed.
+     * 
+     * @param row The row of the cell that changed.
+     */
+    private void updateFreeTiles(int col, int row)
+    {
+        int height = board.getHeight(col, row);
+        int topClass = MahjongSolitaireFreeTileIndex.NO_CLASS;
+        if (height > 0)
+            topClass = board.getTopMatchClass(col, row);
+        freeTiles.setCell(col, row, height, topClass);
     }
 
     /**
-     * This method removes all the tiles in from argument and moves them
-     * to argument.
+     * This method takes a tile of the given match class out of the
+     * stack of unassigned tiles.
      * 
-     * @param from The source data structure of tiles.
+     * @param matchClass The match class of the tile to take.
      * 
-     * @param to The destination data structure of tiles.
+     * @return The tile, which is no longer in the stack.
      */
-    private void moveTiles(ArrayList<MahjongSolitaireTile> from, ArrayList<MahjongSolitaireTile> to)
+    private MahjongSolitaireTile removeTileOfClass(int matchClass)
     {
-        // GO THROUGH ALL THE TILES, TOP TO BOTTOM
-        for (int i = from.size()-1; i >= 0; i--)
+        for (int i = stackTiles.size()-1; i >= 0; i--)
         {
-            MahjongSolitaireTile tile = from.remove(i);
-            
-            // ONLY ADD IT IF IT'S NOT THERE ALREADY
-            if (!to.contains(tile))
-                to.add(tile);
-        }        
+            if (stackTiles.get(i).getMatchClass() == matchClass)
+                return stackTiles.remove(i);
+        }
+        return null;
+    }
+
+    /**
+     * This method checks if the deals that came with the level may be used
+     * for the next game, which they may if they were made for this layout,
+     * at the current difficulty, with the tiles this game has.
+     * 
+     * @return true if a deal may be picked from the level's deals, false
+     * if a new one needs to be made.
+     */
+    private boolean canUseLevelDeals()
+    {
+        return (levelDeals != null)
+                && (levelDeals.getNumDeals() > 0)
+                && (levelDeals.getGridColumns() == gridColumns)
+                && (levelDeals.getGridRows() == gridRows)
+                && (levelDeals.getDealDifficulty() == dealDifficulty)
+                && Arrays.equals(levelDeals.getDealClassSizes(), matchClassSizes);
     }
 
     /**
@@ -565,7 +738,7 @@ public class MahjongSolitaireDataModel extends MiniGameDataModel
             MahjongSolitaireTile tile = stackTiles.get(i);
             
             // MAKE SURE IT'S MOVED EACH FRAME
-            movingTiles.add(tile);       
+            addMovingTile(tile);
             
             // AND GET IT ON A PATH
             tile.initWinPath(winPath);
@@ -582,10 +755,14 @@ public class MahjongSolitaireDataModel extends MiniGameDataModel
     public void processMove(MahjongSolitaireMove move)
     {
         // REMOVE THE MOVE TILES FROM THE GRID
-        ArrayList<MahjongSolitaireTile> stack1 = tileGrid[move.col1][move.row1];
-        ArrayList<MahjongSolitaireTile> stack2 = tileGrid[move.col2][move.row2];        
-        MahjongSolitaireTile tile1 = stack1.remove(stack1.size()-1);
-        MahjongSolitaireTile tile2 = stack2.remove(stack2.size()-1);
+        MahjongSolitaireTile tile1 = tiles[board.pop(move.col1, move.row1)];
+        MahjongSolitaireTile tile2 = tiles[board.pop(move.col2, move.row2)];
+        updateFreeTiles(move.col1, move.row1);
+        updateFreeTiles(move.col2, move.row2);
+        boardVersion++;
+        
+        // RECORD IT SO IT CAN BE UNDONE
+        journal.record(move, tile1.getTileID(), tile2.getTileID());
         
         // MAKE SURE BOTH ARE UNSELECTED
         tile1.setState(VISIBLE_STATE);
@@ -600,8 +777,8 @@ public class MahjongSolitaireDataModel extends MiniGameDataModel
         stackTiles.add(tile2);  
         
         // MAKE SURE THEY MOVE
-        movingTiles.add(tile1);
-        movingTiles.add(tile2);
+        addMovingTile(tile1);
+        addMovingTile(tile2);
         
         // AND MAKE SURE NEW TILES CAN BE SELECTED
         selectedTile = null;   
@@ -610,7 +787,16 @@ public class MahjongSolitaireDataModel extends MiniGameDataModel
         miniGame.getAudio().play(MahjongSolitairePropertyType.MATCH_AUDIO_CUE.toString(), false);
         
         // NOW CHECK TO SEE IF THE GAME HAS EITHER BEEN WON OR LOST
-        
+        checkForGameEnd();
+    }
+    
+    /**
+     * This method checks to see if the game has either been won, meaning
+     * all the tiles have been matched, or lost, meaning there are no
+     * moves left, and ends it if so.
+     */
+    private void checkForGameEnd()
+    {
         // HAS THE PLAYER WON?
         if (stackTiles.size() == NUM_TILES)
         {
@@ -620,8 +806,7 @@ public class MahjongSolitaireDataModel extends MiniGameDataModel
         else
         {
             // SEE IF THERE ARE ANY MOVES LEFT
-            MahjongSolitaireMove possibleMove = this.findMove();
-            if (possibleMove == null)
+            if (!freeTiles.hasMove())
             {
                 // NOPE, WITH NO MOVES LEFT BUT TILES LEFT ON
                 // THE GRID, THE PLAYER HAS LOST
@@ -639,6 +824,9 @@ public class MahjongSolitaireDataModel extends MiniGameDataModel
      */
     public void selectTile(MahjongSolitaireTile selectTile)
     {
+        // WHATEVER HAPPENS, SOME TILE'S HIGHLIGHTING MAY CHANGE
+        boardVersion++;
+        
         // IF IT'S ALREADY THE SELECTED TILE, DESELECT IT
         if (selectTile == selectedTile)
         {
@@ -650,37 +838,28 @@ public class MahjongSolitaireDataModel extends MiniGameDataModel
         // IF THE TILE IS NOT AT THE TOP OF ITS STACK, DO NOTHING
         int col = selectTile.getGridColumn();
         int row = selectTile.getGridRow();
-        int index = tileGrid[col][row].indexOf(selectTile);
-        if (index != (tileGrid[col][row].size() - 1))
+        if (!board.isTopTile(col, row, selectTile.getTileID()))
             return;
                 
         // IF THE TILE IS NOT FREE, DO NOTHING, BUT MAKE SURE WE GIVE FEEDBACK
-        if ((col > 0) && (col < (gridColumns - 1)))
+        if (!freeTiles.isFree(col, row))
         {
-
-            int leftZ = tileGrid[col-1][row].size();
-            int z = tileGrid[col][row].size();
-            int rightZ = tileGrid[col+1][row].size();
-            if ((z <= leftZ) && (z <= rightZ))
+            // IF IT'S ALREADY INCORRECTLY SELECTED, DEACTIVATE THE FEEDBACK
+            if (selectTile.isInState(INCORRECTLY_SELECTED_STATE_ID))
             {
+                selectTile.setState(VISIBLE_STATE);
+                return;
+            }
+            else // HIGHLIGHTS IT RED IF IT'S INCORRECTLY SELECTED
+            {
+                //THERE IS ALREADY A BAD SELECTED TILE
+                if(badSelectedTile != null)
+                    badSelectedTile.setState(VISIBLE_STATE);
                 
-                // IF IT'S ALREADY INCORRECTLY SELECTED, DEACTIVATE THE FEEDBACK
-                if (selectTile.getState().equals(INCORRECTLY_SELECTED_STATE))
-                {
-                    selectTile.setState(VISIBLE_STATE);
-                    return;
-                }
-                else // HIGHLIGHTS IT RED IF IT'S INCORRECTLY SELECTED
-                {
-                    //THERE IS ALREADY A BAD SELECTED TILE
-                    if(badSelectedTile != null)
-                        badSelectedTile.setState(VISIBLE_STATE);
-                    
-                    badSelectedTile = selectTile;
-                    
-                    selectTile.setState(INCORRECTLY_SELECTED_STATE);
-                    return;
-                }
+                badSelectedTile = selectTile;
+                
+                selectTile.setState(INCORRECTLY_SELECTED_STATE);
+                return;
             }
         }
 
@@ -708,48 +887,138 @@ public class MahjongSolitaireDataModel extends MiniGameDataModel
     }
     
     /**
-     * This method undoes the previous move, sending the two tiles on top
-     * of the tile stack back to the game grid.
+     * This method undoes the previous move, sending the two tiles it
+     * matched back to the game grid.
      */    
     public void undoLastMove()
     {
-        if (inProgress() && stackTiles.size() > 1)
+        if (inProgress() && journal.canUndo())
         {
-            // TAKE THE TOP 2 TILES
-            MahjongSolitaireTile topTile = stackTiles.remove(stackTiles.size()-1);
-            MahjongSolitaireTile nextToTopTile = stackTiles.remove(stackTiles.size() - 1);
-            
-            // SET THEIR DESTINATIONS
-            float boundaryLeft = miniGame.getBoundaryLeft();
-            float boundaryTop = miniGame.getBoundaryTop();
-            
-            // FIRST TILE 1
-            int col = topTile.getGridColumn();
-            int row = topTile.getGridRow();
-            int z = tileGrid[col][row].size();
-            float targetX = this.calculateTileXInGrid(col, z);
-            float targetY = this.calculateTileYInGrid(row, z);
-            topTile.setTarget(targetX, targetY);
-            movingTiles.add(topTile);
-            topTile.startMovingToTarget(MAX_TILE_VELOCITY);
-            tileGrid[col][row].add(topTile);
-            
-            // AND THEN TILE 2
-            col = nextToTopTile.getGridColumn();
-            row = nextToTopTile.getGridRow();
-            z = tileGrid[col][row].size();
-            targetX = this.calculateTileXInGrid(col, z);
-            targetY = this.calculateTileYInGrid(row, z);
-            nextToTopTile.setTarget(targetX, targetY);
-            movingTiles.add(nextToTopTile);
-            nextToTopTile.startMovingToTarget(MAX_TILE_VELOCITY);
-            tileGrid[col][row].add(nextToTopTile);
+            jumpToMove(journal.getCursor() - 1);
             
             // PLAY THE AUDIO CUE
             miniGame.getAudio().play(MahjongSolitairePropertyType.UNDO_AUDIO_CUE.toString(), false);   
         }
     }
     
+    /**
+     * This method redoes the most recently undone move, sending its
+     * two tiles back to the tile stack.
+     */
+    public void redoMove()
+    {
+        if (inProgress() && journal.canRedo())
+        {
+            jumpToMove(journal.getCursor() + 1);
+            
+            // PLAY THE AUDIO CUE
+            miniGame.getAudio().play(MahjongSolitairePropertyType.MATCH_AUDIO_CUE.toString(), false);
+        }
+    }
+    
+    /**
+     * This method undoes or redoes moves until exactly moveNumber moves
+     * have been made, so 0 takes the game back to the deal. Each move only
+     * changes the board, and every tile it moves is animated straight to
+     * where it ends up, so jumping many moves doesn't animate each one.
+     * Each move's tiles are only moved once per jump, and where they go is
+     * known from the move itself, so every move takes the same time no
+     * matter how many tiles have been matched.
+     * 
+     * @param moveNumber The number of moves that should be made when done,
+     * which is kept between 0 and the number of moves recorded.
+     */
+    public void jumpToMove(int moveNumber)
+    {
+        moveNumber = Math.max(0, Math.min(moveNumber, journal.getNumMoves()));
+        boardVersion++;
+        
+        // NOTHING STAYS SELECTED
+        if (selectedTile != null)
+        {
+            selectedTile.setState(VISIBLE_STATE);
+            selectedTile = null;
+        }
+        
+        // UNDO MOVES, PUTTING THE TILES BACK ON TOP OF THEIR CELLS
+        MahjongSolitaireMove move = new MahjongSolitaireMove();
+        while (journal.getCursor() > moveNumber)
+        {
+            int index = journal.undo();
+            journal.getMove(index, move);
+            MahjongSolitaireTile tile1 = tiles[journal.getTileID1(index)];
+            MahjongSolitaireTile tile2 = tiles[journal.getTileID2(index)];
+            board.push(move.col1, move.row1, tile1.getTileID());
+            int z = board.getHeight(move.col1, move.row1) - 1;
+            jumpTile(tile1, calculateTileXInGrid(move.col1, z), calculateTileYInGrid(move.row1, z));
+            board.push(move.col2, move.row2, tile2.getTileID());
+            z = board.getHeight(move.col2, move.row2) - 1;
+            jumpTile(tile2, calculateTileXInGrid(move.col2, z), calculateTileYInGrid(move.row2, z));
+            updateFreeTiles(move.col1, move.row1);
+            updateFreeTiles(move.col2, move.row2);
+            
+            // EVERY MOVE ADDS ITS TWO TILES TO THE END OF THE STACK,
+            // SO THE MOVE BEING UNDONE IS ALWAYS THE LAST TWO
+            stackTiles.remove(stackTiles.size() - 1);
+            stackTiles.remove(stackTiles.size() - 1);
+        }
+        
+        // OR REDO THEM, SENDING THE TILES BACK TO THE STACK, WHERE
+        // THE FIRST TILE OF EACH MATCH GOES ON THE LEFT
+        boolean redone = false;
+        while (journal.getCursor() < moveNumber)
+        {
+            int index = journal.redo();
+            journal.getMove(index, move);
+            MahjongSolitaireTile tile1 = tiles[board.pop(move.col1, move.row1)];
+            MahjongSolitaireTile tile2 = tiles[board.pop(move.col2, move.row2)];
+            updateFreeTiles(move.col1, move.row1);
+            updateFreeTiles(move.col2, move.row2);
+            stackTiles.add(tile1);
+            stackTiles.add(tile2);
+            jumpTile(tile1, TILE_STACK_X + TILE_STACK_OFFSET_X, TILE_STACK_Y + TILE_STACK_OFFSET_Y);
+            jumpTile(tile2, TILE_STACK_X + TILE_STACK_2_OFFSET_X, TILE_STACK_Y + TILE_STACK_OFFSET_Y);
+            redone = true;
+        }
+        
+        // REDOING MOVES MIGHT WIN THE GAME
+        if (redone)
+            checkForGameEnd();
+    }
+    
+    /**
+     * This method animates a tile moved by a jump through the journal
+     * straight to where it ends up.
+     * 
+     * @param tile The tile that moved.
+     * 
+     * @param targetX Where the tile ends up on the x-axis.
+     * 
+     * @param targetY Where the tile ends up on the y-axis.
+     */
+    private void jumpTile(MahjongSolitaireTile tile, float targetX, float targetY)
+    {
+        tile.setState(VISIBLE_STATE);
+        tile.setTarget(targetX, targetY);
+        tile.startMovingToTarget(MAX_TILE_VELOCITY);
+        addMovingTile(tile);
+    }
+    
+    /**
+     * This method makes sure a tile is updated each frame until it stops
+     * moving, unless it already is.
+     * 
+     * @param tile The tile to move.
+     */
+    private void addMovingTile(MahjongSolitaireTile tile)
+    {
+        if (!tileMoving[tile.getTileID()])
+        {
+            tileMoving[tile.getTileID()] = true;
+            movingTiles.add(tile);
+        }
+    }
+    
     // OVERRIDDEN METHODS
         // - checkMousePressOnSprites
         // - endGameAsWin
@@ -776,19 +1045,21 @@ public class MahjongSolitaireDataModel extends MiniGameDataModel
         int col = calculateGridCellColumn(x);
         int row = calculateGridCellRow(y);
         
-        // DISABLE THE STATS DIALOG IF IT IS OPEN
-        if (game.getGUIDialogs().get(STATS_DIALOG_TYPE).getState().equals(VISIBLE_STATE))
+        // DISABLE THE STATS DIALOG IF IT IS OPEN, NOTE THAT IT
+        // ISN'T MADE UNTIL THE GAME SCREEN ART HAS LOADED
+        Sprite statsDialog = game.getGUIDialogs().get(STATS_DIALOG_TYPE);
+        if ((statsDialog != null) && statsDialog.isInState(VISIBLE_STATE_ID))
         {
-            game.getGUIDialogs().get(STATS_DIALOG_TYPE).setState(INVISIBLE_STATE);
+            statsDialog.setState(INVISIBLE_STATE);
             return;
         }
         
         // CHECK THE TOP OF THE STACK AT col, row
-        ArrayList<MahjongSolitaireTile> tileStack = tileGrid[col][row];
-        if (tileStack.size() > 0)
+        int tileID = board.getTopTileID(col, row);
+        if (tileID != MahjongSolitaireBoard.NO_TILE)
         {
             // GET AND TRY TO SELECT THE TOP TILE IN THAT CELL, IF THERE IS ONE
-            MahjongSolitaireTile testTile = tileStack.get(tileStack.size()-1);
+            MahjongSolitaireTile testTile = tiles[tileID];
             if (testTile.containsPoint(x, y))
                 selectTile(testTile);
         }
@@ -808,8 +1079,7 @@ public class MahjongSolitaireDataModel extends MiniGameDataModel
         long gameTime = endTime.getTimeInMillis() - startTime.getTimeInMillis();
         
         // RECORD IT AS A WIN
-        ((MahjongSolitaireMiniGame)miniGame).getPlayerRecord().addWin(currentLevel, gameTime);
-        ((MahjongSolitaireMiniGame)miniGame).savePlayerRecord();
+        ((MahjongSolitaireMiniGame)miniGame).recordWin(currentLevel, gameTime, journal.getCursor());
         
         // DISPLAY THE WIN DIALOG
         miniGame.getGUIDialogs().get(WIN_DIALOG_TYPE).setState(VISIBLE_STATE);        
@@ -830,8 +1100,7 @@ public class MahjongSolitaireDataModel extends MiniGameDataModel
         super.endGameAsLoss();
         
         // RECORD IT AS A LOSS
-        ((MahjongSolitaireMiniGame)miniGame).getPlayerRecord().addLoss(currentLevel);
-        ((MahjongSolitaireMiniGame)miniGame).savePlayerRecord();
+        ((MahjongSolitaireMiniGame)miniGame).recordLoss(currentLevel, journal.getCursor());
         
         // DISPLAY THE LOSS DIALOG                      
         miniGame.getGUIDialogs().get(LOSS_DIALOG_TYPE).setState(VISIBLE_STATE);
@@ -853,6 +1122,7 @@ public class MahjongSolitaireDataModel extends MiniGameDataModel
     {
         // PUT ALL THE TILES IN ONE PLACE AND MAKE THEM VISIBLE
         moveAllTilesToStack();
+        journal.clear();
         for (MahjongSolitaireTile tile : stackTiles)
         {
             tile.setX(TILE_STACK_X);
@@ -863,8 +1133,18 @@ public class MahjongSolitaireDataModel extends MiniGameDataModel
         // RANDOMLY ORDER THEM
         Collections.shuffle(stackTiles);
         
+        // AND DECIDE WHICH CLASS OF TILE GOES WHERE, SO THE GAME CAN
+        // BE WON. IF THE LAYOUT CAN'T BE DEALT THAT WAY, WE'LL JUST
+        // DEAL THE TILES IN THE ORDER THEY WERE SHUFFLED
+        int[][][] deal;
+        if (canUseLevelDeals())
+            deal = levelDeals.getDeal(dealRandom.nextInt(levelDeals.getNumDeals()));
+        else
+            deal = dealGenerator.generate(dealRandom, dealDifficulty);
+        
         // START THE CLOCK
         startTime = new GregorianCalendar();
+        boardVersion++;
         
         // NOW LET'S REMOVE THEM FROM THE STACK
         // AND PUT THE TILES IN THE GRID        
@@ -875,10 +1155,14 @@ public class MahjongSolitaireDataModel extends MiniGameDataModel
                 for (int k = 0; k < levelGrid[i][j]; k++)
                 {
                     // TAKE THE TILE OUT OF THE STACK
-                    MahjongSolitaireTile tile = stackTiles.remove(stackTiles.size()-1);
+                    MahjongSolitaireTile tile;
+                    if (deal != null)
+                        tile = removeTileOfClass(deal[i][j][k]);
+                    else
+                        tile = stackTiles.remove(stackTiles.size()-1);
                     
                     // PUT IT IN THE GRID
-                    tileGrid[i][j].add(tile);
+                    board.push(i, j, tile.getTileID());
                     tile.setGridCell(i, j);
                     
                     // WE'LL ANIMATE IT GOING TO THE GRID, SO FIGURE
@@ -887,8 +1171,9 @@ public class MahjongSolitaireDataModel extends MiniGameDataModel
                     float y = calculateTileYInGrid(j, k);
                     tile.setTarget(x, y);
                     tile.startMovingToTarget(MAX_TILE_VELOCITY);
-                    movingTiles.add(tile);
+                    addMovingTile(tile);
                 }
+                updateFreeTiles(i, j);
             }
         }   
         
@@ -927,10 +1212,13 @@ public class MahjongSolitaireDataModel extends MiniGameDataModel
                 tile.update(game);
             
                 // IF IT'S REACHED ITS DESTINATION, REMOVE IT
-                // FROM THE LIST OF MOVING TILES
+                // FROM THE LIST OF MOVING TILES. IT MAY HAVE
+                // LANDED ON THE GRID, SO THE BOARD HAS CHANGED
                 if (!tile.isMovingToTarget())
                 {
                     movingTiles.remove(tile);
+                    tileMoving[tile.getTileID()] = false;
+                    boardVersion++;
                 }
             }
         
@@ -0,0 +1,279 @@
+package mahjong_solitaire.data;
+
+import java.util.Random;
+
+/**
+ * This class deals tiles into a level's layout so that the deal can always
+ * be cleared. It works backwards, starting from an empty grid and placing
+ * one pair of matching tiles at a time, making sure both tiles of each pair
+ * are free right after they're placed. Playing the pairs off in the reverse
+ * order they were placed then clears the grid, so there's always at least
+ * one way to win. Dealing a 144 tile layout this way takes about a
+ * millisecond, so it's fine to do each time a game starts.
+ *
+ * Deals may be made harder with the difficulty setting, which goes from 0 to
+ * 1. At 0, both tiles of a pair are kept in the same row wherever possible,
+ * and each pair is given any class. At 1, pairs are spread across rows, and
+ * each pair is given a class that already has a free tile showing when it's
+ * placed, so the player will see more tiles that match but shouldn't be
+ * matched with each other.
+ *
+ * Deals may also be made ahead of time and stored with their levels, see
+ * MahjongSolitaireLevelPack.
+ *
+ * @author Richard McKenna
+ */
+public class MahjongSolitaireDealGenerator
+{
+    // HOW MANY TIMES TO START OVER BEFORE GIVING UP ON A DEAL
+    public static final int MAX_ATTEMPTS = 100;
+
+    // THE LAYOUT, WHERE EACH CELL IS INDEXED BY (column * gridRows) + row
+    private int gridColumns;
+    private int gridRows;
+    private int numCells;
+    private int[] targetHeights;
+    private int numTiles;
+
+    // HOW MANY TILES ARE IN EACH MATCH CLASS
+    private int[] classSizes;
+
+    // THE DEAL BEING BUILT, AND THE ORDER ITS PAIRS CAN BE TAKEN AWAY IN
+    private int[] heights;
+    private int[][] stacks;
+    private int[] pairsLeft;
+    private int[] removedCells;
+
+    // ROOM FOR LISTING CELLS AND CLASSES TO CHOOSE FROM
+    private int[] candidateCells;
+    private int[] candidateClasses;
+
+    /**
+     * Constructor for setting up a generator for a level's layout.
+     *
+     * @param levelGrid The number of tiles in each cell, indexed
+     * [column][row].
+     *
+     * @param initGridColumns The number of columns in the grid.
+     *
+     * @param initGridRows The number of rows in the grid.
+     *
+     * @param initClassSizes The number of tiles in each match class, each of
+     * which must be even.
+     */
+    public MahjongSolitaireDealGenerator(int[][] levelGrid, int initGridColumns, int initGridRows, int[] initClassSizes)
+    {
+        gridColumns = initGridColumns;
+        gridRows = initGridRows;
+        numCells = gridColumns * gridRows;
+        classSizes = initClassSizes;
+        targetHeights = new int[numCells];
+        heights = new int[numCells];
+        stacks = new int[numCells][];
+        for (int i = 0; i < gridColumns; i++)
+        {
+            for (int j = 0; j < gridRows; j++)
+            {
+                int cell = (i * gridRows) + j;
+                targetHeights[cell] = levelGrid[i][j];
+                stacks[cell] = new int[levelGrid[i][j]];
+                numTiles += levelGrid[i][j];
+            }
+        }
+        pairsLeft = new int[classSizes.length];
+        removedCells = new int[numTiles];
+        candidateCells = new int[numCells];
+        candidateClasses = new int[classSizes.length];
+    }
+
+    /**
+     * Deals a new game that can always be cleared.
+     *
+     * @param random The source of randomness. Using one made with the same
+     * seed always gives the same deal.
+     *
+     * @param difficulty How hard to make the deal, from 0 to 1.
+     *
+     * @return The match class of each tile, indexed [column][row][z], bottom
+     * tile first, or null if the layout can't be dealt this way, either
+     * because it doesn't have room for exactly all the tiles, or because
+     * every attempt got stuck.
+     */
+    public int[][][] generate(Random random, float difficulty)
+    {
+        // THE LAYOUT MUST FIT EXACTLY THE TILES WE HAVE
+        int total = 0;
+        for (int c = 0; c < classSizes.length; c++)
+        {
+            total += classSizes[c];
+        }
+        if (total != numTiles)
+        {
+            return null;
+        }
+
+        for (int attempt = 0; attempt < MAX_ATTEMPTS; attempt++)
+        {
+            if (build(random, difficulty))
+            {
+                int[][][] deal = new int[gridColumns][gridRows][];
+                for (int cell = 0; cell < numCells; cell++)
+                {
+                    deal[cell / gridRows][cell % gridRows] = stacks[cell].clone();
+                }
+                return deal;
+            }
+        }
+        return null;
+    }
+
+    // PRIVATE HELPER METHODS
+
+    /**
+     * Tries to build a deal, returning false if it gets stuck. Since it's
+     * hard to know, placing tiles, whether some cell will later be boxed in
+     * by taller stacks, this first plays a game on the empty layout, taking
+     * away random pairs of free tiles until it's cleared, which can only get
+     * stuck at the very end. Then it puts the pairs back in reverse order,
+     * deciding the class of each pair as it goes.
+     */
+    private boolean build(Random random, float difficulty)
+    {
+        // FIRST PLAY A GAME WHERE ANY TWO FREE TILES MATCH
+        for (int cell = 0; cell < numCells; cell++)
+        {
+            heights[cell] = targetHeights[cell];
+        }
+        for (int removed = 0; removed < numTiles; removed += 2)
+        {
+            int numFree = findFreeCells(-1, -1);
+            if (numFree < 2)
+            {
+                return false;
+            }
+            int cell1 = candidateCells[random.nextInt(numFree)];
+
+            // EASIER DEALS KEEP BOTH TILES IN THE SAME ROW WHEN THEY CAN
+            numFree = 0;
+            if (random.nextFloat() >= difficulty)
+            {
+                numFree = findFreeCells(cell1, cell1 % gridRows);
+            }
+            if (numFree == 0)
+            {
+                numFree = findFreeCells(cell1, -1);
+            }
+            int cell2 = candidateCells[random.nextInt(numFree)];
+            removedCells[removed] = cell1;
+            removedCells[removed + 1] = cell2;
+            heights[cell1]--;
+            heights[cell2]--;
+        }
+
+        // THEN PUT THE PAIRS BACK, LAST ONE FIRST, SO THAT WHEN EACH PAIR
+        // IS PUT BACK, THE GRID IS JUST AS IT WAS WHEN IT WAS TAKEN AWAY
+        for (int c = 0; c < classSizes.length; c++)
+        {
+            pairsLeft[c] = classSizes[c] / 2;
+        }
+        for (int removed = numTiles - 2; removed >= 0; removed -= 2)
+        {
+            int cell1 = removedCells[removed];
+            int cell2 = removedCells[removed + 1];
+            heights[cell1]++;
+            heights[cell2]++;
+            int matchClass = chooseClass(random, difficulty, cell1, cell2);
+            stacks[cell1][heights[cell1] - 1] = matchClass;
+            stacks[cell2][heights[cell2] - 1] = matchClass;
+            pairsLeft[matchClass]--;
+        }
+        return true;
+    }
+
+    /**
+     * Lists the cells whose top tile is free, not counting excludedCell, and
+     * only in the given row unless row is -1, returning how many there are.
+     */
+    private int findFreeCells(int excludedCell, int row)
+    {
+        int numFree = 0;
+        for (int cell = 0; cell < numCells; cell++)
+        {
+            if ((cell != excludedCell)
+                    && ((row < 0) || ((cell % gridRows) == row))
+                    && isFree(cell))
+            {
+                candidateCells[numFree] = cell;
+                numFree++;
+            }
+        }
+        return numFree;
+    }
+
+    /**
+     * Tests to see if the top tile at cell is free, using the same rule as
+     * the game, meaning it's in the first or last column, or its stack is
+     * taller than the one to its left or to its right.
+     */
+    private boolean isFree(int cell)
+    {
+        int height = heights[cell];
+        if (height == 0)
+        {
+            return false;
+        }
+        int col = cell / gridRows;
+        return (col == 0) || (col == (gridColumns - 1))
+                || (height > heights[cell - gridRows])
+                || (height > heights[cell + gridRows]);
+    }
+
+    /**
+     * Picks the match class for a pair just placed at cell1 and cell2. For
+     * harder deals this prefers classes with a tile already free elsewhere.
+     */
+    private int chooseClass(Random random, float difficulty, int cell1, int cell2)
+    {
+        int numCandidates = 0;
+        if (random.nextFloat() < difficulty)
+        {
+            for (int cell = 0; cell < numCells; cell++)
+            {
+                if ((cell != cell1) && (cell != cell2) && isFree(cell))
+                {
+                    int matchClass = stacks[cell][heights[cell] - 1];
+                    if (pairsLeft[matchClass] > 0)
+                    {
+                        candidateClasses[numCandidates] = matchClass;
+                        numCandidates++;
+                        if (numCandidates == candidateClasses.length)
+                        {
+                            break;
+                        }
+                    }
+                }
+            }
+            if (numCandidates > 0)
+            {
+                return candidateClasses[random.nextInt(numCandidates)];
+            }
+        }
+
+        // OTHERWISE ANY CLASS WITH PAIRS LEFT, WEIGHTED BY HOW MANY
+        int totalPairs = 0;
+        for (int c = 0; c < pairsLeft.length; c++)
+        {
+            totalPairs += pairsLeft[c];
+        }
+        int pick = random.nextInt(totalPairs);
+        for (int c = 0; c < pairsLeft.length; c++)
+        {
+            pick -= pairsLeft[c];
+            if (pick < 0)
+            {
+                return c;
+            }
+        }
+        return pairsLeft.length - 1;
+    }
+}
@@ -0,0 +1,300 @@
+package mahjong_solitaire.data;
+
+/**
+ * This class keeps track of which tiles in the grid are currently free,
+ * meaning they may be selected, sorted by which tiles they match. It is told
+ * each time a cell's stack changes and only has to look at that cell and its
+ * neighbors, so finding a move, or finding out there are none, never requires
+ * searching the grid.
+ *
+ * A tile is free if it's on top of its stack and it's either in the first or
+ * last column or it's higher than the stack to its left or to its right.
+ *
+ * Tiles are sorted by match class, where all tiles of the same class match
+ * each other. The data model decides what the classes are.
+ *
+ * @author Richard McKenna
+ */
+public class MahjongSolitaireFreeTileIndex
+{
+    // USED FOR CELLS WITH NO FREE TILE
+    public static final int NO_CLASS = -1;
+
+    // GRID DIMENSIONS
+    private int gridColumns;
+    private int gridRows;
+
+    // FOR EACH CELL, INDEXED BY (column * gridRows) + row, THE HEIGHT OF
+    // ITS STACK, THE CLASS OF ITS TOP TILE, AND THE CLASS IT'S FILED
+    // UNDER AS A FREE TILE, WHICH IS NO_CLASS IF IT ISN'T FREE
+    private int[] heights;
+    private int[] topClasses;
+    private int[] freeClasses;
+
+    // THE FREE CELLS OF EACH CLASS, AND WHERE EACH CELL IS IN ITS
+    // CLASS' ARRAY SO THAT IT CAN BE REMOVED WITHOUT SEARCHING
+    private int[][] freeCells;
+    private int[] numFreeCells;
+    private int[] freeCellPositions;
+
+    // THE CLASSES WITH AT LEAST 2 FREE TILES, AND WHERE EACH CLASS
+    // IS IN THIS ARRAY, OR -1 IF IT'S NOT
+    private int[] matchableClasses;
+    private int numMatchableClasses;
+    private int[] matchableClassPositions;
+
+    // THE TOTAL NUMBER OF FREE TILES
+    private int numFreeTiles;
+
+    /**
+     * This constructor sets up an empty index for a grid with no cells. It
+     * must be initialized with init before use.
+     */
+    public MahjongSolitaireFreeTileIndex()
+    {
+        init(0, 0, 0);
+    }
+
+    /**
+     * Empties the index and sizes it for a grid of the given dimensions.
+     *
+     * @param initGridColumns The number of columns in the grid.
+     *
+     * @param initGridRows The number of rows in the grid.
+     *
+     * @param numClasses The number of different match classes tiles may have.
+     */
+    public void init(int initGridColumns, int initGridRows, int numClasses)
+    {
+        gridColumns = initGridColumns;
+        gridRows = initGridRows;
+        int numCells = gridColumns * gridRows;
+        heights = new int[numCells];
+        topClasses = new int[numCells];
+        freeClasses = new int[numCells];
+        freeCellPositions = new int[numCells];
+        freeCells = new int[numClasses][4];
+        numFreeCells = new int[numClasses];
+        matchableClasses = new int[numClasses];
+        matchableClassPositions = new int[numClasses];
+        clear();
+    }
+
+    // ACCESSOR METHODS
+        // - getNumFreeTiles
+        // - getNumFreeTiles(int)
+        // - hasMove
+        // - isFree
+
+    /**
+     * Accessor method for the number of free tiles in the grid.
+     *
+     * @return The number of tiles that may currently be selected.
+     */
+    public int getNumFreeTiles()
+    {
+        return numFreeTiles;
+    }
+
+    /**
+     * Accessor method for the number of free tiles of a given class.
+     *
+     * @param matchClass The class of tiles to count.
+     *
+     * @return The number of free tiles of that class.
+     */
+    public int getNumFreeTiles(int matchClass)
+    {
+        return numFreeCells[matchClass];
+    }
+
+    /**
+     * Tests to see if there's at least one move available.
+     *
+     * @return true if some pair of free tiles match, false otherwise.
+     */
+    public boolean hasMove()
+    {
+        return numMatchableClasses > 0;
+    }
+
+    /**
+     * Tests to see if the top tile at the given cell is free.
+     *
+     * @param col The column of the cell.
+     *
+     * @param row The row of the cell.
+     *
+     * @return true if the cell has a tile and its top tile is free, false
+     * otherwise.
+     */
+    public boolean isFree(int col, int row)
+    {
+        return freeClasses[(col * gridRows) + row] != NO_CLASS;
+    }
+
+    // INDEX METHODS
+        // - clear
+        // - findMove
+        // - setCell
+
+    /**
+     * Empties all the cells.
+     */
+    public void clear()
+    {
+        for (int i = 0; i < heights.length; i++)
+        {
+            heights[i] = 0;
+            topClasses[i] = NO_CLASS;
+            freeClasses[i] = NO_CLASS;
+        }
+        for (int i = 0; i < numFreeCells.length; i++)
+        {
+            numFreeCells[i] = 0;
+            matchableClassPositions[i] = -1;
+        }
+        numMatchableClasses = 0;
+        numFreeTiles = 0;
+    }
+
+    /**
+     * Fills in move with a pair of free tiles that match, if there are any.
+     *
+     * @param move The move to fill in.
+     *
+     * @return true if a move was found, false if there are none.
+     */
+    public boolean findMove(MahjongSolitaireMove move)
+    {
+        if (numMatchableClasses == 0)
+        {
+            return false;
+        }
+        int matchClass = matchableClasses[0];
+        int cell1 = freeCells[matchClass][0];
+        int cell2 = freeCells[matchClass][1];
+        move.col1 = cell1 / gridRows;
+        move.row1 = cell1 % gridRows;
+        move.col2 = cell2 / gridRows;
+        move.row2 = cell2 % gridRows;
+        return true;
+    }
+
+    /**
+     * Called each time the stack at a cell changes, this method updates
+     * that cell, as well as the cells on either side, since their tiles
+     * may have become free or blocked.
+     *
+     * @param col The column of the cell that changed.
+     *
+     * @param row The row of the cell that changed.
+     *
+     * @param height The number of tiles now in the cell's stack.
+     *
+     * @param topClass The match class of the cell's top tile, or NO_CLASS if
+     * the stack is empty.
+     */
+    public void setCell(int col, int row, int height, int topClass)
+    {
+        int cell = (col * gridRows) + row;
+        heights[cell] = height;
+        topClasses[cell] = (height > 0) ? topClass : NO_CLASS;
+        refreshCell(col, row);
+        if (col > 0)
+        {
+            refreshCell(col - 1, row);
+        }
+        if (col < (gridColumns - 1))
+        {
+            refreshCell(col + 1, row);
+        }
+    }
+
+    // PRIVATE HELPER METHODS
+
+    /**
+     * Figures out if the top tile at the cell is free, and refiles it if
+     * that's changed.
+     */
+    private void refreshCell(int col, int row)
+    {
+        int cell = (col * gridRows) + row;
+        int height = heights[cell];
+        int newFreeClass = NO_CLASS;
+        if (height > 0)
+        {
+            if ((col == 0) || (col == (gridColumns - 1))
+                    || (height > heights[cell - gridRows])
+                    || (height > heights[cell + gridRows]))
+            {
+                newFreeClass = topClasses[cell];
+            }
+        }
+        int oldFreeClass = freeClasses[cell];
+        if (oldFreeClass != newFreeClass)
+        {
+            if (oldFreeClass != NO_CLASS)
+            {
+                removeFreeCell(oldFreeClass, cell);
+            }
+            if (newFreeClass != NO_CLASS)
+            {
+                addFreeCell(newFreeClass, cell);
+            }
+            freeClasses[cell] = newFreeClass;
+        }
+    }
+
+    /**
+     * Files the cell under matchClass.
+     */
+    private void addFreeCell(int matchClass, int cell)
+    {
+        int count = numFreeCells[matchClass];
+        if (count == freeCells[matchClass].length)
+        {
+            int[] newCells = new int[count * 2];
+            System.arraycopy(freeCells[matchClass], 0, newCells, 0, count);
+            freeCells[matchClass] = newCells;
+        }
+        freeCells[matchClass][count] = cell;
+        freeCellPositions[cell] = count;
+        numFreeCells[matchClass] = count + 1;
+        numFreeTiles++;
+
+        // DOES THIS CLASS NOW HAVE A MATCH?
+        if (count + 1 == 2)
+        {
+            matchableClasses[numMatchableClasses] = matchClass;
+            matchableClassPositions[matchClass] = numMatchableClasses;
+            numMatchableClasses++;
+        }
+    }
+
+    /**
+     * Takes the cell out of matchClass' free cells by moving the last one
+     * into its place.
+     */
+    private void removeFreeCell(int matchClass, int cell)
+    {
+        int position = freeCellPositions[cell];
+        int lastPosition = numFreeCells[matchClass] - 1;
+        int lastCell = freeCells[matchClass][lastPosition];
+        freeCells[matchClass][position] = lastCell;
+        freeCellPositions[lastCell] = position;
+        numFreeCells[matchClass] = lastPosition;
+        numFreeTiles--;
+
+        // DID THIS CLASS JUST LOSE ITS MATCH?
+        if (lastPosition == 1)
+        {
+            int classPosition = matchableClassPositions[matchClass];
+            int lastClass = matchableClasses[numMatchableClasses - 1];
+            matchableClasses[classPosition] = lastClass;
+            matchableClassPositions[lastClass] = classPosition;
+            matchableClassPositions[matchClass] = -1;
+            numMatchableClasses--;
+        }
+    }
+}
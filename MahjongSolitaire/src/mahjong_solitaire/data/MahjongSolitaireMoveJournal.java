@@ -0,0 +1,202 @@
+package mahjong_solitaire.data;
+
+/**
+ * This class records every move made in a game, in order, so that moves may
+ * be undone and redone any number of times. Each move is packed into a
+ * single int, along with another int for the IDs of the two tiles it
+ * removed, so the journal never makes an object per move.
+ *
+ * The journal has a cursor, which is the number of moves currently made. Undo
+ * moves the cursor back and redo moves it forward, and making a new move
+ * after undoing forgets the moves that were undone.
+ *
+ * @author Richard McKenna
+ */
+public class MahjongSolitaireMoveJournal
+{
+    // HOW MANY MOVES THERE'S ROOM FOR AT FIRST, WHICH IS ENOUGH TO
+    // CLEAR A 144 TILE LAYOUT WITHOUT GROWING
+    public static final int INITIAL_CAPACITY = 72;
+
+    // THE MOVES, PACKED AS col1, row1, col2, row2, 8 BITS EACH
+    private int[] moves;
+
+    // THE TILES EACH MOVE REMOVED, PACKED AS tileID1, tileID2, 16 BITS EACH
+    private int[] tilePairs;
+
+    // THE NUMBER OF MOVES RECORDED, AND THE NUMBER CURRENTLY MADE
+    private int numMoves;
+    private int cursor;
+
+    /**
+     * Constructor for an empty journal.
+     */
+    public MahjongSolitaireMoveJournal()
+    {
+        moves = new int[INITIAL_CAPACITY];
+        tilePairs = new int[INITIAL_CAPACITY];
+    }
+
+    // ACCESSOR METHODS
+        // - getCursor
+        // - getNumMoves
+        // - canUndo
+        // - canRedo
+        // - getMove
+        // - getTileID1
+        // - getTileID2
+
+    /**
+     * Accessor method for the number of moves currently made.
+     *
+     * @return The cursor, from 0 to getNumMoves().
+     */
+    public int getCursor()
+    {
+        return cursor;
+    }
+
+    /**
+     * Accessor method for the number of moves recorded, including ones that
+     * have been undone but may be redone.
+     *
+     * @return The number of moves recorded.
+     */
+    public int getNumMoves()
+    {
+        return numMoves;
+    }
+
+    /**
+     * Tests to see if there's a move to undo.
+     *
+     * @return true if at least one move has been made, false otherwise.
+     */
+    public boolean canUndo()
+    {
+        return cursor > 0;
+    }
+
+    /**
+     * Tests to see if there's a move to redo.
+     *
+     * @return true if a move has been undone and not replaced, false
+     * otherwise.
+     */
+    public boolean canRedo()
+    {
+        return cursor < numMoves;
+    }
+
+    /**
+     * Fills in move with the recorded move at the given index.
+     *
+     * @param index The index of the move, where 0 is the first move.
+     *
+     * @param move The move to fill in.
+     */
+    public void getMove(int index, MahjongSolitaireMove move)
+    {
+        int packedMove = moves[index];
+        move.col1 = (packedMove >>> 24) & 0xFF;
+        move.row1 = (packedMove >>> 16) & 0xFF;
+        move.col2 = (packedMove >>> 8) & 0xFF;
+        move.row2 = packedMove & 0xFF;
+    }
+
+    /**
+     * Accessor method for the ID of the first tile removed by a move.
+     *
+     * @param index The index of the move.
+     *
+     * @return The ID of the tile removed from (col1, row1).
+     */
+    public int getTileID1(int index)
+    {
+        return tilePairs[index] >>> 16;
+    }
+
+    /**
+     * Accessor method for the ID of the second tile removed by a move.
+     *
+     * @param index The index of the move.
+     *
+     * @return The ID of the tile removed from (col2, row2).
+     */
+    public int getTileID2(int index)
+    {
+        return tilePairs[index] & 0xFFFF;
+    }
+
+    // MUTATOR METHODS
+        // - clear
+        // - record
+        // - undo
+        // - redo
+
+    /**
+     * Forgets all the moves.
+     */
+    public void clear()
+    {
+        numMoves = 0;
+        cursor = 0;
+    }
+
+    /**
+     * Records a move that was just made, forgetting any moves that had been
+     * undone.
+     *
+     * @param move The move made.
+     *
+     * @param tileID1 The ID of the tile removed from (col1, row1).
+     *
+     * @param tileID2 The ID of the tile removed from (col2, row2).
+     */
+    public void record(MahjongSolitaireMove move, int tileID1, int tileID2)
+    {
+        if (cursor == moves.length)
+        {
+            int[] newMoves = new int[moves.length * 2];
+            System.arraycopy(moves, 0, newMoves, 0, cursor);
+            moves = newMoves;
+            int[] newTilePairs = new int[tilePairs.length * 2];
+            System.arraycopy(tilePairs, 0, newTilePairs, 0, cursor);
+            tilePairs = newTilePairs;
+        }
+        moves[cursor] = (move.col1 << 24) | (move.row1 << 16) | (move.col2 << 8) | move.row2;
+        tilePairs[cursor] = (tileID1 << 16) | tileID2;
+        cursor++;
+        numMoves = cursor;
+    }
+
+    /**
+     * Moves the cursor back one move.
+     *
+     * @return The index of the move to undo, or -1 if there isn't one.
+     */
+    public int undo()
+    {
+        if (cursor == 0)
+        {
+            return -1;
+        }
+        cursor--;
+        return cursor;
+    }
+
+    /**
+     * Moves the cursor forward one move.
+     *
+     * @return The index of the move to redo, or -1 if there isn't one.
+     */
+    public int redo()
+    {
+        if (cursor == numMoves)
+        {
+            return -1;
+        }
+        cursor++;
+        return cursor - 1;
+    }
+}
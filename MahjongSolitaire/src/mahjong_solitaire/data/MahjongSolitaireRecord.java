@@ -1,10 +1,13 @@
 package mahjong_solitaire.data;
 
 import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
+import java.io.PrintWriter;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.Set;
 
 /**
  * This class represents the complete playing history for the player
@@ -17,6 +20,14 @@ public class MahjongSolitaireRecord
 {                   
     // HERE ARE ALL THE RECORDS
     private HashMap<String, MahjongLevelRecord> levelRecords;
+    
+    // AND THE MORE DETAILED STATS FOR EACH LEVEL, WHICH ONLY
+    // INCLUDE GAMES PLAYED SINCE THEY WERE FIRST KEPT
+    private HashMap<String, MahjongLevelStats> levelStats;
+    
+    // THIS GOES UP EVERY TIME THE RECORD CHANGES, SO ANYTHING SHOWING
+    // IT KNOWS WHEN IT'S OUT OF DATE
+    private int version;
 
     /**
      * Default constructor, it simply creates the hash table for
@@ -25,6 +36,7 @@ public class MahjongSolitaireRecord
     public MahjongSolitaireRecord()
     {
         levelRecords = new HashMap();
+        levelStats = new HashMap();
     }
 
     // GET METHODS
@@ -32,6 +44,9 @@ public class MahjongSolitaireRecord
         // - getWins
         // - getLosses
         // - getFastestTime
+        // - getVersion
+        // - getLevelNames
+        // - getLevelStats
     
     /**
      * This method gets the games played for a given level.
@@ -114,6 +129,44 @@ public class MahjongSolitaireRecord
             return rec.fastestTime; 
     }
 
+    /**
+     * This method gets the number of times the record has changed, which
+     * goes up with every win or loss added.
+     * 
+     * @return The version of this record.
+     */
+    public int getVersion()
+    {
+        return version;
+    }
+
+    /**
+     * This method gets the names of all the levels that have a record.
+     * 
+     * @return The level names.
+     */
+    public Set<String> getLevelNames()
+    {
+        return levelRecords.keySet();
+    }
+
+    /**
+     * This method gets the detailed stats for a given level. These
+     * must not be changed by the caller.
+     * 
+     * @param levelName Level for the request.
+     * 
+     * @return The stats for the levelName level, which are empty if no
+     * games have been played on it since stats were first kept.
+     */
+    public MahjongLevelStats getLevelStats(String levelName)
+    {
+        MahjongLevelStats stats = levelStats.get(levelName);
+        if (stats == null)
+            return new MahjongLevelStats();
+        return stats;
+    }
+
     // ADD METHODS
         // -addMahjongLevelRecord
         // -addWin
@@ -129,6 +182,7 @@ public class MahjongSolitaireRecord
     public void addMahjongLevelRecord(String levelName, MahjongLevelRecord rec)
     {
         levelRecords.put(levelName, rec);
+        version++;
     }
     
     /**
@@ -138,9 +192,14 @@ public class MahjongSolitaireRecord
      * @param levelName The level being played that the player won.
      * 
      * @param winTime The time it took to win the game.
+     * 
+     * @param numMoves The number of moves made to win the game.
      */
-    public void addWin(String levelName, long winTime)
+    public void addWin(String levelName, long winTime, int numMoves)
     {
+        // KEEP THE DETAILED STATS TOO
+        getStatsToUpdate(levelName).addWin(winTime, numMoves);
+        
         // GET THE RECORD FOR levelName
         MahjongLevelRecord rec = levelRecords.get(levelName);
         
@@ -165,6 +224,7 @@ public class MahjongSolitaireRecord
             if (winTime < rec.fastestTime)
                 rec.fastestTime = winTime;
         }
+        version++;
     }
     
     /**
@@ -172,9 +232,14 @@ public class MahjongSolitaireRecord
      * to the level being played.
      * 
      * @param levelName The level being played that the player lost.
+     * 
+     * @param numMoves The number of moves made before losing.
      */
-    public void addLoss(String levelName)
+    public void addLoss(String levelName, int numMoves)
     {
+        // KEEP THE DETAILED STATS TOO
+        getStatsToUpdate(levelName).addLoss(numMoves);
+        
         // GET THE RECORD FOR levelName
         MahjongLevelRecord rec = levelRecords.get(levelName);
 
@@ -197,11 +262,15 @@ public class MahjongSolitaireRecord
             rec.gamesPlayed++;
             rec.losses++;
         }
+        version++;
     }
     
     // ADDITIONAL SERVICE METHODS
         // -calculateWinPercentage
         // -toByteArray
+        // -writeStats
+        // -readStats
+        // -exportStats
 
     /**
      * This method calculates and returns the player's win
@@ -258,4 +327,95 @@ public class MahjongSolitaireRecord
         // AND THEN RETURN IT
         return baos.toByteArray();
     }
+    
+    /**
+     * This method writes the detailed stats for all the levels. They're
+     * kept apart from toByteArray so old record files can still be read.
+     * 
+     * @param dos Where to write the stats.
+     * 
+     * @throws IOException If they couldn't be written.
+     */
+    public void writeStats(DataOutputStream dos) throws IOException
+    {
+        dos.writeInt(levelStats.size());
+        Iterator<String> keysIt = levelStats.keySet().iterator();
+        while(keysIt.hasNext())
+        {
+            String key = keysIt.next();
+            dos.writeUTF(key);
+            levelStats.get(key).writeTo(dos);
+        }
+    }
+    
+    /**
+     * This method reads the detailed stats written by writeStats, replacing
+     * any stats for the same levels.
+     * 
+     * @param dis Where to read the stats from.
+     * 
+     * @throws IOException If they couldn't be read.
+     */
+    public void readStats(DataInputStream dis) throws IOException
+    {
+        int numLevels = dis.readInt();
+        for (int i = 0; i < numLevels; i++)
+        {
+            String levelName = dis.readUTF();
+            MahjongLevelStats stats = new MahjongLevelStats();
+            stats.readFrom(dis);
+            levelStats.put(levelName, stats);
+        }
+        version++;
+    }
+    
+    /**
+     * This method writes a summary of every level's record and stats, one
+     * line per level, separated by commas so it's easy to load into a
+     * spreadsheet. Times are in milliseconds.
+     * 
+     * @param out Where to write the summary.
+     */
+    public void exportStats(PrintWriter out)
+    {
+        out.println("level,gamesPlayed,wins,losses,winRate,last10WinRate,"
+                + "fastestWin,medianWin,90thPercentileWin,medianWinMoves,medianLossMoves,"
+                + "currentStreak,longestWinStreak,longestLossStreak");
+        Iterator<String> keysIt = levelRecords.keySet().iterator();
+        while(keysIt.hasNext())
+        {
+            String key = keysIt.next();
+            MahjongLevelStats stats = getLevelStats(key);
+            long fastest = getFastestTime(key);
+            out.println(key
+                    + "," + getGamesPlayed(key)
+                    + "," + getWins(key)
+                    + "," + getLosses(key)
+                    + "," + calculateWinPercentage(key)
+                    + "," + stats.getRecentWinRate(10)
+                    + "," + ((fastest == Long.MAX_VALUE) ? "" : ("" + fastest))
+                    + "," + stats.getWinTimes().getValueAtPercentile(50)
+                    + "," + stats.getWinTimes().getValueAtPercentile(90)
+                    + "," + stats.getWinMoves().getValueAtPercentile(50)
+                    + "," + stats.getLossMoves().getValueAtPercentile(50)
+                    + "," + stats.getCurrentStreak()
+                    + "," + stats.getLongestWinStreak()
+                    + "," + stats.getLongestLossStreak());
+        }
+    }
+    
+    /**
+     * Gets the stats for a level so a game can be added, making them
+     * if this is the level's first.
+     */
+    private MahjongLevelStats getStatsToUpdate(String levelName)
+    {
+        MahjongLevelStats stats = levelStats.get(levelName);
+        if (stats == null)
+        {
+            stats = new MahjongLevelStats();
+            levelStats.put(levelName, stats);
+        }
+        return stats;
+    }
 }    
\ No newline at end of file
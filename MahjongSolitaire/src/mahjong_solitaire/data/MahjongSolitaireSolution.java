@@ -0,0 +1,63 @@
+package mahjong_solitaire.data;
+
+import java.util.ArrayList;
+
+/**
+ * This class stores what the solver found out about a deal. If the deal
+ * was solved, moves has every move needed to clear the grid, in order. If
+ * the solver tried every possible sequence of moves without clearing the
+ * grid, the deal is unsolvable, and statesExplored and deadStates say how
+ * much searching it took to prove it.
+ *
+ * @author Richard McKenna
+ */
+public class MahjongSolitaireSolution
+{
+    // THE POSSIBLE RESULTS OF A SEARCH
+    public static final int SOLVED = 0;
+    public static final int UNSOLVABLE = 1;
+    public static final int TIMED_OUT = 2;
+
+    // ONE OF THE ABOVE
+    public int result;
+
+    // THE MOVES THAT CLEAR THE GRID, IF IT WAS SOLVED
+    public ArrayList<MahjongSolitaireMove> moves;
+
+    // HOW MANY DIFFERENT GRIDS WERE LOOKED AT, AND HOW MANY OF
+    // THOSE WERE FOUND TO HAVE NO WAY TO CLEAR THEM
+    public long statesExplored;
+    public long deadStates;
+
+    // HOW LONG THE SEARCH TOOK
+    public long timeInMillis;
+
+    /**
+     * Constructor for an empty solution, which the solver fills in.
+     */
+    public MahjongSolitaireSolution()
+    {
+        moves = new ArrayList();
+    }
+
+    /**
+     * Tests to see if the deal was solved.
+     *
+     * @return true if moves clears the grid, false otherwise.
+     */
+    public boolean isSolved()
+    {
+        return result == SOLVED;
+    }
+
+    /**
+     * Tests to see if the deal was proven to be unsolvable, which is only
+     * the case if the search finished without running out of time.
+     *
+     * @return true if no sequence of moves clears the grid, false otherwise.
+     */
+    public boolean isUnsolvable()
+    {
+        return result == UNSOLVABLE;
+    }
+}
@@ -0,0 +1,608 @@
+package mahjong_solitaire.data;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * This class searches for a sequence of moves that clears an entire dealt
+ * grid, or proves there isn't one. It works on its own compact copy of the
+ * grid, where each tile is a numbered position and the grid is just the
+ * height of each cell's stack, so trying and taking back moves is cheap.
+ *
+ * To avoid searching the same grid twice, each grid is given a Zobrist hash,
+ * which is the XOR of a random number for each removed tile, and grids that
+ * can't be cleared are remembered by hash. The search also prunes moves:
+ * if all the remaining tiles of a match class are free they're removed
+ * without trying anything else, since doing so can never hurt, and any grid
+ * where more than half the remaining tiles of a class are stacked in the
+ * same cell is known to be impossible, since the ones on top would have to
+ * be matched with each other.
+ *
+ * @author Richard McKenna
+ */
+public class MahjongSolitaireSolver
+{
+    // THE SIZE OF THE TABLE OF GRIDS KNOWN TO BE UNSOLVABLE
+    public static final int DEFAULT_TABLE_SIZE = 1 << 20;
+
+    // HOW OFTEN, IN GRIDS EXPLORED, TO CHECK THE CLOCK
+    private static final int CLOCK_CHECK_INTERVAL = 1024;
+
+    // THE SEED FOR THE ZOBRIST NUMBERS, SO HASHES ARE ALWAYS THE SAME
+    private static final long ZOBRIST_SEED = 0x5DEECE66DL;
+
+    // THE GRID'S DIMENSIONS
+    private int gridColumns;
+    private int gridRows;
+    private int numCells;
+
+    // EACH TILE IS A POSITION, NUMBERED CELL BY CELL FROM THE BOTTOM
+    // OF EACH STACK UP. FOR EACH WE KNOW ITS CELL, ITS CLASS, AND ITS
+    // ZOBRIST NUMBER, AND FOR EACH CELL WE KNOW ITS FIRST POSITION
+    private int numPositions;
+    private int[] positionCells;
+    private int[] positionClasses;
+    private long[] zobristNumbers;
+    private int[] cellFirstPositions;
+
+    // THE POSITIONS OF EACH CLASS' TILES
+    private int numClasses;
+    private int[][] classPositions;
+
+    // THE CURRENT STATE OF THE SEARCH. NOTE THAT SINCE TILES ARE ONLY
+    // EVER TAKEN OFF THE TOP OF A STACK, THE HEIGHTS SAY EVERYTHING
+    private int[] heights;
+    private int[] classRemaining;
+    private int tilesRemaining;
+    private long hash;
+
+    // THE MOVES MADE SO FAR, AS PAIRS OF POSITIONS
+    private int[] movePositions;
+    private int numMovesMade;
+
+    // FOR EACH DEPTH, ROOM FOR SORTING THE FREE TILES BY CLASS
+    // AND FOR LISTING AND RANKING THE MOVES TO TRY, SO SEARCHING
+    // MAKES NO OBJECTS
+    private int[][] freeCounts;
+    private int[][] freeTiles;
+    private int[][] candidateMoves;
+    private int[][] candidateScores;
+
+    // GRIDS KNOWN TO BE UNSOLVABLE, AS AN OPEN ADDRESSED TABLE OF
+    // HASHES, WHERE 0 MEANS EMPTY
+    private long[] deadTable;
+    private int deadTableCount;
+
+    // ROOM FOR CHECKING IF A GRID IS STUCK
+    private int[] simHeights;
+    private int[] simFreeCells;
+    private int[] simFreeCounts;
+    private int[] simTakenCounts;
+
+    // SEARCH STATISTICS AND LIMITS
+    private long statesExplored;
+    private long deadStates;
+    private long deadline;
+    private boolean timedOut;
+
+    /**
+     * Constructor for setting up a solver for a dealt grid.
+     *
+     * @param initGridColumns The number of columns in the grid.
+     *
+     * @param initGridRows The number of rows in the grid.
+     *
+     * @param stacks The match classes of the tiles in each cell, indexed
+     * [column][row][z], bottom tile first.
+     *
+     * @param initNumClasses The number of different match classes.
+     */
+    public MahjongSolitaireSolver(int initGridColumns, int initGridRows, int[][][] stacks, int initNumClasses)
+    {
+        gridColumns = initGridColumns;
+        gridRows = initGridRows;
+        numCells = gridColumns * gridRows;
+        numClasses = initNumClasses;
+
+        // NUMBER ALL THE POSITIONS
+        cellFirstPositions = new int[numCells + 1];
+        heights = new int[numCells];
+        for (int i = 0; i < gridColumns; i++)
+        {
+            for (int j = 0; j < gridRows; j++)
+            {
+                int cell = (i * gridRows) + j;
+                cellFirstPositions[cell] = numPositions;
+                heights[cell] = stacks[i][j].length;
+                numPositions += stacks[i][j].length;
+            }
+        }
+        cellFirstPositions[numCells] = numPositions;
+
+        // AND FILL IN WHAT WE KNOW ABOUT EACH ONE
+        positionCells = new int[numPositions];
+        positionClasses = new int[numPositions];
+        zobristNumbers = new long[numPositions];
+        int[] classSizes = new int[numClasses];
+        Random random = new Random(ZOBRIST_SEED);
+        for (int cell = 0; cell < numCells; cell++)
+        {
+            int[] stack = stacks[cell / gridRows][cell % gridRows];
+            for (int z = 0; z < stack.length; z++)
+            {
+                int position = cellFirstPositions[cell] + z;
+                positionCells[position] = cell;
+                positionClasses[position] = stack[z];
+                zobristNumbers[position] = random.nextLong();
+                classSizes[stack[z]]++;
+            }
+        }
+        classPositions = new int[numClasses][];
+        for (int c = 0; c < numClasses; c++)
+        {
+            classPositions[c] = new int[classSizes[c]];
+            classSizes[c] = 0;
+        }
+        for (int position = 0; position < numPositions; position++)
+        {
+            int c = positionClasses[position];
+            classPositions[c][classSizes[c]] = position;
+            classSizes[c]++;
+        }
+        classRemaining = classSizes;
+        tilesRemaining = numPositions;
+
+        // AND MAKE ROOM FOR SEARCHING
+        int maxDepth = (numPositions / 2) + 1;
+        movePositions = new int[numPositions + 2];
+        freeCounts = new int[maxDepth][numClasses];
+        freeTiles = new int[maxDepth][numPositions];
+        candidateMoves = new int[maxDepth][];
+        candidateScores = new int[maxDepth][];
+        deadTable = new long[DEFAULT_TABLE_SIZE];
+        simHeights = new int[numCells];
+        simFreeCells = new int[numCells];
+        simFreeCounts = new int[numClasses];
+        simTakenCounts = new int[numClasses];
+    }
+
+    /**
+     * Searches for a sequence of moves that clears the grid, giving up after
+     * timeBudgetInMillis.
+     *
+     * @param timeBudgetInMillis The most time to spend searching.
+     *
+     * @return What the search found. If it timed out, the deal may or may
+     * not be solvable.
+     */
+    public MahjongSolitaireSolution solve(long timeBudgetInMillis)
+    {
+        long startTime = System.nanoTime();
+        deadline = startTime + (timeBudgetInMillis * 1000000L);
+        timedOut = false;
+        statesExplored = 0;
+        deadStates = 0;
+
+        MahjongSolitaireSolution solution = new MahjongSolitaireSolution();
+        boolean solved = false;
+        if ((numPositions % 2) == 0)
+        {
+            // A GRID WHERE SOME CLASS CAN NEVER BE CLEARED ISN'T WORTH SEARCHING
+            boolean possible = true;
+            for (int c = 0; c < numClasses; c++)
+            {
+                if (((classRemaining[c] % 2) != 0) || isDeadlocked(c))
+                {
+                    possible = false;
+                }
+            }
+            if (possible && !isStuck())
+            {
+                solved = search(0);
+            }
+        }
+
+        // FILL IN THE RESULTS
+        if (solved)
+        {
+            solution.result = MahjongSolitaireSolution.SOLVED;
+            for (int i = 0; i < numMovesMade; i += 2)
+            {
+                MahjongSolitaireMove move = new MahjongSolitaireMove();
+                int cell1 = positionCells[movePositions[i]];
+                int cell2 = positionCells[movePositions[i + 1]];
+                move.col1 = cell1 / gridRows;
+                move.row1 = cell1 % gridRows;
+                move.col2 = cell2 / gridRows;
+                move.row2 = cell2 % gridRows;
+                solution.moves.add(move);
+            }
+        }
+        else if (timedOut)
+        {
+            solution.result = MahjongSolitaireSolution.TIMED_OUT;
+        }
+        else
+        {
+            solution.result = MahjongSolitaireSolution.UNSOLVABLE;
+        }
+        solution.statesExplored = statesExplored;
+        solution.deadStates = deadStates;
+        solution.timeInMillis = (System.nanoTime() - startTime) / 1000000L;
+
+        // PUT THE GRID BACK THE WAY IT WAS, IN CASE WE'RE ASKED AGAIN
+        while (numMovesMade > 0)
+        {
+            undoMove();
+        }
+        return solution;
+    }
+
+    // PRIVATE HELPER METHODS
+
+    /**
+     * Tries to clear the rest of the grid from the current state, returning
+     * true if it can be done, leaving the moves that do it in movePositions.
+     */
+    private boolean search(int depth)
+    {
+        if (tilesRemaining == 0)
+        {
+            return true;
+        }
+        statesExplored++;
+        if ((statesExplored % CLOCK_CHECK_INTERVAL) == 0)
+        {
+            if (System.nanoTime() > deadline)
+            {
+                timedOut = true;
+            }
+        }
+        if (timedOut || isKnownDead(hash))
+        {
+            return false;
+        }
+
+        // SORT THE FREE TILES BY CLASS
+        int[] counts = freeCounts[depth];
+        int[] tiles = freeTiles[depth];
+        int numFree = findFreeTiles(counts, tiles);
+
+        // IF ALL THE REMAINING TILES OF A CLASS ARE FREE, TAKING THEM
+        // ALL IS ALWAYS SAFE, SO THERE'S NOTHING ELSE TO TRY
+        for (int c = 0; c < numClasses; c++)
+        {
+            if ((counts[c] > 0) && (counts[c] == classRemaining[c]))
+            {
+                int movesBefore = numMovesMade;
+                for (int i = 0; i < numFree; i++)
+                {
+                    if (positionClasses[tiles[i]] == c)
+                    {
+                        removeTile(tiles[i]);
+                    }
+                }
+                if (search(depth + 1))
+                {
+                    return true;
+                }
+                while (numMovesMade > movesBefore)
+                {
+                    undoMove();
+                }
+                return fail();
+            }
+        }
+
+        // OTHERWISE LIST EVERY PAIR OF MATCHING FREE TILES
+        int numCandidates = listCandidateMoves(depth, counts, tiles, numFree);
+        int[] candidates = candidateMoves[depth];
+        for (int i = 0; i < numCandidates; i++)
+        {
+            int position1 = candidates[i * 2];
+            int position2 = candidates[(i * 2) + 1];
+            removeTile(position1);
+            removeTile(position2);
+            if (!isDeadlocked(positionClasses[position1])
+                    && !isStuck()
+                    && search(depth + 1))
+            {
+                return true;
+            }
+            undoMove();
+            undoMove();
+            if (timedOut)
+            {
+                return false;
+            }
+        }
+        return fail();
+    }
+
+    /**
+     * Remembers that the current grid can't be cleared.
+     */
+    private boolean fail()
+    {
+        if (!timedOut)
+        {
+            rememberDead(hash);
+            deadStates++;
+        }
+        return false;
+    }
+
+    /**
+     * Fills in the number of free tiles in each class and lists them,
+     * returning how many there are.
+     */
+    private int findFreeTiles(int[] counts, int[] tiles)
+    {
+        for (int c = 0; c < numClasses; c++)
+        {
+            counts[c] = 0;
+        }
+        int numFree = 0;
+        for (int cell = 0; cell < numCells; cell++)
+        {
+            int height = heights[cell];
+            if (height > 0)
+            {
+                int col = cell / gridRows;
+                if ((col == 0) || (col == (gridColumns - 1))
+                        || (height > heights[cell - gridRows])
+                        || (height > heights[cell + gridRows]))
+                {
+                    int position = cellFirstPositions[cell] + height - 1;
+                    tiles[numFree] = position;
+                    numFree++;
+                    counts[positionClasses[position]]++;
+                }
+            }
+        }
+        return numFree;
+    }
+
+    /**
+     * Lists every pair of free tiles that match into this depth's candidate
+     * moves, with the ones most likely to help first, returning how many
+     * there are.
+     */
+    private int listCandidateMoves(int depth, int[] counts, int[] tiles, int numFree)
+    {
+        // COUNT THEM FIRST SO WE KNOW HOW MUCH ROOM WE NEED, WHICH IS
+        // TWO POSITIONS AND ONE SCORE FOR EACH
+        int numCandidates = 0;
+        for (int c = 0; c < numClasses; c++)
+        {
+            numCandidates += (counts[c] * (counts[c] - 1)) / 2;
+        }
+        if ((candidateScores[depth] == null) || (candidateScores[depth].length < numCandidates))
+        {
+            candidateMoves[depth] = new int[Math.max(16, numCandidates * 2)];
+            candidateScores[depth] = new int[Math.max(8, numCandidates)];
+        }
+        int[] candidates = candidateMoves[depth];
+        int[] scores = candidateScores[depth];
+
+        // TAKING TILES OFF TALL STACKS FIRST TENDS TO FREE THE MOST
+        int n = 0;
+        for (int i = 0; i < numFree; i++)
+        {
+            for (int j = i + 1; j < numFree; j++)
+            {
+                if (positionClasses[tiles[i]] == positionClasses[tiles[j]])
+                {
+                    int score = heights[positionCells[tiles[i]]] + heights[positionCells[tiles[j]]];
+
+                    // INSERT IT IN ORDER, BEST FIRST
+                    int k = n;
+                    while ((k > 0) && (scores[k - 1] < score))
+                    {
+                        scores[k] = scores[k - 1];
+                        candidates[k * 2] = candidates[(k - 1) * 2];
+                        candidates[(k * 2) + 1] = candidates[((k - 1) * 2) + 1];
+                        k--;
+                    }
+                    scores[k] = score;
+                    candidates[k * 2] = tiles[i];
+                    candidates[(k * 2) + 1] = tiles[j];
+                    n++;
+                }
+            }
+        }
+        return n;
+    }
+
+    /**
+     * Tests to see if the remaining tiles of matchClass can never all be
+     * removed because more than half of them are stacked in one cell.
+     */
+    private boolean isDeadlocked(int matchClass)
+    {
+        int remaining = classRemaining[matchClass];
+        if (remaining == 0)
+        {
+            return false;
+        }
+        int[] positions = classPositions[matchClass];
+        for (int i = 0; i < positions.length; i++)
+        {
+            int cell = positionCells[positions[i]];
+            if (isRemaining(positions[i]))
+            {
+                int inCell = 0;
+                for (int j = 0; j < positions.length; j++)
+                {
+                    if ((positionCells[positions[j]] == cell) && isRemaining(positions[j]))
+                    {
+                        inCell++;
+                    }
+                }
+                if ((inCell * 2) > remaining)
+                {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Tests to see if some tile can never be removed, even if we pretend
+     * tiles may be matched with any free tile of their class, ignoring
+     * whether it was already used. Starting from the current grid, this
+     * keeps taking away every free tile that has some other tile of its
+     * class free, or already taken away, to match with, and the last two
+     * tiles of a class only if both are free. Taking away tiles only ever
+     * frees more tiles, so if this gets stuck before the grid is empty,
+     * the real game will too.
+     */
+    private boolean isStuck()
+    {
+        int remaining = tilesRemaining;
+        for (int cell = 0; cell < numCells; cell++)
+        {
+            simHeights[cell] = heights[cell];
+        }
+        for (int c = 0; c < numClasses; c++)
+        {
+            simTakenCounts[c] = 0;
+        }
+        boolean progress = true;
+        while (progress && (remaining > 0))
+        {
+            // FIND WHAT'S FREE RIGHT NOW
+            for (int c = 0; c < numClasses; c++)
+            {
+                simFreeCounts[c] = 0;
+            }
+            int numFree = 0;
+            for (int cell = 0; cell < numCells; cell++)
+            {
+                int height = simHeights[cell];
+                if (height > 0)
+                {
+                    int col = cell / gridRows;
+                    if ((col == 0) || (col == (gridColumns - 1))
+                            || (height > simHeights[cell - gridRows])
+                            || (height > simHeights[cell + gridRows]))
+                    {
+                        simFreeCells[numFree] = cell;
+                        numFree++;
+                        simFreeCounts[positionClasses[cellFirstPositions[cell] + height - 1]]++;
+                    }
+                }
+            }
+
+            // AND TAKE AWAY EVERYTHING THAT HAS SOMETHING TO MATCH
+            progress = false;
+            for (int i = 0; i < numFree; i++)
+            {
+                int cell = simFreeCells[i];
+                int c = positionClasses[cellFirstPositions[cell] + simHeights[cell] - 1];
+                boolean canTake;
+                if (classRemaining[c] == 2)
+                {
+                    canTake = simFreeCounts[c] == 2;
+                }
+                else
+                {
+                    canTake = (simFreeCounts[c] + simTakenCounts[c]) >= 2;
+                }
+                if (canTake)
+                {
+                    simHeights[cell]--;
+                    simTakenCounts[c]++;
+                    remaining--;
+                    progress = true;
+                }
+            }
+        }
+        return remaining > 0;
+    }
+
+    /**
+     * Tests to see if the tile at position hasn't been removed yet.
+     */
+    private boolean isRemaining(int position)
+    {
+        int cell = positionCells[position];
+        return position < (cellFirstPositions[cell] + heights[cell]);
+    }
+
+    /**
+     * Takes the tile at position, which must be on top of its stack, off
+     * the grid.
+     */
+    private void removeTile(int position)
+    {
+        int cell = positionCells[position];
+        heights[cell]--;
+        classRemaining[positionClasses[position]]--;
+        tilesRemaining--;
+        hash ^= zobristNumbers[position];
+        movePositions[numMovesMade] = position;
+        numMovesMade++;
+    }
+
+    /**
+     * Puts the most recently removed tile back.
+     */
+    private void undoMove()
+    {
+        numMovesMade--;
+        int position = movePositions[numMovesMade];
+        heights[positionCells[position]]++;
+        classRemaining[positionClasses[position]]++;
+        tilesRemaining++;
+        hash ^= zobristNumbers[position];
+    }
+
+    /**
+     * Tests to see if the grid with the given hash is known to be
+     * unsolvable.
+     */
+    private boolean isKnownDead(long gridHash)
+    {
+        long key = (gridHash == 0) ? 1 : gridHash;
+        int mask = deadTable.length - 1;
+        int slot = (int) (key ^ (key >>> 32)) & mask;
+        while (deadTable[slot] != 0)
+        {
+            if (deadTable[slot] == key)
+            {
+                return true;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return false;
+    }
+
+    /**
+     * Remembers that the grid with the given hash is unsolvable. Once the
+     * table is three quarters full, it starts over, since a slow search is
+     * better than running out of memory.
+     */
+    private void rememberDead(long gridHash)
+    {
+        if ((deadTableCount * 4) >= (deadTable.length * 3))
+        {
+            Arrays.fill(deadTable, 0);
+            deadTableCount = 0;
+        }
+        long key = (gridHash == 0) ? 1 : gridHash;
+        int mask = deadTable.length - 1;
+        int slot = (int) (key ^ (key >>> 32)) & mask;
+        while (deadTable[slot] != 0)
+        {
+            if (deadTable[slot] == key)
+            {
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        deadTable[slot] = key;
+        deadTableCount++;
+    }
+}
@@ -33,6 +33,10 @@ public class ExitHandler extends WindowAdapter
         {
             miniGame.getDataModel().endGameAsLoss();
         }
+        
+        // MAKE SURE THE RECORD IS ALL SAVED
+        miniGame.closePlayerRecord();
+        
         // AND CLOSE THE ALL
         System.exit(0);
     }
@@ -59,6 +59,32 @@ public class MahjongKeyHandler extends KeyAdapter
             MahjongSolitaireDataModel data = (MahjongSolitaireDataModel)game.getDataModel();
              data.undoLastMove();
         }
+        
+        // REDO THE LAST MOVE UNDONE
+        if (ke.getKeyCode() == KeyEvent.VK_R)
+        {
+            MahjongSolitaireDataModel data = (MahjongSolitaireDataModel)game.getDataModel();
+            data.redoMove();
+        }
+        
+        // WRITE OUT THE PLAYER'S STATS FOR EVERY LEVEL
+        if (ke.getKeyCode() == KeyEvent.VK_S)
+        {
+            game.getFileManager().exportStats();
+        }
+        
+        // JUMP ALL THE WAY BACK TO THE DEAL, OR FORWARD TO THE LAST MOVE
+        if ((ke.getKeyCode() == KeyEvent.VK_HOME) || (ke.getKeyCode() == KeyEvent.VK_END))
+        {
+            MahjongSolitaireDataModel data = (MahjongSolitaireDataModel)game.getDataModel();
+            if (data.inProgress())
+            {
+                if (ke.getKeyCode() == KeyEvent.VK_HOME)
+                    data.jumpToMove(0);
+                else
+                    data.jumpToMove(data.getMoveJournal().getNumMoves());
+            }
+        }
 
     }
     
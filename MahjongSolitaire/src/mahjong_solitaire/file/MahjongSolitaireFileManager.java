@@ -1,17 +1,15 @@
 package mahjong_solitaire.file;
 
-import java.io.BufferedInputStream;
-import java.io.ByteArrayInputStream;
-import java.io.DataInputStream;
-import java.io.DataOutputStream;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
 import mahjong_solitaire.MahjongSolitaire.MahjongSolitairePropertyType;
-import mahjong_solitaire.data.MahjongLevelRecord;
 import mahjong_solitaire.data.MahjongSolitaireDataModel;
 import mahjong_solitaire.data.MahjongSolitaireRecord;
 import mahjong_solitaire.ui.MahjongSolitaireMiniGame;
+import mini_game.MiniGameLevelFile;
 import properties_manager.PropertiesManager;
 
 /**
@@ -22,9 +20,23 @@ import properties_manager.PropertiesManager;
  */
 public class MahjongSolitaireFileManager
 {
+    // ADDED TO THE RECORD FILE NAME FOR THE EXPORTED STATS
+    public static final String STATS_FILE_SUFFIX = ".csv";
+    
+    // IF A FILE WITH THIS NAME IS WITH THE LEVEL FILES, LEVELS ARE
+    // LOADED FROM IT FIRST
+    public static final String LEVEL_PACK_FILE_NAME = "levels.zpk";
+    
     // WE'LL LET THE GAME KNOW WHEN DATA LOADING IS COMPLETE
     private MahjongSolitaireMiniGame miniGame;
     
+    // SAVES THE PLAYER RECORD ONE GAME AT A TIME
+    private MahjongSolitaireRecordLog recordLog;
+    
+    // THE LEVEL PACKS WE'VE OPENED, BY THE DIRECTORY THEY'RE IN,
+    // WITH null FOR DIRECTORIES THAT DON'T HAVE ONE
+    private HashMap<File, MahjongSolitaireLevelPack> levelPacks;
+    
     /**
      * Constructor for initializing this file manager, it simply keeps
      * the game for later.
@@ -35,6 +47,18 @@ public class MahjongSolitaireFileManager
     {
         // KEEP IT FOR LATER
         miniGame = initMiniGame;
+        levelPacks = new HashMap();
+    }
+
+    /**
+     * Accessor method for the log that saves the player record, which
+     * is set up when the record is loaded.
+     * 
+     * @return The record log.
+     */
+    public MahjongSolitaireRecordLog getRecordLog()
+    {
+        return recordLog;
     }
 
     /**
@@ -45,48 +69,37 @@ public class MahjongSolitaireFileManager
      */
     public void loadLevel(String levelFile)
     {
-        // LOAD THE RAW DATA SO WE CAN USE IT
-        // OUR LEVEL FILES WILL HAVE THE DIMENSIONS FIRST,
-        // FOLLOWED BY THE GRID VALUES
+        // LEVELS ARE READ STRAIGHT FROM MEMORY, EITHER FROM A LEVEL PACK,
+        // FROM THE LEVEL FILE MAPPED INTO MEMORY, OR FROM BYTES THAT WERE
+        // PRELOADED. THE LEVEL FILE HAS THE DIMENSIONS FIRST, FOLLOWED
+        // BY THE GRID VALUES
         try
         {
             File fileToOpen = new File(levelFile);
-
-            // LET'S USE A FAST LOADING TECHNIQUE. WE'LL LOAD ALL OF THE
-            // BYTES AT ONCE INTO A BYTE ARRAY, AND THEN PICK THAT APART.
-            // THIS IS FAST BECAUSE IT ONLY HAS TO DO FILE READING ONCE
-            byte[] bytes = new byte[Long.valueOf(fileToOpen.length()).intValue()];
-            ByteArrayInputStream bais = new ByteArrayInputStream(bytes);
-            FileInputStream fis = new FileInputStream(fileToOpen);
-            BufferedInputStream bis = new BufferedInputStream(fis);
-            
-            // HERE IT IS, THE ONLY READY REQUEST WE NEED
-            bis.read(bytes);
-            bis.close();
-            
-            // NOW WE NEED TO LOAD THE DATA FROM THE BYTE ARRAY
-            DataInputStream dis = new DataInputStream(bais);
-            
-            // NOTE THAT WE NEED TO LOAD THE DATA IN THE SAME
-            // ORDER AND FORMAT AS WE SAVED IT
-            
-            // FIRST READ THE GRID DIMENSIONS
-            int initGridColumns = dis.readInt();
-            int initGridRows = dis.readInt();
-            int[][] newGrid = new int[initGridColumns][initGridRows];
-            
-            // AND NOW ALL THE CELL VALUES
-            for (int i = 0; i < initGridColumns; i++)
-            {                        
-                for (int j = 0; j < initGridRows; j++)
-                {
-                    newGrid[i][j] = dis.readInt();
-                }
+            ByteBuffer levelBuffer = null;
+            MahjongSolitaireLevelPack levelPack = getLevelPack(fileToOpen.getAbsoluteFile().getParentFile());
+            if (levelPack != null)
+            {
+                levelBuffer = levelPack.getLevel(fileToOpen.getName());
+            }
+            if (levelBuffer == null)
+            {
+                // THE LEVEL MAY ALREADY HAVE BEEN PRELOADED
+                byte[] bytes = miniGame.getAssetLoader().takeFile(levelFile);
+                if (bytes != null)
+                    levelBuffer = ByteBuffer.wrap(bytes);
+                else
+                    levelBuffer = MiniGameLevelFile.map(fileToOpen);
             }
+
+            // THIS CHECKS THE FILE ISN'T DAMAGED AND READS ALL THE
+            // CELL VALUES AT ONCE
+            MiniGameLevelFile level = MiniGameLevelFile.read(levelBuffer);
             
             // EVERYTHING WENT AS PLANNED SO LET'S MAKE IT PERMANENT
             MahjongSolitaireDataModel dataModel = (MahjongSolitaireDataModel)miniGame.getDataModel();
-            dataModel.initLevelGrid(newGrid, initGridColumns, initGridRows);
+            dataModel.initLevelGrid(level.getGrid(), level.getGridColumns(), level.getGridRows());
+            dataModel.setLevelDeals(level);
             dataModel.setCurrentLevel(levelFile);
             
             miniGame.updateBoundaries();
@@ -98,62 +111,80 @@ public class MahjongSolitaireFileManager
         }
     }    
     
+    /**
+     * This method writes a summary of the player's record and stats for
+     * every level to a file next to the record file, for loading into a
+     * spreadsheet.
+     * 
+     * @return The file written, or null if it couldn't be written.
+     */
+    public File exportStats()
+    {
+        PropertiesManager props = PropertiesManager.getPropertiesManager();
+        String dataPath = props.getProperty(MahjongSolitairePropertyType.DATA_PATH);
+        File statsFile = new File(dataPath + props.getProperty(MahjongSolitairePropertyType.RECORD_FILE_NAME) + STATS_FILE_SUFFIX);
+        try
+        {
+            PrintWriter out = new PrintWriter(statsFile);
+            miniGame.getPlayerRecord().exportStats(out);
+            out.close();
+            return out.checkError() ? null : statsFile;
+        }
+        catch(IOException ioe)
+        {
+            return null;
+        }
+    }
+    
     /**
      * This method loads the player record from the records file
-     * so that the user may view stats.
+     * so that the user may view stats. It also sets up the record
+     * log, which saves each game's result from then on.
      * 
-     * @return The fully loaded record from the player record file.
+     * @return The fully loaded record from the player record file
+     * and its log, which is empty if there was no record to load.
      */
     public MahjongSolitaireRecord loadRecord()
     {
-        MahjongSolitaireRecord recordToLoad = new MahjongSolitaireRecord();
+        PropertiesManager props = PropertiesManager.getPropertiesManager();
+        String dataPath = props.getProperty(MahjongSolitairePropertyType.DATA_PATH);
+        String recordPath = dataPath + props.getProperty(MahjongSolitairePropertyType.RECORD_FILE_NAME);
         
-        // LOAD THE RAW DATA SO WE CAN USE IT
-        // OUR LEVEL FILES WILL HAVE THE DIMENSIONS FIRST,
-        // FOLLOWED BY THE GRID VALUES
-        try
+        // THE LOG READS THE LAST SNAPSHOT AND THEN ADDS EVERY GAME
+        // SAVED SINCE, DROPPING ANYTHING THAT WAS HALF WRITTEN
+        recordLog = new MahjongSolitaireRecordLog(recordPath);
+        return recordLog.load();
+    }
+    
+    /**
+     * This method finds the level pack in a directory, opening it the
+     * first time it's needed. A pack that can't be opened is treated
+     * like there is none, so levels are loaded from their own files.
+     * 
+     * @param levelDir The directory the level files are in.
+     * 
+     * @return The level pack, or null if there isn't one.
+     */
+    private MahjongSolitaireLevelPack getLevelPack(File levelDir)
+    {
+        if (levelPacks.containsKey(levelDir))
         {
-            PropertiesManager props = PropertiesManager.getPropertiesManager();
-            String dataPath = props.getProperty(MahjongSolitairePropertyType.DATA_PATH);
-            String recordPath = dataPath + props.getProperty(MahjongSolitairePropertyType.RECORD_FILE_NAME);
-            File fileToOpen = new File(recordPath);
-
-            // LET'S USE A FAST LOADING TECHNIQUE. WE'LL LOAD ALL OF THE
-            // BYTES AT ONCE INTO A BYTE ARRAY, AND THEN PICK THAT APART.
-            // THIS IS FAST BECAUSE IT ONLY HAS TO DO FILE READING ONCE
-            byte[] bytes = new byte[Long.valueOf(fileToOpen.length()).intValue()];
-            ByteArrayInputStream bais = new ByteArrayInputStream(bytes);
-            FileInputStream fis = new FileInputStream(fileToOpen);
-            BufferedInputStream bis = new BufferedInputStream(fis);
-            
-            // HERE IT IS, THE ONLY READY REQUEST WE NEED
-            bis.read(bytes);
-            bis.close();
-            
-            // NOW WE NEED TO LOAD THE DATA FROM THE BYTE ARRAY
-            DataInputStream dis = new DataInputStream(bais);
-            
-            // NOTE THAT WE NEED TO LOAD THE DATA IN THE SAME
-            // ORDER AND FORMAT AS WE SAVED IT
-            // FIRST READ THE NUMBER OF LEVELS
-            int numLevels = dis.readInt();
-
-            for (int i = 0; i < numLevels; i++)
+            return levelPacks.get(levelDir);
+        }
+        MahjongSolitaireLevelPack levelPack = null;
+        File packFile = new File(levelDir, LEVEL_PACK_FILE_NAME);
+        if (packFile.exists())
+        {
+            try
+            {
+                levelPack = new MahjongSolitaireLevelPack(packFile);
+            }
+            catch(IOException ioe)
             {
-                String levelName = dis.readUTF();
-                MahjongLevelRecord rec = new MahjongLevelRecord();
-                rec.gamesPlayed = dis.readInt();
-                rec.wins = dis.readInt();
-                rec.losses = dis.readInt();
-                rec.fastestTime = dis.readLong();
-                recordToLoad.addMahjongLevelRecord(levelName, rec);
+                levelPack = null;
             }
         }
-        catch(Exception e)
-        {
-            // THERE WAS NO RECORD TO LOAD, SO WE'LL JUST RETURN AN
-            // EMPTY ONE AND SQUELCH THIS EXCEPTION
-        }        
-        return recordToLoad;
+        levelPacks.put(levelDir, levelPack);
+        return levelPack;
     }
 }
\ No newline at end of file
@@ -0,0 +1,269 @@
+package mahjong_solitaire.file;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Random;
+import java.util.Set;
+import java.util.zip.CRC32;
+import mahjong_solitaire.data.MahjongSolitaireDealGenerator;
+import mini_game.MiniGameLevelFile;
+import static mahjong_solitaire.MahjongSolitaireConstants.*;
+
+/**
+ * This class puts many level files in one file, so a game with hundreds of
+ * levels can ship them together and open just one file to load any of them.
+ * The whole pack is mapped into memory when it's opened, and each level is
+ * read straight from its part of the mapping, so nothing is copied and only
+ * the levels actually played are ever read from the disk.
+ *
+ * Packs start with PACK_MAGIC, the format version and the number of levels,
+ * followed by a directory with each level's name, where its level file
+ * starts in the pack, and how long it is. The directory ends with a checksum
+ * of everything before it, and each level file has its own checksum.
+ *
+ * This class may also be run on its own to build a pack from level files.
+ *
+ * @author Richard McKenna
+ */
+public class MahjongSolitaireLevelPack
+{
+    // THIS STARTS EVERY PACK FILE, IT SPELLS ZOMP
+    public static final int PACK_MAGIC = 0x5A4F4D50;
+    public static final int PACK_FORMAT_VERSION = 1;
+
+    // THE WHOLE PACK, MAPPED INTO MEMORY
+    private ByteBuffer packBuffer;
+
+    // WHERE EACH LEVEL IS IN THE PACK, BY NAME, AS ITS START
+    // AND THEN ITS LENGTH
+    private HashMap<String, int[]> directory;
+
+    /**
+     * This constructor opens a pack and reads its directory. The levels
+     * themselves aren't read until they're asked for.
+     *
+     * @param packFile The pack to open.
+     *
+     * @throws IOException If the file couldn't be opened or isn't a pack.
+     */
+    public MahjongSolitaireLevelPack(File packFile) throws IOException
+    {
+        packBuffer = MiniGameLevelFile.map(packFile).order(ByteOrder.BIG_ENDIAN);
+        directory = new HashMap();
+        try
+        {
+            if (packBuffer.getInt() != PACK_MAGIC)
+            {
+                throw new IOException("Not a level pack");
+            }
+            int formatVersion = packBuffer.getInt();
+            if (formatVersion != PACK_FORMAT_VERSION)
+            {
+                throw new IOException("Unknown level pack version " + formatVersion);
+            }
+            int numLevels = packBuffer.getInt();
+            for (int i = 0; i < numLevels; i++)
+            {
+                byte[] nameBytes = new byte[packBuffer.getShort() & 0xFFFF];
+                packBuffer.get(nameBytes);
+                int[] location = new int[2];
+                location[0] = packBuffer.getInt();
+                location[1] = packBuffer.getInt();
+                if ((location[0] < 0) || (location[1] < 0) || (location[0] > (packBuffer.limit() - location[1])))
+                {
+                    throw new IOException("Damaged level pack");
+                }
+                directory.put(new String(nameBytes, StandardCharsets.UTF_8), location);
+            }
+
+            // MAKE SURE THE DIRECTORY WASN'T DAMAGED
+            int directoryLength = packBuffer.position();
+            byte[] directoryBytes = new byte[directoryLength];
+            packBuffer.position(0);
+            packBuffer.get(directoryBytes);
+            CRC32 crc = new CRC32();
+            crc.update(directoryBytes);
+            if (packBuffer.getInt() != (int)crc.getValue())
+            {
+                throw new IOException("Damaged level pack");
+            }
+        }
+        catch(RuntimeException re)
+        {
+            // RUNNING OFF THE END OF THE BUFFER MEANS IT'S CUT SHORT
+            throw new IOException("Damaged level pack", re);
+        }
+    }
+
+    // ACCESSOR METHODS
+        // - getLevelNames
+        // - getLevel
+
+    /**
+     * Accessor method for the names of the levels in the pack.
+     *
+     * @return The level names.
+     */
+    public Set<String> getLevelNames()
+    {
+        return directory.keySet();
+    }
+
+    /**
+     * Gets the contents of a level file in the pack, without copying it.
+     *
+     * @param levelName The name of the level.
+     *
+     * @return The level file's contents, ready for
+     * MiniGameLevelFile.read, or null if it's not in the pack.
+     */
+    public ByteBuffer getLevel(String levelName)
+    {
+        int[] location = directory.get(levelName);
+        if (location == null)
+        {
+            return null;
+        }
+        ByteBuffer levelBuffer = packBuffer.duplicate();
+        levelBuffer.position(location[0]);
+        levelBuffer.limit(location[0] + location[1]);
+        return levelBuffer.slice();
+    }
+
+    // WRITING METHODS
+        // - write
+        // - main
+
+    /**
+     * Writes a pack holding the given level files.
+     *
+     * @param packFile Where to write the pack.
+     *
+     * @param levelNames The name of each level.
+     *
+     * @param levelFiles The contents of each level file, as built by
+     * MiniGameLevelFile.toByteArray.
+     *
+     * @throws IOException If the pack couldn't be written.
+     */
+    public static void write(File packFile, ArrayList<String> levelNames, ArrayList<byte[]> levelFiles) throws IOException
+    {
+        // FIGURE OUT HOW BIG THE DIRECTORY IS, SO WE KNOW WHERE
+        // THE LEVELS WILL START
+        int directoryLength = 12;
+        for (String levelName : levelNames)
+        {
+            directoryLength += 2 + levelName.getBytes(StandardCharsets.UTF_8).length + 8;
+        }
+
+        // THEN WRITE THE DIRECTORY
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        DataOutputStream dos = new DataOutputStream(baos);
+        dos.writeInt(PACK_MAGIC);
+        dos.writeInt(PACK_FORMAT_VERSION);
+        dos.writeInt(levelNames.size());
+        int levelStart = directoryLength + 4;
+        for (int i = 0; i < levelNames.size(); i++)
+        {
+            byte[] nameBytes = levelNames.get(i).getBytes(StandardCharsets.UTF_8);
+            dos.writeShort(nameBytes.length);
+            dos.write(nameBytes);
+            dos.writeInt(levelStart);
+            dos.writeInt(levelFiles.get(i).length);
+            levelStart += levelFiles.get(i).length;
+        }
+        CRC32 crc = new CRC32();
+        crc.update(baos.toByteArray());
+        dos.writeInt((int)crc.getValue());
+
+        // AND THEN ALL THE LEVELS
+        for (byte[] levelFile : levelFiles)
+        {
+            dos.write(levelFile);
+        }
+        FileOutputStream fos = new FileOutputStream(packFile);
+        try
+        {
+            fos.write(baos.toByteArray());
+        }
+        finally
+        {
+            fos.close();
+        }
+    }
+
+    /**
+     * Builds a pack from level files, which may be with or without a header.
+     * Each level goes in the pack under its file name, which is how the game
+     * looks it up. If asked, winnable deals are made for each level and put
+     * in the pack with it.
+     *
+     * @param args The pack file to write, then optionally -deals followed by
+     * how many deals to make for each level, then the level files.
+     */
+    public static void main(String[] args)
+    {
+        if (args.length < 2)
+        {
+            System.out.println("Usage: MahjongSolitaireLevelPack packFile [-deals numDeals] levelFile...");
+            return;
+        }
+        int firstLevelArg = 1;
+        int numDeals = 0;
+        if (args[1].equals("-deals") && (args.length > 2))
+        {
+            numDeals = Integer.parseInt(args[2]);
+            firstLevelArg = 3;
+        }
+
+        // THE GAME'S TILES COME IN GROUPS OF 4 THAT ALL MATCH
+        int[] classSizes = new int[NUM_TILES / 4];
+        for (int c = 0; c < classSizes.length; c++)
+        {
+            classSizes[c] = 4;
+        }
+
+        try
+        {
+            ArrayList<String> levelNames = new ArrayList();
+            ArrayList<byte[]> levelFiles = new ArrayList();
+            for (int a = firstLevelArg; a < args.length; a++)
+            {
+                File file = new File(args[a]);
+                MiniGameLevelFile level = MiniGameLevelFile.read(MiniGameLevelFile.map(file));
+
+                // MAKE THE DEALS, SKIPPING ANY THAT COULDN'T BE MADE
+                if (numDeals > 0)
+                {
+                    MahjongSolitaireDealGenerator generator = new MahjongSolitaireDealGenerator(
+                            level.getGrid(), level.getGridColumns(), level.getGridRows(), classSizes);
+                    Random random = new Random(a);
+                    ArrayList<int[][][]> deals = new ArrayList();
+                    for (int d = 0; d < numDeals; d++)
+                    {
+                        int[][][] deal = generator.generate(random, DEFAULT_DEAL_DIFFICULTY);
+                        if (deal != null)
+                            deals.add(deal);
+                    }
+                    level.setDeals(deals.toArray(new int[deals.size()][][][]), DEFAULT_DEAL_DIFFICULTY, classSizes);
+                }
+                levelNames.add(file.getName());
+                levelFiles.add(level.toByteArray());
+                System.out.println(file.getName() + ": " + level.getNumTiles() + " tiles, " + level.getNumDeals() + " deals");
+            }
+            write(new File(args[0]), levelNames, levelFiles);
+        }
+        catch(IOException ioe)
+        {
+            System.out.println("Couldn't build the pack: " + ioe.getMessage());
+        }
+    }
+}
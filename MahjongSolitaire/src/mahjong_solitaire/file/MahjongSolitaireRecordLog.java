@@ -0,0 +1,562 @@
+package mahjong_solitaire.file;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+import mahjong_solitaire.data.MahjongLevelRecord;
+import mahjong_solitaire.data.MahjongSolitaireRecord;
+
+/**
+ * This class saves the player record without ever rewriting it while the
+ * game is being played, and without ever leaving it half written. Each win
+ * or loss is added to the end of a log file as a small entry with its own
+ * checksum, which is all that has to be written when a game ends. Every so
+ * often the whole record is written to a new snapshot file, which then
+ * replaces the old one in a single step, and the log is emptied.
+ *
+ * All writing is done by one background thread, in the order the games
+ * ended, so the game never waits for the disk. That thread keeps its own
+ * copy of the record for writing snapshots, so it never touches the one the
+ * game is using.
+ *
+ * If the game dies while writing, the log may end with a partial entry,
+ * which will fail its checksum and be dropped when the record is next
+ * loaded. Every entry has a sequence number, and the snapshot knows the last
+ * one it includes, so if the game dies after replacing the snapshot but
+ * before emptying the log, entries already in the snapshot aren't counted
+ * twice.
+ *
+ * Snapshot files start with SNAPSHOT_MAGIC. Record files from before there
+ * were snapshots don't, and are still loaded. Snapshots from format version
+ * 3 on also have each level's detailed stats after the record. Version 2
+ * snapshots kept those stats in an older layout, which is skipped.
+ *
+ * @author Richard McKenna
+ */
+public class MahjongSolitaireRecordLog
+{
+    // THIS STARTS EVERY SNAPSHOT FILE, IT SPELLS MJRS
+    public static final int SNAPSHOT_MAGIC = 0x4D4A5253;
+    public static final int SNAPSHOT_FORMAT_VERSION = 3;
+
+    // ADDED TO THE RECORD FILE NAME FOR THE OTHER FILES WE USE
+    public static final String LOG_SUFFIX = ".log";
+    public static final String TEMP_SUFFIX = ".tmp";
+    public static final String DAMAGED_SUFFIX = ".damaged";
+
+    // THE KINDS OF ENTRIES IN THE LOG
+    public static final byte WIN_ENTRY = 1;
+    public static final byte LOSS_ENTRY = 2;
+
+    // WE WRITE A NEW SNAPSHOT AFTER THIS MANY ENTRIES
+    public static final int COMPACTION_THRESHOLD = 64;
+
+    // NO ENTRY IS EVER BIGGER THAN THIS, SO A BIGGER LENGTH MEANS
+    // THE LOG IS DAMAGED
+    private static final int MAX_ENTRY_SIZE = 1 << 16;
+
+    // THE MOST TIME WE'LL WAIT FOR WRITING TO FINISH WHEN CLOSING
+    private static final long CLOSE_TIMEOUT = 5;
+
+    // THE FILES
+    private File snapshotFile;
+    private File logFile;
+    private File tempFile;
+
+    // EVERYTHING BELOW HERE IS ONLY USED BY THE WRITING THREAD,
+    // EXCEPT WHILE LOADING, WHICH HAPPENS BEFORE IT STARTS
+    private MahjongSolitaireRecord writerRecord;
+    private FileChannel logChannel;
+    private long nextSequence;
+    private int entriesSinceSnapshot;
+    private boolean logNeedsRepair;
+
+    // THE THREAD THAT DOES ALL THE WRITING
+    private ExecutorService writer;
+
+    // SET BY THE WRITING THREAD IF SOMETHING COULDN'T BE SAVED
+    private volatile boolean failed;
+
+    /**
+     * This constructor just figures out the names of the files. Nothing is
+     * read until the record is loaded.
+     *
+     * @param recordPath The path of the player record file, which is where
+     * snapshots are written.
+     */
+    public MahjongSolitaireRecordLog(String recordPath)
+    {
+        snapshotFile = new File(recordPath);
+        logFile = new File(recordPath + LOG_SUFFIX);
+        tempFile = new File(recordPath + TEMP_SUFFIX);
+        writer = Executors.newSingleThreadExecutor(new ThreadFactory()
+        {
+            @Override
+            public Thread newThread(Runnable r)
+            {
+                Thread t = new Thread(r, "MahjongSolitaireRecordLog");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+    }
+
+    // ACCESSOR METHODS
+        // - hasFailed
+
+    /**
+     * Tests to see if anything couldn't be saved since the last time this
+     * was asked. Saving is tried again with the next game, so this is just
+     * for letting the player know. It's cheap enough to ask every frame.
+     *
+     * @return true if saving failed, false otherwise.
+     */
+    public boolean hasFailed()
+    {
+        if (!failed)
+        {
+            return false;
+        }
+        failed = false;
+        return true;
+    }
+
+    // SERVICE METHODS
+        // - load
+        // - appendWin
+        // - appendLoss
+        // - close
+
+    /**
+     * Loads the record from the snapshot and then adds all the games in the
+     * log, dropping any damaged entries at the end of it. This must be
+     * called once, before anything is appended.
+     *
+     * @return The player record, which is empty if nothing has been saved.
+     */
+    public MahjongSolitaireRecord load()
+    {
+        MahjongSolitaireRecord recordToLoad = new MahjongSolitaireRecord();
+        long snapshotSequence = 0;
+        if (snapshotFile.exists())
+        {
+            try
+            {
+                snapshotSequence = readSnapshot(Files.readAllBytes(snapshotFile.toPath()), recordToLoad);
+            }
+            catch(IOException ioe)
+            {
+                // THE SNAPSHOT IS DAMAGED, SO SET IT ASIDE RATHER THAN
+                // WRITE OVER IT, AND GO WITH WHAT'S IN THE LOG
+                recordToLoad = new MahjongSolitaireRecord();
+                snapshotFile.renameTo(new File(snapshotFile.getPath() + DAMAGED_SUFFIX));
+            }
+        }
+        nextSequence = snapshotSequence + 1;
+
+        // NOW ADD THE GAMES IN THE LOG, AND GET IT READY FOR MORE
+        try
+        {
+            long goodLength = 0;
+            if (logFile.exists())
+            {
+                goodLength = replayLog(Files.readAllBytes(logFile.toPath()), snapshotSequence, recordToLoad);
+            }
+            openLog(goodLength);
+        }
+        catch(IOException ioe)
+        {
+            logNeedsRepair = true;
+            failed = true;
+        }
+
+        // AND MAKE THE WRITING THREAD'S COPY
+        writerRecord = copyRecord(recordToLoad);
+        return recordToLoad;
+    }
+
+    /**
+     * Saves a win in the background.
+     *
+     * @param levelName The level that was won.
+     *
+     * @param winTime The time it took to win, in milliseconds.
+     * 
+     * @param numMoves The number of moves made.
+     */
+    public void appendWin(String levelName, long winTime, int numMoves)
+    {
+        append(WIN_ENTRY, levelName, winTime, numMoves);
+    }
+
+    /**
+     * Saves a loss in the background.
+     *
+     * @param levelName The level that was lost.
+     * 
+     * @param numMoves The number of moves made.
+     */
+    public void appendLoss(String levelName, int numMoves)
+    {
+        append(LOSS_ENTRY, levelName, 0, numMoves);
+    }
+
+    /**
+     * Writes a final snapshot and waits a little while for all writing to
+     * finish. Nothing may be appended after this.
+     */
+    public void close()
+    {
+        writer.execute(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                writeSnapshot();
+                closeLog();
+            }
+        });
+        writer.shutdown();
+        try
+        {
+            writer.awaitTermination(CLOSE_TIMEOUT, TimeUnit.SECONDS);
+        }
+        catch(InterruptedException ie)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // PRIVATE HELPER METHODS
+
+    /**
+     * Hands an entry to the writing thread.
+     */
+    private void append(final byte entryType, final String levelName, final long winTime, final int numMoves)
+    {
+        writer.execute(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                // KEEP OUR COPY UP TO DATE FIRST, SO EVEN IF WRITING
+                // FAILS THE NEXT SNAPSHOT WILL INCLUDE THIS GAME
+                applyEntry(writerRecord, entryType, levelName, winTime, numMoves);
+                long sequence = nextSequence++;
+
+                // IF THE LOG COULDN'T BE WRITTEN LAST TIME, A SNAPSHOT
+                // SAVES EVERYTHING AND STARTS IT OVER
+                if (logNeedsRepair)
+                {
+                    writeSnapshot();
+                    return;
+                }
+                try
+                {
+                    byte[] entry = makeEntry(sequence, entryType, levelName, winTime, numMoves);
+                    logChannel.write(ByteBuffer.wrap(entry));
+                    logChannel.force(false);
+                    entriesSinceSnapshot++;
+                }
+                catch(IOException ioe)
+                {
+                    logNeedsRepair = true;
+                    failed = true;
+                }
+                if (logNeedsRepair || (entriesSinceSnapshot >= COMPACTION_THRESHOLD))
+                {
+                    writeSnapshot();
+                }
+            }
+        });
+    }
+
+    /**
+     * Writes the writing thread's copy of the record to a new snapshot,
+     * replaces the old one with it, and empties the log. Only called on the
+     * writing thread.
+     */
+    private void writeSnapshot()
+    {
+        try
+        {
+            // WRITE THE WHOLE THING TO A TEMPORARY FILE AND MAKE
+            // SURE IT'S REALLY ON THE DISK
+            byte[] recordData = recordToByteArray(writerRecord);
+            CRC32 crc = new CRC32();
+            crc.update(recordData);
+            ByteArrayOutputStream baos = new ByteArrayOutputStream(recordData.length + 24);
+            DataOutputStream dos = new DataOutputStream(baos);
+            dos.writeInt(SNAPSHOT_MAGIC);
+            dos.writeInt(SNAPSHOT_FORMAT_VERSION);
+            dos.writeLong(nextSequence - 1);
+            dos.writeInt(recordData.length);
+            dos.write(recordData);
+            dos.writeInt((int)crc.getValue());
+            FileChannel tempChannel = FileChannel.open(tempFile.toPath(),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+            try
+            {
+                tempChannel.write(ByteBuffer.wrap(baos.toByteArray()));
+                tempChannel.force(true);
+            }
+            finally
+            {
+                tempChannel.close();
+            }
+
+            // THEN PUT IT IN PLACE OF THE OLD ONE ALL AT ONCE
+            try
+            {
+                Files.move(tempFile.toPath(), snapshotFile.toPath(),
+                        StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            }
+            catch(AtomicMoveNotSupportedException amnse)
+            {
+                Files.move(tempFile.toPath(), snapshotFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+
+            // NOW EVERYTHING IN THE LOG IS IN THE SNAPSHOT
+            if (logChannel == null)
+            {
+                openLog(0);
+            }
+            logChannel.truncate(0);
+            logChannel.force(true);
+            entriesSinceSnapshot = 0;
+            logNeedsRepair = false;
+        }
+        catch(IOException ioe)
+        {
+            logNeedsRepair = true;
+            failed = true;
+        }
+    }
+
+    /**
+     * Opens the log for writing, cutting off anything after goodLength.
+     */
+    private void openLog(long goodLength) throws IOException
+    {
+        logChannel = FileChannel.open(logFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        if (logChannel.size() > goodLength)
+        {
+            logChannel.truncate(goodLength);
+            logChannel.force(true);
+        }
+        logChannel.position(goodLength);
+    }
+
+    /**
+     * Closes the log, if it's open.
+     */
+    private void closeLog()
+    {
+        if (logChannel != null)
+        {
+            try
+            {
+                logChannel.close();
+            }
+            catch(IOException ioe)
+            {
+                // IT'S ALREADY BEEN FORCED TO THE DISK, SO THERE'S
+                // NOTHING LEFT TO LOSE
+            }
+            logChannel = null;
+        }
+    }
+
+    /**
+     * Builds a log entry, which is its length, then the entry itself, then
+     * the checksum of the entry.
+     */
+    private byte[] makeEntry(long sequence, byte entryType, String levelName, long winTime, int numMoves) throws IOException
+    {
+        ByteArrayOutputStream entryBytes = new ByteArrayOutputStream();
+        DataOutputStream entryOut = new DataOutputStream(entryBytes);
+        entryOut.writeLong(sequence);
+        entryOut.writeByte(entryType);
+        entryOut.writeUTF(levelName);
+        entryOut.writeLong(winTime);
+        entryOut.writeInt(numMoves);
+        byte[] entry = entryBytes.toByteArray();
+        CRC32 crc = new CRC32();
+        crc.update(entry);
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream(entry.length + 8);
+        DataOutputStream dos = new DataOutputStream(baos);
+        dos.writeInt(entry.length);
+        dos.write(entry);
+        dos.writeInt((int)crc.getValue());
+        return baos.toByteArray();
+    }
+
+    /**
+     * Adds the games in the log that aren't already in the snapshot to the
+     * record, stopping at the first damaged entry.
+     *
+     * @return The length of the log up to the end of the last good entry.
+     */
+    private long replayLog(byte[] bytes, long snapshotSequence, MahjongSolitaireRecord recordToLoad) throws IOException
+    {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        int goodLength = 0;
+        CRC32 crc = new CRC32();
+        while (buffer.remaining() >= 4)
+        {
+            // MAKE SURE THE WHOLE ENTRY IS THERE
+            int entryLength = buffer.getInt();
+            if ((entryLength <= 0) || (entryLength > MAX_ENTRY_SIZE) || (buffer.remaining() < (entryLength + 4)))
+            {
+                break;
+            }
+
+            // AND THAT IT'S NOT DAMAGED
+            int entryStart = buffer.position();
+            crc.reset();
+            crc.update(bytes, entryStart, entryLength);
+            buffer.position(entryStart + entryLength);
+            if (buffer.getInt() != (int)crc.getValue())
+            {
+                break;
+            }
+
+            // NOW WE CAN USE IT
+            DataInputStream dis = new DataInputStream(new ByteArrayInputStream(bytes, entryStart, entryLength));
+            long sequence = dis.readLong();
+            byte entryType = dis.readByte();
+            String levelName = dis.readUTF();
+            long winTime = dis.readLong();
+            int numMoves = dis.readInt();
+            if (sequence > snapshotSequence)
+            {
+                applyEntry(recordToLoad, entryType, levelName, winTime, numMoves);
+                nextSequence = Math.max(nextSequence, sequence + 1);
+                entriesSinceSnapshot++;
+            }
+            goodLength = buffer.position();
+        }
+        return goodLength;
+    }
+
+    /**
+     * Adds a game to a record.
+     */
+    private void applyEntry(MahjongSolitaireRecord recordToUpdate, byte entryType, String levelName, long winTime, int numMoves)
+    {
+        if (entryType == WIN_ENTRY)
+            recordToUpdate.addWin(levelName, winTime, numMoves);
+        else if (entryType == LOSS_ENTRY)
+            recordToUpdate.addLoss(levelName, numMoves);
+    }
+
+    /**
+     * Reads a snapshot file into the record, checking that it's not
+     * damaged. Files from before there were snapshots are just the record.
+     *
+     * @return The sequence number of the last entry in the snapshot.
+     */
+    private long readSnapshot(byte[] bytes, MahjongSolitaireRecord recordToLoad) throws IOException
+    {
+        DataInputStream dis = new DataInputStream(new ByteArrayInputStream(bytes));
+        if ((bytes.length < 4) || (dis.readInt() != SNAPSHOT_MAGIC))
+        {
+            // AN OLD RECORD FILE
+            readRecordData(new DataInputStream(new ByteArrayInputStream(bytes)), recordToLoad);
+            return 0;
+        }
+        int formatVersion = dis.readInt();
+        if ((formatVersion < 1) || (formatVersion > SNAPSHOT_FORMAT_VERSION))
+        {
+            throw new IOException("Unknown record snapshot version");
+        }
+        long lastSequence = dis.readLong();
+        int length = dis.readInt();
+        if ((length < 0) || (length > (bytes.length - 24)))
+        {
+            throw new IOException("Damaged record snapshot");
+        }
+        byte[] recordData = new byte[length];
+        dis.readFully(recordData);
+        CRC32 crc = new CRC32();
+        crc.update(recordData);
+        if (dis.readInt() != (int)crc.getValue())
+        {
+            throw new IOException("Damaged record snapshot");
+        }
+        DataInputStream recordIn = new DataInputStream(new ByteArrayInputStream(recordData));
+        readRecordData(recordIn, recordToLoad);
+        if (formatVersion >= 3)
+        {
+            recordToLoad.readStats(recordIn);
+        }
+        return lastSequence;
+    }
+
+    /**
+     * Reads the record in the form MahjongSolitaireRecord.toByteArray
+     * writes it.
+     */
+    private void readRecordData(DataInputStream dis, MahjongSolitaireRecord recordToLoad) throws IOException
+    {
+        // FIRST READ THE NUMBER OF LEVELS
+        int numLevels = dis.readInt();
+        for (int i = 0; i < numLevels; i++)
+        {
+            String levelName = dis.readUTF();
+            MahjongLevelRecord rec = new MahjongLevelRecord();
+            rec.gamesPlayed = dis.readInt();
+            rec.wins = dis.readInt();
+            rec.losses = dis.readInt();
+            rec.fastestTime = dis.readLong();
+            recordToLoad.addMahjongLevelRecord(levelName, rec);
+        }
+    }
+
+    /**
+     * Writes the record followed by its detailed stats, which is what
+     * goes in a snapshot.
+     */
+    private byte[] recordToByteArray(MahjongSolitaireRecord recordToWrite) throws IOException
+    {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        DataOutputStream dos = new DataOutputStream(baos);
+        dos.write(recordToWrite.toByteArray());
+        recordToWrite.writeStats(dos);
+        return baos.toByteArray();
+    }
+
+    /**
+     * Makes a copy of a record that shares nothing with it.
+     */
+    private MahjongSolitaireRecord copyRecord(MahjongSolitaireRecord recordToCopy)
+    {
+        MahjongSolitaireRecord copy = new MahjongSolitaireRecord();
+        try
+        {
+            DataInputStream dis = new DataInputStream(new ByteArrayInputStream(recordToByteArray(recordToCopy)));
+            readRecordData(dis, copy);
+            copy.readStats(dis);
+        }
+        catch(IOException ioe)
+        {
+            // THIS ONLY READS AND WRITES MEMORY, SO IT CAN'T HAPPEN
+        }
+        return copy;
+    }
+}
@@ -0,0 +1,377 @@
+package mahjong_solitaire.ui;
+
+import java.awt.AlphaComposite;
+import java.awt.Graphics2D;
+import java.awt.GraphicsEnvironment;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+import java.util.IdentityHashMap;
+import mahjong_solitaire.data.MahjongSolitaireBoard;
+import mahjong_solitaire.data.MahjongSolitaireDataModel;
+import mini_game.MiniGameFrameSnapshot;
+import mini_game.SpriteType;
+import static mahjong_solitaire.MahjongSolitaireConstants.*;
+
+/**
+ * This class draws all the tiles resting on the game grid into an image
+ * once, and then just draws that image each frame, since the tiles on the
+ * grid only change when the player makes a move, undoes one, or selects a
+ * tile. The data model counts these changes, and the image is only redrawn
+ * when the count has changed since it was last drawn. Tiles that are moving
+ * aren't included, they're drawn separately each frame.
+ *
+ * Since frames are drawn by another thread, possibly a frame or two after
+ * they were recorded, the image is never redrawn in place. Instead each frame
+ * snapshot gets an image of its own, which is only changed while that
+ * snapshot is being recorded, when no other thread may be drawing it. When
+ * the board changes, the first snapshot recorded has its image redrawn, and
+ * the others simply copy that image the next time they're recorded.
+ *
+ * @author Richard McKenna
+ */
+public class MahjongSolitaireBoardLayer
+{
+    // THE GAME DATA, WHICH HAS THE BOARD AND THE TILES
+    private MahjongSolitaireDataModel data;
+
+    // THE BASE IMAGES THE TILES ARE DRAWN ON TOP OF
+    private BufferedImage blankTileImage;
+    private BufferedImage blankTileSelectedImage;
+
+    // THE IMAGE FOR EACH SNAPSHOT WE'VE RECORDED INTO, AND THE ONE
+    // DRAWN MOST RECENTLY, WHICH THE OTHERS MAY COPY
+    private IdentityHashMap<MiniGameFrameSnapshot, LayerImage> layerImages;
+    private LayerImage newestImage;
+
+    // GOES UP EVERY TIME THE LAYER IS INVALIDATED, SO EVERY IMAGE
+    // DRAWN BEFORE THEN IS KNOWN TO BE OUT OF DATE
+    private int generation;
+
+    // HOW MANY TIMES THE TILES HAVE BEEN DRAWN, FOR DEBUGGING
+    private int numRedraws;
+
+    /**
+     * This constructor sets up the layer with no images. One will be drawn
+     * the first time it's rendered.
+     *
+     * @param initData The game data to draw the tiles of.
+     */
+    public MahjongSolitaireBoardLayer(MahjongSolitaireDataModel initData)
+    {
+        data = initData;
+        layerImages = new IdentityHashMap();
+    }
+
+    // ACCESSOR METHODS
+        // -getNumRedraws
+
+    /**
+     * Accessor method for the number of times the layer has been redrawn.
+     *
+     * @return The number of times the resting tiles have been drawn.
+     */
+    public int getNumRedraws()
+    {
+        return numRedraws;
+    }
+
+    // MUTATOR METHODS
+        // -invalidate
+        // -setBlankTileImage
+        // -setBlankTileSelectedImage
+
+    /**
+     * Makes sure the layer is redrawn the next time it's rendered.
+     */
+    public void invalidate()
+    {
+        generation++;
+    }
+
+    /**
+     * This mutator method sets the base image to use for drawing tiles.
+     *
+     * @param initBlankTileImage The image to use as the base for tiles.
+     */
+    public void setBlankTileImage(BufferedImage initBlankTileImage)
+    {
+        blankTileImage = initBlankTileImage;
+        invalidate();
+    }
+
+    /**
+     * This mutator method sets the base image to use for drawing selected
+     * tiles.
+     *
+     * @param initBlankTileSelectedImage The image to use as the base for
+     * selected tiles.
+     */
+    public void setBlankTileSelectedImage(BufferedImage initBlankTileSelectedImage)
+    {
+        blankTileSelectedImage = initBlankTileSelectedImage;
+        invalidate();
+    }
+
+    // RENDERING METHODS
+        // -render
+
+    /**
+     * Records the layer into the frame, first bringing the frame's own image
+     * up to date if the board has changed since it was last drawn. This must
+     * be called while holding the data lock, by the thread recording frames.
+     *
+     * @param frame The snapshot of this frame.
+     */
+    public void render(MiniGameFrameSnapshot frame)
+    {
+        LayerImage layerImage = layerImages.get(frame);
+        if (layerImage == null)
+        {
+            layerImage = new LayerImage();
+            layerImages.put(frame, layerImage);
+        }
+        if (!isUpToDate(layerImage))
+        {
+            // ANOTHER SNAPSHOT MAY ALREADY HAVE DRAWN THE TILES, IN WHICH
+            // CASE IT'S FASTER TO COPY THAN TO DRAW THEM ALL AGAIN
+            if ((newestImage != null) && (newestImage != layerImage) && isUpToDate(newestImage))
+            {
+                copy(newestImage, layerImage);
+            }
+            else
+            {
+                redraw(layerImage);
+                newestImage = layerImage;
+            }
+        }
+        if (layerImage.hasTiles)
+        {
+            frame.addImage(layerImage.image, layerImage.x, layerImage.y);
+        }
+    }
+
+    // PRIVATE HELPER METHODS
+
+    /**
+     * Tests to see if the image shows the board as it is now.
+     */
+    private boolean isUpToDate(LayerImage layerImage)
+    {
+        return layerImage.drawn
+                && (layerImage.drawnGeneration == generation)
+                && (layerImage.drawnVersion == data.getBoardVersion());
+    }
+
+    /**
+     * Makes one image the same as another, which is only a single copy
+     * rather than drawing every tile.
+     */
+    private void copy(LayerImage source, LayerImage destination)
+    {
+        markDrawn(destination);
+        destination.hasTiles = source.hasTiles;
+        if (!source.hasTiles)
+        {
+            return;
+        }
+        int width = source.width;
+        int height = source.height;
+        Graphics2D g = prepareImage(destination, width, height);
+        g.setComposite(AlphaComposite.Src);
+        g.drawImage(source.image, 0, 0, width, height, 0, 0, width, height, null);
+        g.dispose();
+        destination.x = source.x;
+        destination.y = source.y;
+    }
+
+    /**
+     * Draws all the tiles resting on the grid into the image, bottom to top
+     * so that higher tiles are drawn over lower ones.
+     */
+    private void redraw(LayerImage layerImage)
+    {
+        markDrawn(layerImage);
+        numRedraws++;
+        layerImage.hasTiles = false;
+        MahjongSolitaireBoard board = data.getBoard();
+        if ((board == null) || (blankTileImage == null))
+        {
+            return;
+        }
+
+        // FIRST FIGURE OUT HOW BIG THE IMAGE NEEDS TO BE
+        int minX = Integer.MAX_VALUE;
+        int minY = Integer.MAX_VALUE;
+        int maxX = Integer.MIN_VALUE;
+        int maxY = Integer.MIN_VALUE;
+        boolean hasTiles = false;
+        for (int z = 0; z < board.getMaxHeight(); z++)
+        {
+            for (int i = 0; i < board.getGridColumns(); i++)
+            {
+                for (int j = 0; j < board.getGridRows(); j++)
+                {
+                    MahjongSolitaireTile tile = getRestingTile(board, i, j, z);
+                    if (tile != null)
+                    {
+                        SpriteType sT = tile.getSpriteType();
+                        int x = (int) tile.getX();
+                        int y = (int) tile.getY();
+                        minX = Math.min(minX, x);
+                        minY = Math.min(minY, y);
+                        maxX = Math.max(maxX, x + Math.max(blankTileImage.getWidth(), sT.getWidth() + TILE_IMAGE_OFFSET));
+                        maxY = Math.max(maxY, y + Math.max(blankTileImage.getHeight(), sT.getHeight() + TILE_IMAGE_OFFSET));
+                        hasTiles = true;
+                    }
+                }
+            }
+        }
+        if (!hasTiles)
+        {
+            return;
+        }
+
+        // THEN GET THE IMAGE READY, MAKING A BIGGER ONE IF WE HAVE TO
+        Graphics2D g = prepareImage(layerImage, maxX - minX, maxY - minY);
+        layerImage.hasTiles = true;
+        layerImage.x = minX;
+        layerImage.y = minY;
+
+        // AND DRAW ALL THE TILES
+        for (int z = 0; z < board.getMaxHeight(); z++)
+        {
+            for (int i = 0; i < board.getGridColumns(); i++)
+            {
+                for (int j = 0; j < board.getGridRows(); j++)
+                {
+                    MahjongSolitaireTile tile = getRestingTile(board, i, j, z);
+                    if (tile != null)
+                    {
+                        drawTile(g, tile, (int) tile.getX() - minX, (int) tile.getY() - minY);
+                    }
+                }
+            }
+        }
+        g.dispose();
+    }
+
+    /**
+     * Notes that the image now shows the board as it is now.
+     */
+    private void markDrawn(LayerImage layerImage)
+    {
+        layerImage.drawn = true;
+        layerImage.drawnGeneration = generation;
+        layerImage.drawnVersion = data.getBoardVersion();
+    }
+
+    /**
+     * Makes sure the image has room for width by height pixels and clears
+     * it, returning a graphics context for drawing into it.
+     */
+    private Graphics2D prepareImage(LayerImage layerImage, int width, int height)
+    {
+        BufferedImage image = layerImage.image;
+        if ((image == null) || (image.getWidth() < width) || (image.getHeight() < height))
+        {
+            image = createBuffer(width, height);
+            layerImage.image = image;
+        }
+        layerImage.width = width;
+        layerImage.height = height;
+        Graphics2D g = image.createGraphics();
+        g.setComposite(AlphaComposite.Clear);
+        g.fillRect(0, 0, image.getWidth(), image.getHeight());
+        g.setComposite(AlphaComposite.SrcOver);
+        return g;
+    }
+
+    /**
+     * Gets the tile at the given place on the board, but only if it's
+     * visible and not moving.
+     */
+    private MahjongSolitaireTile getRestingTile(MahjongSolitaireBoard board, int col, int row, int z)
+    {
+        int tileID = board.getTileID(col, row, z);
+        if (tileID == MahjongSolitaireBoard.NO_TILE)
+        {
+            return null;
+        }
+        MahjongSolitaireTile tile = data.getTile(tileID);
+        if (tile.isMovingToTarget() || (tile.getStateID() == INVISIBLE_STATE_ID))
+        {
+            return null;
+        }
+        return tile;
+    }
+
+    /**
+     * Draws a tile, the same way the panel does for tiles that aren't
+     * part of the layer.
+     */
+    private void drawTile(Graphics2D g, MahjongSolitaireTile tile, int x, int y)
+    {
+        // FIRST DRAW THE BLANK TILE IMAGE
+        int stateID = tile.getStateID();
+        if (stateID == SELECTED_STATE_ID)
+        {
+            g.drawImage(blankTileSelectedImage, x, y, null);
+        }
+        else if (stateID == VISIBLE_STATE_ID)
+        {
+            g.drawImage(blankTileImage, x, y, null);
+        }
+
+        // THEN THE TILE IMAGE
+        SpriteType sT = tile.getSpriteType();
+        g.drawImage(sT.getStateImage(stateID), x + TILE_IMAGE_OFFSET, y + TILE_IMAGE_OFFSET, null);
+
+        // AND THE HIGHLIGHTING, IF IT'S SELECTED
+        if (stateID == SELECTED_STATE_ID)
+        {
+            g.setColor(SELECTED_TILE_COLOR);
+            g.fillRoundRect(x, y, sT.getWidth(), sT.getHeight(), 5, 5);
+        }
+        else if (stateID == INCORRECTLY_SELECTED_STATE_ID)
+        {
+            g.setColor(INCORRECTLY_SELECTED_TILE_COLOR);
+            g.fillRoundRect(x, y, sT.getWidth(), sT.getHeight(), 5, 5);
+        }
+    }
+
+    /**
+     * Makes an image with room for the tiles, in the screen's format if
+     * there is a screen.
+     */
+    private BufferedImage createBuffer(int width, int height)
+    {
+        if (GraphicsEnvironment.isHeadless())
+        {
+            return new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        }
+        return GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice()
+                .getDefaultConfiguration().createCompatibleImage(width, height, Transparency.TRANSLUCENT);
+    }
+
+    /**
+     * A snapshot's image of the resting tiles, along with where it goes on
+     * the screen and which board it shows.
+     */
+    private static class LayerImage
+    {
+        // THE IMAGE, WHICH MAY BE BIGGER THAN THE PART IN USE
+        BufferedImage image;
+        int width;
+        int height;
+
+        // WHERE IT GOES ON THE SCREEN, AND WHETHER IT HAS ANY TILES AT ALL
+        int x;
+        int y;
+        boolean hasTiles;
+
+        // WHICH BOARD IT SHOWS
+        boolean drawn;
+        int drawnGeneration;
+        int drawnVersion;
+    }
+}
@@ -2,6 +2,7 @@ package mahjong_solitaire.ui;
 
 import javax.swing.JFrame;
 import javax.swing.JOptionPane;
+import javax.swing.SwingUtilities;
 import mahjong_solitaire.MahjongSolitaire.MahjongSolitairePropertyType;
 import properties_manager.PropertiesManager;
 
@@ -46,4 +47,25 @@ public class MahjongSolitaireErrorHandler
         // POP OPEN A DIALOG TO DISPLAY TO THE USER
         JOptionPane.showMessageDialog(window, errorFeedbackText, errorTitle, JOptionPane.ERROR_MESSAGE);
     }    
+
+    /**
+     * This method provides error feedback the same way processError does,
+     * but leaves opening the dialog to the event handling thread once it's
+     * done with whatever it's doing now. It's for errors found while the game
+     * data is locked, since the dialog waits for the user to close it, and
+     * the game can't run while it waits.
+     * 
+     * @param errorType Identifies the type of error that happened.
+     */
+    public void processErrorLater(final MahjongSolitairePropertyType errorType)
+    {
+        SwingUtilities.invokeLater(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                processError(errorType);
+            }
+        });
+    }
 }
\ No newline at end of file
@@ -3,21 +3,15 @@ package mahjong_solitaire.ui;
 import java.awt.Graphics;
 import java.awt.image.BufferedImage;
 import java.io.BufferedInputStream;
-import java.io.BufferedOutputStream;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Iterator;
-import javax.sound.midi.InvalidMidiDataException;
-import javax.sound.midi.MidiUnavailableException;
-import javax.sound.sampled.LineUnavailableException;
-import javax.sound.sampled.UnsupportedAudioFileException;
 import javax.swing.JFrame;
 import mahjong_solitaire.data.MahjongSolitaireDataModel;
 import mini_game.MiniGame;
@@ -111,7 +105,9 @@ public class MahjongSolitaireMiniGame extends MiniGame
 
     // SERVICE METHODS
         // - displayStats
-        // - savePlayerRecord
+        // - recordWin
+        // - recordLoss
+        // - closePlayerRecord
         // - switchToGameScreen
         // - switchToSplashScreen
         // - updateBoundaries
@@ -127,34 +123,67 @@ public class MahjongSolitaireMiniGame extends MiniGame
         guiDialogs.get(STATS_DIALOG_TYPE).setState(VISIBLE_STATE);
         guiDialogs.get(LOSS_DIALOG_TYPE).setState(INVISIBLE_STATE);
         guiButtons.get(TRY_AGAIN_TYPE).setState(INVISIBLE_STATE);
-
+        
+        // AND MAKE SURE ITS TEXT IS UP TO DATE
+        ((MahjongSolitairePanel)canvas).getStatsView().invalidate();
     }
     
     /**
-     * This method forces the file manager to save the current player record.
+     * This method adds a win to the player record and saves it. The
+     * saving happens in the background, so this doesn't wait for the disk.
+     * 
+     * @param levelName The level that was won.
+     * 
+     * @param winTime The time it took to win the game.
+     * 
+     * @param numMoves The number of moves made to win the game.
      */
-    public void savePlayerRecord()
+    public void recordWin(String levelName, long winTime, int numMoves)
     {
-        // THIS CURRENTLY DOES NOTHING, INSTEAD, IT MUST SAVE ALL THE
-        // PLAYER RECORDS IN THE SAME FORMAT IT IS BEING LOADED
-        
-        MahjongSolitaireRecord recordToSave = getPlayerRecord();
-        try {
-        PropertiesManager props = PropertiesManager.getPropertiesManager();
-        String dataPath = props.getProperty(MahjongSolitairePropertyType.DATA_PATH);
-        String recordPath = dataPath + props.getProperty(MahjongSolitairePropertyType.RECORD_FILE_NAME);
-        File fileToSave = new File(recordPath);
-        byte[] bytes = recordToSave.toByteArray();
-        
-        FileOutputStream fos = new FileOutputStream(fileToSave);
-        BufferedOutputStream bos = new BufferedOutputStream(fos);
-        bos.write(bytes);
-        bos.close();
+        record.addWin(levelName, winTime, numMoves);
+        fileManager.getRecordLog().appendWin(levelName, winTime, numMoves);
+    }
+    
+    /**
+     * This method adds a loss to the player record and saves it. The
+     * saving happens in the background, so this doesn't wait for the disk.
+     * 
+     * @param levelName The level that was lost.
+     * 
+     * @param numMoves The number of moves made before losing.
+     */
+    public void recordLoss(String levelName, int numMoves)
+    {
+        record.addLoss(levelName, numMoves);
+        fileManager.getRecordLog().appendLoss(levelName, numMoves);
+    }
+    
+    /**
+     * This method finishes saving the player record, which should be
+     * done before the application closes. Note that the game data must
+     * not be locked, since this waits for the player to close the error
+     * dialog if the record couldn't be saved.
+     */
+    public void closePlayerRecord()
+    {
+        fileManager.getRecordLog().close();
+        if (fileManager.getRecordLog().hasFailed())
+        {
+            errorHandler.processError(MahjongSolitairePropertyType.RECORD_SAVE_ERROR);
         }
-        catch (Exception e) {
-            // STUFF
+    }
+    
+    /**
+     * Lets the player know if a game couldn't be saved. This is called every
+     * frame while the game data is locked, so the error dialog is left for
+     * the event handling thread to open, and the game keeps running.
+     */
+    private void checkRecordSaved()
+    {
+        if (fileManager.getRecordLog().hasFailed())
+        {
+            errorHandler.processErrorLater(MahjongSolitairePropertyType.RECORD_SAVE_ERROR);
         }
-        
     }
     
     /**
@@ -278,55 +307,122 @@ public class MahjongSolitaireMiniGame extends MiniGame
     
     // METHODS OVERRIDDEN FROM MiniGame
         // - initAudioContent
+        // - initAssetManifest
         // - initData
         // - initGUIControls
         // - initGUIHandlers
         // - reset
+        // - startGame
         // - updateGUI
 
     @Override
     /**
-     * Initializes the sound and music to be used by the application.
+     * Initializes the sound and music to be used by the application. Note
+     * that the audio is loaded in the background, and won't be played until
+     * the game is started.
      */
     public void initAudioContent()
     {
-        try
-        {
-            PropertiesManager props = PropertiesManager.getPropertiesManager();
-            String audioPath = props.getProperty(MahjongSolitairePropertyType.AUDIO_PATH);
-
-            // LOAD ALL THE AUDIO
-            loadAudioCue(MahjongSolitairePropertyType.SELECT_AUDIO_CUE);
-            loadAudioCue(MahjongSolitairePropertyType.MATCH_AUDIO_CUE);
-            loadAudioCue(MahjongSolitairePropertyType.NO_MATCH_AUDIO_CUE);
-            loadAudioCue(MahjongSolitairePropertyType.BLOCKED_TILE_AUDIO_CUE);
-            loadAudioCue(MahjongSolitairePropertyType.UNDO_AUDIO_CUE);
-            loadAudioCue(MahjongSolitairePropertyType.WIN_AUDIO_CUE);
-            loadAudioCue(MahjongSolitairePropertyType.SPLASH_SCREEN_SONG_CUE);
-            loadAudioCue(MahjongSolitairePropertyType.GAMEPLAY_SONG_CUE);
-            loadAudioCue(MahjongSolitairePropertyType.LOSS_AUDIO_CUE);
-
-            // PLAY THE WELCOME SCREEN SONG
-            audio.play(MahjongSolitairePropertyType.SPLASH_SCREEN_SONG_CUE.toString(), true);
-        }
-        catch(UnsupportedAudioFileException | IOException | LineUnavailableException | InvalidMidiDataException | MidiUnavailableException e)
-        {
-            errorHandler.processError(MahjongSolitairePropertyType.AUDIO_FILE_ERROR);
-        }        
+        // THE SPLASH SCREEN SONG GOES FIRST SINCE WE'LL HEAR IT FIRST
+        loadAudioCue(MahjongSolitairePropertyType.SPLASH_SCREEN_SONG_CUE);
+        loadAudioCue(MahjongSolitairePropertyType.SELECT_AUDIO_CUE);
+        loadAudioCue(MahjongSolitairePropertyType.MATCH_AUDIO_CUE);
+        loadAudioCue(MahjongSolitairePropertyType.NO_MATCH_AUDIO_CUE);
+        loadAudioCue(MahjongSolitairePropertyType.BLOCKED_TILE_AUDIO_CUE);
+        loadAudioCue(MahjongSolitairePropertyType.UNDO_AUDIO_CUE);
+        loadAudioCue(MahjongSolitairePropertyType.WIN_AUDIO_CUE);
+        loadAudioCue(MahjongSolitairePropertyType.GAMEPLAY_SONG_CUE);
+        loadAudioCue(MahjongSolitairePropertyType.LOSS_AUDIO_CUE);
     }
 
     /**
-     * This helper method loads the audio file associated with audioCueType,
-     * which should have been specified via an XML properties file.
+     * This helper method starts loading the audio file associated with
+     * audioCueType, which should have been specified via an XML properties
+     * file.
      */
     private void loadAudioCue(MahjongSolitairePropertyType audioCueType) 
-            throws  UnsupportedAudioFileException, IOException, LineUnavailableException, 
-                    InvalidMidiDataException, MidiUnavailableException
     {
         PropertiesManager props = PropertiesManager.getPropertiesManager();
         String audioPath = props.getProperty(MahjongSolitairePropertyType.AUDIO_PATH);
         String cue = props.getProperty(audioCueType.toString());
-        audio.loadAudio(audioCueType.toString(), audioPath + cue);        
+        assetLoader.addAudio(AUDIO_ASSETS, audioCueType.toString(), audioPath + cue);
+    }
+
+    /**
+     * Starts loading all the art and levels in the background, splash screen
+     * art first, so that it's ready, or nearly so, by the time the GUI
+     * controls are made.
+     */
+    @Override
+    public void initAssetManifest()
+    {
+        PropertiesManager props = PropertiesManager.getPropertiesManager();
+        String imgPath = props.getProperty(MahjongSolitairePropertyType.IMG_PATH);
+        String dataPath = props.getProperty(MahjongSolitairePropertyType.DATA_PATH);
+
+        // KEEP THE KEYED ART BETWEEN RUNS
+        imageCache.setColorKeyCacheDir(new File(imgPath + KEYED_IMAGE_DIR));
+
+        // FIRST EVERYTHING ON THE SPLASH SCREEN
+        assetLoader.addImage(SPLASH_SCREEN_ASSETS, imgPath + props.getProperty(MahjongSolitairePropertyType.WINDOW_ICON));
+        assetLoader.addImage(SPLASH_SCREEN_ASSETS, imgPath + props.getProperty(MahjongSolitairePropertyType.SPLASH_SCREEN_IMAGE_NAME));
+        ArrayList<String> levelImageNames = props.getPropertyOptionsList(MahjongSolitairePropertyType.LEVEL_IMAGE_OPTIONS);
+        ArrayList<String> levelMouseOverImageNames = props.getPropertyOptionsList(MahjongSolitairePropertyType.LEVEL_MOUSE_OVER_IMAGE_OPTIONS);
+        for (int i = 0; i < levelImageNames.size(); i++)
+        {
+            assetLoader.addImageWithColorKey(SPLASH_SCREEN_ASSETS, imgPath + levelImageNames.get(i), COLOR_KEY);
+            assetLoader.addImageWithColorKey(SPLASH_SCREEN_ASSETS, imgPath + levelMouseOverImageNames.get(i), COLOR_KEY);
+        }
+
+        // THEN THE GAME SCREEN CONTROLS
+        MahjongSolitairePropertyType[] gameScreenImages = {
+            MahjongSolitairePropertyType.GAME_BACKGROUND_IMAGE_NAME,
+            MahjongSolitairePropertyType.NEW_BUTTON_IMAGE_NAME,
+            MahjongSolitairePropertyType.NEW_BUTTON_MOUSE_OVER_IMAGE_NAME,
+            MahjongSolitairePropertyType.BACK_BUTTON_IMAGE_NAME,
+            MahjongSolitairePropertyType.BACK_BUTTON_MOUSE_OVER_IMAGE_NAME,
+            MahjongSolitairePropertyType.TIME_IMAGE_NAME,
+            MahjongSolitairePropertyType.STATS_BUTTON_IMAGE_NAME,
+            MahjongSolitairePropertyType.STATS_BUTTON_MOUSE_OVER_IMAGE_NAME,
+            MahjongSolitairePropertyType.UNDO_BUTTON_IMAGE_NAME,
+            MahjongSolitairePropertyType.UNDO_BUTTON_MOUSE_OVER_IMAGE_NAME,
+            MahjongSolitairePropertyType.TILE_COUNT_IMAGE_NAME,
+            MahjongSolitairePropertyType.TRY_AGAIN_IMAGE_NAME };
+        for (MahjongSolitairePropertyType imageName : gameScreenImages)
+        {
+            assetLoader.addImage(GAME_SCREEN_ASSETS, imgPath + props.getProperty(imageName));
+        }
+
+        // THE DIALOGS AND TILES, ALL OF WHICH ARE COLOR KEYED
+        MahjongSolitairePropertyType[] keyedImages = {
+            MahjongSolitairePropertyType.TILE_STACK_IMAGE_NAME,
+            MahjongSolitairePropertyType.STATS_DIALOG_IMAGE_NAME,
+            MahjongSolitairePropertyType.WIN_DIALOG_IMAGE_NAME,
+            MahjongSolitairePropertyType.LOSS_DIALOG_IMAGE_NAME,
+            MahjongSolitairePropertyType.TRY_AGAIN_IMAGE_NAME,
+            MahjongSolitairePropertyType.BLANK_TILE_IMAGE_NAME,
+            MahjongSolitairePropertyType.BLANK_TILE_SELECTED_IMAGE_NAME };
+        for (MahjongSolitairePropertyType imageName : keyedImages)
+        {
+            assetLoader.addImageWithColorKey(GAME_SCREEN_ASSETS, imgPath + props.getProperty(imageName), COLOR_KEY);
+        }
+        MahjongSolitairePropertyType[] tileLists = {
+            MahjongSolitairePropertyType.TYPE_A_TILES,
+            MahjongSolitairePropertyType.TYPE_B_TILES,
+            MahjongSolitairePropertyType.TYPE_C_TILES };
+        for (MahjongSolitairePropertyType tileList : tileLists)
+        {
+            for (String tileImageName : props.getPropertyOptionsList(tileList))
+            {
+                assetLoader.addImageWithColorKey(GAME_SCREEN_ASSETS, imgPath + tileImageName, COLOR_KEY);
+            }
+        }
+
+        // AND FINALLY THE LEVELS
+        for (String levelFile : props.getPropertyOptionsList(MahjongSolitairePropertyType.LEVEL_OPTIONS))
+        {
+            assetLoader.addFile(GAME_SCREEN_ASSETS, dataPath + levelFile);
+        }
     }
     
     /**
@@ -392,12 +488,11 @@ public class MahjongSolitaireMiniGame extends MiniGame
         img = loadImage(imgPath + props.getProperty(MahjongSolitairePropertyType.SPLASH_SCREEN_IMAGE_NAME));
         sT = new SpriteType(BACKGROUND_TYPE);
         sT.addState(SPLASH_SCREEN_STATE, img);
-        img = loadImage(imgPath + props.getProperty(MahjongSolitairePropertyType.GAME_BACKGROUND_IMAGE_NAME));
-        sT.addState(GAME_SCREEN_STATE, img);
         s = new Sprite(sT, 0, 0, 0, 0, SPLASH_SCREEN_STATE);
         guiDecor.put(BACKGROUND_TYPE, s);
         
-        // ADD A BUTTON FOR EACH LEVEL AVAILABLE
+        // ADD A BUTTON FOR EACH LEVEL AVAILABLE. THEY STAY DISABLED UNTIL
+        // THE GAME SCREEN ART HAS LOADED, SINCE THERE'S NOTHING TO PLAY ON
         ArrayList<String> levels = props.getPropertyOptionsList(MahjongSolitairePropertyType.LEVEL_OPTIONS);
         ArrayList<String> levelImageNames = props.getPropertyOptionsList(MahjongSolitairePropertyType.LEVEL_IMAGE_OPTIONS);
         ArrayList<String> levelMouseOverImageNames = props.getPropertyOptionsList(MahjongSolitairePropertyType.LEVEL_MOUSE_OVER_IMAGE_OPTIONS);
@@ -413,10 +508,63 @@ public class MahjongSolitaireMiniGame extends MiniGame
             img = loadImageWithColorKey(imgPath + levelMouseOverImageNames.get(i), COLOR_KEY);
             sT.addState(MOUSE_OVER_STATE, img);
             s = new Sprite(sT, x, y, 0, 0, VISIBLE_STATE);
+            s.setEnabled(false);
             guiButtons.put(levels.get(i), s);
             x += LEVEL_BUTTON_WIDTH + LEVEL_BUTTON_MARGIN;
         }
         
+        // THE GAME SCREEN CONTROLS AND THE TILES ARE MADE ONCE THEIR
+        // ART HAS LOADED, SEE initGameScreenControls
+    }		
+    
+    /**
+     * Builds the game screen controls, the dialogs, and the tiles, none of
+     * which are needed on the splash screen. Note that this waits for the
+     * game screen art to load, so it's run in the background once the splash
+     * screen is up, and it only locks the game data once the art is in.
+     */
+    private void initGameScreenControls()
+    {
+        // THE ART IS ALREADY LOADING, WE JUST HAVE TO WAIT FOR IT, AFTER
+        // WHICH EVERY IMAGE BELOW COMES STRAIGHT OUT OF THE IMAGE CACHE
+        assetLoader.awaitGroup(GAME_SCREEN_ASSETS);
+        beginUsingData();
+        try
+        {
+            initGameScreenSprites();
+            initGameScreenHandlers();
+
+            // NOW THERE'S SOMETHING TO PLAY ON
+            PropertiesManager props = PropertiesManager.getPropertiesManager();
+            for (String level : props.getPropertyOptionsList(MahjongSolitairePropertyType.LEVEL_OPTIONS))
+            {
+                guiButtons.get(level).setEnabled(true);
+            }
+        }
+        finally
+        {
+            endUsingData();
+        }
+    }
+
+    /**
+     * Helper method for initGameScreenControls, it makes the sprites for the
+     * game screen from the art that's been loaded.
+     */
+    private void initGameScreenSprites()
+    {
+        // WE'LL USE AND REUSE THESE FOR LOADING STUFF
+        BufferedImage img;
+        float x, y;
+        SpriteType sT;
+        Sprite s;
+        PropertiesManager props = PropertiesManager.getPropertiesManager();
+        String imgPath = props.getProperty(MahjongSolitairePropertyType.IMG_PATH);
+
+        // THE GAME SCREEN BACKGROUND GOES WITH THE SPLASH SCREEN ONE
+        img = loadImage(imgPath + props.getProperty(MahjongSolitairePropertyType.GAME_BACKGROUND_IMAGE_NAME));
+        guiDecor.get(BACKGROUND_TYPE).getSpriteType().addState(GAME_SCREEN_STATE, img);
+
         // ADD THE CONTROLS ALONG THE NORTH OF THE GAME SCREEN
                 
          // THEN THE NEW BUTTON
@@ -535,8 +683,8 @@ public class MahjongSolitaireMiniGame extends MiniGame
 		        
         // THEN THE TILES STACKED TO THE TOP LEFT
         ((MahjongSolitaireDataModel)data).initTiles();
-    }		
-    
+    }
+
     /**
      * Initializes the game event handlers for things like
      * game gui buttons.
@@ -560,6 +708,20 @@ public class MahjongSolitaireMiniGame extends MiniGame
             guiButtons.get(levelFile).setActionListener(slh);
         }   
 
+        // KEY LISTENER - LET'S US PROVIDE CUSTOM RESPONSES
+        MahjongKeyHandler mkh = new MahjongKeyHandler(this);
+        this.setKeyListener(mkh);
+        
+        
+        
+    }
+    
+    /**
+     * Helper method for initGameScreenControls, it sets up the event handlers
+     * for the game screen buttons once they've been made.
+     */
+    private void initGameScreenHandlers()
+    {
         // NEW GAME EVENT HANDLER
         NewGameHandler ngh = new NewGameHandler(this);
         guiButtons.get(NEW_GAME_BUTTON_TYPE).setActionListener(ngh);
@@ -579,12 +741,6 @@ public class MahjongSolitaireMiniGame extends MiniGame
         // TRY AGAIN EVENT HANDLER
         guiButtons.get(TRY_AGAIN_TYPE).setActionListener(ngh);
         
-        // KEY LISTENER - LET'S US PROVIDE CUSTOM RESPONSES
-        MahjongKeyHandler mkh = new MahjongKeyHandler(this);
-        this.setKeyListener(mkh);
-        
-        
-        
     }
     
     /**
@@ -596,6 +752,41 @@ public class MahjongSolitaireMiniGame extends MiniGame
     {
         data.reset(this);
     }
+
+    /**
+     * Waits for the splash screen art and the audio to finish loading, then
+     * displays the window and starts the welcome song. The game screen art
+     * may still be loading, which the splash screen shows with a loading bar,
+     * so the game screen is built in the background once it has.
+     */
+    @Override
+    public void startGame()
+    {
+        // WE CAN'T SHOW THE SPLASH SCREEN OR PLAY ITS SONG WITHOUT THESE
+        assetLoader.awaitGroup(SPLASH_SCREEN_ASSETS);
+        if (!assetLoader.awaitGroup(AUDIO_ASSETS))
+        {
+            errorHandler.processError(MahjongSolitairePropertyType.AUDIO_FILE_ERROR);
+        }
+
+        // DISPLAY THE WINDOW
+        super.startGame();
+
+        // PLAY THE WELCOME SCREEN SONG
+        audio.play(MahjongSolitairePropertyType.SPLASH_SCREEN_SONG_CUE.toString(), true);
+
+        // AND MAKE THE GAME SCREEN AS SOON AS ITS ART IS IN
+        Thread gameScreenLoader = new Thread(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                initGameScreenControls();
+            }
+        }, "MahjongSolitaireGameScreenLoader");
+        gameScreenLoader.setDaemon(true);
+        gameScreenLoader.start();
+    }
     
     /**
      * Updates the state of all gui controls according to the 
@@ -611,21 +802,24 @@ public class MahjongSolitaireMiniGame extends MiniGame
             Sprite button = buttonsIt.next();
             
             // ARE WE ENTERING A BUTTON?
-            if (button.getState().equals(VISIBLE_STATE))
+            if (button.isInState(VISIBLE_STATE_ID))
             {
                 if (button.containsPoint(data.getLastMouseX(), data.getLastMouseY()))
                 {
-                    button.setState(MOUSE_OVER_STATE);
+                    button.setStateID(MOUSE_OVER_STATE_ID);
                 }
             }
             // ARE WE EXITING A BUTTON?
-            else if (button.getState().equals(MOUSE_OVER_STATE))
+            else if (button.isInState(MOUSE_OVER_STATE_ID))
             {
                  if (!button.containsPoint(data.getLastMouseX(), data.getLastMouseY()))
                 {
-                    button.setState(VISIBLE_STATE);
+                    button.setStateID(VISIBLE_STATE_ID);
                 }
             }
         }
+
+        // AND LET THE PLAYER KNOW IF A GAME COULDN'T BE SAVED
+        checkRecordSaved();
     }    
 }
\ No newline at end of file
@@ -1,31 +1,32 @@
 package mahjong_solitaire.ui;
 
 import java.awt.Color;
-import java.awt.Font;
 import java.awt.Graphics;
-import java.awt.Image;
 import java.awt.image.BufferedImage;
 import java.text.NumberFormat;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
 import javax.swing.JPanel;
-import mahjong_solitaire.MahjongSolitaire;
 import mini_game.MiniGame;
+import mini_game.MiniGameAssetLoader;
+import mini_game.MiniGameFrameBuilder;
+import mini_game.MiniGameFrameSnapshot;
 import mini_game.Sprite;
 import mini_game.SpriteType;
 import mahjong_solitaire.data.MahjongSolitaireDataModel;
 import static mahjong_solitaire.MahjongSolitaireConstants.*;
 import mahjong_solitaire.data.MahjongSolitaireRecord;
 import mahjong_solitaire.file.MahjongSolitaireFileManager;
-import properties_manager.PropertiesManager;
 
 /**
  * This class performs all of the rendering for the Mahjong game application.
+ * Note that each frame is first recorded into a snapshot by the update thread
+ * and then painted from that snapshot, so painting never locks the game data.
  * 
  * @author Richard McKenna
  */
-public class MahjongSolitairePanel extends JPanel
+public class MahjongSolitairePanel extends JPanel implements MiniGameFrameBuilder
 {
     // THIS IS ACTUALLY OUR Mahjong Solitaire APP, WE NEED THIS
     // BECAUSE IT HAS THE GUI STUFF THAT WE NEED TO RENDER
@@ -43,6 +44,13 @@ public class MahjongSolitairePanel extends JPanel
     // WE'LL USE THIS AS THE BASE IMAGE FOR RENDERING SELECTED TILES
     private BufferedImage blankTileSelectedImage;
     
+    // THE TILES RESTING ON THE GRID, DRAWN ONCE AND REUSED UNTIL
+    // THE BOARD CHANGES
+    private MahjongSolitaireBoardLayer boardLayer;
+    
+    // THE TEXT IN THE STATS DIALOG, WORKED OUT ONLY WHEN IT CHANGES
+    private MahjongSolitaireStatsView statsView;
+    
     /**
      * This constructor stores the game and data references,
      * which we'll need for rendering.
@@ -56,11 +64,27 @@ public class MahjongSolitairePanel extends JPanel
     {
         game = initGame;
         data = initData;
+        boardLayer = new MahjongSolitaireBoardLayer(data);
+        statsView = new MahjongSolitaireStatsView();
         numberFormatter = NumberFormat.getNumberInstance();
         numberFormatter.setMinimumFractionDigits(3);
         numberFormatter.setMaximumFractionDigits(3);
     }
     
+    // ACCESSOR METHODS
+        // -getStatsView
+    
+    /**
+     * Accessor method for the text shown in the stats dialog.
+     * 
+     * @return The stats view, which may be invalidated when the dialog
+     * is opened.
+     */
+    public MahjongSolitaireStatsView getStatsView()
+    {
+        return statsView;
+    }
+    
     // MUTATOR METHODS
         // -setBlankTileImage
         // -setBlankTileSelectedImage
@@ -73,6 +97,7 @@ public class MahjongSolitairePanel extends JPanel
     public void setBlankTileImage(BufferedImage initBlankTileImage)
     {
         blankTileImage = initBlankTileImage;
+        boardLayer.setBlankTileImage(initBlankTileImage);
     }
     
     /**
@@ -84,58 +109,65 @@ public class MahjongSolitairePanel extends JPanel
     public void setBlankTileSelectedImage(BufferedImage initBlankTileSelectedImage)
     {
         blankTileSelectedImage = initBlankTileSelectedImage;
+        boardLayer.setBlankTileSelectedImage(initBlankTileSelectedImage);
     }
 
     /**
-     * This is where rendering starts. This method is called each frame, and the
-     * entire game application is rendered here with the help of a number of
-     * helper methods.
+     * This is where rendering starts. This method is called each frame, and it
+     * simply paints the most recently published frame snapshot.
      * 
      * @param g The Graphics context for this panel.
      */
     @Override
     public void paintComponent(Graphics g)
     {
-        try
-        {
-            // MAKE SURE WE HAVE EXCLUSIVE ACCESS TO THE GAME DATA
-            game.beginUsingData();
-        
-            // CLEAR THE PANEL
-            super.paintComponent(g);
-        
-            // RENDER THE BACKGROUND, WHICHEVER SCREEN WE'RE ON
-            renderBackground(g);
+        // CLEAR THE PANEL
+        super.paintComponent(g);
 
-            // AND THE BUTTONS AND DECOR
-            renderGUIControls(g);
-                
-            // AND THE TILES
-            renderTiles(g);
+        // AND DRAW THE LATEST FRAME, NO LOCK NEEDED
+        game.renderFrameSnapshot(g, 0.0f);
+    }
 
-            // AND THE DIALOGS, IF THERE ARE ANY
-            renderDialogs(g);
+    /**
+     * Called each frame by the update thread while it holds the data lock,
+     * this method records the entire game application into the frame with the
+     * help of a number of helper methods.
+     * 
+     * @param frame The snapshot to record this frame into.
+     */
+    @Override
+    public void buildFrame(MiniGameFrameSnapshot frame)
+    {
+        // RENDER THE BACKGROUND, WHICHEVER SCREEN WE'RE ON
+        renderBackground(frame);
 
-            // AND THE TIME AND TILES STATS
-            renderStats(g);
-                
-            // RENDERING THE GRID WHERE ALL THE TILES GO CAN BE HELPFUL
-            // DURING DEBUGGIN TO BETTER UNDERSTAND HOW THEY RE LAID OUT
-            renderGrid(g);
-        
-            // AND FINALLY, TEXT FOR DEBUGGING
-            renderDebuggingText(g);
-        }
-        finally
-        {
-            // RELEASE THE LOCK
-            game.endUsingData();    
-        }
+        // AND THE BUTTONS AND DECOR
+        renderGUIControls(frame);
+
+        // AND HOW MUCH ART IS STILL LOADING, IF ANY
+        renderLoadingBar(frame);
+
+        // AND THE TILES
+        renderTiles(frame);
+
+        // AND THE DIALOGS, IF THERE ARE ANY
+        renderDialogs(frame);
+
+        // AND THE TIME AND TILES STATS
+        renderStats(frame);
+
+        // RENDERING THE GRID WHERE ALL THE TILES GO CAN BE HELPFUL
+        // DURING DEBUGGIN TO BETTER UNDERSTAND HOW THEY RE LAID OUT
+        renderGrid(frame);
+
+        // AND FINALLY, TEXT FOR DEBUGGING
+        renderDebuggingText(frame);
     }
     
     // RENDERING HELPER METHODS
         // - renderBackground
         // - renderGUIControls
+        // - renderLoadingBar
         // - renderTiles
         // - renderDialogs
         // - renderGrid
@@ -144,46 +176,64 @@ public class MahjongSolitairePanel extends JPanel
     /**
      * Renders the background image, which is different depending on the screen. 
      * 
-     * @param g the Graphics context of this panel.
+     * @param frame the snapshot of this frame.
      */
-    public void renderBackground(Graphics g)
+    public void renderBackground(MiniGameFrameSnapshot frame)
     {
         // THERE IS ONLY ONE CURRENTLY SET
         Sprite bg = game.getGUIDecor().get(BACKGROUND_TYPE);
-        renderSprite(g, bg);
+        renderSprite(frame, bg);
     }
 
     /**
      * Renders all the GUI decor and buttons.
      * 
-     * @param g this panel's rendering context.
+     * @param frame the snapshot of this frame.
      */
-    public void renderGUIControls(Graphics g)
+    public void renderGUIControls(MiniGameFrameSnapshot frame)
     {
         // GET EACH DECOR IMAGE ONE AT A TIME
         Collection<Sprite> decorSprites = game.getGUIDecor().values();
         for (Sprite s : decorSprites)
         {
-            renderSprite(g, s);
+            renderSprite(frame, s);
         }
         
         // AND NOW RENDER THE BUTTONS
         Collection<Sprite> buttonSprites = game.getGUIButtons().values();
         for (Sprite s : buttonSprites)
         {
-            renderSprite(g, s);
+            renderSprite(frame, s);
         }
     }
 
+
+    /**
+     * Renders a bar along the bottom of the splash screen showing how much of
+     * the game's art has been loaded, but only while some is still loading.
+     * 
+     * @param frame the snapshot of this frame.
+     */
+    public void renderLoadingBar(MiniGameFrameSnapshot frame)
+    {
+        MiniGameAssetLoader assetLoader = game.getAssetLoader();
+        if (((MahjongSolitaireMiniGame)game).isCurrentScreenState(SPLASH_SCREEN_STATE)
+                && !assetLoader.isDone())
+        {
+            int loadedWidth = (int)(LOADING_BAR_WIDTH * assetLoader.getProgress());
+            frame.addFilledRect(LOADING_BAR_BACKGROUND_COLOR, LOADING_BAR_X, LOADING_BAR_Y, LOADING_BAR_WIDTH, LOADING_BAR_HEIGHT, 0);
+            frame.addFilledRect(LOADING_BAR_COLOR, LOADING_BAR_X, LOADING_BAR_Y, loadedWidth, LOADING_BAR_HEIGHT, 0);
+        }
+    }
     
     /**
      * This method renders the on-screen stats that change as
      * the game progresses. This means things like the game time
      * and the number of tiles remaining.
      * 
-     * @param g the Graphics context for this panel
+     * @param frame the snapshot of this frame.
      */
-    public void renderStats(Graphics g)
+    public void renderStats(MiniGameFrameSnapshot frame)
     {
         // RENDER THE GAME TIME
         if (((MahjongSolitaireMiniGame)game).isCurrentScreenState(GAME_SCREEN_STATE) 
@@ -193,9 +243,7 @@ public class MahjongSolitairePanel extends JPanel
             String time = data.gameTimeToText();
             int x = TIME_X + TIME_OFFSET;
             int y = TIME_Y + TIME_TEXT_OFFSET;
-            g.setFont(TEXT_DISPLAY_FONT);
-            g.setColor(Color.BLACK);
-            g.drawString(time, x, y);
+            frame.addText(time, TEXT_DISPLAY_FONT, Color.BLACK, x, y);
             
         }
         if (((MahjongSolitaireMiniGame)game).isCurrentScreenState(GAME_SCREEN_STATE) || data.isPaused())
@@ -204,49 +252,22 @@ public class MahjongSolitairePanel extends JPanel
             String tileCount = "" + tilesLeft;
             int x = TILE_COUNT_X + TILE_COUNT_OFFSET;
             int y = TILE_COUNT_Y + TILE_COUNT_TEXT_OFFSET;
-            g.setFont(TEXT_DISPLAY_FONT);
-            g.setColor(Color.BLACK);
-            g.drawString(tileCount, x, y);
+            frame.addText(tileCount, TEXT_DISPLAY_FONT, Color.BLACK, x, y);
         }
         
-        if(game.getGUIDialogs().get(STATS_DIALOG_TYPE).getState().equals(VISIBLE_STATE))
+        // THE DIALOG ISN'T MADE UNTIL THE GAME SCREEN ART HAS LOADED
+        Sprite statsDialog = game.getGUIDialogs().get(STATS_DIALOG_TYPE);
+        if((statsDialog != null) && statsDialog.isInState(VISIBLE_STATE_ID))
             {
-                PropertiesManager props = PropertiesManager.getPropertiesManager();
-                String imgPath = props.getProperty(MahjongSolitaire.MahjongSolitairePropertyType.IMG_PATH);
-                String level = data.getCurrentLevel().substring(17, data.getCurrentLevel().length() - 4);
-                String statsDialog = props.getProperty(MahjongSolitaire.MahjongSolitairePropertyType.STATS_DIALOG_IMAGE_NAME);
-                BufferedImage img = game.loadImageWithColorKey(imgPath + statsDialog, COLOR_KEY);
-                int x = (data.getGameWidth()/2) - (img.getWidth(null)/2) + 15;
-                int y = (data.getGameHeight()/2) - (img.getHeight(null)/2) + 200;
-                g.setFont(STATS_FONT);
-                g.drawString(level, x, y);
-                
-                level = data.getCurrentLevel();
+                // THE TEXT IS ONLY WORKED OUT AGAIN IF THE LEVEL OR
+                // THE RECORD HAS CHANGED, THE DIALOG IMAGE ITSELF
+                // IS ALREADY DRAWN WITH THE OTHER DIALOGS
                 MahjongSolitaireRecord record = ((MahjongSolitaireMiniGame)game).getPlayerRecord();
-                int numGames = record.getGamesPlayed(level);
-                String gamesPlayed = "Games: " + numGames;
-                g.drawString(gamesPlayed, x, y+50);
-             
-                int wins = record.getWins(level);
-                String gamesWon = "Wins: " + wins;
-                g.drawString(gamesWon, x, y+70);
-            
-                int losses = record.getLosses(level);
-                String gamesLost = "Losses: " + losses;
-                g.drawString(gamesLost, x, y+90);
-       
-                double percentage = record.calculateWinPercentage(level);
-                String winPercentage = "Win%: " + percentage;
-                g.drawString(winPercentage, x, y+110);
-                
-                long fastest = record.getFastestTime(level);
-                String fastestWin = "Fastest Win: ";
-                if(fastest != Long.MAX_VALUE)
-                    fastestWin += data.timeToText(fastest);
-                else
-                    fastestWin += "N/A";
-                g.drawString(fastestWin, x, y+130);
-                
+                statsView.update(data, record, statsDialog);
+                for (int i = 0; i < statsView.getNumLines(); i++)
+                {
+                    frame.addText(statsView.getLine(i), STATS_FONT, Color.BLACK, statsView.getLineX(i), statsView.getLineY(i));
+                }
             }
        
         
@@ -256,9 +277,9 @@ public class MahjongSolitairePanel extends JPanel
      * Renders all the game tiles, doing so carefully such
      * that they are rendered in the proper order.
      * 
-     * @param g the Graphics context of this panel.
+     * @param frame the snapshot of this frame.
      */
-    public void renderTiles(Graphics g)
+    public void renderTiles(MiniGameFrameSnapshot frame)
     {
         // DRAW THE TOP TILES ON THE STACK
         if (!data.won())
@@ -269,84 +290,62 @@ public class MahjongSolitairePanel extends JPanel
             ArrayList<MahjongSolitaireTile> stackTiles = data.getStackTiles();
             if (stackTiles.size() > 3)
             {
-                renderTile(g, stackTiles.get(stackTiles.size()-3));
-                renderTile(g, stackTiles.get(stackTiles.size()-4));
+                renderTile(frame, stackTiles.get(stackTiles.size()-3));
+                renderTile(frame, stackTiles.get(stackTiles.size()-4));
             }
             if (stackTiles.size() > 1)
             {
-                renderTile(g, stackTiles.get(stackTiles.size()-1));
-                renderTile(g, stackTiles.get(stackTiles.size()-2));
+                renderTile(frame, stackTiles.get(stackTiles.size()-1));
+                renderTile(frame, stackTiles.get(stackTiles.size()-2));
             }
         }
         
-        // THEN DRAW THE GRID TILES BOTTOM TO TOP USING
-        // THE TILE'S Z TO STAGGER THEM AND GIVE THE ILLUSION
-        // OF DEPTH
-        ArrayList<MahjongSolitaireTile>[][] tileGrid = data.getTileGrid();
-        boolean noneOnLevel = false;
-        int zIndex = 0;
-        while (!noneOnLevel)
-        {
-            int levelCounter = 0;
-            for (int i = 0; i < data.getGridColumns(); i++)
-            {
-                for (int j = 0; j < data.getGridRows(); j++)
-                {
-                    if (tileGrid[i][j].size() > zIndex)
-                    {
-                        MahjongSolitaireTile tile = tileGrid[i][j].get(zIndex);
-                        renderTile(g, tile);
-                        levelCounter++;
-                    }
-                }
-            }
-            if (levelCounter == 0)
-                noneOnLevel = true;
-            zIndex++;
-        }
+        // THEN THE GRID TILES, WHICH THE BOARD LAYER HAS ALREADY
+        // DRAWN BOTTOM TO TOP, USING THE TILE'S Z TO STAGGER THEM AND
+        // GIVE THE ILLUSION OF DEPTH. IT ONLY REDRAWS THEM WHEN THE
+        // BOARD HAS CHANGED, SO MOST FRAMES THIS IS ONE IMAGE
+        boardLayer.render(frame);
         
         // THEN DRAW ALL THE MOVING TILES
         Iterator<MahjongSolitaireTile> movingTiles = data.getMovingTiles();
         while (movingTiles.hasNext())
         {
             MahjongSolitaireTile tile = movingTiles.next();
-            renderTile(g, tile);
+            renderTile(frame, tile);
         }
     }
 
     /**
      * Helper method for rendering the tiles that are currently moving.
      * 
-     * @param g Rendering context for this panel.
+     * @param frame the snapshot of this frame.
      * 
      * @param tileToRender Tile to render to this panel.
      */
-    public void renderTile(Graphics g, MahjongSolitaireTile tileToRender)
+    public void renderTile(MiniGameFrameSnapshot frame, MahjongSolitaireTile tileToRender)
     {
         // ONLY RENDER VISIBLE TILES
-        if (!tileToRender.getState().equals(INVISIBLE_STATE))
+        int stateID = tileToRender.getStateID();
+        if (stateID != INVISIBLE_STATE_ID)
         {
             // FIRST DRAW THE BLANK TILE IMAGE
-            if (tileToRender.getState().equals(SELECTED_STATE))
-                g.drawImage(blankTileSelectedImage, (int)tileToRender.getX(), (int)tileToRender.getY(), null);
-            else if (tileToRender.getState().equals(VISIBLE_STATE))
-                g.drawImage(blankTileImage, (int)tileToRender.getX(), (int)tileToRender.getY(), null);
+            if (stateID == SELECTED_STATE_ID)
+                frame.addImage(blankTileSelectedImage, (int)tileToRender.getX(), (int)tileToRender.getY());
+            else if (stateID == VISIBLE_STATE_ID)
+                frame.addImage(blankTileImage, (int)tileToRender.getX(), (int)tileToRender.getY());
             
             // THEN THE TILE IMAGE
             SpriteType bgST = tileToRender.getSpriteType();
-            Image img = bgST.getStateImage(tileToRender.getState());
-            g.drawImage(img, (int)tileToRender.getX()+TILE_IMAGE_OFFSET, (int)tileToRender.getY()+TILE_IMAGE_OFFSET, bgST.getWidth(), bgST.getHeight(), null); 
+            frame.addSprite(bgST, stateID, (int)tileToRender.getX()+TILE_IMAGE_OFFSET, (int)tileToRender.getY()+TILE_IMAGE_OFFSET, 0, 0);
             
             // IF THE TILE IS SELECTED, HIGHLIGHT IT
-            if (tileToRender.getState().equals(SELECTED_STATE))
+            if (stateID == SELECTED_STATE_ID)
             {
-                g.setColor(SELECTED_TILE_COLOR);
-                g.fillRoundRect((int)tileToRender.getX(), (int)tileToRender.getY(), bgST.getWidth(), bgST.getHeight(),5,5);
+                frame.addFilledRect(SELECTED_TILE_COLOR, (int)tileToRender.getX(), (int)tileToRender.getY(), bgST.getWidth(), bgST.getHeight(), 5);
             }
-            else if (tileToRender.getState().equals(INCORRECTLY_SELECTED_STATE))
+            else if (stateID == INCORRECTLY_SELECTED_STATE_ID)
             {
-                g.setColor(INCORRECTLY_SELECTED_TILE_COLOR);
-                g.fillRoundRect((int)tileToRender.getX(), (int)tileToRender.getY(), bgST.getWidth(), bgST.getHeight(),5,5);
+                frame.addFilledRect(INCORRECTLY_SELECTED_TILE_COLOR, (int)tileToRender.getX(), (int)tileToRender.getY(), bgST.getWidth(), bgST.getHeight(), 5);
             }
         }        
     }
@@ -354,36 +353,34 @@ public class MahjongSolitairePanel extends JPanel
     /**
      * Renders the game dialog boxes.
      * 
-     * @param g This panel's graphics context.
+     * @param frame the snapshot of this frame.
      */
-    public void renderDialogs(Graphics g)
+    public void renderDialogs(MiniGameFrameSnapshot frame)
     {
         // GET EACH DECOR IMAGE ONE AT A TIME
         Collection<Sprite> dialogSprites = game.getGUIDialogs().values();
         for (Sprite s : dialogSprites)
         {
             // RENDER THE DIALOG, NOTE IT WILL ONLY DO IT IF IT'S VISIBLE
-            renderSprite(g, s);
+            renderSprite(frame, s);
         }
        
     }
     
     /**
-     * Renders the s Sprite into the Graphics context g. Note
+     * Records the s Sprite into the frame. Note
      * that each Sprite knows its own x,y coordinate location.
      * 
-     * @param g the Graphics context of this panel
+     * @param frame the snapshot of this frame.
      * 
      * @param s the Sprite to be rendered
      */
-    public void renderSprite(Graphics g, Sprite s)
+    public void renderSprite(MiniGameFrameSnapshot frame, Sprite s)
     {
         // ONLY RENDER THE VISIBLE ONES
-        if (!s.getState().equals(INVISIBLE_STATE))
+        if (!s.isInState(INVISIBLE_STATE_ID))
         {
-            SpriteType bgST = s.getSpriteType();
-            Image img = bgST.getStateImage(s.getState());
-            g.drawImage(img, (int)s.getX(), (int)s.getY(), bgST.getWidth(), bgST.getHeight(), null); 
+            frame.addSprite(s);
         }
     }
 
@@ -391,9 +388,9 @@ public class MahjongSolitairePanel extends JPanel
      * This method renders grid lines in the game tile grid to help
      * during debugging.
      * 
-     * @param g Graphics context for this panel.
+     * @param frame the snapshot of this frame.
      */
-    public void renderGrid(Graphics g)
+    public void renderGrid(MiniGameFrameSnapshot frame)
     {
         // ONLY RENDER THE GRID IF WE'RE DEBUGGING
         if (data.isDebugTextRenderingActive())
@@ -404,7 +401,7 @@ public class MahjongSolitairePanel extends JPanel
                 {
                     int x = data.calculateTileXInGrid(i, 0);
                     int y = data.calculateTileYInGrid(j, 0);
-                    g.drawRect(x, y, TILE_IMAGE_WIDTH, TILE_IMAGE_HEIGHT);
+                    frame.addRect(DEBUG_TEXT_COLOR, x, y, TILE_IMAGE_WIDTH, TILE_IMAGE_HEIGHT);
                 }
             }
         }
@@ -415,17 +412,13 @@ public class MahjongSolitairePanel extends JPanel
      * that the rendering will only actually be done
      * if data has activated debug text rendering.
      * 
-     * @param g the Graphics context for this panel
+     * @param frame the snapshot of this frame.
      */
-    public void renderDebuggingText(Graphics g)
+    public void renderDebuggingText(MiniGameFrameSnapshot frame)
     {
         // IF IT'S ACTIVATED
         if (data.isDebugTextRenderingActive())
         {
-            // ENABLE PROPER RENDER SETTINGS
-            g.setFont(DEBUG_TEXT_FONT);
-            g.setColor(DEBUG_TEXT_COLOR);
-            
             // GO THROUGH ALL THE DEBUG TEXT
             Iterator<String> it = data.getDebugText().iterator();
             int x = data.getDebugTextX();
@@ -434,7 +427,7 @@ public class MahjongSolitairePanel extends JPanel
             {
                 // RENDER THE TEXT
                 String text = it.next();
-                g.drawString(text, x, y);
+                frame.addText(text, DEBUG_TEXT_FONT, DEBUG_TEXT_COLOR, x, y);
                 y += 20;
             }   
         } 
@@ -0,0 +1,181 @@
+package mahjong_solitaire.ui;
+
+import java.io.File;
+import mahjong_solitaire.data.MahjongLevelStats;
+import mahjong_solitaire.data.MahjongSolitaireDataModel;
+import mahjong_solitaire.data.MahjongSolitaireRecord;
+import mini_game.Sprite;
+
+/**
+ * This class holds the text shown in the stats dialog, already laid out,
+ * so that drawing the dialog each frame is just a few strings. The text is
+ * only worked out again when the level changes or the player's record does,
+ * which is when a game is won or lost.
+ *
+ * @author Richard McKenna
+ */
+public class MahjongSolitaireStatsView
+{
+    // WHERE THE TEXT GOES RELATIVE TO THE DIALOG
+    public static final int TEXT_OFFSET_X = 15;
+    public static final int TEXT_OFFSET_Y = 200;
+
+    // HOW FAR BELOW THE LEVEL NAME THE RECORD STARTS, AND THE
+    // SPACE BETWEEN EACH LINE OF IT
+    public static final int RECORD_OFFSET_Y = 50;
+    public static final int LINE_SPACING = 20;
+
+    // THE RECENT WIN RATE IS FOR THIS MANY GAMES
+    public static final int RECENT_GAMES = 10;
+
+    // THE LEVEL AND RECORD VERSION THE TEXT WAS WORKED OUT FOR
+    private String level;
+    private int recordVersion;
+    private boolean valid;
+
+    // THE TEXT, AND WHERE EACH LINE GOES
+    private String[] lines;
+    private int[] linesX;
+    private int[] linesY;
+
+    /**
+     * Constructor for a view with no text yet, it will be filled in the
+     * first time it's updated.
+     */
+    public MahjongSolitaireStatsView()
+    {
+        lines = new String[9];
+        linesX = new int[lines.length];
+        linesY = new int[lines.length];
+        valid = false;
+    }
+
+    // ACCESSOR METHODS
+        // -getNumLines
+        // -getLine
+        // -getLineX
+        // -getLineY
+
+    /**
+     * Accessor method for the number of lines of text.
+     *
+     * @return The number of lines in the dialog.
+     */
+    public int getNumLines()
+    {
+        return lines.length;
+    }
+
+    /**
+     * Accessor method for a line of text.
+     *
+     * @param index The line, where 0 is the level name.
+     *
+     * @return The text of the line.
+     */
+    public String getLine(int index)
+    {
+        return lines[index];
+    }
+
+    /**
+     * Accessor method for where a line of text goes.
+     *
+     * @param index The line.
+     *
+     * @return The x-axis pixel location of the line.
+     */
+    public int getLineX(int index)
+    {
+        return linesX[index];
+    }
+
+    /**
+     * Accessor method for where a line of text goes.
+     *
+     * @param index The line.
+     *
+     * @return The y-axis pixel location of the line.
+     */
+    public int getLineY(int index)
+    {
+        return linesY[index];
+    }
+
+    // MUTATOR METHODS
+        // -invalidate
+        // -update
+
+    /**
+     * Makes sure the text is worked out again the next time it's updated.
+     */
+    public void invalidate()
+    {
+        valid = false;
+    }
+
+    /**
+     * Works out the text again, but only if the level or the record has
+     * changed since it last was. This must be called while holding the
+     * data lock.
+     *
+     * @param data The game data, which knows the level being played.
+     *
+     * @param record The player's record.
+     *
+     * @param dialog The stats dialog the text goes on.
+     */
+    public void update(MahjongSolitaireDataModel data, MahjongSolitaireRecord record, Sprite dialog)
+    {
+        String currentLevel = data.getCurrentLevel();
+        if (valid && currentLevel.equals(level) && (record.getVersion() == recordVersion))
+        {
+            return;
+        }
+        level = currentLevel;
+        recordVersion = record.getVersion();
+        valid = true;
+
+        // THE LEVEL NAME, WITHOUT THE PATH AND EXTENSION
+        String levelName = new File(level).getName();
+        int extensionIndex = levelName.lastIndexOf('.');
+        if (extensionIndex > 0)
+        {
+            levelName = levelName.substring(0, extensionIndex);
+        }
+        lines[0] = levelName;
+
+        // AND THE RECORD FOR IT
+        lines[1] = "Games: " + record.getGamesPlayed(level);
+        lines[2] = "Wins: " + record.getWins(level);
+        lines[3] = "Losses: " + record.getLosses(level);
+        lines[4] = "Win%: " + record.calculateWinPercentage(level);
+        long fastest = record.getFastestTime(level);
+        lines[5] = "Fastest Win: ";
+        if (fastest != Long.MAX_VALUE)
+            lines[5] += data.timeToText(fastest);
+        else
+            lines[5] += "N/A";
+
+        // AND THE DETAILED STATS, WHICH ARE ALREADY WORKED OUT
+        MahjongLevelStats stats = record.getLevelStats(level);
+        lines[6] = "Median Win: ";
+        if (stats.getWinTimes().getCount() > 0)
+            lines[6] += data.timeToText(stats.getWinTimes().getValueAtPercentile(50));
+        else
+            lines[6] += "N/A";
+        lines[7] = "Best Streak: " + stats.getLongestWinStreak();
+        lines[8] = "Last " + RECENT_GAMES + " Win%: " + stats.getRecentWinRate(RECENT_GAMES);
+
+        // NOW LAY THEM OUT ON THE DIALOG
+        int x = (int)dialog.getX() + TEXT_OFFSET_X;
+        int y = (int)dialog.getY() + TEXT_OFFSET_Y;
+        linesX[0] = x;
+        linesY[0] = y;
+        for (int i = 1; i < lines.length; i++)
+        {
+            linesX[i] = x;
+            linesY[i] = y + RECORD_OFFSET_Y + ((i - 1) * LINE_SPACING);
+        }
+    }
+}
@@ -18,6 +18,14 @@ public class MahjongSolitaireTile extends Sprite
     // ALSO DO IT THIS WAY, WITH STRING CONSTANTS
     private String tileType;
 
+    // ALL TILES THAT MATCH EACH OTHER SHARE A MATCH CLASS, WHICH
+    // LETS THE DATA MODEL SORT THEM BY NUMBER RATHER THAN BY TYPE
+    private int matchClass;
+
+    // EACH TILE HAS A UNIQUE ID, WHICH IS HOW THE GAME BOARD
+    // KNOWS WHERE IT IS WITHOUT STORING THE TILE ITSELF
+    private int tileID;
+
     // WHEN WE PUT A TILE IN THE GRID WE TELL IT WHAT COLUMN AND ROW
     // IT IS LOCATED TO MAKE THE UNDO OPERATION EASY LATER ON
     private int gridColumn;
@@ -56,6 +64,8 @@ public class MahjongSolitaireTile extends Sprite
     
     // ACCESSOR METHODS
         // -getTileType
+        // -getMatchClass
+        // -getTileID
         // -getGridColumn
         // -getGridRow
         // -getTargetX
@@ -72,6 +82,28 @@ public class MahjongSolitaireTile extends Sprite
         return tileType;  
     }
     
+    /**
+     * Accessor method for getting this tile's match class. Tiles
+     * that match each other always have the same match class.
+     * 
+     * @return The match class for this tile.
+     */
+    public int getMatchClass()
+    {
+        return matchClass;
+    }
+    
+    /**
+     * Accessor method for getting this tile's ID, which is unique
+     * among all the tiles.
+     * 
+     * @return The ID for this tile.
+     */
+    public int getTileID()
+    {
+        return tileID;
+    }
+    
     /**
      * Accessor method for getting the tile grid column that this tile
      * is either currently in, or was most recently in.
@@ -128,6 +160,8 @@ public class MahjongSolitaireTile extends Sprite
     
     // MUTATOR METHODS
         // -setGridCell
+        // -setMatchClass
+        // -setTileID
         // -setTarget
     
     /**
@@ -146,6 +180,28 @@ public class MahjongSolitaireTile extends Sprite
         gridRow = initGridRow;
     }
     
+    /**
+     * Mutator method for setting this tile's match class.
+     * 
+     * @param initMatchClass The match class shared by all tiles
+     * that match this one.
+     */
+    public void setMatchClass(int initMatchClass)
+    {
+        matchClass = initMatchClass;
+    }
+    
+    /**
+     * Mutator method for setting this tile's ID.
+     * 
+     * @param initTileID The ID for this tile, which must be unique
+     * among all the tiles.
+     */
+    public void setTileID(int initTileID)
+    {
+        tileID = initTileID;
+    }
+    
     /**
      * Mutator method for setting bot the x-axis and y-axis target
      * coordinates for this tile.
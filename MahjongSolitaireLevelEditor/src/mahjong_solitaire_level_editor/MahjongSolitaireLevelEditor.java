@@ -14,12 +14,7 @@ import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
-import java.io.BufferedInputStream;
-import java.io.ByteArrayInputStream;
-import java.io.DataInputStream;
-import java.io.DataOutputStream;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import javax.imageio.ImageIO;
@@ -37,6 +32,7 @@ import javax.swing.SpinnerNumberModel;
 import javax.swing.event.ChangeEvent;
 import javax.swing.event.ChangeListener;
 import javax.swing.filechooser.FileFilter;
+import mini_game.MiniGameLevelFile;
 
 /**
  * This program serves as a level editor for the Zomjong game. It is
@@ -494,37 +490,13 @@ public class MahjongSolitaireLevelEditor
                 // FOLLOWED BY THE GRID VALUES
                 try
                 {
-                    // LET'S USE A FAST LOADING TECHNIQUE. WE'LL LOAD ALL OF THE
-                    // BYTES AT ONCE INTO A BYTE ARRAY, AND THEN PICK THAT APART.
-                    // THIS IS FAST BECAUSE IT ONLY HAS TO DO FILE READING ONCE
-                    byte[] bytes = new byte[Long.valueOf(fileToOpen.length()).intValue()];
-                    ByteArrayInputStream bais = new ByteArrayInputStream(bytes);
-                    FileInputStream fis = new FileInputStream(fileToOpen);
-                    BufferedInputStream bis = new BufferedInputStream(fis);
-                    
-                    // HERE IT IS, THE ONLY READY REQUEST WE NEED
-                    bis.read(bytes);
-                    bis.close();
-
-                    // NOW WE NEED TO LOAD THE DATA FROM THE BYTE ARRAY
-                    DataInputStream dis = new DataInputStream(bais);
-
-                    // NOTE THAT WE NEED TO LOAD THE DATA IN THE SAME
-                    // ORDER AND FORMAT AS WE SAVED IT
-
-                    // FIRST READ THE GRID DIMENSIONS
-                    int initGridColumns = dis.readInt();
-                    int initGridRows = dis.readInt();
-                    int[][] newGrid = new int[initGridColumns][initGridRows];
-                    
-                    // AND NOW ALL THE CELL VALUES
-                    for (int i = 0; i < initGridColumns; i++)
-                    {
-                        for (int j = 0; j < initGridRows; j++)
-                        {
-                            newGrid[i][j] = dis.readInt();
-                        }
-                    }
+                    // LET'S USE A FAST LOADING TECHNIQUE. WE'LL MAP THE FILE
+                    // INTO MEMORY AND READ ALL THE CELL VALUES AT ONCE. THIS
+                    // READS FILES WITH OR WITHOUT A HEADER
+                    MiniGameLevelFile level = MiniGameLevelFile.read(MiniGameLevelFile.map(fileToOpen));
+                    int initGridColumns = level.getGridColumns();
+                    int initGridRows = level.getGridRows();
+                    int[][] newGrid = level.getGrid();
 
                     // EVERYTHING WENT AS PLANNED SO LET'S MAKE IT PERMANENT
                     columnsSpinner.setValue(initGridColumns);
@@ -587,23 +559,18 @@ public class MahjongSolitaireLevelEditor
                 // FOLLOWED BY THE GRID VALUES
                 try
                 {
-                    // WE'LL WRITE EVERYTHING IN BINARY. NOTE THAT WE
-                    // NEED TO MAKE SURE WE SAVE THE DATA IN THE SAME
-                    // FORMAT AND ORDER WITH WHICH WE READ IT LATER
+                    // WE'LL WRITE EVERYTHING IN BINARY, WITH A HEADER SO
+                    // THE GAME KNOWS WHICH FORMAT IT'S IN AND A CHECKSUM
+                    // SO IT KNOWS IF THE FILE WAS DAMAGED
+                    MiniGameLevelFile level = new MiniGameLevelFile(grid, gridColumns, gridRows);
                     FileOutputStream fos = new FileOutputStream(fileName);
-                    DataOutputStream dos = new DataOutputStream(fos);
-                    
-                    // FIRST WRITE THE DIMENSIONS
-                    dos.writeInt(gridColumns);
-                    dos.writeInt(gridRows);
-                    
-                    // AND NOW ALL THE CELL VALUES
-                    for (int i = 0; i < gridColumns; i++)
+                    try
+                    {
+                        fos.write(level.toByteArray());
+                    }
+                    finally
                     {
-                        for (int j = 0; j < gridRows; j++)
-                        {
-                            dos.writeInt(grid[i][j]);
-                        }
+                        fos.close();
                     }
                 }
                 catch(IOException ioe)
@@ -1,16 +1,21 @@
 package mini_game;
 
 import audio_manager.AudioManager;
+import java.awt.Canvas;
 import java.awt.Color;
+import java.awt.Component;
 import java.awt.Graphics;
-import java.awt.Image;
 import java.awt.Insets;
-import java.awt.MediaTracker;
 import java.awt.Toolkit;
 import java.awt.event.KeyListener;
+import java.awt.image.BufferStrategy;
 import java.awt.image.BufferedImage;
-import java.awt.image.WritableRaster;
-import java.util.Timer;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Map;
 import java.util.TreeMap;
 import java.util.concurrent.locks.ReentrantLock;
 import javax.swing.JFrame;
@@ -20,9 +25,9 @@ import javax.swing.JPanel;
  * The classes from the mini_game package, including this class, provide a
  * framework for making a Swing based game. This class serves as the focal point
  * of that game, with access to all the important game data and controls. Note
- * that we will use a Timer to provide fixed-rate updates of the game data and
- * rendering, so we will also use a ReentrantLock to make sure we don't change
- * data mid-render.
+ * that we will use a MiniGameLoop to provide fixed-rate updates of the game
+ * data and rendering, so we will also use a ReentrantLock to make sure we don't
+ * change data mid-render.
  *
  * @author Richard McKenna
  * @version 1.0
@@ -47,12 +52,26 @@ public abstract class MiniGame
     // THAT MAY CAUSE BIG PROBLEMS. EACH THREAD WILL NEED TO LOCK
     // THE DATA BEFORE EACH USE AND THEN UNLOCK WHEN DONE WITH IT.
     protected ReentrantLock dataLock;
+
+    // IF THE CANVAS IS A MiniGameFrameBuilder, EACH UPDATE WILL
+    // RECORD WHAT THE FRAME LOOKS LIKE WHILE IT STILL HAS THE
+    // LOCK AND PUBLISH IT HERE, SO THAT PAINTING CAN BE DONE
+    // FROM THE PUBLISHED FRAME WITHOUT LOCKING ANYTHING
+    protected MiniGameFrameBuffer frameBuffer;
     
     // EVERY GAME WILL HAVE A SINGLE CANVAS INSIDE
     // OUR WINDOW. WE CAN PAINT AND HANDLE EVENTS
     // FOR BUTTONS OURSELVES
     protected JFrame window;
     protected JPanel canvas;
+
+    // IF THE GAME ASKS FOR ACTIVE RENDERING, THE WINDOW WILL INSTEAD
+    // SHOW THIS AWT Canvas, AND THE GAME LOOP WILL DRAW THE JPanel
+    // INTO ITS BufferStrategy AND FLIP IT ONTO THE SCREEN ITSELF,
+    // RATHER THAN ASKING SWING TO REPAINT AND WAITING FOR IT
+    protected boolean activeRendering;
+    protected Canvas activeCanvas;
+    protected volatile BufferStrategy bufferStrategy;
     
     // HERE ARE OUR GUI COMPONENTS. NOTE WE ARE NOT
     // USING SWING COMPONENTS (except JFrame and JPanel),
@@ -65,17 +84,25 @@ public abstract class MiniGame
     protected TreeMap<String, Sprite> guiButtons;
     protected TreeMap<String, Sprite> guiDecor;
     protected TreeMap<String, Sprite> guiDialogs;
+
+    // SO THAT A CLICK ONLY HAS TO BE TESTED AGAINST THE BUTTONS
+    // UNDER IT, ALL THE BUTTONS ARE ALSO KEPT IN THIS GRID. IT'S
+    // REBUILT, IN guiButtons ORDER, WHENEVER guiButtons HAS BEEN
+    // CHANGED SINCE THE LAST TIME
+    public static final float BUTTON_GRID_CELL_SIZE = 128.0f;
+    private SpriteGrid buttonGrid;
+    private int buttonGridModCount;
+    private ArrayList<Sprite> buttonsClicked;
     
-    // WE WILL HAVE A TIMER RUNNING IN ANOTHER THREAD THAT
+    // WE WILL HAVE A LOOP RUNNING IN ANOTHER THREAD THAT
     // EVERY frameDuration AMOUNT OF TIME WILL UPDATE THE
-    // GAME AND THEN RENDER. frameDuration IS THE NUMBER
-    // OF MILLISECONDS IT TAKES PER FRAME, SO WE CAN
-    // CALCULATE IT BY DIVIDING 1000 (MILLISECONDS IN 1 SEC.)
-    // BY THE FRAME RATE, i.e. framesPerSecond
-    // NOTE THAT THE GameTimerTask WILL HAVE THE CUSTOM
-    // BEHAVIOUR PERFORMED EACH FRAME BY THE GAME
-    protected Timer gameTimer;
-    protected MiniGameTimerTask gameTimerTask;
+    // GAME, AND RENDER IT ON ITS OWN SCHEDULE. frameDuration
+    // IS THE NUMBER OF MILLISECONDS IT TAKES PER FRAME, SO WE
+    // CAN CALCULATE IT BY DIVIDING 1000 (MILLISECONDS IN 1 SEC.)
+    // BY THE FRAME RATE, i.e. framesPerSecond. IF THE GAME
+    // DOESN'T PROVIDE ITS OWN LOOP VIA setGameLoop, A
+    // MiniGameFixedStepLoop WILL BE USED
+    protected MiniGameLoop gameLoop;
     protected int framesPerSecond;
     protected int frameDuration;
     
@@ -98,6 +125,16 @@ public abstract class MiniGame
     
     // THIS CLASS WILL PLAY OUR AUDIO FILES
     protected AudioManager audio;
+
+    // AND THIS ONE LOADS, CONVERTS, AND KEEPS OUR IMAGES
+    protected MiniGameImageCache imageCache;
+
+    // AND THIS ONE LOADS ASSETS IN THE BACKGROUND WHILE WE SET UP
+    protected MiniGameAssetLoader assetLoader;
+
+    // AND THIS ONE MEASURES HOW LONG EVERYTHING ACTUALLY TAKES
+    protected MiniGameMetrics metrics;
+    public static final String METRICS_FILE_SUFFIX = "_metrics.csv";
     
     // THIS ALLOWS FOR CUSTOM KEY RESPONSES
     protected KeyListener keyHandler;
@@ -122,6 +159,33 @@ public abstract class MiniGame
         keyHandler = initKeyHandler;
     }
 
+    /**
+     * Mutator method for the loop that will drive this game. Note that this
+     * must be called before initMiniGame, otherwise the default fixed-step
+     * loop will be used.
+     *
+     * @param initGameLoop the loop to update and render this game.
+     */
+    public void setGameLoop(MiniGameLoop initGameLoop)
+    {
+        gameLoop = initGameLoop;
+    }
+
+    /**
+     * Mutator method for choosing active rendering, which draws each frame
+     * directly to the screen from the game loop thread rather than through
+     * Swing's repaint mechanism. Note that this must be called before
+     * initMiniGame, and that the canvas should build frame snapshots, since
+     * it will be painted from the game loop thread.
+     *
+     * @param initActiveRendering true to use active rendering, false to let
+     * Swing do the painting.
+     */
+    public void setActiveRendering(boolean initActiveRendering)
+    {
+        activeRendering = initActiveRendering;
+    }
+
     /**
      * This method sets up everything, including the GUI and the game data, and
      * starts the timer, which will force state updates and rendering. Note that
@@ -147,11 +211,20 @@ public abstract class MiniGame
         // WE ARE NOT UPDATING THE GAME DATA SIMULATEOUSLY
         // IN TWO DIFFERENT THREADS
         dataLock = new ReentrantLock();
+        frameBuffer = new MiniGameFrameBuffer();
+        metrics = new MiniGameMetrics();
+
+        // ALL IMAGES WILL BE LOADED THROUGH HERE
+        imageCache = new MiniGameImageCache();
+
+        // AND ASSETS MAY BE LOADED AHEAD OF TIME THROUGH HERE
+        assetLoader = new MiniGameAssetLoader(this);
 
         // AND NOW SETUP THE FULL APP. NOTE THAT SOME
         // OF THESE METHODS MUST BE CUSTOMLY PROVIDED FOR
         // EACH GAME IMPLEMENTATION
         initAudio();
+        initAssetManifest();
         initWindow();
         initData();
         initGUI();
@@ -163,9 +236,15 @@ public abstract class MiniGame
     }
 
     // ACCESSOR METHODS
+        // getAssetLoader
         // getAudio
         // getDataModel
         // getFrameRate
+        // getFrameSnapshot
+        // getGameLoop
+        // getImageCache
+        // getMetrics
+        // getRenderInterpolation
         // getGUIButtons
         // getGUIDecor
         // getBoundaryLeft
@@ -173,7 +252,19 @@ public abstract class MiniGame
         // getBoundaryTop
         // getBoundaryBottom
         // getCanvas
+        // isActiveRendering
     
+    /**
+     * For accessing the asset loader, which may be used to find out how much
+     * of the game's art has been loaded.
+     *
+     * @return the MiniGameAssetLoader that preloads this game's assets.
+     */
+    public MiniGameAssetLoader getAssetLoader()
+    {
+        return assetLoader;
+    }
+
     /**
      * For accessing the audio player.
      *
@@ -204,6 +295,69 @@ public abstract class MiniGame
         return framesPerSecond;
     }
 
+    /**
+     * For accessing the most recently published frame. Note that this should
+     * only be called by the thread doing the painting, which may then draw the
+     * frame without locking the game data.
+     *
+     * @return the newest frame snapshot, which will be empty if no frame has
+     * been published yet.
+     */
+    public MiniGameFrameSnapshot getFrameSnapshot()
+    {
+        return frameBuffer.getFrontFrame();
+    }
+
+    /**
+     * For accessing the loop driving this game.
+     *
+     * @return the MiniGameLoop that updates and renders this game.
+     */
+    public MiniGameLoop getGameLoop()
+    {
+        return gameLoop;
+    }
+
+    /**
+     * For accessing the image cache, which has statistics about the images
+     * this game has loaded.
+     *
+     * @return the MiniGameImageCache that loads all this game's images.
+     */
+    public MiniGameImageCache getImageCache()
+    {
+        return imageCache;
+    }
+
+    /**
+     * For accessing the measurements of how this game is performing, like how
+     * long updates and renders are taking.
+     *
+     * @return the MiniGameMetrics recording this game's performance.
+     */
+    public MiniGameMetrics getMetrics()
+    {
+        return metrics;
+    }
+
+    /**
+     * For accessing how far the current render is past the last update, as a
+     * fraction of one frame. Rendering code may use this to draw moving
+     * sprites between updates. Note that this is always 0 when the game is
+     * not being updated.
+     *
+     * @return the interpolation value, between 0 (inclusive) and 1
+     * (exclusive).
+     */
+    public float getRenderInterpolation()
+    {
+        if ((gameLoop == null) || data.isPaused() || !data.inProgress())
+        {
+            return 0.0f;
+        }
+        return gameLoop.getInterpolation();
+    }
+
     /**
      * For accessing the game GUI buttons.
      *
@@ -287,6 +441,17 @@ public abstract class MiniGame
         return canvas;
     }
 
+    /**
+     * For testing if this game draws its frames using active rendering.
+     *
+     * @return true if the game loop draws frames directly to the screen,
+     * false if Swing does the painting.
+     */
+    public boolean isActiveRendering()
+    {
+        return activeRendering;
+    }
+
     // INITIALIZATION METHODS - NOTE THAT METHODS ARE MADE private
     // IN PART TO REMOVE THE TEMPTATION TO OVERRIDE THEM
         // initAudio
@@ -335,9 +500,12 @@ public abstract class MiniGame
     private void initGUI()
     {
         // INITIALIZE OUR GUI DATA STRUCTURES
-        guiButtons = new TreeMap();
+        guiButtons = new ButtonMap();
         guiDecor = new TreeMap();
         guiDialogs = new TreeMap();
+        buttonGrid = new SpriteGrid(BUTTON_GRID_CELL_SIZE);
+        buttonGridModCount = -1;
+        buttonsClicked = new ArrayList();
 
         // WE'LL LAYOUT EVERYTHING USING PIXEL COORDINATES
         window.setLayout(null);
@@ -347,8 +515,22 @@ public abstract class MiniGame
         initGUIControls();
 
         // ULTIMATELY, EVERYTHING SHOULD BE INSIDE THE CANVAS
-        window.add(canvas);
         canvas.setBounds(0, 0, data.getGameWidth(), data.getGameHeight());
+        if (activeRendering)
+        {
+            // THE PANEL STAYS OUT OF THE WINDOW, WE'LL JUST ASK IT TO
+            // PAINT INTO OUR BUFFERS, SO IT DOESN'T NEED ITS OWN
+            canvas.setDoubleBuffered(false);
+            activeCanvas = new Canvas();
+            activeCanvas.setIgnoreRepaint(true);
+            activeCanvas.setBounds(0, 0, data.getGameWidth(), data.getGameHeight());
+            window.setIgnoreRepaint(true);
+            window.add(activeCanvas);
+        }
+        else
+        {
+            window.add(canvas);
+        }
     }
 
     /**
@@ -360,12 +542,19 @@ public abstract class MiniGame
     {
         // SETUP THE LOW-LEVEL HANDLER WHO WILL
         // RELAY EVERYTHING
+        // RELAY EVERYTHING. NOTE THAT EVENTS COME FROM WHATEVER
+        // IS ACTUALLY IN THE WINDOW
         MiniGameEventRelayer mger = new MiniGameEventRelayer(this);
-        canvas.addMouseListener(mger);
-        canvas.addMouseMotionListener(mger);
+        Component eventSource = canvas;
+        if (activeRendering)
+        {
+            eventSource = activeCanvas;
+        }
+        eventSource.addMouseListener(mger);
+        eventSource.addMouseMotionListener(mger);
         window.setFocusable(true);
         window.addKeyListener(mger);
-        canvas.addKeyListener(mger);
+        eventSource.addKeyListener(mger);
 
         // AND NOW LET THE GAME DEVELOPER PROVIDE
         // CUSTOM HANDLERS
@@ -373,15 +562,17 @@ public abstract class MiniGame
     }
 
     /**
-     * Sets up the timer, which will run the game updates and rendering on a
-     * fixed-interval schedule.
+     * Sets up and starts the game loop, which will run the game updates and
+     * rendering on a fixed-interval schedule.
      */
     public void initTimer()
     {
-        gameTimerTask = new MiniGameTimerTask(this);
-        dataLock = new ReentrantLock();
-        gameTimer = new Timer();
-        gameTimer.scheduleAtFixedRate(gameTimerTask, 100, frameDuration);
+        // USE THE DEFAULT LOOP UNLESS THE GAME PROVIDED ONE
+        if (gameLoop == null)
+        {
+            gameLoop = new MiniGameFixedStepLoop(this);
+        }
+        gameLoop.start();
     }
 
     // METHODS FOR RUNNING THE GAME, PROVIDING THE MECHANICS
@@ -391,11 +582,16 @@ public abstract class MiniGame
     // ABOUT ALL THE INTERNAL WORKINGS OF SWING
         // beginUsingData
         // endUsingData
+        // exportMetrics
         // killApplication
         // loadImage
         // loadImageWithColorKey
+        // loadStripedImage
         // processButtonPress
+        // renderFrame
+        // renderFrameSnapshot
         // startGame
+        // stepSimulation
         // update
     
     /**
@@ -406,7 +602,17 @@ public abstract class MiniGame
     public void beginUsingData()
     {
         //  System.out.println("LOCK #" + dataLock.getHoldCount() + ": " + dataLock);
-        dataLock.lock();
+        // ONLY TIME THE WAIT IF THERE IS ONE
+        if (dataLock.tryLock())
+        {
+            metrics.recordLockWait(0);
+        }
+        else
+        {
+            long waitStart = System.nanoTime();
+            dataLock.lock();
+            metrics.recordLockWait(System.nanoTime() - waitStart);
+        }
     }
 
     /**
@@ -420,19 +626,45 @@ public abstract class MiniGame
         dataLock.unlock();
     }
 
+    /**
+     * Writes this game's performance measurements to a file named after the
+     * game in the working directory. Where they were written, or why they
+     * couldn't be, is shown at the bottom of the metrics overlay.
+     *
+     * @return the file written, or null if it couldn't be written.
+     */
+    public File exportMetrics()
+    {
+        File metricsFile = new File(name.replaceAll("\\W", "") + METRICS_FILE_SUFFIX);
+        try
+        {
+            metrics.exportToFile(metricsFile);
+            metrics.setOverlayMessage("Exported to " + metricsFile.getName());
+            return metricsFile;
+        }
+        catch (IOException ioe)
+        {
+            metrics.setOverlayMessage("Export failed: " + ioe.getMessage());
+            return null;
+        }
+    }
+
     /**
      * Call this method to kill the application associated with this object,
      * including closing the window.
      */
     public void killApplication()
     {
+        gameLoop.stop();
         window.setVisible(false);
         System.exit(0);
     }
 
     /**
      * Loads an image using the fileName as the full path, returning the
-     * constructed and completely loaded Image.
+     * constructed and completely loaded Image. Note that each file is only
+     * loaded once, after which the same image is returned, so the image must
+     * not be changed by whoever asks for it.
      *
      * @param fileName full path and name of the location of the image file to
      * be loaded.
@@ -441,34 +673,14 @@ public abstract class MiniGame
      */
     public BufferedImage loadImage(String fileName)
     {
-        // LOAD THE IMAGE
-        Toolkit tk = Toolkit.getDefaultToolkit();
-        Image img = tk.createImage(fileName);
-
-        // AND WAIT FOR IT TO BE FULLY IN MEMORY BEFORE RETURNING IT
-        MediaTracker tracker = new MediaTracker(window);
-        tracker.addImage(img, 0);
-        try
-        {
-            tracker.waitForID(0);
-        } catch (InterruptedException ie)
-        {
-            System.out.println("MT INTERRUPTED");
-        }
-
-        // WE'LL USE BUFFERED IMAGES
-        BufferedImage imageToLoad = new BufferedImage(img.getWidth(null), img.getHeight(null), BufferedImage.TYPE_INT_ARGB);
-        Graphics g = imageToLoad.getGraphics();
-        g.drawImage(img, 0, 0, null);
-
-        return imageToLoad;
+        return imageCache.getImage(fileName);
     }
 
     /**
      * Loads an image using the fileName as the full path, returning the
      * constructed and completely loaded Image. Note that all pixels with the
      * colorKey value will be made transparent by setting their alpha values to
-     * 0.
+     * 0. As with loadImage, the image is shared and must not be changed.
      *
      * @param fileName full path and name of the location of the image file to
      * be loaded.
@@ -478,46 +690,33 @@ public abstract class MiniGame
      */
     public BufferedImage loadImageWithColorKey(String fileName, Color colorKey)
     {
-        // LOAD THE IMAGE
-        Toolkit tk = Toolkit.getDefaultToolkit();
-        Image img = tk.createImage(fileName);
+        return imageCache.getImageWithColorKey(fileName, colorKey);
+    }
 
-        // WAIT FOR IT TO BE FULLY IN MEMORY
-        MediaTracker tracker = new MediaTracker(window);
-        tracker.addImage(img, 0);
+    /**
+     * Opens a tall image that will be decoded a strip at a time, as it's
+     * drawn, rather than all at once. Unlike loadImage, the image isn't
+     * shared, so each call opens the file again.
+     *
+     * @param fileName full path and name of the location of the image file to
+     * be opened.
+     *
+     * @param stripHeight the height of each strip, in pixels.
+     *
+     * @param maxStrips the most decoded strips to keep at once.
+     *
+     * @return the opened image, with none of it decoded yet.
+     */
+    public MiniGameStripedImage loadStripedImage(String fileName, int stripHeight, int maxStrips)
+    {
         try
         {
-            tracker.waitForAll();
-        } catch (Exception e)
-        {
-            e.printStackTrace();
+            return new MiniGameStripedImage(fileName, stripHeight, maxStrips);
         }
-
-        // WE'LL PUT IT IN A BufferedImage OBJECT SINCE
-        // THAT TYPE OF IMAGE PROVIDES US ACCESS TO
-        // ALL OF THE RAW DATA
-        BufferedImage imageToLoad = new BufferedImage(img.getWidth(null), img.getHeight(null), BufferedImage.TYPE_INT_ARGB);
-        Graphics g = imageToLoad.getGraphics();
-        g.drawImage(img, 0, 0, null);
-
-        // NOW MAKE ALL PIXELS WITH COLOR (64, 224, 224) TRANSPARENT
-        WritableRaster raster = imageToLoad.getRaster();
-        int[] dummy = null;
-        for (int i = 0; i < raster.getWidth(); i++)
+        catch (IOException ioe)
         {
-            for (int j = 0; j < raster.getHeight(); j++)
-            {
-                int[] pixel = raster.getPixel(i, j, dummy);
-                if ((pixel[0] == colorKey.getRed())
-                        && (pixel[1] == colorKey.getGreen())
-                        && (pixel[2] == colorKey.getBlue()))
-                {
-                    pixel[3] = 0;
-                    raster.setPixel(i, j, pixel);
-                }
-            }
+            throw new IllegalArgumentException("Unable to load image " + fileName, ioe);
         }
-        return imageToLoad;
     }
 
     /**
@@ -538,8 +737,26 @@ public abstract class MiniGame
     {
         boolean buttonClickPerformed = false;
 
-        // TEST EACH BUTTON
-        for (Sprite s : guiButtons.values())
+        // GAMES PUT THEIR BUTTONS STRAIGHT INTO guiButtons, SO
+        // IF THEY'VE CHANGED ANY, REBUILD THE GRID FROM SCRATCH
+        int modCount = ((ButtonMap) guiButtons).modCount;
+        if (buttonGridModCount != modCount)
+        {
+            buttonGrid.clear();
+            for (Sprite s : guiButtons.values())
+            {
+                buttonGrid.add(s);
+            }
+            buttonGridModCount = modCount;
+        }
+
+        // TEST EACH BUTTON UNDER THE POINT IN THE SAME ORDER AS
+        // guiButtons, WHICH IS THE ORDER THEY WERE ADDED TO THE GRID,
+        // SO THAT IF BUTTONS DO OVERLAP THE SAME ONE WINS AS ALWAYS
+        buttonsClicked.clear();
+        buttonGrid.getSpritesAt(x, y, buttonsClicked);
+        Collections.sort(buttonsClicked, GRID_ORDER);
+        for (Sprite s : buttonsClicked)
         {
             // THIS METHOD WILL INVOKE actionPeformed WHEN NEEDED
             buttonClickPerformed = s.testForClick(this, x, y);
@@ -554,6 +771,63 @@ public abstract class MiniGame
         return false;
     }
 
+    /**
+     * Called by the game loop each time the game should be drawn. Normally
+     * this asks the canvas to repaint itself, but with active rendering the
+     * frame is drawn and shown right away on the calling thread.
+     */
+    public void renderFrame()
+    {
+        BufferStrategy strategy = bufferStrategy;
+        if (!activeRendering)
+        {
+            canvas.repaint();
+        }
+        else if (strategy != null)
+        {
+            // THE BUFFERS MAY BE LOST AT ANY TIME, IN WHICH
+            // CASE WE JUST HAVE TO DRAW THE FRAME AGAIN
+            do
+            {
+                do
+                {
+                    Graphics g = strategy.getDrawGraphics();
+                    try
+                    {
+                        canvas.paint(g);
+                    }
+                    finally
+                    {
+                        g.dispose();
+                    }
+                } while (strategy.contentsRestored());
+                strategy.show();
+            } while (strategy.contentsLost());
+
+            // MAKE SURE IT ACTUALLY GETS TO THE SCREEN NOW
+            Toolkit.getDefaultToolkit().sync();
+        }
+    }
+
+    /**
+     * Draws the most recently published frame, and the metrics overlay if it's
+     * active, timing how long it takes. Canvases should call this from their
+     * paintComponent methods.
+     *
+     * @param g the Graphics context to draw to.
+     *
+     * @param interpolation how far past the last update to draw moving
+     * sprites, usually getRenderInterpolation, or 0 to draw them where they
+     * are.
+     */
+    public void renderFrameSnapshot(Graphics g, float interpolation)
+    {
+        long renderStart = System.nanoTime();
+        getFrameSnapshot().render(g, interpolation);
+        metrics.renderOverlay(g);
+        metrics.recordRenderTime(System.nanoTime() - renderStart);
+    }
+
     /**
      * Displays the window, allowing the MiniGame application to start accepting
      * user input and allow the user to actually play the game.
@@ -572,11 +846,56 @@ public abstract class MiniGame
         int correctedWidth = data.getGameWidth() + insets.left + insets.right;
         int correctedHeight = data.getGameHeight() + insets.top + insets.bottom;
         window.setSize(correctedWidth, correctedHeight);
+
+        // NOW THAT THE CANVAS IS ON SCREEN WE CAN GIVE IT BUFFERS
+        if (activeRendering)
+        {
+            activeCanvas.createBufferStrategy(2);
+            bufferStrategy = activeCanvas.getBufferStrategy();
+        }
+    }
+
+    /**
+     * Called by the game loop once per fixed timestep, this method updates the
+     * game, making sure to get a lock on the data before doing so and
+     * releasing the data when done. If the canvas builds frame snapshots, the
+     * snapshot for this frame is recorded and published before the lock is
+     * released.
+     */
+    public void stepSimulation()
+    {
+        try
+        {
+            // LOCK THE DATA
+            beginUsingData();
+
+            // UPDATE THE GAME
+            long updateStart = System.nanoTime();
+            update();
+
+            // AND RECORD WHAT IT NOW LOOKS LIKE
+            if (canvas instanceof MiniGameFrameBuilder)
+            {
+                MiniGameFrameSnapshot frame = frameBuffer.getBackFrame();
+                frame.setAccelerated(activeRendering);
+                ((MiniGameFrameBuilder) canvas).buildFrame(frame);
+                frameBuffer.publish();
+            }
+            metrics.recordUpdateTime(System.nanoTime() - updateStart);
+        }
+        finally
+        {
+            // RELEASE IT, SINCE THE OTHER THREAD
+            // MIGHT WANT TO UPDATE STUFF IN RESPONSE
+            // TO A MOUSE CLICK
+            endUsingData();
+        }
+        metrics.endFrame();
     }
 
     /**
-     * This method is called once per frame and updates and renders everything
-     * in the game including the gui.
+     * This method is called once per frame and updates everything in the game
+     * including the gui.
      */
     public void update()
     {
@@ -638,4 +957,85 @@ public abstract class MiniGame
      * conditions.
      */
     public abstract void updateGUI();
+
+    // OPTIONAL METHODS - GAMES MAY OVERRIDE THESE IF NEEDED
+        // initAssetManifest
+
+    /**
+     * Called right after the audio is initialized, this is where a game may
+     * add all the assets it will need to the asset loader, which starts
+     * loading them in the background while the rest of the game is set up.
+     * By default nothing is preloaded.
+     */
+    public void initAssetManifest()
+    {
+    }
+
+    // PRIVATE HELPER CLASSES
+
+    // FOR SORTING BUTTONS BY THE ORDER THEY WERE ADDED TO THE GRID
+    private static final Comparator<Sprite> GRID_ORDER = new Comparator<Sprite>()
+    {
+        @Override
+        public int compare(Sprite s1, Sprite s2)
+        {
+            return Integer.compare(s1.gridOrder, s2.gridOrder);
+        }
+    };
+
+    /**
+     * The map used for guiButtons, which counts the changes made to it so
+     * that we know when the button grid has to be rebuilt. Note that only
+     * changes made through the map itself are counted, not ones made through
+     * its key, value, or entry views.
+     */
+    private static class ButtonMap extends TreeMap<String, Sprite>
+    {
+        private static final long serialVersionUID = 1L;
+
+        // HOW MANY TIMES THE BUTTONS HAVE BEEN CHANGED
+        private int modCount;
+
+        @Override
+        public Sprite put(String key, Sprite value)
+        {
+            modCount++;
+            return super.put(key, value);
+        }
+
+        @Override
+        public void putAll(Map<? extends String, ? extends Sprite> map)
+        {
+            modCount++;
+            super.putAll(map);
+        }
+
+        @Override
+        public Sprite remove(Object key)
+        {
+            modCount++;
+            return super.remove(key);
+        }
+
+        @Override
+        public void clear()
+        {
+            modCount++;
+            super.clear();
+        }
+
+        @Override
+        public Map.Entry<String, Sprite> pollFirstEntry()
+        {
+            modCount++;
+            return super.pollFirstEntry();
+        }
+
+        @Override
+        public Map.Entry<String, Sprite> pollLastEntry()
+        {
+            modCount++;
+            return super.pollLastEntry();
+        }
+    }
 }
\ No newline at end of file
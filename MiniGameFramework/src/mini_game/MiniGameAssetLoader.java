@@ -0,0 +1,378 @@
+package mini_game;
+
+import java.awt.Color;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * This class loads a game's images, audio, and data files in the background,
+ * several at a time, so that the game doesn't have to sit and wait for each
+ * one in turn before showing anything. A game lists what it will need, its
+ * manifest, by adding assets, each of which starts loading right away. Assets
+ * are put in named groups, like the assets needed for the first screen, and
+ * the game may wait for just that group before it starts.
+ *
+ * Images go straight into the game's MiniGameImageCache, so later calls to
+ * loadImage simply get the already loaded image, or wait for it if it's still
+ * loading.
+ *
+ * @author Richard McKenna
+ * @version 1.0
+ */
+public class MiniGameAssetLoader
+{
+    // THE MOST THREADS WE'LL USE FOR LOADING, SINCE DISK AND AUDIO
+    // DEVICES DON'T GET FASTER WITH MORE THREADS THAN THIS
+    public static final int MAX_LOADING_THREADS = 4;
+
+    // IDLE LOADING THREADS GO AWAY AFTER THIS MANY SECONDS
+    private static final long THREAD_TIMEOUT = 2;
+
+    // THE GAME WE'RE LOADING FOR
+    private MiniGame game;
+
+    // THE THREADS DOING THE LOADING
+    private ThreadPoolExecutor executor;
+
+    // EVERYTHING WE'VE BEEN ASKED TO LOAD, BY GROUP
+    private HashMap<String, ArrayList<Future<?>>> groups;
+
+    // THE CONTENTS OF DATA FILES WE'VE LOADED, BY FILE NAME
+    private ConcurrentHashMap<String, Future<byte[]>> files;
+
+    // THE NAMES OF ANY ASSETS THAT COULDN'T BE LOADED
+    private ArrayList<String> failures;
+
+    // FOR REPORTING PROGRESS
+    private AtomicInteger numAssets;
+    private AtomicInteger numLoaded;
+
+    /**
+     * This constructor sets up the loading threads, which won't actually be
+     * started until there's something to load.
+     *
+     * @param initGame the game whose assets will be loaded.
+     */
+    public MiniGameAssetLoader(MiniGame initGame)
+    {
+        game = initGame;
+        groups = new HashMap();
+        files = new ConcurrentHashMap();
+        failures = new ArrayList();
+        numAssets = new AtomicInteger();
+        numLoaded = new AtomicInteger();
+
+        // LOADING THREADS SHOULDN'T KEEP THE APP ALIVE
+        int numThreads = Math.max(1, Math.min(MAX_LOADING_THREADS, Runtime.getRuntime().availableProcessors()));
+        executor = new ThreadPoolExecutor(numThreads, numThreads, THREAD_TIMEOUT, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new ThreadFactory()
+                {
+                    private AtomicInteger threadCounter = new AtomicInteger();
+
+                    @Override
+                    public Thread newThread(Runnable r)
+                    {
+                        Thread t = new Thread(r, "MiniGameAssetLoader-" + threadCounter.incrementAndGet());
+                        t.setDaemon(true);
+                        return t;
+                    }
+                });
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    // ACCESSOR METHODS
+        // getNumAssets
+        // getNumLoaded
+        // getProgress
+        // getFailures
+        // isDone
+
+    /**
+     * Accessor method for the number of assets in the manifest.
+     *
+     * @return the number of assets added so far.
+     */
+    public int getNumAssets()
+    {
+        return numAssets.get();
+    }
+
+    /**
+     * Accessor method for the number of assets that are done loading,
+     * including any that failed.
+     *
+     * @return the number of assets done loading.
+     */
+    public int getNumLoaded()
+    {
+        return numLoaded.get();
+    }
+
+    /**
+     * Accessor method for how much of the manifest has been loaded, which is
+     * handy for drawing a progress bar.
+     *
+     * @return the fraction of assets done loading, between 0 and 1.
+     */
+    public float getProgress()
+    {
+        int total = numAssets.get();
+        if (total == 0)
+        {
+            return 1.0f;
+        }
+        return (float) numLoaded.get() / (float) total;
+    }
+
+    /**
+     * Accessor method for the names of any assets that couldn't be loaded.
+     *
+     * @return a copy of the list of failed file names.
+     */
+    public ArrayList<String> getFailures()
+    {
+        synchronized (failures)
+        {
+            return new ArrayList(failures);
+        }
+    }
+
+    /**
+     * Tests to see if everything in the manifest is done loading.
+     *
+     * @return true if all assets are done loading, false otherwise.
+     */
+    public boolean isDone()
+    {
+        return numLoaded.get() == numAssets.get();
+    }
+
+    // MANIFEST METHODS
+        // addImage
+        // addImageWithColorKey
+        // addAudio
+        // addFile
+
+    /**
+     * Adds an image to the manifest, which will start loading right away.
+     *
+     * @param group the group this image belongs to.
+     *
+     * @param fileName full path and name of the image file.
+     */
+    public void addImage(String group, final String fileName)
+    {
+        addAsset(group, fileName, new Callable<Object>()
+        {
+            @Override
+            public Object call()
+            {
+                return game.getImageCache().getImage(fileName);
+            }
+        });
+    }
+
+    /**
+     * Adds an image to the manifest that will have all colorKey pixels made
+     * transparent. It will start loading right away.
+     *
+     * @param group the group this image belongs to.
+     *
+     * @param fileName full path and name of the image file.
+     *
+     * @param colorKey the color to make transparent.
+     */
+    public void addImageWithColorKey(String group, final String fileName, final Color colorKey)
+    {
+        addAsset(group, fileName, new Callable<Object>()
+        {
+            @Override
+            public Object call()
+            {
+                return game.getImageCache().getImageWithColorKey(fileName, colorKey);
+            }
+        });
+    }
+
+    /**
+     * Adds an audio file to the manifest, which will start loading right away
+     * into the game's AudioManager. Note that the audio may not be played
+     * until its group has been waited for.
+     *
+     * @param group the group this audio belongs to.
+     *
+     * @param audioName the name the audio will be played by.
+     *
+     * @param fileName full path and name of the audio file.
+     */
+    public void addAudio(String group, final String audioName, final String fileName)
+    {
+        addAsset(group, fileName, new Callable<Object>()
+        {
+            @Override
+            public Object call() throws Exception
+            {
+                // THE AUDIO MANAGER ISN'T MEANT FOR MORE THAN
+                // ONE THREAD, SO ONLY ONE OF US USES IT AT A TIME
+                synchronized (game.getAudio())
+                {
+                    game.getAudio().loadAudio(audioName, fileName);
+                }
+                return audioName;
+            }
+        });
+    }
+
+    /**
+     * Adds a data file, like a level, to the manifest. Its contents will be
+     * read into memory right away, and may be picked up using takeFile.
+     *
+     * @param group the group this file belongs to.
+     *
+     * @param fileName full path and name of the data file.
+     */
+    public void addFile(String group, final String fileName)
+    {
+        Future<byte[]> fileFuture = addAsset(group, fileName, new Callable<byte[]>()
+        {
+            @Override
+            public byte[] call() throws Exception
+            {
+                return Files.readAllBytes(Paths.get(fileName));
+            }
+        });
+        files.put(fileName, fileFuture);
+    }
+
+    // LOADING METHODS
+        // awaitGroup
+        // takeFile
+
+    /**
+     * Waits until every asset in the group is done loading.
+     *
+     * @param group the group to wait for.
+     *
+     * @return true if all of the group's assets loaded, false if any failed.
+     */
+    public boolean awaitGroup(String group)
+    {
+        ArrayList<Future<?>> groupAssets;
+        synchronized (groups)
+        {
+            groupAssets = groups.get(group);
+            if (groupAssets == null)
+            {
+                return true;
+            }
+            groupAssets = new ArrayList(groupAssets);
+        }
+
+        boolean allLoaded = true;
+        for (Future<?> asset : groupAssets)
+        {
+            try
+            {
+                asset.get();
+            }
+            catch (InterruptedException ie)
+            {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+            catch (ExecutionException ee)
+            {
+                allLoaded = false;
+            }
+        }
+        return allLoaded;
+    }
+
+    /**
+     * Gets the contents of a preloaded data file, waiting for it if it's still
+     * loading. Note that the contents are only handed out once, after which
+     * the file must be read again, so that changes to the file will be seen.
+     *
+     * @param fileName full path and name of the data file.
+     *
+     * @return the contents of the file, or null if it wasn't preloaded or
+     * couldn't be read.
+     */
+    public byte[] takeFile(String fileName)
+    {
+        Future<byte[]> fileFuture = files.remove(fileName);
+        if (fileFuture == null)
+        {
+            return null;
+        }
+        try
+        {
+            return fileFuture.get();
+        }
+        catch (InterruptedException ie)
+        {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+        catch (ExecutionException ee)
+        {
+            return null;
+        }
+    }
+
+    // PRIVATE HELPER METHODS
+
+    /**
+     * Adds the asset to its group and starts loading it, keeping count of
+     * what's been loaded and what failed.
+     */
+    private <T> Future<T> addAsset(String group, final String fileName, final Callable<T> loader)
+    {
+        numAssets.incrementAndGet();
+        Future<T> asset = executor.submit(new Callable<T>()
+        {
+            @Override
+            public T call() throws Exception
+            {
+                try
+                {
+                    return loader.call();
+                }
+                catch (Exception e)
+                {
+                    synchronized (failures)
+                    {
+                        failures.add(fileName);
+                    }
+                    throw e;
+                }
+                finally
+                {
+                    numLoaded.incrementAndGet();
+                }
+            }
+        });
+        synchronized (groups)
+        {
+            ArrayList<Future<?>> groupAssets = groups.get(group);
+            if (groupAssets == null)
+            {
+                groupAssets = new ArrayList();
+                groups.put(group, groupAssets);
+            }
+            groupAssets.add(asset);
+        }
+        return asset;
+    }
+}
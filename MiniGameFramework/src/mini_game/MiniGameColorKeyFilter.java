@@ -0,0 +1,156 @@
+package mini_game;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * This class makes all the pixels of a given color in an image transparent,
+ * which is how we get transparency out of art that doesn't have any. It works
+ * directly on the image's array of packed pixels, one row after another, so
+ * it doesn't make any objects per pixel, and for big images it splits the
+ * rows up among all the processors.
+ *
+ * Note that getting at an image's pixel array like this means Java can no
+ * longer keep that image in video memory, so this should only be used on
+ * images that will be copied into another image before being drawn, which is
+ * what MiniGameImageCache does.
+ *
+ * @author Richard McKenna
+ * @version 1.0
+ */
+public class MiniGameColorKeyFilter
+{
+    // IMAGES WITH AT LEAST THIS MANY PIXELS ARE KEYED IN PARALLEL
+    public static final int PARALLEL_THRESHOLD = 256 * 256;
+
+    // AND EACH PARALLEL TASK WILL DO AT MOST THIS MANY ROWS
+    public static final int ROWS_PER_TASK = 32;
+
+    // USED FOR PULLING THE COLOR OUT OF A PACKED ARGB PIXEL
+    private static final int RGB_MASK = 0x00FFFFFF;
+
+    // THE THREADS WE USE FOR BIG IMAGES, MADE THE FIRST TIME WE NEED THEM
+    private static ForkJoinPool pool;
+
+    /**
+     * Makes all pixels in the image with the colorKey color transparent by
+     * setting their alpha values to 0.
+     *
+     * @param image the image to key, which must be a TYPE_INT_ARGB image.
+     *
+     * @param colorKey the color to make transparent. Its alpha is ignored.
+     */
+    public static void applyColorKey(BufferedImage image, Color colorKey)
+    {
+        if (image.getType() != BufferedImage.TYPE_INT_ARGB)
+        {
+            throw new IllegalArgumentException("Color keying requires a TYPE_INT_ARGB image");
+        }
+
+        // FIND WHERE THE PIXELS ARE IN THE BACKING ARRAY
+        WritableRaster raster = image.getRaster();
+        DataBufferInt dataBuffer = (DataBufferInt) raster.getDataBuffer();
+        SinglePixelPackedSampleModel sampleModel = (SinglePixelPackedSampleModel) raster.getSampleModel();
+        int[] pixels = dataBuffer.getData();
+        int scanlineStride = sampleModel.getScanlineStride();
+        int offset = dataBuffer.getOffset()
+                - (raster.getSampleModelTranslateY() * scanlineStride)
+                - raster.getSampleModelTranslateX();
+        int width = raster.getWidth();
+        int height = raster.getHeight();
+        int keyRGB = colorKey.getRGB() & RGB_MASK;
+
+        // SMALL IMAGES AREN'T WORTH SPLITTING UP
+        if ((width * height) < PARALLEL_THRESHOLD)
+        {
+            keyRows(pixels, offset, scanlineStride, width, 0, height, keyRGB);
+        }
+        else
+        {
+            getPool().invoke(new KeyRowsTask(pixels, offset, scanlineStride, width, 0, height, keyRGB));
+        }
+    }
+
+    /**
+     * Keys rows firstRow up to, but not including, endRow. This is the inner
+     * loop of the filter, so it's kept as simple as possible.
+     */
+    static void keyRows(int[] pixels, int offset, int scanlineStride, int width,
+            int firstRow, int endRow, int keyRGB)
+    {
+        for (int row = firstRow; row < endRow; row++)
+        {
+            int rowStart = offset + (row * scanlineStride);
+            int rowEnd = rowStart + width;
+            for (int i = rowStart; i < rowEnd; i++)
+            {
+                int pixel = pixels[i];
+                if ((pixel & RGB_MASK) == keyRGB)
+                {
+                    pixels[i] = pixel & RGB_MASK;
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets the shared pool of threads, making it if this is the first time.
+     */
+    private static synchronized ForkJoinPool getPool()
+    {
+        if (pool == null)
+        {
+            pool = new ForkJoinPool();
+        }
+        return pool;
+    }
+
+    /**
+     * This task keys a range of rows, splitting itself in half until the
+     * ranges are small enough to do directly.
+     */
+    private static class KeyRowsTask extends RecursiveAction
+    {
+        private static final long serialVersionUID = 1L;
+
+        private int[] pixels;
+        private int offset;
+        private int scanlineStride;
+        private int width;
+        private int firstRow;
+        private int endRow;
+        private int keyRGB;
+
+        KeyRowsTask(int[] initPixels, int initOffset, int initScanlineStride, int initWidth,
+                int initFirstRow, int initEndRow, int initKeyRGB)
+        {
+            pixels = initPixels;
+            offset = initOffset;
+            scanlineStride = initScanlineStride;
+            width = initWidth;
+            firstRow = initFirstRow;
+            endRow = initEndRow;
+            keyRGB = initKeyRGB;
+        }
+
+        @Override
+        protected void compute()
+        {
+            if ((endRow - firstRow) <= ROWS_PER_TASK)
+            {
+                keyRows(pixels, offset, scanlineStride, width, firstRow, endRow, keyRGB);
+            }
+            else
+            {
+                int middleRow = (firstRow + endRow) / 2;
+                invokeAll(new KeyRowsTask(pixels, offset, scanlineStride, width, firstRow, middleRow, keyRGB),
+                        new KeyRowsTask(pixels, offset, scanlineStride, width, middleRow, endRow, keyRGB));
+            }
+        }
+    }
+}
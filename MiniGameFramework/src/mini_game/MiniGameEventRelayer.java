@@ -123,7 +123,7 @@ public class MiniGameEventRelayer implements MouseListener, MouseMotionListener,
 
     /**
      * This key handler simply activates our debug text display, which may then
-     * be rendered by the canvas.
+     * be rendered by the canvas, as well as the performance metrics overlay.
      *
      * @param ke the event object, it contains information about the user
      * interaction, like which key was pressed.
@@ -131,6 +131,14 @@ public class MiniGameEventRelayer implements MouseListener, MouseMotionListener,
     @Override
     public void keyPressed(KeyEvent ke)
     {
+        // THE 'E' KEY EXPORTS THE PERFORMANCE METRICS. WE DON'T
+        // NEED THE DATA FOR THIS, SO WE DON'T HOLD UP THE GAME
+        if (ke.getKeyCode() == KeyEvent.VK_E)
+        {
+            game.exportMetrics();
+            return;
+        }
+
         try
         {
             game.beginUsingData();
@@ -160,6 +168,10 @@ public class MiniGameEventRelayer implements MouseListener, MouseMotionListener,
                 {
                     game.getDataModel().pause();
                 }
+            } // THE 'M' KEY TOGGLES THE PERFORMANCE METRICS OVERLAY
+            else if (ke.getKeyCode() == KeyEvent.VK_M)
+            {
+                game.getMetrics().toggleOverlay();
             } else
             {
                 game.getKeyHandler().keyPressed(ke);
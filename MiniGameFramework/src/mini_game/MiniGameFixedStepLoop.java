@@ -0,0 +1,171 @@
+package mini_game;
+
+/**
+ * This loop runs in its own thread and updates the game with a fixed
+ * timestep, meaning every update advances the game by exactly one frame's
+ * worth of time no matter how long rendering takes. Rendering happens on its
+ * own cadence, which may be faster than the update rate, in which case the
+ * game may use getInterpolation to draw moving things between updates. When
+ * the loop falls behind it will run several updates back to back, but never
+ * more than MAX_CATCH_UP_STEPS at once, after which the remaining time is
+ * dropped so the game slows down rather than spiraling.
+ *
+ * @author Richard McKenna
+ * @version 1.0
+ */
+public class MiniGameFixedStepLoop extends MiniGameLoop implements Runnable
+{
+    // THE MOST UPDATES WE'LL DO BETWEEN TWO RENDERS
+    public static final int MAX_CATCH_UP_STEPS = 5;
+
+    // HOW OFTEN WE RENDER IF THE GAME DOESN'T SAY OTHERWISE
+    public static final int DEFAULT_RENDER_RATE = 60;
+
+    // USED FOR CONVERTING BETWEEN MILLISECONDS AND NANOSECONDS
+    private static final long NANOS_PER_SECOND = 1000000000L;
+    private static final long NANOS_PER_MILLI = 1000000L;
+
+    // THE THREAD RUNNING THIS LOOP
+    private Thread loopThread;
+    private volatile boolean running;
+
+    // HOW MANY TIMES PER SECOND WE RENDER
+    private int renderRate;
+
+    // HOW FAR THE LAST RENDER WAS PAST THE LAST UPDATE
+    private volatile float interpolation;
+
+    /**
+     * This constructor stores the game to drive and uses the default render
+     * rate. Note that the update rate is always the game's frame rate.
+     *
+     * @param initGame the game to update and render.
+     */
+    public MiniGameFixedStepLoop(MiniGame initGame)
+    {
+        this(initGame, DEFAULT_RENDER_RATE);
+    }
+
+    /**
+     * This constructor stores the game to drive along with how many times per
+     * second it should be rendered.
+     *
+     * @param initGame the game to update and render.
+     *
+     * @param initRenderRate the number of renders per second.
+     */
+    public MiniGameFixedStepLoop(MiniGame initGame, int initRenderRate)
+    {
+        super(initGame);
+        renderRate = initRenderRate;
+    }
+
+    /**
+     * Accessor method for how far the current render is past the last update,
+     * as a fraction of one update.
+     *
+     * @return the interpolation value, between 0 (inclusive) and 1
+     * (exclusive).
+     */
+    @Override
+    public float getInterpolation()
+    {
+        return interpolation;
+    }
+
+    /**
+     * Starts the loop thread.
+     */
+    @Override
+    public void start()
+    {
+        running = true;
+        loopThread = new Thread(this, "MiniGameLoop");
+        loopThread.setDaemon(true);
+        loopThread.start();
+    }
+
+    /**
+     * Asks the loop thread to finish, which it will do after its current
+     * update or render.
+     */
+    @Override
+    public void stop()
+    {
+        running = false;
+        if (loopThread != null)
+        {
+            loopThread.interrupt();
+        }
+    }
+
+    /**
+     * This is the loop itself. It accumulates elapsed time, spends it in
+     * fixed-size updates, and renders whenever the next render is due,
+     * sleeping in between.
+     */
+    @Override
+    public void run()
+    {
+        long stepNanos = NANOS_PER_SECOND / game.getFrameRate();
+        long renderNanos = NANOS_PER_SECOND / Math.max(renderRate, 1);
+        long previousTime = System.nanoTime();
+        long nextRenderTime = previousTime;
+        long accumulator = 0;
+
+        while (running)
+        {
+            long now = System.nanoTime();
+            accumulator += now - previousTime;
+            previousTime = now;
+
+            // SPEND THE ELAPSED TIME ON FIXED UPDATES, BUT
+            // DON'T LET A LONG STALL TURN INTO A LONG BURST
+            int steps = 0;
+            while ((accumulator >= stepNanos) && (steps < MAX_CATCH_UP_STEPS))
+            {
+                game.stepSimulation();
+                accumulator -= stepNanos;
+                steps++;
+                ticks++;
+            }
+            if (accumulator >= stepNanos)
+            {
+                droppedSteps += accumulator / stepNanos;
+                accumulator %= stepNanos;
+            }
+            if (steps > 1)
+            {
+                skippedFrames += steps - 1;
+            }
+
+            // RENDER IF IT'S TIME
+            if (now >= nextRenderTime)
+            {
+                interpolation = (float) accumulator / (float) stepNanos;
+                game.renderFrame();
+                framesRendered++;
+                nextRenderTime += renderNanos;
+                if (nextRenderTime < now)
+                {
+                    nextRenderTime = now + renderNanos;
+                }
+            }
+
+            // AND SLEEP UNTIL THE NEXT UPDATE OR RENDER IS DUE
+            long nextStepTime = now + (stepNanos - accumulator);
+            long wakeTime = Math.min(nextStepTime, nextRenderTime);
+            long sleepNanos = wakeTime - System.nanoTime();
+            if (sleepNanos > 0)
+            {
+                try
+                {
+                    Thread.sleep(sleepNanos / NANOS_PER_MILLI, (int) (sleepNanos % NANOS_PER_MILLI));
+                } catch (InterruptedException ie)
+                {
+                    // WE'VE BEEN ASKED TO STOP
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package mini_game;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * This class hands frame snapshots from the update thread to the rendering
+ * thread without either one ever waiting on the other. The update thread
+ * always owns a back frame that it fills in, the rendering thread always
+ * owns a front frame that it draws, and a third, ready frame sits between
+ * them. Publishing swaps the back frame with the ready one and picking up a
+ * frame swaps the front frame with the ready one, so a frame is never changed
+ * while it's being drawn, and the renderer always gets the newest one.
+ *
+ * @author Richard McKenna
+ * @version 1.0
+ */
+public class MiniGameFrameBuffer
+{
+    // OWNED BY THE UPDATE THREAD
+    private MiniGameFrameSnapshot backFrame;
+
+    // OWNED BY THE RENDERING THREAD
+    private MiniGameFrameSnapshot frontFrame;
+
+    // SHARED BETWEEN THE TWO
+    private AtomicReference<MiniGameFrameSnapshot> readyFrame;
+
+    /**
+     * This constructor makes all three snapshots, all empty.
+     */
+    public MiniGameFrameBuffer()
+    {
+        backFrame = new MiniGameFrameSnapshot();
+        frontFrame = new MiniGameFrameSnapshot();
+        readyFrame = new AtomicReference(new MiniGameFrameSnapshot());
+    }
+
+    /**
+     * Called by the update thread to get an empty snapshot to fill in for the
+     * next frame.
+     *
+     * @return the cleared back frame.
+     */
+    public MiniGameFrameSnapshot getBackFrame()
+    {
+        backFrame.clear();
+        return backFrame;
+    }
+
+    /**
+     * Called by the update thread once it has filled in the back frame, this
+     * makes it available to the rendering thread.
+     */
+    public void publish()
+    {
+        backFrame.fresh = true;
+        backFrame = readyFrame.getAndSet(backFrame);
+    }
+
+    /**
+     * Called by the rendering thread to get the newest published frame. If
+     * nothing new has been published since the last call, the same frame is
+     * returned again.
+     *
+     * @return the frame to draw.
+     */
+    public MiniGameFrameSnapshot getFrontFrame()
+    {
+        if (readyFrame.get().fresh)
+        {
+            frontFrame.fresh = false;
+            frontFrame = readyFrame.getAndSet(frontFrame);
+        }
+        return frontFrame;
+    }
+}
@@ -0,0 +1,23 @@
+package mini_game;
+
+/**
+ * A game's rendering panel may implement this interface to have its frames
+ * drawn from snapshots. Each update, while the update thread still holds the
+ * data lock, the framework will ask the builder to record what the frame
+ * should look like, and it will then publish that snapshot so the panel can
+ * paint it later without touching, or locking, the game data.
+ *
+ * @author Richard McKenna
+ * @version 1.0
+ */
+public interface MiniGameFrameBuilder
+{
+    /**
+     * Records everything that should be drawn for the current frame, in the
+     * order it should be drawn. Note that this is called with the data lock
+     * held, so the game data may be read freely.
+     *
+     * @param frame the empty snapshot to fill in.
+     */
+    public void buildFrame(MiniGameFrameSnapshot frame);
+}
@@ -0,0 +1,430 @@
+package mini_game;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.Image;
+
+/**
+ * A MiniGameFrameSnapshot is a record of everything that needs to be drawn for
+ * one frame, in the order it should be drawn. It is filled in by the update
+ * thread while it holds the data lock, and is then handed off whole to the
+ * rendering thread via a MiniGameFrameBuffer, which means rendering never has
+ * to look at the live game data, and so never has to lock it.
+ *
+ * Note that snapshots are reused from frame to frame, so all the draw
+ * commands are kept in parallel arrays that only grow when a frame has more
+ * commands than any frame before it.
+ *
+ * @author Richard McKenna
+ * @version 1.0
+ */
+public class MiniGameFrameSnapshot
+{
+    // THE KINDS OF DRAW COMMANDS A SNAPSHOT CAN HOLD
+    private static final int SPRITE_COMMAND = 0;
+    private static final int IMAGE_COMMAND = 1;
+    private static final int FILL_RECT_COMMAND = 2;
+    private static final int DRAW_RECT_COMMAND = 3;
+    private static final int TEXT_COMMAND = 4;
+
+    // HOW MANY COMMANDS WE HAVE ROOM FOR AT FIRST
+    private static final int INITIAL_CAPACITY = 256;
+
+    // THE NUMBER OF COMMANDS IN THIS FRAME
+    private int numCommands;
+
+    // AND THE COMMANDS THEMSELVES. NOT EVERY COMMAND USES
+    // EVERY ARRAY, FOR EXAMPLE, ONLY SPRITES HAVE A STATE
+    private int[] kinds;
+    private float[] xs;
+    private float[] ys;
+    private float[] vXs;
+    private float[] vYs;
+    private int[] widths;
+    private int[] heights;
+    private int[] arcs;
+    private Object[] targets;
+    private int[] stateIDs;
+    private Font[] fonts;
+    private Color[] colors;
+
+    // SET WHEN THIS SNAPSHOT HAS BEEN PUBLISHED BUT NOT YET PICKED UP
+    volatile boolean fresh;
+
+    // WHEN TRUE, SPRITES ARE DRAWN USING THEIR HARDWARE ACCELERATED
+    // IMAGES, WHICH WE ONLY DO WHEN THE GAME IS ACTIVELY RENDERED
+    private boolean accelerated;
+
+    /**
+     * This constructor makes an empty snapshot with room for a reasonable
+     * number of commands.
+     */
+    public MiniGameFrameSnapshot()
+    {
+        allocate(INITIAL_CAPACITY);
+    }
+
+    /**
+     * Accessor method for the number of draw commands in this frame.
+     *
+     * @return the number of things this frame will draw.
+     */
+    public int getNumCommands()
+    {
+        return numCommands;
+    }
+
+    /**
+     * Accessor method for testing if sprites in this frame will be drawn using
+     * hardware accelerated images.
+     *
+     * @return true if accelerated images will be used, false otherwise.
+     */
+    public boolean isAccelerated()
+    {
+        return accelerated;
+    }
+
+    /**
+     * Mutator method for choosing whether sprites in this frame should be
+     * drawn using hardware accelerated images.
+     *
+     * @param initAccelerated true to draw sprites with accelerated images.
+     */
+    public void setAccelerated(boolean initAccelerated)
+    {
+        accelerated = initAccelerated;
+    }
+
+    /**
+     * Removes all draw commands so this snapshot may be filled again for a new
+     * frame. Note that the arrays are kept for reuse.
+     */
+    public void clear()
+    {
+        // LET GO OF THE OLD REFERENCES SO WE DON'T KEEP
+        // ANYTHING ALIVE THAT THE GAME HAS THROWN AWAY
+        for (int i = 0; i < numCommands; i++)
+        {
+            targets[i] = null;
+            fonts[i] = null;
+            colors[i] = null;
+        }
+        numCommands = 0;
+    }
+
+    // METHODS FOR RECORDING DRAW COMMANDS
+        // addSprite
+        // addImage
+        // addFilledRect
+        // addRect
+        // addText
+
+    /**
+     * Records that the s Sprite should be drawn at its current location in its
+     * current state.
+     *
+     * @param s the Sprite to draw.
+     */
+    public void addSprite(Sprite s)
+    {
+        addSprite(s.getSpriteType(), s.getStateID(), s.getX(), s.getY(), s.getVx(), s.getVy());
+    }
+
+    /**
+     * Records that a sprite of the given type and state should be drawn at the
+     * x, y location. The velocity is used only for interpolated rendering.
+     *
+     * @param type the SpriteType whose art to draw.
+     *
+     * @param state the state whose image to draw.
+     *
+     * @param x the x-axis location to draw at.
+     *
+     * @param y the y-axis location to draw at.
+     *
+     * @param vX the x-axis velocity of the sprite.
+     *
+     * @param vY the y-axis velocity of the sprite.
+     */
+    public void addSprite(SpriteType type, String state, float x, float y, float vX, float vY)
+    {
+        addSprite(type, SpriteType.getStateID(state), x, y, vX, vY);
+    }
+
+    /**
+     * Records that a sprite of the given type and state ID should be drawn at
+     * the x, y location. The velocity is used only for interpolated rendering.
+     *
+     * @param type the SpriteType whose art to draw.
+     *
+     * @param stateID the ID of the state whose image to draw.
+     *
+     * @param x the x-axis location to draw at.
+     *
+     * @param y the y-axis location to draw at.
+     *
+     * @param vX the x-axis velocity of the sprite.
+     *
+     * @param vY the y-axis velocity of the sprite.
+     */
+    public void addSprite(SpriteType type, int stateID, float x, float y, float vX, float vY)
+    {
+        int index = addCommand(SPRITE_COMMAND, x, y);
+        vXs[index] = vX;
+        vYs[index] = vY;
+        widths[index] = type.getWidth();
+        heights[index] = type.getHeight();
+        targets[index] = type;
+        stateIDs[index] = stateID;
+    }
+
+    /**
+     * Records that the img Image should be drawn at its own size at the x, y
+     * location.
+     *
+     * @param img the Image to draw.
+     *
+     * @param x the x-axis location to draw at.
+     *
+     * @param y the y-axis location to draw at.
+     */
+    public void addImage(Image img, int x, int y)
+    {
+        addImage(img, x, y, img.getWidth(null), img.getHeight(null));
+    }
+
+    /**
+     * Records that the img Image should be drawn scaled to width by height at
+     * the x, y location.
+     *
+     * @param img the Image to draw.
+     *
+     * @param x the x-axis location to draw at.
+     *
+     * @param y the y-axis location to draw at.
+     *
+     * @param width the width to draw the image at.
+     *
+     * @param height the height to draw the image at.
+     */
+    public void addImage(Image img, int x, int y, int width, int height)
+    {
+        int index = addCommand(IMAGE_COMMAND, x, y);
+        widths[index] = width;
+        heights[index] = height;
+        targets[index] = img;
+    }
+
+    /**
+     * Records that a filled, possibly rounded, rectangle should be drawn.
+     *
+     * @param color the color to fill with.
+     *
+     * @param x the x-axis location of the rectangle's left edge.
+     *
+     * @param y the y-axis location of the rectangle's top edge.
+     *
+     * @param width the width of the rectangle.
+     *
+     * @param height the height of the rectangle.
+     *
+     * @param arc the size of the rounded corners, 0 for square corners.
+     */
+    public void addFilledRect(Color color, int x, int y, int width, int height, int arc)
+    {
+        int index = addCommand(FILL_RECT_COMMAND, x, y);
+        widths[index] = width;
+        heights[index] = height;
+        arcs[index] = arc;
+        colors[index] = color;
+    }
+
+    /**
+     * Records that the outline of a rectangle should be drawn.
+     *
+     * @param color the color of the outline.
+     *
+     * @param x the x-axis location of the rectangle's left edge.
+     *
+     * @param y the y-axis location of the rectangle's top edge.
+     *
+     * @param width the width of the rectangle.
+     *
+     * @param height the height of the rectangle.
+     */
+    public void addRect(Color color, int x, int y, int width, int height)
+    {
+        int index = addCommand(DRAW_RECT_COMMAND, x, y);
+        widths[index] = width;
+        heights[index] = height;
+        colors[index] = color;
+    }
+
+    /**
+     * Records that the text should be drawn with its baseline starting at x, y.
+     *
+     * @param text the text to draw.
+     *
+     * @param font the font to draw the text in.
+     *
+     * @param color the color to draw the text in.
+     *
+     * @param x the x-axis location of the start of the text.
+     *
+     * @param y the y-axis location of the text's baseline.
+     */
+    public void addText(String text, Font font, Color color, int x, int y)
+    {
+        int index = addCommand(TEXT_COMMAND, x, y);
+        targets[index] = text;
+        fonts[index] = font;
+        colors[index] = color;
+    }
+
+    /**
+     * Draws every command in this snapshot, in the order they were recorded,
+     * into the g Graphics context. Sprites are pushed forward along their
+     * velocities by the interpolation amount.
+     *
+     * @param g the Graphics context to draw into.
+     *
+     * @param interpolation how far into the next frame to draw moving sprites,
+     * between 0 and 1.
+     */
+    public void render(Graphics g, float interpolation)
+    {
+        // THE SURFACE WE'RE DRAWING TO, NEEDED FOR ACCELERATED IMAGES
+        GraphicsConfiguration gc = null;
+        if (accelerated && (g instanceof Graphics2D))
+        {
+            gc = ((Graphics2D) g).getDeviceConfiguration();
+        }
+
+        for (int i = 0; i < numCommands; i++)
+        {
+            int x = (int) xs[i];
+            int y = (int) ys[i];
+            switch (kinds[i])
+            {
+                case SPRITE_COMMAND:
+                    SpriteType type = (SpriteType) targets[i];
+                    x = (int) (xs[i] + (vXs[i] * interpolation));
+                    y = (int) (ys[i] + (vYs[i] * interpolation));
+                    Image img;
+                    if (gc != null)
+                    {
+                        img = type.getAcceleratedStateImage(stateIDs[i], gc);
+                    }
+                    else
+                    {
+                        img = type.getStateImage(stateIDs[i]);
+                    }
+                    g.drawImage(img, x, y, widths[i], heights[i], null);
+                    break;
+                case IMAGE_COMMAND:
+                    g.drawImage((Image) targets[i], x, y, widths[i], heights[i], null);
+                    break;
+                case FILL_RECT_COMMAND:
+                    g.setColor(colors[i]);
+                    if (arcs[i] > 0)
+                    {
+                        g.fillRoundRect(x, y, widths[i], heights[i], arcs[i], arcs[i]);
+                    }
+                    else
+                    {
+                        g.fillRect(x, y, widths[i], heights[i]);
+                    }
+                    break;
+                case DRAW_RECT_COMMAND:
+                    g.setColor(colors[i]);
+                    g.drawRect(x, y, widths[i], heights[i]);
+                    break;
+                case TEXT_COMMAND:
+                    g.setFont(fonts[i]);
+                    g.setColor(colors[i]);
+                    g.drawString((String) targets[i], x, y);
+                    break;
+            }
+        }
+    }
+
+    // PRIVATE HELPER METHODS
+
+    /**
+     * Adds a new command of the given kind, growing the arrays if needed.
+     *
+     * @return the index of the new command.
+     */
+    private int addCommand(int kind, float x, float y)
+    {
+        if (numCommands == kinds.length)
+        {
+            grow();
+        }
+        int index = numCommands;
+        kinds[index] = kind;
+        xs[index] = x;
+        ys[index] = y;
+        vXs[index] = 0;
+        vYs[index] = 0;
+        arcs[index] = 0;
+        numCommands++;
+        return index;
+    }
+
+    /**
+     * Makes all the command arrays the given size.
+     */
+    private void allocate(int capacity)
+    {
+        kinds = new int[capacity];
+        xs = new float[capacity];
+        ys = new float[capacity];
+        vXs = new float[capacity];
+        vYs = new float[capacity];
+        widths = new int[capacity];
+        heights = new int[capacity];
+        arcs = new int[capacity];
+        targets = new Object[capacity];
+        stateIDs = new int[capacity];
+        fonts = new Font[capacity];
+        colors = new Color[capacity];
+    }
+
+    /**
+     * Doubles the size of all the command arrays, keeping what's in them.
+     */
+    private void grow()
+    {
+        int oldCapacity = kinds.length;
+        int[] oldKinds = kinds;
+        float[] oldXs = xs;
+        float[] oldYs = ys;
+        float[] oldVXs = vXs;
+        float[] oldVYs = vYs;
+        int[] oldWidths = widths;
+        int[] oldHeights = heights;
+        int[] oldArcs = arcs;
+        Object[] oldTargets = targets;
+        int[] oldStateIDs = stateIDs;
+        Font[] oldFonts = fonts;
+        Color[] oldColors = colors;
+        allocate(oldCapacity * 2);
+        System.arraycopy(oldKinds, 0, kinds, 0, oldCapacity);
+        System.arraycopy(oldXs, 0, xs, 0, oldCapacity);
+        System.arraycopy(oldYs, 0, ys, 0, oldCapacity);
+        System.arraycopy(oldVXs, 0, vXs, 0, oldCapacity);
+        System.arraycopy(oldVYs, 0, vYs, 0, oldCapacity);
+        System.arraycopy(oldWidths, 0, widths, 0, oldCapacity);
+        System.arraycopy(oldHeights, 0, heights, 0, oldCapacity);
+        System.arraycopy(oldArcs, 0, arcs, 0, oldCapacity);
+        System.arraycopy(oldTargets, 0, targets, 0, oldCapacity);
+        System.arraycopy(oldStateIDs, 0, stateIDs, 0, oldCapacity);
+        System.arraycopy(oldFonts, 0, fonts, 0, oldCapacity);
+        System.arraycopy(oldColors, 0, colors, 0, oldCapacity);
+    }
+}
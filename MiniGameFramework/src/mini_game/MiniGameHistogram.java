@@ -0,0 +1,349 @@
+package mini_game;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.PrintWriter;
+
+/**
+ * A MiniGameHistogram counts how often values of different sizes are
+ * recorded, like how long each frame took to update, so that we can find out
+ * things like the median or the worst 1% of frames later. Rather than keep
+ * every value, it keeps counts in buckets that get wider as the values get
+ * bigger, so that every value is known to within about 3% no matter how big
+ * it is, and recording a value never makes any objects. Two histograms may
+ * be merged by adding their buckets, which gives the same histogram as
+ * recording all the values in one, and only the buckets that have something
+ * in them are saved.
+ *
+ * Values may be recorded from any thread.
+ *
+ * @author Richard McKenna
+ * @version 1.0
+ */
+public class MiniGameHistogram
+{
+    // VALUES BELOW THIS ARE COUNTED EXACTLY, ONE BUCKET EACH
+    private static final int EXACT_BUCKETS = 64;
+
+    // AFTER THAT, EACH DOUBLING OF VALUES IS SPLIT INTO THIS MANY BUCKETS
+    private static final int BUCKETS_PER_DOUBLING = EXACT_BUCKETS / 2;
+
+    // ENOUGH BUCKETS FOR ANY POSITIVE long
+    private static final int NUM_BUCKETS = EXACT_BUCKETS + (57 * BUCKETS_PER_DOUBLING);
+
+    // THE NAME OF WHAT'S BEING MEASURED, FOR DISPLAYING AND EXPORTING
+    private String name;
+
+    // THE NUMBER OF VALUES IN EACH BUCKET
+    private long[] counts;
+
+    // SUMMARY OF EVERYTHING RECORDED
+    private long totalCount;
+    private long totalValue;
+    private long minValue;
+    private long maxValue;
+
+    /**
+     * This constructor makes an empty histogram.
+     *
+     * @param initName the name of what this histogram measures.
+     */
+    public MiniGameHistogram(String initName)
+    {
+        name = initName;
+        counts = new long[NUM_BUCKETS];
+        reset();
+    }
+
+    // ACCESSOR METHODS
+        // getName
+        // getCount
+        // getMin
+        // getMax
+        // getMean
+        // getValueAtPercentile
+
+    /**
+     * Accessor method for the name of what this histogram measures.
+     *
+     * @return the name of this histogram.
+     */
+    public String getName()
+    {
+        return name;
+    }
+
+    /**
+     * Accessor method for the number of values recorded.
+     *
+     * @return the number of values recorded since the last reset.
+     */
+    public synchronized long getCount()
+    {
+        return totalCount;
+    }
+
+    /**
+     * Accessor method for the smallest value recorded.
+     *
+     * @return the smallest value recorded, or 0 if none have been.
+     */
+    public synchronized long getMin()
+    {
+        return (totalCount == 0) ? 0 : minValue;
+    }
+
+    /**
+     * Accessor method for the largest value recorded.
+     *
+     * @return the largest value recorded, or 0 if none have been.
+     */
+    public synchronized long getMax()
+    {
+        return maxValue;
+    }
+
+    /**
+     * Accessor method for the average of the values recorded.
+     *
+     * @return the mean of all recorded values, or 0 if none have been.
+     */
+    public synchronized double getMean()
+    {
+        return (totalCount == 0) ? 0.0 : (double) totalValue / (double) totalCount;
+    }
+
+    /**
+     * Finds the value that the given percentage of recorded values are at or
+     * below. For example, a percentile of 99 gives the value that all but the
+     * worst 1% of values are within.
+     *
+     * @param percentile the percentage of values, between 0 and 100.
+     *
+     * @return the value at that percentile, or 0 if nothing has been
+     * recorded. Note that this is the top of the bucket the value fell in.
+     */
+    public synchronized long getValueAtPercentile(double percentile)
+    {
+        if (totalCount == 0)
+        {
+            return 0;
+        }
+        double fraction = Math.max(0.0, Math.min(100.0, percentile)) / 100.0;
+        long countAtPercentile = Math.max(1, (long) Math.ceil(fraction * totalCount));
+        long runningCount = 0;
+        for (int i = 0; i < NUM_BUCKETS; i++)
+        {
+            runningCount += counts[i];
+            if (runningCount >= countAtPercentile)
+            {
+                return Math.min(getBucketTop(i), maxValue);
+            }
+        }
+        return maxValue;
+    }
+
+    // MUTATOR METHODS
+        // record
+        // merge
+        // reset
+
+    /**
+     * Counts one more occurrence of value. Negative values are counted as 0.
+     *
+     * @param value the value to record.
+     */
+    public synchronized void record(long value)
+    {
+        if (value < 0)
+        {
+            value = 0;
+        }
+        counts[getBucket(value)]++;
+        totalCount++;
+        totalValue += value;
+        if (value < minValue)
+        {
+            minValue = value;
+        }
+        if (value > maxValue)
+        {
+            maxValue = value;
+        }
+    }
+
+    /**
+     * Adds everything recorded in another histogram to this one.
+     *
+     * @param histogramToMerge the histogram to add. It isn't changed.
+     */
+    public void merge(MiniGameHistogram histogramToMerge)
+    {
+        // COPY THE OTHER ONE FIRST, SO WE NEVER HOLD BOTH LOCKS
+        long[] mergeCounts;
+        long mergeTotalCount;
+        long mergeTotalValue;
+        long mergeMinValue;
+        long mergeMaxValue;
+        synchronized (histogramToMerge)
+        {
+            mergeCounts = histogramToMerge.counts.clone();
+            mergeTotalCount = histogramToMerge.totalCount;
+            mergeTotalValue = histogramToMerge.totalValue;
+            mergeMinValue = histogramToMerge.minValue;
+            mergeMaxValue = histogramToMerge.maxValue;
+        }
+        synchronized (this)
+        {
+            for (int i = 0; i < NUM_BUCKETS; i++)
+            {
+                counts[i] += mergeCounts[i];
+            }
+            totalCount += mergeTotalCount;
+            totalValue += mergeTotalValue;
+            minValue = Math.min(minValue, mergeMinValue);
+            maxValue = Math.max(maxValue, mergeMaxValue);
+        }
+    }
+
+    /**
+     * Forgets everything recorded so far.
+     */
+    public synchronized void reset()
+    {
+        for (int i = 0; i < NUM_BUCKETS; i++)
+        {
+            counts[i] = 0;
+        }
+        totalCount = 0;
+        totalValue = 0;
+        minValue = Long.MAX_VALUE;
+        maxValue = 0;
+    }
+
+    // SAVING AND LOADING METHODS
+        // writeTo
+        // readFrom
+
+    /**
+     * Writes everything recorded, with only the buckets that have values in
+     * them. Note that the name isn't written.
+     *
+     * @param dos where to write it.
+     *
+     * @throws IOException if it couldn't be written.
+     */
+    public synchronized void writeTo(DataOutputStream dos) throws IOException
+    {
+        int numUsedBuckets = 0;
+        for (int i = 0; i < NUM_BUCKETS; i++)
+        {
+            if (counts[i] > 0)
+            {
+                numUsedBuckets++;
+            }
+        }
+        dos.writeLong(totalCount);
+        dos.writeLong(totalValue);
+        dos.writeLong(minValue);
+        dos.writeLong(maxValue);
+        dos.writeShort(numUsedBuckets);
+        for (int i = 0; i < NUM_BUCKETS; i++)
+        {
+            if (counts[i] > 0)
+            {
+                dos.writeShort(i);
+                dos.writeLong(counts[i]);
+            }
+        }
+    }
+
+    /**
+     * Replaces everything recorded with what writeTo wrote.
+     *
+     * @param dis where to read it from.
+     *
+     * @throws IOException if it couldn't be read, or isn't a histogram.
+     */
+    public synchronized void readFrom(DataInputStream dis) throws IOException
+    {
+        reset();
+        totalCount = dis.readLong();
+        totalValue = dis.readLong();
+        minValue = dis.readLong();
+        maxValue = dis.readLong();
+        int numUsedBuckets = dis.readShort();
+        for (int i = 0; i < numUsedBuckets; i++)
+        {
+            int bucket = dis.readShort();
+            if ((bucket < 0) || (bucket >= NUM_BUCKETS))
+            {
+                throw new IOException("Bad histogram bucket " + bucket);
+            }
+            counts[bucket] = dis.readLong();
+        }
+    }
+
+    // EXPORTING METHODS
+        // writePercentiles
+
+    /**
+     * Writes how the recorded values are spread out, one line per bucket that
+     * has any values. Each line has this histogram's name, the top value of
+     * the bucket, the fraction of values at or below it, and the running
+     * count, separated by commas so it's easy to load into a spreadsheet.
+     *
+     * @param out where to write.
+     *
+     * @param unitDivisor what to divide values by before writing them, like
+     * 1000000 to write nanoseconds as milliseconds.
+     */
+    public synchronized void writePercentiles(PrintWriter out, double unitDivisor)
+    {
+        long runningCount = 0;
+        for (int i = 0; i < NUM_BUCKETS; i++)
+        {
+            if (counts[i] > 0)
+            {
+                runningCount += counts[i];
+                out.println(name
+                        + "," + (Math.min(getBucketTop(i), maxValue) / unitDivisor)
+                        + "," + ((double) runningCount / (double) totalCount)
+                        + "," + runningCount);
+            }
+        }
+    }
+
+    // PRIVATE HELPER METHODS
+
+    /**
+     * Finds which bucket value is counted in.
+     */
+    private static int getBucket(long value)
+    {
+        if (value < EXACT_BUCKETS)
+        {
+            return (int) value;
+        }
+        // SHIFT THE VALUE DOWN UNTIL IT'S IN THE TOP HALF OF
+        // THE EXACT RANGE, WHICH TELLS US ITS BUCKET
+        int shift = (63 - Long.numberOfLeadingZeros(value)) - 5;
+        int subBucket = (int) (value >>> shift) - BUCKETS_PER_DOUBLING;
+        return EXACT_BUCKETS + ((shift - 1) * BUCKETS_PER_DOUBLING) + subBucket;
+    }
+
+    /**
+     * Finds the largest value that would be counted in the bucket.
+     */
+    private static long getBucketTop(int bucket)
+    {
+        if (bucket < EXACT_BUCKETS)
+        {
+            return bucket;
+        }
+        int shift = ((bucket - EXACT_BUCKETS) / BUCKETS_PER_DOUBLING) + 1;
+        long subBucket = ((bucket - EXACT_BUCKETS) % BUCKETS_PER_DOUBLING) + BUCKETS_PER_DOUBLING;
+        return ((subBucket + 1) << shift) - 1;
+    }
+}
@@ -0,0 +1,514 @@
+package mini_game;
+
+import java.awt.AlphaComposite;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.GraphicsEnvironment;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.imageio.ImageIO;
+
+/**
+ * This class loads and keeps all the images used by a MiniGame. Each image
+ * file is only ever decoded once, no matter how many times it's asked for, and
+ * is converted into the same format as the screen so that drawing it doesn't
+ * require any conversion. Note that the images handed out are shared, so
+ * whoever asks for one must not change it.
+ *
+ * Images may be requested from any thread. If two threads ask for the same
+ * image at once, one decodes it and the other waits for it.
+ *
+ * @author Richard McKenna
+ * @version 1.0
+ */
+public class MiniGameImageCache
+{
+    // HERE ARE ALL THE IMAGES WE'VE LOADED, OR ARE LOADING, MAPPED BY
+    // THEIR FILE NAMES. KEYED IMAGES ALSO HAVE THE COLOR KEY IN THEIRS
+    private ConcurrentHashMap<String, CachedImage> images;
+
+    // FOR KEEPING TRACK OF HOW WELL THE CACHE IS DOING
+    private AtomicLong hits;
+    private AtomicLong misses;
+    private AtomicLong memoryUsage;
+
+    // THE SCREEN'S FORMAT, WHICH WILL BE null IF THERE IS NO SCREEN
+    private GraphicsConfiguration graphicsConfig;
+
+    // IF SET, KEYED IMAGES ARE SAVED HERE AFTER BEING KEYED SO THAT
+    // THE NEXT TIME THE GAME STARTS THEY CAN BE LOADED READY TO USE
+    private File colorKeyCacheDir;
+
+    /**
+     * This constructor makes an empty cache that will convert images to the
+     * default screen's format.
+     */
+    public MiniGameImageCache()
+    {
+        images = new ConcurrentHashMap();
+        hits = new AtomicLong();
+        misses = new AtomicLong();
+        memoryUsage = new AtomicLong();
+        if (!GraphicsEnvironment.isHeadless())
+        {
+            graphicsConfig = GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice().getDefaultConfiguration();
+        }
+    }
+
+    // ACCESSOR METHODS
+        // getHits
+        // getMisses
+        // getHitRate
+        // getMemoryUsage
+        // getNumImages
+        // getStatsText
+        // getColorKeyCacheDir
+
+    /**
+     * Accessor method for the number of requests for images that were already
+     * loaded.
+     *
+     * @return the number of cache hits.
+     */
+    public long getHits()
+    {
+        return hits.get();
+    }
+
+    /**
+     * Accessor method for the number of requests for images that had to be
+     * loaded.
+     *
+     * @return the number of cache misses.
+     */
+    public long getMisses()
+    {
+        return misses.get();
+    }
+
+    /**
+     * Accessor method for the fraction of requests that didn't require
+     * loading anything.
+     *
+     * @return the hit rate, between 0 and 1.
+     */
+    public double getHitRate()
+    {
+        long total = hits.get() + misses.get();
+        if (total == 0)
+        {
+            return 0.0;
+        }
+        return (double) hits.get() / (double) total;
+    }
+
+    /**
+     * Accessor method for approximately how much memory the pixels of all the
+     * cached images use.
+     *
+     * @return the number of bytes used by cached images.
+     */
+    public long getMemoryUsage()
+    {
+        return memoryUsage.get();
+    }
+
+    /**
+     * Accessor method for the number of images in the cache.
+     *
+     * @return the number of cached images.
+     */
+    public int getNumImages()
+    {
+        return images.size();
+    }
+
+    /**
+     * Builds a one line summary of the cache statistics, which is handy for
+     * debugging text.
+     *
+     * @return text describing the cache's hits, misses, and memory use.
+     */
+    public String getStatsText()
+    {
+        return "Image Cache: " + getNumImages() + " images, "
+                + getHits() + " hits, " + getMisses() + " misses, "
+                + (getMemoryUsage() / 1024) + " KB";
+    }
+
+    /**
+     * Accessor method for the directory where keyed images are saved.
+     *
+     * @return the directory of keyed images, or null if they aren't saved.
+     */
+    public File getColorKeyCacheDir()
+    {
+        return colorKeyCacheDir;
+    }
+
+    /**
+     * Mutator method for turning on, or off, the saving of keyed images. Once
+     * an image has been keyed and saved, later runs of the game will load the
+     * saved image rather than key it again. Note that a saved image is only
+     * used while its source file is unchanged.
+     *
+     * @param initColorKeyCacheDir the directory to save keyed images in, which
+     * will be made if needed, or null to stop saving them.
+     */
+    public void setColorKeyCacheDir(File initColorKeyCacheDir)
+    {
+        colorKeyCacheDir = initColorKeyCacheDir;
+        if (colorKeyCacheDir != null)
+        {
+            colorKeyCacheDir.mkdirs();
+        }
+    }
+
+    // LOADING METHODS
+        // getImage
+        // getImageWithColorKey
+        // evictImage
+        // evictImageWithColorKey
+        // clear
+
+    /**
+     * Gets the image stored in the fileName file, loading it if it hasn't
+     * been loaded already.
+     *
+     * @param fileName full path and name of the location of the image file to
+     * be loaded.
+     *
+     * @return the loaded image, in the screen's format. This image is shared,
+     * so it must not be changed.
+     */
+    public BufferedImage getImage(final String fileName)
+    {
+        return getCachedImage(fileName, new Callable<BufferedImage>()
+        {
+            @Override
+            public BufferedImage call() throws IOException
+            {
+                BufferedImage decodedImage = decodeImage(fileName);
+                return toCompatibleImage(decodedImage, decodedImage.getColorModel().getTransparency());
+            }
+        });
+    }
+
+    /**
+     * Gets the image stored in the fileName file with all pixels of the
+     * colorKey color made transparent, loading it if it hasn't been loaded
+     * already.
+     *
+     * @param fileName full path and name of the location of the image file to
+     * be loaded.
+     *
+     * @param colorKey the color to make transparent.
+     *
+     * @return the loaded image, in the screen's format. This image is shared,
+     * so it must not be changed.
+     */
+    public BufferedImage getImageWithColorKey(final String fileName, final Color colorKey)
+    {
+        String key = getColorKeyedKey(fileName, colorKey);
+        return getCachedImage(key, new Callable<BufferedImage>()
+        {
+            @Override
+            public BufferedImage call() throws IOException
+            {
+                // MAYBE WE'VE ALREADY KEYED IT ON AN EARLIER RUN
+                File keyedFile = getKeyedFile(fileName, colorKey);
+                if ((keyedFile != null) && keyedFile.exists())
+                {
+                    try
+                    {
+                        return toCompatibleImage(decodeImage(keyedFile.getPath()), Transparency.TRANSLUCENT);
+                    }
+                    catch (IOException ioe)
+                    {
+                        // IT'S NO GOOD, SO WE'LL JUST KEY IT AGAIN
+                        keyedFile.delete();
+                    }
+                }
+
+                // WE NEED DIRECT ACCESS TO THE PIXELS TO KEY THEM
+                BufferedImage keyedImage = toArgbImage(decodeImage(fileName));
+                MiniGameColorKeyFilter.applyColorKey(keyedImage, colorKey);
+                if (keyedFile != null)
+                {
+                    saveKeyedImage(keyedImage, keyedFile);
+                }
+                return toCompatibleImage(keyedImage, Transparency.TRANSLUCENT);
+            }
+        });
+    }
+
+    /**
+     * Takes the image stored in the fileName file out of the cache, so its
+     * memory may be reclaimed once nobody else is using it. It will be loaded
+     * again if it's asked for again. Nothing happens if it isn't cached.
+     *
+     * @param fileName full path and name of the image file.
+     */
+    public void evictImage(String fileName)
+    {
+        evict(fileName);
+    }
+
+    /**
+     * Takes the image stored in the fileName file, keyed with colorKey, out of
+     * the cache, just like evictImage does.
+     *
+     * @param fileName full path and name of the image file.
+     *
+     * @param colorKey the color that was made transparent.
+     */
+    public void evictImageWithColorKey(String fileName, Color colorKey)
+    {
+        evict(getColorKeyedKey(fileName, colorKey));
+    }
+
+    /**
+     * Empties the cache. Note that images already handed out stay usable.
+     */
+    public void clear()
+    {
+        synchronized (images)
+        {
+            images.clear();
+            memoryUsage.set(0);
+        }
+    }
+
+    // PRIVATE HELPER METHODS
+
+    /**
+     * Makes the key a keyed image is cached under.
+     */
+    private String getColorKeyedKey(String fileName, Color colorKey)
+    {
+        return fileName + "#" + Integer.toHexString(colorKey.getRGB());
+    }
+
+    /**
+     * Takes the image for the key out of the cache, and stops counting its
+     * memory. An image still loading hasn't been counted yet, and won't be
+     * once it's no longer in the cache.
+     */
+    private void evict(String key)
+    {
+        synchronized (images)
+        {
+            CachedImage task = images.remove(key);
+            if (task != null)
+            {
+                memoryUsage.addAndGet(-task.countedBytes);
+                task.countedBytes = 0;
+            }
+        }
+    }
+
+    /**
+     * Starts counting the memory of an image that just finished loading,
+     * but only if it's still in the cache, since one that was evicted or
+     * cleared while loading will never be uncounted.
+     */
+    private void countMemoryUsage(String key, CachedImage task, BufferedImage image)
+    {
+        synchronized (images)
+        {
+            if (images.get(key) == task)
+            {
+                task.countedBytes = getMemoryUsage(image);
+                memoryUsage.addAndGet(task.countedBytes);
+            }
+        }
+    }
+
+    /**
+     * Figures out about how much memory the image's pixels use.
+     */
+    private long getMemoryUsage(BufferedImage image)
+    {
+        long bytesPerPixel = Math.max(1, image.getColorModel().getPixelSize() / 8);
+        return (long) image.getWidth() * image.getHeight() * bytesPerPixel;
+    }
+
+    /**
+     * Finds the image for the key, using the loader to load it if it isn't
+     * already in the cache.
+     */
+    private BufferedImage getCachedImage(String key, Callable<BufferedImage> loader)
+    {
+        CachedImage task = images.get(key);
+        boolean loadedHere = false;
+        if (task == null)
+        {
+            // NOBODY HAS ASKED FOR IT YET, BUT SOMEONE MAY BE
+            // ASKING AT THIS VERY MOMENT, SO ONLY ONE OF US LOADS
+            CachedImage newTask = new CachedImage(loader);
+            task = images.putIfAbsent(key, newTask);
+            if (task == null)
+            {
+                task = newTask;
+                misses.incrementAndGet();
+                newTask.run();
+                loadedHere = true;
+            }
+            else
+            {
+                hits.incrementAndGet();
+            }
+        }
+        else
+        {
+            hits.incrementAndGet();
+        }
+
+        try
+        {
+            BufferedImage image = task.get();
+            if (loadedHere)
+            {
+                countMemoryUsage(key, task, image);
+            }
+            return image;
+        }
+        catch (InterruptedException ie)
+        {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while loading " + key, ie);
+        }
+        catch (ExecutionException ee)
+        {
+            // DON'T REMEMBER THE FAILURE, SO IT MAY BE TRIED AGAIN
+            images.remove(key, task);
+            throw new IllegalArgumentException("Unable to load image " + key, ee.getCause());
+        }
+    }
+
+    /**
+     * Reads the image in fileName from disk.
+     */
+    private BufferedImage decodeImage(String fileName) throws IOException
+    {
+        BufferedImage decodedImage = ImageIO.read(new File(fileName));
+        if (decodedImage == null)
+        {
+            throw new IOException("Unsupported image format: " + fileName);
+        }
+        return decodedImage;
+    }
+
+    /**
+     * Copies the image into a TYPE_INT_ARGB image, unless it already is one.
+     */
+    private BufferedImage toArgbImage(BufferedImage image)
+    {
+        if (image.getType() == BufferedImage.TYPE_INT_ARGB)
+        {
+            return image;
+        }
+        BufferedImage argbImage = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g2 = argbImage.createGraphics();
+        g2.setComposite(AlphaComposite.Src);
+        g2.drawImage(image, 0, 0, null);
+        g2.dispose();
+        return argbImage;
+    }
+
+    /**
+     * Copies the image into one in the screen's format, which can be drawn
+     * without any conversion.
+     */
+    private BufferedImage toCompatibleImage(BufferedImage image, int transparency)
+    {
+        BufferedImage compatibleImage;
+        if (graphicsConfig == null)
+        {
+            // NO SCREEN, SO THE OLD FORMAT IS AS GOOD AS ANY
+            compatibleImage = toArgbImage(image);
+        }
+        else if (image.getColorModel().equals(graphicsConfig.getColorModel(transparency)))
+        {
+            // IT'S ALREADY COMPATIBLE
+            compatibleImage = image;
+        }
+        else
+        {
+            compatibleImage = graphicsConfig.createCompatibleImage(image.getWidth(), image.getHeight(), transparency);
+            Graphics2D g2 = compatibleImage.createGraphics();
+            g2.setComposite(AlphaComposite.Src);
+            g2.drawImage(image, 0, 0, null);
+            g2.dispose();
+        }
+        return compatibleImage;
+    }
+
+    /**
+     * Figures out where the keyed version of fileName would be saved, which
+     * depends on the source file's name, size, and modification time, as well
+     * as the color key, so that changing any of them means keying again.
+     */
+    private File getKeyedFile(String fileName, Color colorKey)
+    {
+        if (colorKeyCacheDir == null)
+        {
+            return null;
+        }
+        File sourceFile = new File(fileName);
+        String keyedName = sourceFile.getName()
+                + "." + Integer.toHexString(sourceFile.getAbsolutePath().hashCode())
+                + "." + Long.toHexString(sourceFile.length())
+                + "." + Long.toHexString(sourceFile.lastModified())
+                + "." + Integer.toHexString(colorKey.getRGB())
+                + ".png";
+        return new File(colorKeyCacheDir, keyedName);
+    }
+
+    /**
+     * Saves the keyed image, writing to a temporary file first so that a
+     * half-written image is never mistaken for a good one.
+     */
+    private void saveKeyedImage(BufferedImage keyedImage, File keyedFile)
+    {
+        File tempFile = new File(keyedFile.getPath() + ".tmp");
+        try
+        {
+            if (ImageIO.write(keyedImage, "png", tempFile))
+            {
+                tempFile.renameTo(keyedFile);
+            }
+        }
+        catch (IOException ioe)
+        {
+            // NOT A PROBLEM, WE'LL JUST KEY IT AGAIN NEXT TIME
+        }
+        finally
+        {
+            tempFile.delete();
+        }
+    }
+
+    /**
+     * An image in the cache, which may still be loading, along with how
+     * much of the memory usage it's been counted for.
+     */
+    private static class CachedImage extends FutureTask<BufferedImage>
+    {
+        // ONLY CHANGED WHILE HOLDING THE LOCK ON THE IMAGES
+        long countedBytes;
+
+        CachedImage(Callable<BufferedImage> loader)
+        {
+            super(loader);
+        }
+    }
+}
@@ -0,0 +1,503 @@
+package mini_game;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.util.zip.CRC32;
+
+/**
+ * This class reads and writes .zom level files, which every MiniGame and
+ * the level editor share. A level file holds the layout of a level, which
+ * is how many tiles go in each cell of its grid, and may also hold deals
+ * for the level that are known to be winnable, so a game doesn't have to
+ * make them. Games that don't use deals just ignore them.
+ *
+ * Level files start with LEVEL_MAGIC, then the format version, the flags
+ * saying which optional sections follow, and the grid dimensions. Then
+ * comes the height of each cell, column by column, packed 4 to an int. If
+ * the file has deals, the number of deals, tiles per deal, the difficulty
+ * they were made with, and the size of each match class come next, followed
+ * by the match class of every tile of every deal, also packed 4 to an int.
+ * The file ends with a checksum of everything before it.
+ *
+ * Level files from before there was a header are just the dimensions and
+ * then one int per cell, and are still read.
+ *
+ * Files are read from a ByteBuffer, which may be mapped straight from the
+ * file or be part of a level pack, and each array of ints is read in one go.
+ *
+ * @author Richard McKenna
+ * @version 1.0
+ */
+public class MiniGameLevelFile
+{
+    // THIS STARTS EVERY LEVEL FILE WITH A HEADER, IT SPELLS ZOML
+    public static final int LEVEL_MAGIC = 0x5A4F4D4C;
+    public static final int LEVEL_FORMAT_VERSION = 1;
+
+    // USED FOR FILES WITHOUT A HEADER
+    public static final int LEGACY_FORMAT_VERSION = 0;
+
+    // SET IN THE FLAGS IF THE FILE HAS DEALS
+    public static final int HAS_DEALS_FLAG = 1;
+
+    // NO GRID DIMENSION MAY BE BIGGER THAN THIS, SO A BIGGER ONE
+    // MEANS THE FILE ISN'T A LEVEL
+    public static final int MAX_GRID_DIMENSION = 255;
+
+    // THE FORMAT VERSION OF THE FILE THIS WAS READ FROM
+    private int formatVersion;
+
+    // THE LAYOUT
+    private int gridColumns;
+    private int gridRows;
+    private int[][] grid;
+
+    // THE DEALS, IF THERE ARE ANY
+    private int numDeals;
+    private int numDealTiles;
+    private float dealDifficulty;
+    private int[] dealClassSizes;
+    private int[] packedDeals;
+
+    /**
+     * Constructor for a level with the given layout and no deals.
+     *
+     * @param initGrid The number of tiles in each cell, indexed
+     * [column][row].
+     *
+     * @param initGridColumns The number of columns in the grid.
+     *
+     * @param initGridRows The number of rows in the grid.
+     */
+    public MiniGameLevelFile(int[][] initGrid, int initGridColumns, int initGridRows)
+    {
+        formatVersion = LEVEL_FORMAT_VERSION;
+        grid = initGrid;
+        gridColumns = initGridColumns;
+        gridRows = initGridRows;
+    }
+
+    // ACCESSOR METHODS
+        // - getFormatVersion
+        // - getGridColumns
+        // - getGridRows
+        // - getGrid
+        // - getNumTiles
+        // - getNumDeals
+        // - getDealDifficulty
+        // - getDealClassSizes
+        // - getDeal
+
+    /**
+     * Accessor method for the format version of the file this was read
+     * from.
+     *
+     * @return The format version, or LEGACY_FORMAT_VERSION for files
+     * without a header.
+     */
+    public int getFormatVersion()
+    {
+        return formatVersion;
+    }
+
+    /**
+     * Accessor method for the number of columns in the grid.
+     *
+     * @return The number of columns.
+     */
+    public int getGridColumns()
+    {
+        return gridColumns;
+    }
+
+    /**
+     * Accessor method for the number of rows in the grid.
+     *
+     * @return The number of rows.
+     */
+    public int getGridRows()
+    {
+        return gridRows;
+    }
+
+    /**
+     * Accessor method for the layout.
+     *
+     * @return The number of tiles in each cell, indexed [column][row].
+     */
+    public int[][] getGrid()
+    {
+        return grid;
+    }
+
+    /**
+     * Accessor method for the number of tiles the layout has room for.
+     *
+     * @return The total of all the cells.
+     */
+    public int getNumTiles()
+    {
+        int numTiles = 0;
+        for (int i = 0; i < gridColumns; i++)
+        {
+            for (int j = 0; j < gridRows; j++)
+            {
+                numTiles += grid[i][j];
+            }
+        }
+        return numTiles;
+    }
+
+    /**
+     * Accessor method for the number of deals in the file.
+     *
+     * @return The number of deals, which may be 0.
+     */
+    public int getNumDeals()
+    {
+        return numDeals;
+    }
+
+    /**
+     * Accessor method for the difficulty the deals were made with.
+     *
+     * @return The deal difficulty, from 0 to 1.
+     */
+    public float getDealDifficulty()
+    {
+        return dealDifficulty;
+    }
+
+    /**
+     * Accessor method for the number of tiles of each match class the
+     * deals were made with. A deal may only be used with the same tiles.
+     *
+     * @return The size of each match class, or null if there are no deals.
+     */
+    public int[] getDealClassSizes()
+    {
+        return dealClassSizes;
+    }
+
+    /**
+     * Builds one of the deals.
+     *
+     * @param index The deal to build, from 0 to getNumDeals() - 1.
+     *
+     * @return The match class of each tile, indexed [column][row][z],
+     * bottom tile first.
+     */
+    public int[][][] getDeal(int index)
+    {
+        int[][][] deal = new int[gridColumns][gridRows][];
+        int tileIndex = index * numDealTiles;
+        for (int i = 0; i < gridColumns; i++)
+        {
+            for (int j = 0; j < gridRows; j++)
+            {
+                deal[i][j] = new int[grid[i][j]];
+                for (int k = 0; k < grid[i][j]; k++)
+                {
+                    deal[i][j][k] = unpackByte(packedDeals, tileIndex);
+                    tileIndex++;
+                }
+            }
+        }
+        return deal;
+    }
+
+    // MUTATOR METHODS
+        // - setDeals
+
+    /**
+     * Sets the deals to save with the layout.
+     *
+     * @param deals The deals, each indexed [column][row][z] like those
+     * from getDeal. Every match class must be less than 256.
+     *
+     * @param initDealDifficulty The difficulty the deals were made with.
+     *
+     * @param initDealClassSizes The number of tiles of each match class
+     * the deals were made with.
+     */
+    public void setDeals(int[][][][] deals, float initDealDifficulty, int[] initDealClassSizes)
+    {
+        numDeals = deals.length;
+        numDealTiles = getNumTiles();
+        dealDifficulty = initDealDifficulty;
+        dealClassSizes = initDealClassSizes;
+        packedDeals = new int[((numDeals * numDealTiles) + 3) / 4];
+        int tileIndex = 0;
+        for (int d = 0; d < numDeals; d++)
+        {
+            for (int i = 0; i < gridColumns; i++)
+            {
+                for (int j = 0; j < gridRows; j++)
+                {
+                    for (int k = 0; k < grid[i][j]; k++)
+                    {
+                        packByte(packedDeals, tileIndex, deals[d][i][j][k]);
+                        tileIndex++;
+                    }
+                }
+            }
+        }
+    }
+
+    // READING AND WRITING METHODS
+        // - map
+        // - read
+        // - toByteArray
+
+    /**
+     * Maps a file into memory, so it may be read without copying it first.
+     *
+     * @param fileToMap The file.
+     *
+     * @return The file's contents.
+     *
+     * @throws IOException If the file couldn't be opened.
+     */
+    public static ByteBuffer map(File fileToMap) throws IOException
+    {
+        RandomAccessFile raf = new RandomAccessFile(fileToMap, "r");
+        try
+        {
+            FileChannel channel = raf.getChannel();
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        finally
+        {
+            // THE MAPPING STAYS VALID AFTER THE FILE IS CLOSED
+            raf.close();
+        }
+    }
+
+    /**
+     * Reads a level from the buffer, from its position to its limit. The
+     * buffer itself isn't changed.
+     *
+     * @param buffer The level file's contents.
+     *
+     * @return The level.
+     *
+     * @throws IOException If the buffer doesn't hold a level, or it's
+     * damaged.
+     */
+    public static MiniGameLevelFile read(ByteBuffer buffer) throws IOException
+    {
+        ByteBuffer levelBuffer = buffer.slice().order(ByteOrder.BIG_ENDIAN);
+        if (levelBuffer.remaining() < 8)
+        {
+            throw new IOException("Level file too short");
+        }
+        if (levelBuffer.getInt(0) != LEVEL_MAGIC)
+        {
+            return readLegacy(levelBuffer);
+        }
+
+        // MAKE SURE NOTHING'S DAMAGED BEFORE READING ANY OF IT
+        int checksumPosition = levelBuffer.limit() - 4;
+        if (checksumPosition < 16)
+        {
+            throw new IOException("Level file too short");
+        }
+        if (levelBuffer.getInt(checksumPosition) != calculateChecksum(levelBuffer, checksumPosition))
+        {
+            throw new IOException("Damaged level file");
+        }
+
+        // THE HEADER
+        levelBuffer.position(4);
+        int initFormatVersion = levelBuffer.getShort();
+        int flags = levelBuffer.getShort();
+        if ((initFormatVersion < 1) || (initFormatVersion > LEVEL_FORMAT_VERSION))
+        {
+            throw new IOException("Unknown level format version " + initFormatVersion);
+        }
+        int initGridColumns = levelBuffer.getInt();
+        int initGridRows = levelBuffer.getInt();
+        checkDimensions(initGridColumns, initGridRows);
+
+        // THE HEIGHT MAP, ALL IN ONE READ
+        IntBuffer ints = levelBuffer.asIntBuffer();
+        int[] packedHeights = new int[((initGridColumns * initGridRows) + 3) / 4];
+        ints.get(packedHeights);
+        int[][] newGrid = new int[initGridColumns][initGridRows];
+        for (int i = 0; i < initGridColumns; i++)
+        {
+            for (int j = 0; j < initGridRows; j++)
+            {
+                newGrid[i][j] = unpackByte(packedHeights, (i * initGridRows) + j);
+            }
+        }
+        MiniGameLevelFile level = new MiniGameLevelFile(newGrid, initGridColumns, initGridRows);
+        level.formatVersion = initFormatVersion;
+
+        // AND THE DEALS, IF THERE ARE ANY
+        if ((flags & HAS_DEALS_FLAG) != 0)
+        {
+            level.numDeals = ints.get();
+            level.numDealTiles = ints.get();
+            level.dealDifficulty = Float.intBitsToFloat(ints.get());
+            int numClasses = ints.get();
+            if ((level.numDeals < 0) || (level.numDealTiles != level.getNumTiles())
+                    || (numClasses < 0) || (numClasses > ints.remaining()))
+            {
+                throw new IOException("Damaged level deals");
+            }
+            level.dealClassSizes = new int[numClasses];
+            ints.get(level.dealClassSizes);
+            long numPackedInts = ((((long)level.numDeals) * level.numDealTiles) + 3) / 4;
+            if (numPackedInts > ints.remaining())
+            {
+                throw new IOException("Damaged level deals");
+            }
+            level.packedDeals = new int[(int)numPackedInts];
+            ints.get(level.packedDeals);
+        }
+        return level;
+    }
+
+    /**
+     * Builds the level file, with a header and checksum.
+     *
+     * @return The whole file.
+     *
+     * @throws IOException Note that this writes to memory, not a file, so
+     * this should never happen.
+     */
+    public byte[] toByteArray() throws IOException
+    {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        DataOutputStream dos = new DataOutputStream(baos);
+        dos.writeInt(LEVEL_MAGIC);
+        dos.writeShort(LEVEL_FORMAT_VERSION);
+        dos.writeShort((numDeals > 0) ? HAS_DEALS_FLAG : 0);
+        dos.writeInt(gridColumns);
+        dos.writeInt(gridRows);
+
+        // THE HEIGHT MAP
+        int[] packedHeights = new int[((gridColumns * gridRows) + 3) / 4];
+        for (int i = 0; i < gridColumns; i++)
+        {
+            for (int j = 0; j < gridRows; j++)
+            {
+                packByte(packedHeights, (i * gridRows) + j, grid[i][j]);
+            }
+        }
+        for (int i = 0; i < packedHeights.length; i++)
+        {
+            dos.writeInt(packedHeights[i]);
+        }
+
+        // THE DEALS
+        if (numDeals > 0)
+        {
+            dos.writeInt(numDeals);
+            dos.writeInt(numDealTiles);
+            dos.writeInt(Float.floatToIntBits(dealDifficulty));
+            dos.writeInt(dealClassSizes.length);
+            for (int i = 0; i < dealClassSizes.length; i++)
+            {
+                dos.writeInt(dealClassSizes[i]);
+            }
+            for (int i = 0; i < packedDeals.length; i++)
+            {
+                dos.writeInt(packedDeals[i]);
+            }
+        }
+
+        // AND THE CHECKSUM OF ALL OF IT
+        byte[] bytes = baos.toByteArray();
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+        dos.writeInt((int)crc.getValue());
+        return baos.toByteArray();
+    }
+
+    // PRIVATE HELPER METHODS
+
+    /**
+     * Reads a level file without a header, which is just the dimensions
+     * and then one int per cell.
+     */
+    private static MiniGameLevelFile readLegacy(ByteBuffer levelBuffer) throws IOException
+    {
+        IntBuffer ints = levelBuffer.asIntBuffer();
+        int initGridColumns = ints.get();
+        int initGridRows = ints.get();
+        checkDimensions(initGridColumns, initGridRows);
+        if (ints.remaining() < (initGridColumns * initGridRows))
+        {
+            throw new IOException("Level file too short");
+        }
+
+        // ALL THE CELLS IN ONE READ, THEN SPLIT INTO COLUMNS
+        int[] cells = new int[initGridColumns * initGridRows];
+        ints.get(cells);
+        int[][] newGrid = new int[initGridColumns][initGridRows];
+        for (int i = 0; i < initGridColumns; i++)
+        {
+            System.arraycopy(cells, i * initGridRows, newGrid[i], 0, initGridRows);
+        }
+        MiniGameLevelFile level = new MiniGameLevelFile(newGrid, initGridColumns, initGridRows);
+        level.formatVersion = LEGACY_FORMAT_VERSION;
+        return level;
+    }
+
+    /**
+     * Makes sure the grid dimensions are ones a level could have.
+     */
+    private static void checkDimensions(int initGridColumns, int initGridRows) throws IOException
+    {
+        if ((initGridColumns <= 0) || (initGridColumns > MAX_GRID_DIMENSION)
+                || (initGridRows <= 0) || (initGridRows > MAX_GRID_DIMENSION))
+        {
+            throw new IOException("Bad level dimensions " + initGridColumns + "x" + initGridRows);
+        }
+    }
+
+    /**
+     * Calculates the checksum of the first length bytes of the buffer,
+     * a piece at a time so a mapped file isn't copied all at once.
+     */
+    private static int calculateChecksum(ByteBuffer levelBuffer, int length)
+    {
+        CRC32 crc = new CRC32();
+        byte[] chunk = new byte[4096];
+        ByteBuffer source = levelBuffer.duplicate();
+        source.position(0);
+        source.limit(length);
+        while (source.hasRemaining())
+        {
+            int chunkLength = Math.min(chunk.length, source.remaining());
+            source.get(chunk, 0, chunkLength);
+            crc.update(chunk, 0, chunkLength);
+        }
+        return (int)crc.getValue();
+    }
+
+    /**
+     * Gets one of the bytes packed 4 to an int, first byte highest.
+     */
+    private static int unpackByte(int[] packed, int index)
+    {
+        return (packed[index >>> 2] >>> (24 - ((index & 3) * 8))) & 0xFF;
+    }
+
+    /**
+     * Packs a byte 4 to an int, first byte highest.
+     */
+    private static void packByte(int[] packed, int index, int value)
+    {
+        packed[index >>> 2] |= (value & 0xFF) << (24 - ((index & 3) * 8));
+    }
+}
@@ -0,0 +1,115 @@
+package mini_game;
+
+/**
+ * A MiniGameLoop is the engine that drives a MiniGame, deciding when the game
+ * data gets updated and when the game gets rendered. The framework provides
+ * two of these, a MiniGameFixedStepLoop, which is used by default, and a
+ * MiniGameTimerLoop, which provides the original java.util.Timer behavior.
+ * A game may plug in either by calling setGameLoop before initMiniGame.
+ *
+ * @author Richard McKenna
+ * @version 1.0
+ */
+public abstract class MiniGameLoop
+{
+    // THE GAME THIS LOOP WILL BE DRIVING
+    protected MiniGame game;
+
+    // THESE COUNT WHAT THE LOOP HAS DONE SINCE IT STARTED.
+    // ticks ARE SIMULATION UPDATES, framesRendered ARE
+    // RENDERS, skippedFrames ARE RENDERS WE DIDN'T DO
+    // BECAUSE WE WERE CATCHING UP ON UPDATES, AND
+    // droppedSteps ARE UPDATES WE GAVE UP ON ENTIRELY
+    protected volatile long ticks;
+    protected volatile long framesRendered;
+    protected volatile long skippedFrames;
+    protected volatile long droppedSteps;
+
+    /**
+     * This constructor simply stores the game this loop will drive. Note that
+     * the loop will not do anything until it is started.
+     *
+     * @param initGame the game to update and render.
+     */
+    public MiniGameLoop(MiniGame initGame)
+    {
+        game = initGame;
+    }
+
+    // ACCESSOR METHODS
+        // getTicks
+        // getFramesRendered
+        // getSkippedFrames
+        // getDroppedSteps
+        // getInterpolation
+
+    /**
+     * Accessor method for the number of simulation updates performed.
+     *
+     * @return the number of times the game data has been updated.
+     */
+    public long getTicks()
+    {
+        return ticks;
+    }
+
+    /**
+     * Accessor method for the number of frames rendered.
+     *
+     * @return the number of times the game has been rendered.
+     */
+    public long getFramesRendered()
+    {
+        return framesRendered;
+    }
+
+    /**
+     * Accessor method for the number of renders that were skipped because the
+     * loop had to run more than one update to catch up.
+     *
+     * @return the number of skipped frames.
+     */
+    public long getSkippedFrames()
+    {
+        return skippedFrames;
+    }
+
+    /**
+     * Accessor method for the number of simulation updates that were thrown
+     * away because the loop fell too far behind to catch up.
+     *
+     * @return the number of dropped simulation steps.
+     */
+    public long getDroppedSteps()
+    {
+        return droppedSteps;
+    }
+
+    /**
+     * Accessor method for how far, as a fraction of one update, the current
+     * render is past the last update. Loops that render in lock step with
+     * their updates always return 0.
+     *
+     * @return the interpolation value, between 0 (inclusive) and 1
+     * (exclusive).
+     */
+    public float getInterpolation()
+    {
+        return 0.0f;
+    }
+
+    // ABSTRACT METHODS - LOOP-SPECIFIC IMPLEMENTATIONS REQUIRED
+        // start
+        // stop
+
+    /**
+     * Starts running the game, updating and rendering at the game's frame
+     * rate.
+     */
+    public abstract void start();
+
+    /**
+     * Stops running the game. Once stopped, a loop may not be restarted.
+     */
+    public abstract void stop();
+}
@@ -0,0 +1,478 @@
+package mini_game;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This class measures how a MiniGame is actually performing, as opposed to
+ * how it was set up to perform. Each frame it records how long the update and
+ * the render took, how long threads waited for the data lock, how much time
+ * went to garbage collection, and how much memory the update thread
+ * allocated. It can show the median and 99th percentile of each on top of the
+ * game, and write them all to a file for looking at later.
+ *
+ * @author Richard McKenna
+ * @version 1.0
+ */
+public class MiniGameMetrics
+{
+    // TIMES ARE RECORDED IN NANOSECONDS, BUT SHOWN IN MILLISECONDS
+    public static final double NANOS_PER_MILLI = 1000000.0;
+    public static final double BYTES_PER_KB = 1024.0;
+
+    // HOW OFTEN TO RECOMPUTE THE OVERLAY TEXT, SO THAT IT'S READABLE
+    // AND DOESN'T COST MUCH
+    public static final long OVERLAY_REFRESH_NANOS = 500000000L;
+
+    // WHAT THE OVERLAY LOOKS LIKE
+    public static final Font OVERLAY_FONT = new Font(Font.MONOSPACED, Font.PLAIN, 12);
+    public static final Color OVERLAY_TEXT_COLOR = Color.WHITE;
+    public static final Color OVERLAY_BACKGROUND_COLOR = new Color(0, 0, 0, 160);
+    public static final int OVERLAY_X = 10;
+    public static final int OVERLAY_Y = 10;
+    public static final int OVERLAY_MARGIN = 6;
+
+    // HERE'S WHAT WE MEASURE
+    private MiniGameHistogram updateTimes;
+    private MiniGameHistogram renderTimes;
+    private MiniGameHistogram lockWaitTimes;
+    private MiniGameHistogram gcTimes;
+    private MiniGameHistogram allocations;
+    private MiniGameHistogram frameIntervals;
+
+    // FOR FIGURING OUT THE TIME BETWEEN UPDATES
+    private long lastFrameTime;
+
+    // FOR FIGURING OUT THE MEASURED FRAME RATE, WHICH COUNTS THE
+    // FRAMES ACTUALLY PAINTED, NOT THE UPDATES
+    private long secondStartTime;
+    private int framesThisSecond;
+    private volatile int measuredFrameRate;
+
+    // FOR FIGURING OUT HOW MUCH HAPPENED SINCE THE LAST FRAME
+    private long lastGCTime;
+    private long lastAllocatedBytes;
+    private List<GarbageCollectorMXBean> gcBeans;
+    private com.sun.management.ThreadMXBean allocationBean;
+
+    // THE HEADER ROW OF AN EXPORTED FILE
+    public static final String EXPORT_HEADER = "metric,value,percentile,count";
+
+    // THE OVERLAY, WHICH IS ONLY DRAWN WHEN ACTIVE
+    private volatile boolean overlayActive;
+    private ArrayList<String> overlayText;
+    private long overlayTextTime;
+
+    // A NOTE SHOWN AT THE BOTTOM OF THE OVERLAY, LIKE WHERE THE
+    // METRICS WERE LAST EXPORTED TO
+    private volatile String overlayMessage;
+
+    /**
+     * This constructor sets up empty histograms and finds the JVM's garbage
+     * collectors and, if it has one, its per-thread allocation counter.
+     */
+    public MiniGameMetrics()
+    {
+        updateTimes = new MiniGameHistogram("Update (ms)");
+        renderTimes = new MiniGameHistogram("Render (ms)");
+        lockWaitTimes = new MiniGameHistogram("Lock Wait (ms)");
+        gcTimes = new MiniGameHistogram("GC (ms)");
+        allocations = new MiniGameHistogram("Allocated (KB)");
+        frameIntervals = new MiniGameHistogram("Frame Interval (ms)");
+        overlayText = new ArrayList();
+
+        gcBeans = ManagementFactory.getGarbageCollectorMXBeans();
+        ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+        if ((threadBean instanceof com.sun.management.ThreadMXBean)
+                && ((com.sun.management.ThreadMXBean) threadBean).isThreadAllocatedMemorySupported())
+        {
+            allocationBean = (com.sun.management.ThreadMXBean) threadBean;
+            allocationBean.setThreadAllocatedMemoryEnabled(true);
+        }
+        lastGCTime = getTotalGCTime();
+        lastAllocatedBytes = -1;
+    }
+
+    // ACCESSOR METHODS
+        // getUpdateTimes
+        // getRenderTimes
+        // getLockWaitTimes
+        // getGCTimes
+        // getAllocations
+        // getFrameIntervals
+        // getMeasuredFrameRate
+        // getOverlayMessage
+        // isOverlayActive
+
+    /**
+     * Accessor method for the time taken by each update.
+     *
+     * @return the histogram of update times, in nanoseconds.
+     */
+    public MiniGameHistogram getUpdateTimes()
+    {
+        return updateTimes;
+    }
+
+    /**
+     * Accessor method for the time taken by each render.
+     *
+     * @return the histogram of render times, in nanoseconds.
+     */
+    public MiniGameHistogram getRenderTimes()
+    {
+        return renderTimes;
+    }
+
+    /**
+     * Accessor method for the time threads spent waiting for the data lock.
+     *
+     * @return the histogram of lock wait times, in nanoseconds.
+     */
+    public MiniGameHistogram getLockWaitTimes()
+    {
+        return lockWaitTimes;
+    }
+
+    /**
+     * Accessor method for the time spent garbage collecting each frame.
+     *
+     * @return the histogram of garbage collection times per frame, in
+     * nanoseconds.
+     */
+    public MiniGameHistogram getGCTimes()
+    {
+        return gcTimes;
+    }
+
+    /**
+     * Accessor method for the memory allocated by the game loop each frame.
+     *
+     * @return the histogram of bytes allocated per frame, which will be empty
+     * if the JVM can't count them.
+     */
+    public MiniGameHistogram getAllocations()
+    {
+        return allocations;
+    }
+
+    /**
+     * Accessor method for the time between frames.
+     *
+     * @return the histogram of frame intervals, in nanoseconds.
+     */
+    public MiniGameHistogram getFrameIntervals()
+    {
+        return frameIntervals;
+    }
+
+    /**
+     * Accessor method for the number of frames actually painted during the
+     * last second, which may be less than the game's requested frame rate.
+     *
+     * @return the measured frame rate, in frames per second.
+     */
+    public int getMeasuredFrameRate()
+    {
+        return measuredFrameRate;
+    }
+
+    /**
+     * Accessor method for the note shown at the bottom of the overlay.
+     *
+     * @return the overlay message, or null if there isn't one.
+     */
+    public String getOverlayMessage()
+    {
+        return overlayMessage;
+    }
+
+    /**
+     * Tests to see if the metrics overlay should be drawn.
+     *
+     * @return true if the overlay is being shown, false otherwise.
+     */
+    public boolean isOverlayActive()
+    {
+        return overlayActive;
+    }
+
+    // MUTATOR METHODS
+        // setOverlayActive
+        // setOverlayMessage
+        // toggleOverlay
+
+    /**
+     * Mutator method for showing or hiding the metrics overlay.
+     *
+     * @param initOverlayActive true to show the overlay, false to hide it.
+     */
+    public void setOverlayActive(boolean initOverlayActive)
+    {
+        overlayActive = initOverlayActive;
+    }
+
+    /**
+     * Mutator method for the note shown at the bottom of the overlay.
+     *
+     * @param initOverlayMessage the message to show, or null for none.
+     */
+    public void setOverlayMessage(String initOverlayMessage)
+    {
+        overlayMessage = initOverlayMessage;
+    }
+
+    /**
+     * Shows the metrics overlay if it's hidden, or hides it if it's shown.
+     */
+    public void toggleOverlay()
+    {
+        overlayActive = !overlayActive;
+    }
+
+    // RECORDING METHODS
+        // recordUpdateTime
+        // recordRenderTime
+        // recordLockWait
+        // endFrame
+        // reset
+
+    /**
+     * Records how long one update took.
+     *
+     * @param nanos the update time, in nanoseconds.
+     */
+    public void recordUpdateTime(long nanos)
+    {
+        updateTimes.record(nanos);
+    }
+
+    /**
+     * Records how long one render took. Since this is called once for each
+     * frame painted, it also counts the frames painted each second, which
+     * gives the measured frame rate.
+     *
+     * @param nanos the render time, in nanoseconds.
+     */
+    public void recordRenderTime(long nanos)
+    {
+        renderTimes.record(nanos);
+
+        // COUNT THE FRAMES PAINTED IN EACH SECOND
+        long now = System.nanoTime();
+        framesThisSecond++;
+        if (secondStartTime == 0)
+        {
+            secondStartTime = now;
+        }
+        else if ((now - secondStartTime) >= 1000000000L)
+        {
+            measuredFrameRate = framesThisSecond;
+            framesThisSecond = 0;
+            secondStartTime = now;
+        }
+    }
+
+    /**
+     * Records how long a thread waited to get the data lock.
+     *
+     * @param nanos the wait time, in nanoseconds.
+     */
+    public void recordLockWait(long nanos)
+    {
+        lockWaitTimes.record(nanos);
+    }
+
+    /**
+     * Called by the game loop thread at the end of each update, this method
+     * records the time since the last one, along with the garbage collection
+     * time and allocations since then.
+     */
+    public void endFrame()
+    {
+        long now = System.nanoTime();
+        if (lastFrameTime != 0)
+        {
+            frameIntervals.record(now - lastFrameTime);
+        }
+        lastFrameTime = now;
+
+        // GARBAGE COLLECTORS ONLY REPORT THEIR TOTAL TIME, IN MILLISECONDS
+        long gcTime = getTotalGCTime();
+        gcTimes.record((gcTime - lastGCTime) * 1000000L);
+        lastGCTime = gcTime;
+
+        // AND THE ALLOCATION COUNTER IS PER THREAD, SO THIS
+        // MUST ALWAYS BE CALLED FROM THE SAME ONE
+        if (allocationBean != null)
+        {
+            long allocatedBytes = allocationBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+            if ((lastAllocatedBytes >= 0) && (allocatedBytes >= lastAllocatedBytes))
+            {
+                allocations.record(allocatedBytes - lastAllocatedBytes);
+            }
+            lastAllocatedBytes = allocatedBytes;
+        }
+    }
+
+    /**
+     * Forgets everything measured so far.
+     */
+    public void reset()
+    {
+        updateTimes.reset();
+        renderTimes.reset();
+        lockWaitTimes.reset();
+        gcTimes.reset();
+        allocations.reset();
+        frameIntervals.reset();
+    }
+
+    // DISPLAY AND EXPORT METHODS
+        // getOverlayText
+        // renderOverlay
+        // exportToFile
+
+    /**
+     * Builds the lines of text shown in the overlay, with the median and 99th
+     * percentile of each measurement.
+     *
+     * @return the overlay text, one line per entry.
+     */
+    public ArrayList<String> getOverlayText()
+    {
+        ArrayList<String> text = new ArrayList();
+        text.add("FPS: " + measuredFrameRate);
+        text.add(String.format("%-20s %8s %8s", "", "p50", "p99"));
+        addOverlayLine(text, updateTimes, NANOS_PER_MILLI);
+        addOverlayLine(text, renderTimes, NANOS_PER_MILLI);
+        addOverlayLine(text, lockWaitTimes, NANOS_PER_MILLI);
+        addOverlayLine(text, gcTimes, NANOS_PER_MILLI);
+        addOverlayLine(text, frameIntervals, NANOS_PER_MILLI);
+        if (allocationBean != null)
+        {
+            addOverlayLine(text, allocations, BYTES_PER_KB);
+        }
+        String message = overlayMessage;
+        if (message != null)
+        {
+            text.add(message);
+        }
+        return text;
+    }
+
+    /**
+     * Draws the overlay in the top-left corner, if it's active. The text is
+     * only recomputed every OVERLAY_REFRESH_NANOS, so this is cheap to call
+     * every frame.
+     *
+     * @param g the Graphics context to draw to.
+     */
+    public void renderOverlay(Graphics g)
+    {
+        if (!overlayActive)
+        {
+            return;
+        }
+        long now = System.nanoTime();
+        if (overlayText.isEmpty() || ((now - overlayTextTime) >= OVERLAY_REFRESH_NANOS))
+        {
+            overlayText = getOverlayText();
+            overlayTextTime = now;
+        }
+
+        g.setFont(OVERLAY_FONT);
+        FontMetrics fm = g.getFontMetrics();
+        int lineHeight = fm.getHeight();
+        int width = 0;
+        for (String line : overlayText)
+        {
+            width = Math.max(width, fm.stringWidth(line));
+        }
+        int height = lineHeight * overlayText.size();
+
+        g.setColor(OVERLAY_BACKGROUND_COLOR);
+        g.fillRect(OVERLAY_X, OVERLAY_Y, width + (2 * OVERLAY_MARGIN), height + (2 * OVERLAY_MARGIN));
+        g.setColor(OVERLAY_TEXT_COLOR);
+        int y = OVERLAY_Y + OVERLAY_MARGIN + fm.getAscent();
+        for (String line : overlayText)
+        {
+            g.drawString(line, OVERLAY_X + OVERLAY_MARGIN, y);
+            y += lineHeight;
+        }
+    }
+
+    /**
+     * Writes all the measurements to a comma-separated file, with the full
+     * spread of values for each, so they may be looked at offline. After the
+     * EXPORT_HEADER row, each row has a measurement's name, a value, the
+     * fraction of its values at or below that, and how many that is.
+     *
+     * @param file the file to write, which will be replaced if it exists.
+     *
+     * @throws IOException if the file can't be written.
+     */
+    public void exportToFile(File file) throws IOException
+    {
+        PrintWriter out = new PrintWriter(new FileWriter(file));
+        try
+        {
+            out.println(EXPORT_HEADER);
+            updateTimes.writePercentiles(out, NANOS_PER_MILLI);
+            renderTimes.writePercentiles(out, NANOS_PER_MILLI);
+            lockWaitTimes.writePercentiles(out, NANOS_PER_MILLI);
+            gcTimes.writePercentiles(out, NANOS_PER_MILLI);
+            frameIntervals.writePercentiles(out, NANOS_PER_MILLI);
+            allocations.writePercentiles(out, BYTES_PER_KB);
+        }
+        finally
+        {
+            out.close();
+        }
+        if (out.checkError())
+        {
+            throw new IOException("Unable to write metrics to " + file);
+        }
+    }
+
+    // PRIVATE HELPER METHODS
+
+    /**
+     * Adds a line with the median and 99th percentile of histogram to text.
+     */
+    private void addOverlayLine(ArrayList<String> text, MiniGameHistogram histogram, double unitDivisor)
+    {
+        text.add(String.format("%-20s %8.2f %8.2f",
+                histogram.getName(),
+                histogram.getValueAtPercentile(50.0) / unitDivisor,
+                histogram.getValueAtPercentile(99.0) / unitDivisor));
+    }
+
+    /**
+     * Adds up the time all the garbage collectors have spent collecting.
+     */
+    private long getTotalGCTime()
+    {
+        long total = 0;
+        for (GarbageCollectorMXBean gcBean : gcBeans)
+        {
+            long time = gcBean.getCollectionTime();
+            if (time > 0)
+            {
+                total += time;
+            }
+        }
+        return total;
+    }
+}
@@ -0,0 +1,424 @@
+package mini_game;
+
+import java.awt.AlphaComposite;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.GraphicsEnvironment;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+
+/**
+ * A MiniGameStripedImage is a tall image, like a map that scrolls, that is
+ * never loaded all at once. Instead it is cut into strips of the same height,
+ * and each strip is only decoded when it's needed to draw part of the image
+ * that is on screen. Only the strips used most recently are kept, so the
+ * memory used stays the same no matter how tall the image is.
+ *
+ * The strips are best kept in their own files, next to the image, named
+ * like the image but with the strip number added, so sagamap.png is cut into
+ * sagamap_0.png, sagamap_1.png and so on, which this class may be run on its
+ * own to make. If there are no strip files, each strip is read out of the
+ * image itself, which works but is slower, since most formats have to be
+ * decompressed from the top to get to the rows of a strip.
+ *
+ * Note that strips are decoded by the thread that asks for them, so they
+ * should be asked for by one thread, normally the update thread while it
+ * builds a frame.
+ *
+ * @author Richard McKenna
+ * @version 1.0
+ */
+public class MiniGameStripedImage
+{
+    // THE IMAGE FILE, WHICH STAYS OPEN SO STRIPS CAN BE READ FROM IT
+    // IF THEY AREN'T IN THEIR OWN FILES
+    private String fileName;
+    private boolean stripFiles;
+    private ImageReader reader;
+    private ImageReadParam readParam;
+
+    // THE SIZE OF THE WHOLE IMAGE, WHICH WE KNOW WITHOUT DECODING IT
+    private int width;
+    private int height;
+
+    // HOW IT'S CUT UP
+    private int stripHeight;
+    private int numStrips;
+
+    // THE DECODED STRIPS, BY STRIP NUMBER, WITH THE ONE USED LEAST
+    // RECENTLY FIRST, AND HOW MANY OF THEM WE MAY KEEP
+    private LinkedHashMap<Integer, BufferedImage> strips;
+    private int maxStrips;
+
+    // FOR KEEPING TRACK OF HOW OFTEN WE HAVE TO DECODE
+    private long numDecodes;
+
+    // THE SCREEN'S FORMAT, WHICH WILL BE null IF THERE IS NO SCREEN
+    private GraphicsConfiguration graphicsConfig;
+
+    /**
+     * This constructor opens the image file and reads its size, but doesn't
+     * decode any of it.
+     *
+     * @param initFileName full path and name of the image file.
+     *
+     * @param initStripHeight the height of each strip, in pixels.
+     *
+     * @param initMaxStrips the most decoded strips to keep at once, which
+     * should be enough to cover the screen with a strip to spare.
+     *
+     * @throws IOException if the file can't be opened, or isn't an image.
+     */
+    public MiniGameStripedImage(String initFileName, int initStripHeight, int initMaxStrips) throws IOException
+    {
+        fileName = initFileName;
+        stripHeight = initStripHeight;
+        maxStrips = initMaxStrips;
+        stripFiles = getStripFile(fileName, 0).exists();
+        if (stripFiles)
+        {
+            // EVERY STRIP BUT THE LAST IS FULL HEIGHT, SO WE ONLY
+            // NEED TO LOOK AT THE FIRST AND LAST ONES
+            numStrips = 1;
+            while (getStripFile(fileName, numStrips).exists())
+            {
+                numStrips++;
+            }
+            ImageReader firstReader = openReader(getStripFile(fileName, 0));
+            width = firstReader.getWidth(0);
+            stripHeight = firstReader.getHeight(0);
+            closeReader(firstReader);
+            ImageReader lastReader = openReader(getStripFile(fileName, numStrips - 1));
+            height = ((numStrips - 1) * stripHeight) + lastReader.getHeight(0);
+            closeReader(lastReader);
+        }
+        else
+        {
+            reader = openReader(new File(fileName));
+            readParam = reader.getDefaultReadParam();
+            width = reader.getWidth(0);
+            height = reader.getHeight(0);
+            numStrips = (height + stripHeight - 1) / stripHeight;
+        }
+
+        // THE OLDEST STRIP GOES WHEN THERE ARE TOO MANY
+        strips = new LinkedHashMap<Integer, BufferedImage>(16, 0.75f, true)
+        {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, BufferedImage> eldest)
+            {
+                return size() > maxStrips;
+            }
+        };
+        if (!GraphicsEnvironment.isHeadless())
+        {
+            graphicsConfig = GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice().getDefaultConfiguration();
+        }
+    }
+
+    // ACCESSOR METHODS
+        // getWidth
+        // getHeight
+        // getStripHeight
+        // getNumStrips
+        // getNumDecodedStrips
+        // getNumDecodes
+        // getMemoryUsage
+
+    /**
+     * Accessor method for the width of the whole image.
+     *
+     * @return the width, in pixels.
+     */
+    public int getWidth()
+    {
+        return width;
+    }
+
+    /**
+     * Accessor method for the height of the whole image.
+     *
+     * @return the height, in pixels.
+     */
+    public int getHeight()
+    {
+        return height;
+    }
+
+    /**
+     * Accessor method for the height of each strip, which comes from the strip
+     * files if there are any. Note that the last strip may be shorter.
+     *
+     * @return the strip height, in pixels.
+     */
+    public int getStripHeight()
+    {
+        return stripHeight;
+    }
+
+    /**
+     * Accessor method for the number of strips the image is cut into.
+     *
+     * @return the number of strips.
+     */
+    public int getNumStrips()
+    {
+        return numStrips;
+    }
+
+    /**
+     * Accessor method for the number of strips that are decoded right now.
+     *
+     * @return the number of decoded strips, never more than the most we
+     * may keep.
+     */
+    public int getNumDecodedStrips()
+    {
+        return strips.size();
+    }
+
+    /**
+     * Accessor method for the number of times a strip has been decoded,
+     * which counts strips decoded again after being let go.
+     *
+     * @return the number of decodes.
+     */
+    public long getNumDecodes()
+    {
+        return numDecodes;
+    }
+
+    /**
+     * Accessor method for approximately how much memory the pixels of the
+     * decoded strips use.
+     *
+     * @return the number of bytes used by decoded strips.
+     */
+    public long getMemoryUsage()
+    {
+        long memoryUsage = 0;
+        for (BufferedImage strip : strips.values())
+        {
+            long bytesPerPixel = Math.max(1, strip.getColorModel().getPixelSize() / 8);
+            memoryUsage += (long) strip.getWidth() * strip.getHeight() * bytesPerPixel;
+        }
+        return memoryUsage;
+    }
+
+    // STRIP METHODS
+        // getStrip
+        // addToFrame
+        // dispose
+
+    /**
+     * Gets a strip of the image, decoding it if it isn't already.
+     *
+     * @param stripIndex the strip, counting from the top of the image.
+     *
+     * @return the strip, in the screen's format, which starts stripIndex *
+     * getStripHeight() pixels down the image.
+     *
+     * @throws IOException if the strip couldn't be decoded.
+     */
+    public BufferedImage getStrip(int stripIndex) throws IOException
+    {
+        BufferedImage strip = strips.get(stripIndex);
+        if (strip == null)
+        {
+            if (stripFiles)
+            {
+                strip = ImageIO.read(getStripFile(fileName, stripIndex));
+                if (strip == null)
+                {
+                    throw new IOException("Unsupported image format: " + getStripFile(fileName, stripIndex));
+                }
+            }
+            else
+            {
+                // ONLY THE ROWS OF THIS STRIP GET KEPT
+                int stripTop = stripIndex * stripHeight;
+                readParam.setSourceRegion(new Rectangle(0, stripTop, width, Math.min(stripHeight, height - stripTop)));
+                strip = reader.read(0, readParam);
+            }
+            strip = toCompatibleImage(strip);
+            numDecodes++;
+            strips.put(stripIndex, strip);
+        }
+        return strip;
+    }
+
+    /**
+     * Records the part of the image that's on screen into the frame, drawing
+     * only the strips that are at least partly on screen.
+     *
+     * @param frame the snapshot of this frame.
+     *
+     * @param x the x-axis location to draw the image's left edge at.
+     *
+     * @param y the y-axis location to draw the image's top edge at, which is
+     * negative when the image is scrolled up past the top of the screen.
+     *
+     * @param viewportTop the y-axis location of the top of the screen.
+     *
+     * @param viewportBottom the y-axis location of the bottom of the screen.
+     *
+     * @throws IOException if a strip couldn't be decoded.
+     */
+    public void addToFrame(MiniGameFrameSnapshot frame, int x, int y, int viewportTop, int viewportBottom) throws IOException
+    {
+        int firstStrip = Math.max(0, floorDiv(viewportTop - y, stripHeight));
+        int lastStrip = Math.min(numStrips - 1, floorDiv(viewportBottom - 1 - y, stripHeight));
+        for (int i = firstStrip; i <= lastStrip; i++)
+        {
+            frame.addImage(getStrip(i), x, y + (i * stripHeight));
+        }
+    }
+
+    /**
+     * Lets go of all the decoded strips and closes the image file. The image
+     * can't be used after this.
+     */
+    public void dispose()
+    {
+        strips.clear();
+        if (reader != null)
+        {
+            closeReader(reader);
+        }
+    }
+
+    /**
+     * Cuts an image into strip files next to it, which are then used instead
+     * of the image.
+     *
+     * @param args the image file, then the height of each strip.
+     */
+    public static void main(String[] args)
+    {
+        if (args.length != 2)
+        {
+            System.out.println("Usage: MiniGameStripedImage imageFile stripHeight");
+            return;
+        }
+        try
+        {
+            BufferedImage image = ImageIO.read(new File(args[0]));
+            if (image == null)
+            {
+                throw new IOException("Unsupported image format");
+            }
+            int stripHeight = Integer.parseInt(args[1]);
+            int numStrips = 0;
+            for (int stripTop = 0; stripTop < image.getHeight(); stripTop += stripHeight)
+            {
+                BufferedImage strip = image.getSubimage(0, stripTop, image.getWidth(),
+                        Math.min(stripHeight, image.getHeight() - stripTop));
+                ImageIO.write(strip, "png", getStripFile(args[0], numStrips));
+                numStrips++;
+            }
+
+            // AN OLD STRIP PAST THE LAST ONE WOULD BE TAKEN AS PART OF THE IMAGE
+            getStripFile(args[0], numStrips).delete();
+            System.out.println(args[0] + ": " + numStrips + " strips");
+        }
+        catch (IOException ioe)
+        {
+            System.out.println("Couldn't cut " + args[0] + " into strips: " + ioe.getMessage());
+        }
+    }
+
+    // PRIVATE HELPER METHODS
+
+    /**
+     * Divides, rounding down even when the result is negative.
+     */
+    private static int floorDiv(int dividend, int divisor)
+    {
+        int quotient = dividend / divisor;
+        if (((dividend % divisor) != 0) && ((dividend < 0) != (divisor < 0)))
+        {
+            quotient--;
+        }
+        return quotient;
+    }
+
+    /**
+     * Finds the file a strip of the image is kept in.
+     */
+    private static File getStripFile(String imageFileName, int stripIndex)
+    {
+        int extensionStart = imageFileName.lastIndexOf('.');
+        if ((extensionStart < 0) || (extensionStart < imageFileName.lastIndexOf(File.separatorChar)))
+        {
+            extensionStart = imageFileName.length();
+        }
+        return new File(imageFileName.substring(0, extensionStart) + "_" + stripIndex + ".png");
+    }
+
+    /**
+     * Opens an image file for reading, without decoding any of it.
+     */
+    private static ImageReader openReader(File imageFile) throws IOException
+    {
+        ImageInputStream stream = ImageIO.createImageInputStream(imageFile);
+        if (stream == null)
+        {
+            throw new IOException("Unable to open " + imageFile);
+        }
+        Iterator<ImageReader> readers = ImageIO.getImageReaders(stream);
+        if (!readers.hasNext())
+        {
+            stream.close();
+            throw new IOException("Unsupported image format: " + imageFile);
+        }
+        ImageReader imageReader = readers.next();
+
+        // STRIPS MAY BE READ IN ANY ORDER, SO WE HAVE TO BE ABLE TO SEEK BACK
+        imageReader.setInput(stream, false, true);
+        return imageReader;
+    }
+
+    /**
+     * Closes a reader and the file it was reading.
+     */
+    private static void closeReader(ImageReader imageReader)
+    {
+        try
+        {
+            ((ImageInputStream) imageReader.getInput()).close();
+        }
+        catch (IOException ioe)
+        {
+            // IT'S CLOSED EITHER WAY
+        }
+        imageReader.dispose();
+    }
+
+    /**
+     * Copies the strip into one in the screen's format, which can be drawn
+     * without any conversion.
+     */
+    private BufferedImage toCompatibleImage(BufferedImage image)
+    {
+        int transparency = image.getColorModel().getTransparency();
+        if ((graphicsConfig == null) || image.getColorModel().equals(graphicsConfig.getColorModel(transparency)))
+        {
+            return image;
+        }
+        BufferedImage compatibleImage = graphicsConfig.createCompatibleImage(image.getWidth(), image.getHeight(), transparency);
+        Graphics2D g2 = compatibleImage.createGraphics();
+        g2.setComposite(AlphaComposite.Src);
+        g2.drawImage(image, 0, 0, null);
+        g2.dispose();
+        return compatibleImage;
+    }
+}
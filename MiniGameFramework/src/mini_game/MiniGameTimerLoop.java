@@ -0,0 +1,62 @@
+package mini_game;
+
+import java.util.Timer;
+
+/**
+ * This loop drives the game the way the framework originally did, with a
+ * java.util.Timer running a MiniGameTimerTask at a fixed rate. Each task
+ * updates and then renders the game, so there is no separate render cadence
+ * and no interpolation.
+ *
+ * @author Richard McKenna
+ * @version 1.0
+ */
+public class MiniGameTimerLoop extends MiniGameLoop
+{
+    // THE TIMER THREAD AND THE TASK IT RUNS EACH FRAME
+    private Timer gameTimer;
+    private MiniGameTimerTask gameTimerTask;
+
+    /**
+     * This constructor stores the game to drive. The timer is not made until
+     * the loop is started.
+     *
+     * @param initGame the game to update and render.
+     */
+    public MiniGameTimerLoop(MiniGame initGame)
+    {
+        super(initGame);
+    }
+
+    /**
+     * Schedules the timer task to run once every frame.
+     */
+    @Override
+    public void start()
+    {
+        gameTimerTask = new MiniGameTimerTask(game)
+        {
+            @Override
+            public void run()
+            {
+                super.run();
+                ticks++;
+                framesRendered++;
+            }
+        };
+        gameTimer = new Timer();
+        gameTimer.scheduleAtFixedRate(gameTimerTask, 100, 1000 / game.getFrameRate());
+    }
+
+    /**
+     * Cancels the timer, ending all updates and rendering.
+     */
+    @Override
+    public void stop()
+    {
+        if (gameTimer != null)
+        {
+            gameTimer.cancel();
+        }
+    }
+}
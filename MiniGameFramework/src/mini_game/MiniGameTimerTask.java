@@ -28,29 +28,16 @@ public class MiniGameTimerTask extends TimerTask
 
     /**
      * Called 30 times per second, or whatever the current frame rate is, this
-     * method updates the game and renders it, making sure to get a lock on the
-     * data before doing so and releasing the data when done.
+     * method updates the game and renders it. Note that the game takes care of
+     * locking the data while it updates.
      */
     @Override
     public void run()
     {
-        try
-        {
-            // LOCK THE DATA
-            game.beginUsingData();
+        // UPDATE THE GAME
+        game.stepSimulation();
 
-            // UPDATE THE GAME
-            game.update();
-
-            // RENDER THE GAME
-            game.getCanvas().repaint();
-        } 
-        finally
-        {
-            // RELEASE IT, SINCE THE OTHER THREAD
-            // MIGHT WANT TO UPDATE STUFF IN RESPONSE
-            // TO A MOUSE CLICK
-            game.endUsingData();
-        }
+        // RENDER THE GAME
+        game.renderFrame();
     }
 }
\ No newline at end of file
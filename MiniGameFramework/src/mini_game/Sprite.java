@@ -36,8 +36,10 @@ public class Sprite
     protected float vY;
     
     // CURRENT STATE OF this SPRITE, IT DICTATES WHICH IMAGE
-    // SHOULD BE USED FOR RENDERING IT
-    protected String state;
+    // SHOULD BE USED FOR RENDERING IT. NOTE THAT WE KEEP THE
+    // STATE'S ID, AS GIVEN BY SpriteType.getStateID, RATHER
+    // THAN ITS NAME, SO IT'S CHEAP TO TEST AND DRAW
+    protected int stateID;
     
     // AABB REFERS TO AXIS-ALIGNED-BOUNDING-BOX, WHICH IS A LONG
     // WAY OF SAYING A SQUARE COLLISION BOX. IN SOME GAMES THE
@@ -61,6 +63,16 @@ public class Sprite
     // GETTING A NEW, UNIQUE NUMBER
     private static int idCounter;
 
+    // THE SpriteGrid THIS Sprite IS IN, IF ANY, AND THE RANGE OF CELLS IT
+    // OCCUPIES THERE. THESE ARE ONLY TO BE CHANGED BY THE GRID ITSELF
+    SpriteGrid grid;
+    int gridMinColumn;
+    int gridMinRow;
+    int gridMaxColumn;
+    int gridMaxRow;
+    int gridOrder;
+    int gridQueryStamp;
+
     /**
      * Constructor for making a new Sprite with an initial position, velocity,
      * state, etc. Note that a unique, accessible ID number is automatically
@@ -91,7 +103,7 @@ public class Sprite
         y = initY;
         vX = initVx;
         vY = initVy;
-        state = initState;
+        stateID = SpriteType.getStateID(initState);
         id = idCounter;
 
         // IT IS ENABLED BY DEFAULT
@@ -119,6 +131,9 @@ public class Sprite
         // getVx
         // getVy
         // getState
+        // getStateID
+        // isInState
+        // getGrid
         // getID
         // isEnabled
     
@@ -224,7 +239,41 @@ public class Sprite
      */
     public String getState()
     {
-        return state;
+        return SpriteType.getStateName(stateID);
+    }
+
+    /**
+     * For accessing the ID of the current state of this Sprite, which is
+     * faster to test than the state's name.
+     *
+     * @return the current Sprite state's ID.
+     */
+    public int getStateID()
+    {
+        return stateID;
+    }
+
+    /**
+     * Tests to see if this Sprite is in the state with the testStateID ID.
+     *
+     * @param testStateID the ID of the state to test for, as provided by
+     * SpriteType.getStateID.
+     *
+     * @return true if this Sprite is in that state, false otherwise.
+     */
+    public boolean isInState(int testStateID)
+    {
+        return stateID == testStateID;
+    }
+
+    /**
+     * For accessing the SpriteGrid this Sprite has been added to, if any.
+     *
+     * @return the grid this Sprite is in, or null if it isn't in one.
+     */
+    public SpriteGrid getGrid()
+    {
+        return grid;
     }
 
     /**
@@ -259,6 +308,7 @@ public class Sprite
     // setVx
     // setVy
     // setState
+    // setStateID
     // setEnabled
     /**
      * Mutator method for specifying this Sprite's event handler for when the
@@ -293,6 +343,7 @@ public class Sprite
     public void setX(float initX)
     {
         x = initX;
+        updateGridCells();
     }
 
     /**
@@ -305,6 +356,7 @@ public class Sprite
     public void setY(float initY)
     {
         y = initY;
+        updateGridCells();
     }
 
     /**
@@ -339,7 +391,19 @@ public class Sprite
      */
     public void setState(String initState)
     {
-        state = initState;
+        stateID = SpriteType.getStateID(initState);
+    }
+
+    /**
+     * Mutator method for setting the state of this Sprite by its ID, which is
+     * faster than setting it by name.
+     *
+     * @param initStateID the ID of the state to use for this Sprite, as
+     * provided by SpriteType.getStateID.
+     */
+    public void setStateID(int initStateID)
+    {
+        stateID = initStateID;
     }
 
     /**
@@ -356,8 +420,11 @@ public class Sprite
         // aabbsOverlap
         // calculateDistanceToSprite
         // containsPoint
+        // getRenderX
+        // getRenderY
         // testForClick
         // update
+        // updateGridCells
     
     /**
      * This method tests to see if the the testSprite's AABB overlaps this
@@ -368,16 +435,20 @@ public class Sprite
      */
     public boolean aabbsOverlap(Sprite testSprite)
     {
-        if ((x + aabbX) > (testSprite.x + testSprite.aabbX + testSprite.aabbWidth))
+        float left = getX() + getAABBx();
+        float top = getY() + getAABBy();
+        float testLeft = testSprite.getX() + testSprite.getAABBx();
+        float testTop = testSprite.getY() + testSprite.getAABBy();
+        if (left > (testLeft + testSprite.getAABBwidth()))
         {
             return false;
-        } else if ((x + aabbX + aabbWidth) < (testSprite.x + testSprite.aabbX))
+        } else if ((left + getAABBwidth()) < testLeft)
         {
             return false;
-        } else if ((y + aabbY) > (testSprite.y + testSprite.aabbY + testSprite.aabbHeight))
+        } else if (top > (testTop + testSprite.getAABBheight()))
         {
             return false;
-        } else if ((y + aabbY + aabbHeight) < (testSprite.y + testSprite.aabbY))
+        } else if ((top + getAABBheight()) < testTop)
         {
             return false;
         } else
@@ -398,11 +469,11 @@ public class Sprite
      */
     public float calculateDistanceToSprite(Sprite targetSprite)
     {
-        float targetSpriteCenterX = targetSprite.x + targetSprite.aabbX + (targetSprite.aabbWidth / 2);
-        float targetSpriteCenterY = targetSprite.y + targetSprite.aabbY + (targetSprite.aabbHeight / 2);
+        float targetSpriteCenterX = targetSprite.getX() + targetSprite.getAABBx() + (targetSprite.getAABBwidth() / 2);
+        float targetSpriteCenterY = targetSprite.getY() + targetSprite.getAABBy() + (targetSprite.getAABBheight() / 2);
 
-        float centerX = x + aabbX + (aabbWidth / 2);
-        float centerY = y + aabbY + (aabbHeight / 2);
+        float centerX = getX() + getAABBx() + (getAABBwidth() / 2);
+        float centerY = getY() + getAABBy() + (getAABBheight() / 2);
 
         float deltaX = targetSpriteCenterX - centerX;
         float deltaY = targetSpriteCenterY - centerY;
@@ -425,22 +496,52 @@ public class Sprite
     public boolean containsPoint(float pointX, float pointY)
     {
         // FIRST MOVE THE POINT TO LOCAL COORDINATES
-        pointX = pointX - x;
-        pointY = pointY - y;
+        pointX = pointX - getX();
+        pointY = pointY - getY();
 
+        float boxX = getAABBx();
+        float boxY = getAABBy();
         boolean inXRange = false;
-        if ((pointX > aabbX) && (pointX < (aabbX + aabbWidth)))
+        if ((pointX > boxX) && (pointX < (boxX + getAABBwidth())))
         {
             inXRange = true;
         }
         boolean inYRange = false;
-        if ((pointY > aabbY) && (pointY < (aabbY + aabbHeight)))
+        if ((pointY > boxY) && (pointY < (boxY + getAABBheight())))
         {
             inYRange = true;
         }
         return inXRange && inYRange;
     }
 
+    /**
+     * For rendering between updates, this method estimates where this Sprite
+     * is along the x-axis part way through its next frame of movement.
+     *
+     * @param interpolation how far into the next frame to look, between 0 and
+     * 1, as provided by the game's getRenderInterpolation.
+     *
+     * @return the x-axis location at which to draw this Sprite.
+     */
+    public float getRenderX(float interpolation)
+    {
+        return getX() + (getVx() * interpolation);
+    }
+
+    /**
+     * For rendering between updates, this method estimates where this Sprite
+     * is along the y-axis part way through its next frame of movement.
+     *
+     * @param interpolation how far into the next frame to look, between 0 and
+     * 1, as provided by the game's getRenderInterpolation.
+     *
+     * @return the y-axis location at which to draw this Sprite.
+     */
+    public float getRenderY(float interpolation)
+    {
+        return getY() + (getVy() * interpolation);
+    }
+
     /**
      * This method tests to if the x,y coordinates are inside this Sprite, and
      * if they are, the registered event listener is invoked, making sure that a
@@ -484,7 +585,8 @@ public class Sprite
      * moving its position according to its current velocity, making sure it
      * doesn't leave the playing area. Note that this method should be
      * overridden to provide custom AI or physics behaviour for a particular
-     * type of Sprite.
+     * type of Sprite, and that Sprites kept in a SpriteStore are instead moved
+     * by the store.
      *
      * @param game
      */
@@ -493,5 +595,22 @@ public class Sprite
         // MOVE THE SPRITE USING ITS VELOCITY
         x += vX;
         y += vY;
+
+        // AND KEEP ITS GRID, IF IT HAS ONE, UP TO DATE
+        updateGridCells();
+    }
+
+    /**
+     * If this Sprite is in a SpriteGrid, this method moves it into the cells
+     * its bounding box now touches. This is done automatically when the Sprite
+     * is moved by update, setX, or setY, but must be called by subclasses that
+     * change the location or bounding box in other ways.
+     */
+    public void updateGridCells()
+    {
+        if (grid != null)
+        {
+            grid.update(this);
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,495 @@
+package mini_game;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+
+/**
+ * A SpriteGrid divides the game world into square cells and keeps track of
+ * which Sprites' bounding boxes are in which cells. This lets us find the
+ * Sprites at a point, the Sprites overlapping a box, or the Sprites nearest a
+ * point, by only looking in the few cells involved rather than at every Sprite
+ * in the game.
+ *
+ * Sprites added to a grid keep it up to date themselves as they move, via
+ * their update, setX, and setY methods. A Sprite that changes its bounding box
+ * some other way must call updateGridCells. Note that a Sprite may only be in
+ * one grid at a time.
+ *
+ * @author Richard McKenna
+ * @version 1.0
+ */
+public class SpriteGrid
+{
+    // THE WIDTH AND HEIGHT OF EACH CELL
+    private float cellSize;
+
+    // THE SPRITES IN EACH CELL THAT HAS ANY, MAPPED BY THEIR
+    // CELL COORDINATES PACKED INTO A SINGLE NUMBER
+    private HashMap<Long, ArrayList<Sprite>> cells;
+
+    // ALL THE SPRITES IN THIS GRID
+    private HashSet<Sprite> sprites;
+
+    // THE RANGE OF CELLS THAT HAVE EVER HAD A SPRITE, WHICH
+    // TELLS A NEAREST SPRITE SEARCH WHEN TO GIVE UP
+    private int minUsedColumn;
+    private int maxUsedColumn;
+    private int minUsedRow;
+    private int maxUsedRow;
+
+    // EACH QUERY GETS ITS OWN NUMBER, WHICH IS MARKED ON THE SPRITES
+    // IT VISITS SO THAT SPRITES SPANNING SEVERAL CELLS ARE ONLY
+    // LOOKED AT ONCE
+    private int queryCounter;
+
+    // FOR NUMBERING SPRITES IN THE ORDER THEY'RE ADDED
+    private int addCounter;
+
+    /**
+     * This constructor makes an empty grid. For best results the cell size
+     * should be a bit larger than most of the Sprites to be put in it.
+     *
+     * @param initCellSize the width and height of each cell, in pixels.
+     */
+    public SpriteGrid(float initCellSize)
+    {
+        if (initCellSize <= 0)
+        {
+            throw new IllegalArgumentException("Cell size must be positive");
+        }
+        cellSize = initCellSize;
+        cells = new HashMap();
+        sprites = new HashSet();
+        clear();
+    }
+
+    // ACCESSOR METHODS
+        // getCellSize
+        // getNumSprites
+        // contains
+
+    /**
+     * Accessor method for the size of the cells in this grid.
+     *
+     * @return the width and height of each cell, in pixels.
+     */
+    public float getCellSize()
+    {
+        return cellSize;
+    }
+
+    /**
+     * Accessor method for the number of Sprites in this grid.
+     *
+     * @return the number of Sprites that have been added and not removed.
+     */
+    public int getNumSprites()
+    {
+        return sprites.size();
+    }
+
+    /**
+     * Tests to see if the testSprite is in this grid.
+     *
+     * @param testSprite the Sprite to look for.
+     *
+     * @return true if testSprite is in this grid, false otherwise.
+     */
+    public boolean contains(Sprite testSprite)
+    {
+        return testSprite.grid == this;
+    }
+
+    // MUTATOR METHODS
+        // add
+        // remove
+        // update
+        // clear
+
+    /**
+     * Adds the spriteToAdd to this grid, putting it in all the cells its
+     * bounding box touches. If it's in another grid, it's taken out of that
+     * one first.
+     *
+     * @param spriteToAdd the Sprite to add.
+     */
+    public void add(Sprite spriteToAdd)
+    {
+        if (spriteToAdd.grid == this)
+        {
+            return;
+        }
+        if (spriteToAdd.grid != null)
+        {
+            spriteToAdd.grid.remove(spriteToAdd);
+        }
+        spriteToAdd.grid = this;
+        spriteToAdd.gridOrder = ++addCounter;
+        sprites.add(spriteToAdd);
+        spriteToAdd.gridMinColumn = getColumn(spriteToAdd.getX() + spriteToAdd.getAABBx());
+        spriteToAdd.gridMinRow = getRow(spriteToAdd.getY() + spriteToAdd.getAABBy());
+        spriteToAdd.gridMaxColumn = getColumn(spriteToAdd.getX() + spriteToAdd.getAABBx() + spriteToAdd.getAABBwidth());
+        spriteToAdd.gridMaxRow = getRow(spriteToAdd.getY() + spriteToAdd.getAABBy() + spriteToAdd.getAABBheight());
+        putInCells(spriteToAdd);
+    }
+
+    /**
+     * Removes the spriteToRemove from this grid. Nothing happens if it isn't
+     * in this grid.
+     *
+     * @param spriteToRemove the Sprite to remove.
+     */
+    public void remove(Sprite spriteToRemove)
+    {
+        if (spriteToRemove.grid != this)
+        {
+            return;
+        }
+        takeOutOfCells(spriteToRemove);
+        sprites.remove(spriteToRemove);
+        spriteToRemove.grid = null;
+    }
+
+    /**
+     * Moves the spriteToUpdate into the cells its bounding box now touches.
+     * Since Sprites usually move much less than a cell each frame, this
+     * usually has nothing to do.
+     *
+     * @param spriteToUpdate the Sprite that has moved.
+     */
+    public void update(Sprite spriteToUpdate)
+    {
+        if (spriteToUpdate.grid != this)
+        {
+            return;
+        }
+        int newMinColumn = getColumn(spriteToUpdate.getX() + spriteToUpdate.getAABBx());
+        int newMinRow = getRow(spriteToUpdate.getY() + spriteToUpdate.getAABBy());
+        int newMaxColumn = getColumn(spriteToUpdate.getX() + spriteToUpdate.getAABBx() + spriteToUpdate.getAABBwidth());
+        int newMaxRow = getRow(spriteToUpdate.getY() + spriteToUpdate.getAABBy() + spriteToUpdate.getAABBheight());
+        if ((newMinColumn == spriteToUpdate.gridMinColumn)
+                && (newMinRow == spriteToUpdate.gridMinRow)
+                && (newMaxColumn == spriteToUpdate.gridMaxColumn)
+                && (newMaxRow == spriteToUpdate.gridMaxRow))
+        {
+            return;
+        }
+        takeOutOfCells(spriteToUpdate);
+        spriteToUpdate.gridMinColumn = newMinColumn;
+        spriteToUpdate.gridMinRow = newMinRow;
+        spriteToUpdate.gridMaxColumn = newMaxColumn;
+        spriteToUpdate.gridMaxRow = newMaxRow;
+        putInCells(spriteToUpdate);
+    }
+
+    /**
+     * Removes all Sprites from this grid.
+     */
+    public void clear()
+    {
+        for (Sprite s : sprites)
+        {
+            s.grid = null;
+        }
+        sprites.clear();
+        cells.clear();
+        minUsedColumn = Integer.MAX_VALUE;
+        maxUsedColumn = Integer.MIN_VALUE;
+        minUsedRow = Integer.MAX_VALUE;
+        maxUsedRow = Integer.MIN_VALUE;
+    }
+
+    // QUERY METHODS
+        // getSpriteAt
+        // getSpritesAt
+        // getOverlappingSprites
+        // getNearestSprite
+        // getNearestSprites
+
+    /**
+     * Finds the first Sprite, in the order they were added, whose bounding box
+     * contains the pointX, pointY point.
+     *
+     * @param pointX the x-axis coordinate of the point.
+     *
+     * @param pointY the y-axis coordinate of the point.
+     *
+     * @return a Sprite containing the point, or null if there isn't one.
+     */
+    public Sprite getSpriteAt(float pointX, float pointY)
+    {
+        ArrayList<Sprite> cell = cells.get(getKey(getColumn(pointX), getRow(pointY)));
+        if (cell == null)
+        {
+            return null;
+        }
+        Sprite found = null;
+        for (Sprite s : cell)
+        {
+            if (s.containsPoint(pointX, pointY)
+                    && ((found == null) || (s.gridOrder < found.gridOrder)))
+            {
+                found = s;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Finds all the Sprites whose bounding boxes contain the pointX, pointY
+     * point.
+     *
+     * @param pointX the x-axis coordinate of the point.
+     *
+     * @param pointY the y-axis coordinate of the point.
+     *
+     * @param results the list to add the found Sprites to. Note that it is not
+     * emptied first.
+     */
+    public void getSpritesAt(float pointX, float pointY, ArrayList<Sprite> results)
+    {
+        ArrayList<Sprite> cell = cells.get(getKey(getColumn(pointX), getRow(pointY)));
+        if (cell != null)
+        {
+            for (Sprite s : cell)
+            {
+                if (s.containsPoint(pointX, pointY))
+                {
+                    results.add(s);
+                }
+            }
+        }
+    }
+
+    /**
+     * Finds all the Sprites whose bounding boxes overlap the testSprite's,
+     * not counting the testSprite itself.
+     *
+     * @param testSprite the Sprite whose bounding box to test against.
+     *
+     * @param results the list to add the found Sprites to. Note that it is not
+     * emptied first.
+     */
+    public void getOverlappingSprites(Sprite testSprite, ArrayList<Sprite> results)
+    {
+        float left = testSprite.getX() + testSprite.getAABBx();
+        float top = testSprite.getY() + testSprite.getAABBy();
+        int stamp = ++queryCounter;
+        testSprite.gridQueryStamp = stamp;
+        int maxColumn = getColumn(left + testSprite.getAABBwidth());
+        int maxRow = getRow(top + testSprite.getAABBheight());
+        for (int column = getColumn(left); column <= maxColumn; column++)
+        {
+            for (int row = getRow(top); row <= maxRow; row++)
+            {
+                ArrayList<Sprite> cell = cells.get(getKey(column, row));
+                if (cell == null)
+                {
+                    continue;
+                }
+                for (Sprite s : cell)
+                {
+                    if ((s.gridQueryStamp != stamp) && s.aabbsOverlap(testSprite))
+                    {
+                        s.gridQueryStamp = stamp;
+                        results.add(s);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Finds the Sprite whose bounding box center is nearest the pointX,
+     * pointY point, as long as it's no more than maxDistance away.
+     *
+     * @param pointX the x-axis coordinate of the point.
+     *
+     * @param pointY the y-axis coordinate of the point.
+     *
+     * @param maxDistance the farthest away a Sprite may be and still be found.
+     *
+     * @return the nearest Sprite, or null if there are none close enough.
+     */
+    public Sprite getNearestSprite(float pointX, float pointY, float maxDistance)
+    {
+        ArrayList<Sprite> nearest = new ArrayList(1);
+        getNearestSprites(pointX, pointY, 1, maxDistance, nearest);
+        if (nearest.isEmpty())
+        {
+            return null;
+        }
+        return nearest.get(0);
+    }
+
+    /**
+     * Finds the k Sprites whose bounding box centers are nearest the pointX,
+     * pointY point, ignoring any more than maxDistance away. Cells are
+     * searched in rings around the point, stopping once no unsearched cell
+     * could hold anything nearer than what's been found.
+     *
+     * @param pointX the x-axis coordinate of the point.
+     *
+     * @param pointY the y-axis coordinate of the point.
+     *
+     * @param k the most Sprites to find.
+     *
+     * @param maxDistance the farthest away a Sprite may be and still be found.
+     *
+     * @param results the list to add the found Sprites to, nearest first. Note
+     * that it is not emptied first.
+     */
+    public void getNearestSprites(float pointX, float pointY, int k, float maxDistance, ArrayList<Sprite> results)
+    {
+        if ((k <= 0) || sprites.isEmpty())
+        {
+            return;
+        }
+
+        // THE BEST ONES SO FAR, NEAREST FIRST
+        Sprite[] best = new Sprite[k];
+        float[] bestDistances = new float[k];
+        int numBest = 0;
+
+        int stamp = ++queryCounter;
+        int centerColumn = getColumn(pointX);
+        int centerRow = getRow(pointY);
+        int maxRing = Math.max(
+                Math.max(Math.abs(centerColumn - minUsedColumn), Math.abs(maxUsedColumn - centerColumn)),
+                Math.max(Math.abs(centerRow - minUsedRow), Math.abs(maxUsedRow - centerRow)));
+        for (int ring = 0; ring <= maxRing; ring++)
+        {
+            // EVERYTHING IN THIS RING OR BEYOND IS AT LEAST THIS FAR AWAY
+            float ringDistance = (ring - 1) * cellSize;
+            if (ringDistance > maxDistance)
+            {
+                break;
+            }
+            if ((numBest == k) && (ringDistance > bestDistances[k - 1]))
+            {
+                break;
+            }
+
+            for (int column = centerColumn - ring; column <= centerColumn + ring; column++)
+            {
+                // ONLY THE TOP AND BOTTOM ROWS OF THE RING, EXCEPT FOR ITS SIDES
+                int rowStep = ((column == centerColumn - ring) || (column == centerColumn + ring)) ? 1 : Math.max(1, 2 * ring);
+                for (int row = centerRow - ring; row <= centerRow + ring; row += rowStep)
+                {
+                    ArrayList<Sprite> cell = cells.get(getKey(column, row));
+                    if (cell == null)
+                    {
+                        continue;
+                    }
+                    for (Sprite s : cell)
+                    {
+                        if (s.gridQueryStamp == stamp)
+                        {
+                            continue;
+                        }
+                        s.gridQueryStamp = stamp;
+                        float deltaX = s.getX() + s.getAABBx() + (s.getAABBwidth() / 2) - pointX;
+                        float deltaY = s.getY() + s.getAABBy() + (s.getAABBheight() / 2) - pointY;
+                        float distance = (float) Math.sqrt((deltaX * deltaX) + (deltaY * deltaY));
+                        if ((distance > maxDistance)
+                                || ((numBest == k) && (distance >= bestDistances[k - 1])))
+                        {
+                            continue;
+                        }
+
+                        // INSERT IT IN ORDER, BUMPING THE FARTHEST IF WE'RE FULL
+                        int i = (numBest < k) ? numBest++ : k - 1;
+                        while ((i > 0) && (bestDistances[i - 1] > distance))
+                        {
+                            best[i] = best[i - 1];
+                            bestDistances[i] = bestDistances[i - 1];
+                            i--;
+                        }
+                        best[i] = s;
+                        bestDistances[i] = distance;
+                    }
+                }
+            }
+        }
+        for (int i = 0; i < numBest; i++)
+        {
+            results.add(best[i]);
+        }
+    }
+
+    // PRIVATE HELPER METHODS
+
+    /**
+     * Finds the column of cells containing the x-axis coordinate.
+     */
+    private int getColumn(float x)
+    {
+        return (int) Math.floor(x / cellSize);
+    }
+
+    /**
+     * Finds the row of cells containing the y-axis coordinate.
+     */
+    private int getRow(float y)
+    {
+        return (int) Math.floor(y / cellSize);
+    }
+
+    /**
+     * Packs the cell coordinates into a single number for use as a map key.
+     */
+    private long getKey(int column, int row)
+    {
+        return (((long) column) << 32) | (row & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Adds the sprite to every cell in its current cell range.
+     */
+    private void putInCells(Sprite sprite)
+    {
+        for (int column = sprite.gridMinColumn; column <= sprite.gridMaxColumn; column++)
+        {
+            for (int row = sprite.gridMinRow; row <= sprite.gridMaxRow; row++)
+            {
+                Long key = getKey(column, row);
+                ArrayList<Sprite> cell = cells.get(key);
+                if (cell == null)
+                {
+                    cell = new ArrayList();
+                    cells.put(key, cell);
+                }
+                cell.add(sprite);
+            }
+        }
+        minUsedColumn = Math.min(minUsedColumn, sprite.gridMinColumn);
+        maxUsedColumn = Math.max(maxUsedColumn, sprite.gridMaxColumn);
+        minUsedRow = Math.min(minUsedRow, sprite.gridMinRow);
+        maxUsedRow = Math.max(maxUsedRow, sprite.gridMaxRow);
+    }
+
+    /**
+     * Removes the sprite from every cell in its current cell range, getting
+     * rid of any cells left empty.
+     */
+    private void takeOutOfCells(Sprite sprite)
+    {
+        for (int column = sprite.gridMinColumn; column <= sprite.gridMaxColumn; column++)
+        {
+            for (int row = sprite.gridMinRow; row <= sprite.gridMaxRow; row++)
+            {
+                Long key = getKey(column, row);
+                ArrayList<Sprite> cell = cells.get(key);
+                if (cell != null)
+                {
+                    cell.remove(sprite);
+                    if (cell.isEmpty())
+                    {
+                        cells.remove(key);
+                    }
+                }
+            }
+        }
+    }
+}
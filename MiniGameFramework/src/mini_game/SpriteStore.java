@@ -0,0 +1,409 @@
+package mini_game;
+
+import java.util.Arrays;
+
+/**
+ * A SpriteStore keeps the positions, velocities, and bounding boxes of many
+ * simple moving Sprites side by side in arrays of floats, rather than spread
+ * out over many objects. This lets all of them be moved with one quick loop,
+ * which makes a big difference for games with lots of things like falling
+ * coins or particles.
+ *
+ * Game code still gets a Sprite for each one, which may be used just like any
+ * other Sprite, it simply reads and writes its data in the store. Note that
+ * these Sprites aren't moved by their update methods, but all at once by the
+ * store's updateAll. A Sprite that's removed from its store keeps its last
+ * position and velocity, and may still be used by itself.
+ *
+ * Only plain Sprites may be kept in a store. Sprite subclasses, which tend to
+ * use their position fields directly, should be updated the usual way.
+ *
+ * @author Richard McKenna
+ * @version 1.0
+ */
+public class SpriteStore
+{
+    // HOW MANY SPRITES WE HAVE ROOM FOR IF NOT TOLD OTHERWISE
+    public static final int DEFAULT_CAPACITY = 64;
+
+    // THE DATA FOR ALL THE SPRITES, WHERE SPRITE i's DATA
+    // IS AT INDEX i IN EACH ARRAY
+    float[] x;
+    float[] y;
+    float[] vX;
+    float[] vY;
+    float[] aabbX;
+    float[] aabbY;
+    float[] aabbWidth;
+    float[] aabbHeight;
+
+    // THE SPRITES WE'VE HANDED OUT, IN THE SAME ORDER
+    private StoredSprite[] sprites;
+
+    // HOW MANY OF THE ARRAY SLOTS ARE IN USE
+    private int numSprites;
+
+    /**
+     * This constructor makes an empty store with room for DEFAULT_CAPACITY
+     * Sprites, which will grow as needed.
+     */
+    public SpriteStore()
+    {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * This constructor makes an empty store with room for initCapacity
+     * Sprites, which will grow as needed.
+     *
+     * @param initCapacity the number of Sprites to make room for.
+     */
+    public SpriteStore(int initCapacity)
+    {
+        int capacity = Math.max(1, initCapacity);
+        x = new float[capacity];
+        y = new float[capacity];
+        vX = new float[capacity];
+        vY = new float[capacity];
+        aabbX = new float[capacity];
+        aabbY = new float[capacity];
+        aabbWidth = new float[capacity];
+        aabbHeight = new float[capacity];
+        sprites = new StoredSprite[capacity];
+    }
+
+    // ACCESSOR METHODS
+        // getNumSprites
+        // getSprite
+        // contains
+
+    /**
+     * Accessor method for the number of Sprites in this store.
+     *
+     * @return the number of Sprites in this store.
+     */
+    public int getNumSprites()
+    {
+        return numSprites;
+    }
+
+    /**
+     * Accessor method for the Sprite at the given index. Note that removing
+     * Sprites changes the order of the ones left.
+     *
+     * @param index the index of the Sprite to get, from 0 up to, but not
+     * including, getNumSprites.
+     *
+     * @return the Sprite at that index.
+     */
+    public Sprite getSprite(int index)
+    {
+        if ((index < 0) || (index >= numSprites))
+        {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + numSprites);
+        }
+        return sprites[index];
+    }
+
+    /**
+     * Tests to see if testSprite is in this store.
+     *
+     * @param testSprite the Sprite to look for.
+     *
+     * @return true if testSprite is in this store, false otherwise.
+     */
+    public boolean contains(Sprite testSprite)
+    {
+        return (testSprite instanceof StoredSprite)
+                && (((StoredSprite) testSprite).store == this);
+    }
+
+    // STORE METHODS
+        // addSprite
+        // remove
+        // clear
+        // updateAll
+
+    /**
+     * Makes a new Sprite whose data will be kept in this store.
+     *
+     * @param initSpriteType the SpriteType of the new Sprite.
+     *
+     * @param initX initial X-axis position of the new Sprite.
+     *
+     * @param initY initial Y-axis position of the new Sprite.
+     *
+     * @param initVx initial X-axis velocity of the new Sprite.
+     *
+     * @param initVy initial Y-axis velocity of the new Sprite.
+     *
+     * @param initState initial state of the new Sprite.
+     *
+     * @return the new Sprite.
+     */
+    public Sprite addSprite(SpriteType initSpriteType,
+            float initX, float initY,
+            float initVx, float initVy,
+            String initState)
+    {
+        StoredSprite newSprite = new StoredSprite(initSpriteType, initX, initY, initVx, initVy, initState);
+        if (numSprites == sprites.length)
+        {
+            grow();
+        }
+
+        // COPY ITS DATA INTO THE ARRAYS, WHICH IS WHERE IT WILL LIVE FROM NOW ON
+        int index = numSprites;
+        x[index] = newSprite.x;
+        y[index] = newSprite.y;
+        vX[index] = newSprite.vX;
+        vY[index] = newSprite.vY;
+        aabbX[index] = newSprite.aabbX;
+        aabbY[index] = newSprite.aabbY;
+        aabbWidth[index] = newSprite.aabbWidth;
+        aabbHeight[index] = newSprite.aabbHeight;
+        sprites[index] = newSprite;
+        newSprite.store = this;
+        newSprite.storeIndex = index;
+        numSprites++;
+        return newSprite;
+    }
+
+    /**
+     * Removes spriteToRemove from this store. It keeps its current data and
+     * may still be used, but will no longer be moved by updateAll.
+     *
+     * @param spriteToRemove the Sprite to remove.
+     *
+     * @return true if it was removed, false if it wasn't in this store.
+     */
+    public boolean remove(Sprite spriteToRemove)
+    {
+        if (!contains(spriteToRemove))
+        {
+            return false;
+        }
+        StoredSprite storedSprite = (StoredSprite) spriteToRemove;
+        int index = storedSprite.storeIndex;
+
+        // GIVE IT BACK ITS DATA
+        storedSprite.x = x[index];
+        storedSprite.y = y[index];
+        storedSprite.vX = vX[index];
+        storedSprite.vY = vY[index];
+        storedSprite.store = null;
+
+        // AND FILL ITS SLOT WITH THE LAST SPRITE
+        int lastIndex = numSprites - 1;
+        if (index != lastIndex)
+        {
+            x[index] = x[lastIndex];
+            y[index] = y[lastIndex];
+            vX[index] = vX[lastIndex];
+            vY[index] = vY[lastIndex];
+            aabbX[index] = aabbX[lastIndex];
+            aabbY[index] = aabbY[lastIndex];
+            aabbWidth[index] = aabbWidth[lastIndex];
+            aabbHeight[index] = aabbHeight[lastIndex];
+            sprites[index] = sprites[lastIndex];
+            sprites[index].storeIndex = index;
+        }
+        sprites[lastIndex] = null;
+        numSprites--;
+        return true;
+    }
+
+    /**
+     * Removes all Sprites from this store.
+     */
+    public void clear()
+    {
+        while (numSprites > 0)
+        {
+            remove(sprites[numSprites - 1]);
+        }
+    }
+
+    /**
+     * Called once per frame, this method moves every Sprite in this store
+     * according to its velocity, and then updates the SpriteGrids of any that
+     * are in one.
+     */
+    public void updateAll()
+    {
+        // MOVE THEM ALL. NOTE THAT THIS LOOP IS KEPT AS
+        // SIMPLE AS POSSIBLE, SO THE JIT CAN MAKE IT FAST
+        float[] storeX = x;
+        float[] storeY = y;
+        float[] storeVx = vX;
+        float[] storeVy = vY;
+        int n = numSprites;
+        for (int i = 0; i < n; i++)
+        {
+            storeX[i] += storeVx[i];
+            storeY[i] += storeVy[i];
+        }
+
+        // AND THEN KEEP THEIR GRIDS UP TO DATE
+        for (int i = 0; i < n; i++)
+        {
+            StoredSprite s = sprites[i];
+            if (s.grid != null)
+            {
+                s.grid.update(s);
+            }
+        }
+    }
+
+    // PRIVATE HELPER METHODS
+
+    /**
+     * Doubles the room in all the arrays.
+     */
+    private void grow()
+    {
+        int newCapacity = sprites.length * 2;
+        x = Arrays.copyOf(x, newCapacity);
+        y = Arrays.copyOf(y, newCapacity);
+        vX = Arrays.copyOf(vX, newCapacity);
+        vY = Arrays.copyOf(vY, newCapacity);
+        aabbX = Arrays.copyOf(aabbX, newCapacity);
+        aabbY = Arrays.copyOf(aabbY, newCapacity);
+        aabbWidth = Arrays.copyOf(aabbWidth, newCapacity);
+        aabbHeight = Arrays.copyOf(aabbHeight, newCapacity);
+        sprites = Arrays.copyOf(sprites, newCapacity);
+    }
+
+    /**
+     * The Sprites handed out by a store, which use the store's arrays for
+     * their data for as long as they're in it.
+     */
+    private static class StoredSprite extends Sprite
+    {
+        // THE STORE THIS SPRITE IS IN, OR null IF IT'S BEEN REMOVED
+        private SpriteStore store;
+
+        // WHERE ITS DATA IS IN THE STORE'S ARRAYS
+        private int storeIndex;
+
+        StoredSprite(SpriteType initSpriteType,
+                float initX, float initY,
+                float initVx, float initVy,
+                String initState)
+        {
+            super(initSpriteType, initX, initY, initVx, initVy, initState);
+        }
+
+        @Override
+        public float getX()
+        {
+            return (store == null) ? x : store.x[storeIndex];
+        }
+
+        @Override
+        public float getY()
+        {
+            return (store == null) ? y : store.y[storeIndex];
+        }
+
+        @Override
+        public float getVx()
+        {
+            return (store == null) ? vX : store.vX[storeIndex];
+        }
+
+        @Override
+        public float getVy()
+        {
+            return (store == null) ? vY : store.vY[storeIndex];
+        }
+
+        @Override
+        public float getAABBx()
+        {
+            return (store == null) ? aabbX : store.aabbX[storeIndex];
+        }
+
+        @Override
+        public float getAABBy()
+        {
+            return (store == null) ? aabbY : store.aabbY[storeIndex];
+        }
+
+        @Override
+        public float getAABBwidth()
+        {
+            return (store == null) ? aabbWidth : store.aabbWidth[storeIndex];
+        }
+
+        @Override
+        public float getAABBheight()
+        {
+            return (store == null) ? aabbHeight : store.aabbHeight[storeIndex];
+        }
+
+        @Override
+        public void setX(float initX)
+        {
+            if (store == null)
+            {
+                x = initX;
+            }
+            else
+            {
+                store.x[storeIndex] = initX;
+            }
+            updateGridCells();
+        }
+
+        @Override
+        public void setY(float initY)
+        {
+            if (store == null)
+            {
+                y = initY;
+            }
+            else
+            {
+                store.y[storeIndex] = initY;
+            }
+            updateGridCells();
+        }
+
+        @Override
+        public void setVx(float initVx)
+        {
+            if (store == null)
+            {
+                vX = initVx;
+            }
+            else
+            {
+                store.vX[storeIndex] = initVx;
+            }
+        }
+
+        @Override
+        public void setVy(float initVy)
+        {
+            if (store == null)
+            {
+                vY = initVy;
+            }
+            else
+            {
+                store.vY[storeIndex] = initVy;
+            }
+        }
+
+        @Override
+        public void update(MiniGame game)
+        {
+            // WHILE IN A STORE, THE STORE MOVES US
+            if (store == null)
+            {
+                super.update(game);
+            }
+        }
+    }
+}
@@ -1,7 +1,14 @@
 package mini_game;
 
+import java.awt.AlphaComposite;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.Image;
+import java.awt.Transparency;
 import java.awt.image.BufferedImage;
-import java.util.HashMap;
+import java.awt.image.VolatileImage;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * A SpriteType describes a particular type of Sprite. In most games, artwork is
@@ -10,11 +17,28 @@ import java.util.HashMap;
  * waste of resources. Instead, we load the art once, and share it. This is
  * common practice in all types of applications.
  *
+ * Every state name used by any SpriteType is given a small number, its state
+ * ID, the first time it's seen. Sprites keep their state as one of these
+ * numbers, and each SpriteType keeps its images in an array indexed by them,
+ * so testing and drawing a Sprite's state never requires hashing or comparing
+ * Strings. The String methods remain for convenience, and simply look up the
+ * state ID.
+ *
  * @author Richard McKenna
  * @version 1.0
  */
 public class SpriteType
 {
+    // THE STATE ID OF A null STATE
+    public static final int NO_STATE_ID = -1;
+
+    // ALL THE STATE NAMES THAT HAVE BEEN GIVEN IDS, AND THE NAMES
+    // INDEXED BY THEIR IDS. THE NAMES ARRAY IS REPLACED, NEVER
+    // CHANGED, WHEN A NEW ONE IS ADDED, SO IT MAY BE READ WITHOUT
+    // LOCKING BY ANY THREAD
+    private static final ConcurrentHashMap<String, Integer> stateIDs = new ConcurrentHashMap();
+    private static volatile String[] stateNames = new String[0];
+
     // EACH SpriteType HAS A UNIQUE NAME FOR IDENTIFYING IT,
     // SHOULD THE NEED ARISE.
     private String spriteTypeID;
@@ -23,8 +47,14 @@ public class SpriteType
     // IT. FOR EXAMPLE, A CHARACTER SPRITE MAY HAVE ONE FOR FACING LEFT,
     // RIGHT, UP, AND DOWN, SO EACH WOULD BE CONSIDERED A DIFFERENT
     // STATE, AND SO EACH IMAGE SHOULD BE PLACED HERE, MAPPING A UNIQUE
-    // STATE NAME TO AN IMAGE.
-    private HashMap<String, BufferedImage> states;
+    // STATE NAME TO AN IMAGE. THE IMAGES ARE INDEXED BY STATE ID
+    private BufferedImage[] stateImages;
+
+    // WHEN THE GAME IS ACTIVELY RENDERED, WE KEEP A COPY OF EACH
+    // STATE IMAGE IN VIDEO MEMORY SO IT CAN BE DRAWN BY THE GRAPHICS
+    // HARDWARE. THESE ARE MADE THE FIRST TIME THEY'RE NEEDED AND ARE
+    // ONLY EVER USED BY THE RENDERING THREAD
+    private VolatileImage[] acceleratedStates;
     
     // WIDTH AND HEIGHT OF THIS SpriteType's IMAGES
     private int width;
@@ -39,14 +69,89 @@ public class SpriteType
     public SpriteType(String initSpriteTypeID)
     {
         spriteTypeID = initSpriteTypeID;
-        states = new HashMap<String, BufferedImage>();
+        stateImages = new BufferedImage[0];
         width = -1;
         height = -1;
     }
 
+    // STATE ID METHODS
+        // getStateID
+        // getStateName
+        // getNumStateIDs
+
+    /**
+     * Gets the state ID for the stateName state, giving it a new one if it
+     * doesn't have one yet. State IDs are the same for all SpriteTypes, so a
+     * game may look them up once and keep them in constants.
+     *
+     * @param stateName the name of the state.
+     *
+     * @return the ID of the stateName state, or NO_STATE_ID if stateName is
+     * null.
+     */
+    public static int getStateID(String stateName)
+    {
+        if (stateName == null)
+        {
+            return NO_STATE_ID;
+        }
+        Integer stateID = stateIDs.get(stateName);
+        if (stateID == null)
+        {
+            stateID = registerState(stateName);
+        }
+        return stateID;
+    }
+
+    /**
+     * Gets the name of the state with the stateID state ID.
+     *
+     * @param stateID the ID of the state, as provided by getStateID.
+     *
+     * @return the name of the state, or null for NO_STATE_ID.
+     */
+    public static String getStateName(int stateID)
+    {
+        if (stateID == NO_STATE_ID)
+        {
+            return null;
+        }
+        return stateNames[stateID];
+    }
+
+    /**
+     * Accessor method for the number of state IDs given out so far, which is
+     * one more than the largest ID.
+     *
+     * @return the number of different state names seen so far.
+     */
+    public static int getNumStateIDs()
+    {
+        return stateNames.length;
+    }
+
+    /**
+     * Gives the stateName state the next state ID, unless another thread beat
+     * us to it.
+     */
+    private static synchronized int registerState(String stateName)
+    {
+        Integer stateID = stateIDs.get(stateName);
+        if (stateID == null)
+        {
+            String[] newStateNames = Arrays.copyOf(stateNames, stateNames.length + 1);
+            stateID = stateNames.length;
+            newStateNames[stateID] = stateName;
+            stateNames = newStateNames;
+            stateIDs.put(stateName, stateID);
+        }
+        return stateID;
+    }
+
     // ACCESSOR METHODS
         // getSpriteTypeID
         // getStateImage
+        // getAcceleratedStateImage
         // getHeight
         // getWidth
     
@@ -70,7 +175,88 @@ public class SpriteType
      */
     public BufferedImage getStateImage(String stateName)
     {
-        return states.get(stateName);
+        return getStateImage(getStateID(stateName));
+    }
+
+    /**
+     * Accessor method for accessing and returning the Image that correponds to
+     * a given state ID. This is what should be used while rendering.
+     *
+     * @param stateID the ID of the state for which one wishes to access the
+     * image.
+     *
+     * @return the image registered for the state, or null if there isn't one.
+     */
+    public BufferedImage getStateImage(int stateID)
+    {
+        if ((stateID < 0) || (stateID >= stateImages.length))
+        {
+            return null;
+        }
+        return stateImages[stateID];
+    }
+
+    /**
+     * Accessor method for the hardware accelerated copy of the image that
+     * corresponds to a given state. The copy is made the first time it's
+     * asked for, and remade whenever the graphics hardware loses it. Note that
+     * this should only be called by the rendering thread.
+     *
+     * @param stateID the ID of the state for which one wishes to access the
+     * image.
+     *
+     * @param gc the configuration of the surface the image will be drawn to.
+     *
+     * @return the accelerated image for the state, or the regular image if
+     * the accelerated one is not currently usable.
+     */
+    public Image getAcceleratedStateImage(int stateID, GraphicsConfiguration gc)
+    {
+        BufferedImage source = getStateImage(stateID);
+        if ((source == null) || (gc == null))
+        {
+            return source;
+        }
+        if ((acceleratedStates == null) || (acceleratedStates.length < stateImages.length))
+        {
+            acceleratedStates = (acceleratedStates == null)
+                    ? new VolatileImage[stateImages.length]
+                    : Arrays.copyOf(acceleratedStates, stateImages.length);
+        }
+
+        // MAKE SURE THE COPY IS STILL GOOD, MAKING OR
+        // REFILLING IT IF THE HARDWARE THREW IT AWAY
+        VolatileImage copy = acceleratedStates[stateID];
+        int status = VolatileImage.IMAGE_INCOMPATIBLE;
+        if (copy != null)
+        {
+            status = copy.validate(gc);
+        }
+        if (status == VolatileImage.IMAGE_INCOMPATIBLE)
+        {
+            if (copy != null)
+            {
+                copy.flush();
+            }
+            copy = gc.createCompatibleVolatileImage(source.getWidth(), source.getHeight(), Transparency.TRANSLUCENT);
+            acceleratedStates[stateID] = copy;
+            status = VolatileImage.IMAGE_RESTORED;
+        }
+        if (status == VolatileImage.IMAGE_RESTORED)
+        {
+            Graphics2D g2 = copy.createGraphics();
+            g2.setComposite(AlphaComposite.Src);
+            g2.drawImage(source, 0, 0, null);
+            g2.dispose();
+        }
+
+        // IF IT WAS LOST AGAIN WHILE WE FILLED IT, USE THE
+        // REGULAR IMAGE THIS TIME AND TRY AGAIN NEXT FRAME
+        if (copy.contentsLost())
+        {
+            return source;
+        }
+        return copy;
     }
 
     /**
@@ -107,11 +293,29 @@ public class SpriteType
      */
     public void addState(String stateName, BufferedImage img)
     {
-        if (states.isEmpty())
+        if ((width < 0) && (height < 0))
         {
             width = img.getWidth(null);
             height = img.getHeight(null);
         }
-        states.put(stateName, img);
+
+        // MAKE ROOM IN THE TABLE FOR THIS STATE'S ID
+        int stateID = getStateID(stateName);
+        if (stateID >= stateImages.length)
+        {
+            stateImages = Arrays.copyOf(stateImages, stateID + 1);
+        }
+        stateImages[stateID] = img;
+
+        // ANY OLD ACCELERATED COPY IS NOW OUT OF DATE
+        if ((acceleratedStates != null) && (stateID < acceleratedStates.length))
+        {
+            VolatileImage staleCopy = acceleratedStates[stateID];
+            acceleratedStates[stateID] = null;
+            if (staleCopy != null)
+            {
+                staleCopy.flush();
+            }
+        }
     }
 }
\ No newline at end of file
@@ -2,6 +2,7 @@ package zombiecrushsaga;
 
 import java.awt.Color;
 import java.awt.Font;
+import mini_game.SpriteType;
 
 /**
  * This class stores the types of controls and their possible states which
@@ -22,7 +23,6 @@ public class ZombieCrushSagaConstants
     
     // EACH SCREEN HAS ITS OWN BACKGROUND TYPE
     public static final String BACKGROUND_TYPE = "BACKGROUND_TYPE";
-    public static final String SAGA_TYPE = "SAGA_TYPE";
     
     // THIS REPRESENTS THE BUTTONS ON THE SPLASH SCREEN FOR LEVEL SELECTION
     public static final String LEVEL_SELECT_BUTTON_TYPE = "LEVEL_SELECT_BUTTON_TYPE";
@@ -72,6 +72,15 @@ public class ZombieCrushSagaConstants
     public static final String INCORRECTLY_SELECTED_STATE = "NOT_AVAILABLE_STATE";
     public static final String MOUSE_OVER_STATE = "MOUSE_OVER_STATE";
 
+    // AND THE IDS OF THOSE STATES, WHICH ARE WHAT WE TEST AGAINST
+    // WHILE UPDATING AND RENDERING, SINCE COMPARING NUMBERS IS
+    // MUCH CHEAPER THAN COMPARING STRINGS
+    public static final int INVISIBLE_STATE_ID = SpriteType.getStateID(INVISIBLE_STATE);
+    public static final int VISIBLE_STATE_ID = SpriteType.getStateID(VISIBLE_STATE);
+    public static final int SELECTED_STATE_ID = SpriteType.getStateID(SELECTED_STATE);
+    public static final int INCORRECTLY_SELECTED_STATE_ID = SpriteType.getStateID(INCORRECTLY_SELECTED_STATE);
+    public static final int MOUSE_OVER_STATE_ID = SpriteType.getStateID(MOUSE_OVER_STATE);
+
     // THE BUTTONS MAY HAVE 2 STATES:
         // - INVISIBLE_STATE: MEANS A BUTTON IS NOT DRAWN AND CAN'T BE CLICKED
         // - VISIBLE_STATE: MEANS A BUTTON IS DRAWN AND CAN BE CLICKED
@@ -92,13 +101,44 @@ public class ZombieCrushSagaConstants
     public static final int TILE_IMAGE_HEIGHT = 55;
     public static final int Z_TILE_OFFSET = 5;
 
+    // THE NUMBER OF DIFFERENT TILE COLORS ON THE CRUSH BOARD
+    public static final int NUM_CRUSH_COLORS = 6;
+
+    // EACH TILE CLEARED ON THE CRUSH BOARD IS WORTH THIS MUCH, TIMES
+    // HOW FAR INTO A CASCADE IT WAS CLEARED
+    public static final int CRUSH_TILE_SCORE = 60;
+
     // FOR MOVING TILES AROUND
     public static final int MAX_TILE_VELOCITY = 70;
     
     
     // SAGA SCREEN BACKGROUND POSITION
     public static final int SAGA_X = 0;
-    public static int SAGA_Y = -2900;
+
+    // THE SAGA MAP IS DECODED IN STRIPS THIS TALL, AND WE KEEP THIS
+    // MANY MORE THAN IT TAKES TO COVER THE SCREEN
+    public static final int SAGA_STRIP_HEIGHT = 256;
+    public static final int SAGA_SPARE_STRIPS = 2;
+
+    // SCROLLING THE SAGA MAP, IN PIXELS PER FRAME. EACH SCROLL MAKES IT
+    // MOVE THIS MUCH FASTER, AND IT SLOWS DOWN BY THE FRICTION EACH
+    // FRAME UNTIL IT'S TOO SLOW TO BOTHER WITH
+    public static final float SAGA_SCROLL_IMPULSE = 12.0f;
+    public static final float SAGA_MAX_SCROLL_VELOCITY = 60.0f;
+    public static final float SAGA_SCROLL_FRICTION = 0.9f;
+    public static final float SAGA_MIN_SCROLL_VELOCITY = 0.5f;
+
+    // LEVEL NODES ON THE SAGA MAP ARE LAID OUT FROM THE BOTTOM OF THE
+    // MAP UP, WEAVING BETWEEN THESE COLUMNS
+    public static final int[] LEVEL_NODE_XS = { 340, 540, 740, 940, 740, 540 };
+    public static final int LEVEL_NODE_BOTTOM_MARGIN = 150;
+    public static final int LEVEL_NODE_SPACING = 150;
+    public static final int LEVEL_NODE_HEIGHT = 100;
+
+    // A LEVEL NODE'S IMAGES ARE LOADED ONCE IT'S THIS CLOSE TO THE
+    // SCREEN, AND LET GO ONCE IT'S THIS FAR AWAY, IN PIXELS
+    public static final int LEVEL_NODE_LOAD_MARGIN = 400;
+    public static final int LEVEL_NODE_EVICT_MARGIN = 1200;
     public static final int TOOLBAR_X = 0;
     public static final int TOOLBAR_Y = 0;
     public static final int SCROLLUP_X = 1150;
@@ -154,6 +194,11 @@ public class ZombieCrushSagaConstants
     // COLOR KEY, WHICH REFERS TO THE COLOR TO IGNORE WHEN
     // LOADING ART.
     public static final Color COLOR_KEY = new Color(255, 174, 201);
+
+    // ONCE ART HAS BEEN LOADED WITH THE COLOR KEY IT'S SAVED IN THIS
+    // DIRECTORY, INSIDE THE IMAGE DIRECTORY, SO THAT IT DOESN'T HAVE
+    // TO BE KEYED AGAIN THE NEXT TIME THE GAME STARTS
+    public static final String KEYED_IMAGE_DIR = "keyed/";
     public static final Color DEBUG_TEXT_COLOR = Color.BLACK;
     public static final Color TEXT_DISPLAY_COLOR = new Color (10, 160, 10);
     public static final Color SELECTED_TILE_COLOR = new Color(255,255,0,100);
@@ -0,0 +1,872 @@
+package zombiecrushsaga.data;
+
+import java.util.Random;
+
+/**
+ * This class runs the match-3 rules for the crush board: finding lines of
+ * 3 or more tiles of the same color, clearing them, letting the tiles above
+ * fall into the gaps, filling the board back up from the top, and repeating
+ * that until nothing more matches.
+ *
+ * Rather than keeping a tile object in each cell, the board keeps one
+ * bitboard per color. Each column of the board is one long, with bit r set
+ * if the tile in row r is that color, so row 0 is the top of the board and
+ * tiles fall toward higher bits. Runs down a column are found by shifting a
+ * column's long against itself, and runs across are found by ANDing the
+ * longs of neighbouring columns, so a whole color is checked with a few long
+ * operations per column, no matter how many tiles there are. Specials made
+ * by bigger matches are kept the same way, with one bitboard per kind.
+ *
+ * Matches make these specials:
+ * - 4 in a line makes a striped tile, which clears its whole row if the line
+ *   was down a column, or its whole column if the line was across a row.
+ * - 5 in a line makes a bomb, which clears every tile of its color.
+ * - A line across meeting a line down, in an L or T, makes a wrapped tile,
+ *   which clears the 3x3 block around it.
+ * Specials keep their color and go off when they're cleared.
+ *
+ * @author Richard McKenna
+ */
+public class ZombieCrushSagaBoard
+{
+    // EACH COLUMN IS ONE LONG, SO THIS IS AS TALL AS A BOARD CAN BE
+    public static final int MAX_ROWS = 64;
+
+    // FOR CELLS WITHOUT A TILE
+    public static final int NO_COLOR = -1;
+
+    // THE KINDS OF SPECIAL TILES
+    public static final int NO_SPECIAL = 0;
+    public static final int STRIPED_ROW_SPECIAL = 1;
+    public static final int STRIPED_COLUMN_SPECIAL = 2;
+    public static final int WRAPPED_SPECIAL = 3;
+    public static final int BOMB_SPECIAL = 4;
+    public static final int NUM_SPECIALS = 4;
+
+    // SO A BOARD THAT KEEPS REFILLING INTO MATCHES CAN'T CASCADE FOREVER
+    public static final int MAX_CASCADES = 100;
+
+    // HOW MANY TIMES shuffle TRIES TO AVOID MAKING MATCHES
+    public static final int MAX_SHUFFLE_ATTEMPTS = 100;
+
+    // BOARD DIMENSIONS AND THE NUMBER OF TILE COLORS
+    private int columns;
+    private int rows;
+    private int numColors;
+
+    // THE CELLS THAT ARE PART OF THE BOARD, BY COLUMN
+    private long[] playable;
+
+    // THE BITBOARDS, INDEXED [color][column] AND [special - 1][column]
+    private long[][] colorBoards;
+    private long[][] specialBoards;
+
+    // WHAT THE LAST findMatches FOUND
+    private long[] matched;
+    private long[][] newSpecials;
+    private int numMatched;
+    private int numNewSpecials;
+
+    // WHAT THE LAST clearMatches CLEARED
+    private long[] cleared;
+    private int numCleared;
+
+    // WHERE EACH TILE WAS BEFORE THE LAST applyGravity. ONLY THE CELLS
+    // SET IN fallen ARE KEPT, EVERY OTHER TILE DIDN'T MOVE
+    private long[] fallen;
+    private int[][] fallenFrom;
+
+    // THE CELLS WHOSE TILES HAVE CHANGED SINCE THEY WERE LAST TAKEN
+    // WITH takeChangedCells
+    private long[] changed;
+
+    // USED WHILE FINDING AND CLEARING, KEPT SO WE DON'T MAKE GARBAGE
+    private long[] across;
+    private long[] toClear;
+    private long[] activated;
+    private boolean[] bombColors;
+    private int[] moveFrom;
+    private int[] moveTo;
+
+    /**
+     * This constructor makes an empty board where every cell is playable.
+     *
+     * @param initColumns The number of columns.
+     *
+     * @param initRows The number of rows, up to MAX_ROWS.
+     *
+     * @param initNumColors The number of tile colors, at least 3.
+     */
+    public ZombieCrushSagaBoard(int initColumns, int initRows, int initNumColors)
+    {
+        if ((initRows < 1) || (initRows > MAX_ROWS) || (initColumns < 1) || (initNumColors < 3))
+        {
+            throw new IllegalArgumentException("Bad crush board " + initColumns + "x" + initRows + ", " + initNumColors + " colors");
+        }
+        columns = initColumns;
+        rows = initRows;
+        numColors = initNumColors;
+        playable = new long[columns];
+        colorBoards = new long[numColors][columns];
+        specialBoards = new long[NUM_SPECIALS][columns];
+        matched = new long[columns];
+        newSpecials = new long[NUM_SPECIALS][columns];
+        cleared = new long[columns];
+        fallen = new long[columns];
+        fallenFrom = new int[columns][rows];
+        changed = new long[columns];
+        across = new long[columns];
+        toClear = new long[columns];
+        activated = new long[columns];
+        bombColors = new boolean[numColors];
+        moveFrom = new int[rows];
+        moveTo = new int[rows];
+
+        long fullColumn = (rows == MAX_ROWS) ? -1L : ((1L << rows) - 1);
+        for (int i = 0; i < columns; i++)
+        {
+            playable[i] = fullColumn;
+            changed[i] = fullColumn;
+        }
+    }
+
+    // ACCESSOR METHODS
+        // - getColumns
+        // - getRows
+        // - getNumColors
+        // - isPlayable
+        // - getPlayableRows
+        // - getColor
+        // - getColorRows
+        // - getSpecial
+        // - isMatched
+        // - getNumMatched
+        // - getNumNewSpecials
+        // - getNumCleared
+        // - hasFallen
+        // - getFallenFrom
+
+    /**
+     * Accessor method for the number of columns.
+     *
+     * @return The number of columns in the board.
+     */
+    public int getColumns()
+    {
+        return columns;
+    }
+
+    /**
+     * Accessor method for the number of rows.
+     *
+     * @return The number of rows in the board.
+     */
+    public int getRows()
+    {
+        return rows;
+    }
+
+    /**
+     * Accessor method for the number of tile colors.
+     *
+     * @return The number of colors tiles may be.
+     */
+    public int getNumColors()
+    {
+        return numColors;
+    }
+
+    /**
+     * Tests if a cell is part of the board.
+     *
+     * @param col The cell's column.
+     *
+     * @param row The cell's row.
+     *
+     * @return true if tiles may be in the cell, false otherwise.
+     */
+    public boolean isPlayable(int col, int row)
+    {
+        return ((playable[col] >>> row) & 1) != 0;
+    }
+
+    /**
+     * Accessor method for the cells of a column that are part of the board.
+     *
+     * @param col The column.
+     *
+     * @return The playable cells, with bit r set for row r.
+     */
+    public long getPlayableRows(int col)
+    {
+        return playable[col];
+    }
+
+    /**
+     * Finds the color of the tile in a cell.
+     *
+     * @param col The cell's column.
+     *
+     * @param row The cell's row.
+     *
+     * @return The tile's color, or NO_COLOR if the cell is empty.
+     */
+    public int getColor(int col, int row)
+    {
+        long cell = 1L << row;
+        for (int c = 0; c < numColors; c++)
+        {
+            if ((colorBoards[c][col] & cell) != 0)
+                return c;
+        }
+        return NO_COLOR;
+    }
+
+    /**
+     * Accessor method for one column of a color's bitboard.
+     *
+     * @param color The color.
+     *
+     * @param col The column.
+     *
+     * @return The cells in the column with tiles of that color, with bit
+     * r set for row r.
+     */
+    public long getColorRows(int color, int col)
+    {
+        return colorBoards[color][col];
+    }
+
+    /**
+     * Finds the kind of special in a cell.
+     *
+     * @param col The cell's column.
+     *
+     * @param row The cell's row.
+     *
+     * @return The kind of special, or NO_SPECIAL if the tile in the
+     * cell isn't one.
+     */
+    public int getSpecial(int col, int row)
+    {
+        long cell = 1L << row;
+        for (int s = 0; s < NUM_SPECIALS; s++)
+        {
+            if ((specialBoards[s][col] & cell) != 0)
+                return s + 1;
+        }
+        return NO_SPECIAL;
+    }
+
+    /**
+     * Tests if the last findMatches found the tile in a cell in a match.
+     *
+     * @param col The cell's column.
+     *
+     * @param row The cell's row.
+     *
+     * @return true if the tile is in a match, false otherwise.
+     */
+    public boolean isMatched(int col, int row)
+    {
+        return ((matched[col] >>> row) & 1) != 0;
+    }
+
+    /**
+     * Accessor method for how many tiles the last findMatches found in
+     * matches.
+     *
+     * @return The number of matched tiles.
+     */
+    public int getNumMatched()
+    {
+        return numMatched;
+    }
+
+    /**
+     * Accessor method for how many specials the last findMatches found
+     * would be made by its matches.
+     *
+     * @return The number of specials that would be made.
+     */
+    public int getNumNewSpecials()
+    {
+        return numNewSpecials;
+    }
+
+    /**
+     * Accessor method for how many tiles the last clearMatches cleared,
+     * including those cleared by specials going off.
+     *
+     * @return The number of tiles cleared.
+     */
+    public int getNumCleared()
+    {
+        return numCleared;
+    }
+
+    /**
+     * Tests if the tile in a cell got there in the last applyGravity,
+     * either by falling or by being added to refill the board.
+     *
+     * @param col The cell's column.
+     *
+     * @param row The cell's row.
+     *
+     * @return true if the tile moved or is new, false otherwise.
+     */
+    public boolean hasFallen(int col, int row)
+    {
+        return ((fallen[col] >>> row) & 1) != 0;
+    }
+
+    /**
+     * Finds where the tile in a cell was before the last applyGravity,
+     * which is useful for animating tiles falling.
+     *
+     * @param col The cell's column.
+     *
+     * @param row The cell's row.
+     *
+     * @return The row the tile fell from, which is above the board, so
+     * negative, if it was added to refill the board.
+     */
+    public int getFallenFrom(int col, int row)
+    {
+        return hasFallen(col, row) ? fallenFrom[col][row] : row;
+    }
+
+    // MUTATOR METHODS
+        // - takeChangedCells
+        // - setPlayable
+        // - setTile
+        // - swap
+        // - fill
+        // - shuffle
+
+    /**
+     * Gets the cells of a column whose tiles have changed since the last
+     * time this was called for it, so whatever depends on those tiles can
+     * be worked out again for just those cells.
+     *
+     * @param col The column.
+     *
+     * @return The changed cells, with bit r set for row r.
+     */
+    public long takeChangedCells(int col)
+    {
+        long changedRows = changed[col];
+        changed[col] = 0;
+        return changedRows;
+    }
+
+    /**
+     * Sets which cells are part of the board. Any tiles in cells that
+     * aren't are removed.
+     *
+     * @param col The column to set.
+     *
+     * @param playableRows The cells in the column that are part of the
+     * board, with bit r set for row r.
+     */
+    public void setPlayable(int col, long playableRows)
+    {
+        long fullColumn = (rows == MAX_ROWS) ? -1L : ((1L << rows) - 1);
+        changed[col] |= playable[col] | (playableRows & fullColumn);
+        playable[col] = playableRows & fullColumn;
+        removeTiles(col, ~playable[col]);
+    }
+
+    /**
+     * Puts a tile in a cell, replacing whatever was there.
+     *
+     * @param col The cell's column.
+     *
+     * @param row The cell's row.
+     *
+     * @param color The tile's color, or NO_COLOR to empty the cell.
+     *
+     * @param special The kind of special, or NO_SPECIAL.
+     */
+    public void setTile(int col, int row, int color, int special)
+    {
+        long cell = 1L << row;
+        removeTiles(col, cell);
+        changed[col] |= cell;
+        if (color != NO_COLOR)
+        {
+            colorBoards[color][col] |= cell;
+            if (special != NO_SPECIAL)
+                specialBoards[special - 1][col] |= cell;
+        }
+    }
+
+    /**
+     * Swaps the tiles in two cells. Note that this doesn't check that the
+     * swap makes a match, call findMatches for that.
+     *
+     * @param col1 The first cell's column.
+     *
+     * @param row1 The first cell's row.
+     *
+     * @param col2 The second cell's column.
+     *
+     * @param row2 The second cell's row.
+     */
+    public void swap(int col1, int row1, int col2, int row2)
+    {
+        for (int c = 0; c < numColors; c++)
+        {
+            swapBits(colorBoards[c], col1, row1, col2, row2);
+        }
+        for (int s = 0; s < NUM_SPECIALS; s++)
+        {
+            swapBits(specialBoards[s], col1, row1, col2, row2);
+        }
+        changed[col1] |= 1L << row1;
+        changed[col2] |= 1L << row2;
+    }
+
+    /**
+     * Fills every playable cell with a random tile, making sure no lines
+     * of 3 or more are made, so the board starts with nothing matched.
+     *
+     * @param random Picks the tile colors.
+     */
+    public void fill(Random random)
+    {
+        for (int i = 0; i < columns; i++)
+        {
+            removeTiles(i, -1L);
+            changed[i] |= playable[i];
+            for (int j = 0; j < rows; j++)
+            {
+                if (isPlayable(i, j))
+                {
+                    int color;
+                    do
+                    {
+                        color = random.nextInt(numColors);
+                    } while (wouldMakeLine(i, j, color));
+                    colorBoards[color][i] |= 1L << j;
+                }
+            }
+        }
+    }
+
+    /**
+     * Mixes up the tiles on the board, specials included, trying not to
+     * line any up into matches. This is for when there are no moves left.
+     *
+     * @param random Picks where each tile goes.
+     *
+     * @return true if the tiles were mixed up without making any matches,
+     * false if every attempt made some, in which case they should be
+     * resolved.
+     */
+    public boolean shuffle(Random random)
+    {
+        // TAKE NOTE OF ALL THE TILES
+        int numTiles = 0;
+        for (int i = 0; i < columns; i++)
+        {
+            numTiles += Long.bitCount(getOccupied(i));
+        }
+        int[] tileColors = new int[numTiles];
+        int[] tileSpecials = new int[numTiles];
+        int t = 0;
+        for (int i = 0; i < columns; i++)
+        {
+            for (int j = 0; j < rows; j++)
+            {
+                int color = getColor(i, j);
+                if (color != NO_COLOR)
+                {
+                    tileColors[t] = color;
+                    tileSpecials[t] = getSpecial(i, j);
+                    t++;
+                }
+            }
+        }
+
+        // AND PUT THEM BACK IN A RANDOM ORDER, IN THE SAME CELLS
+        for (int attempt = 0; attempt < MAX_SHUFFLE_ATTEMPTS; attempt++)
+        {
+            for (int n = numTiles - 1; n > 0; n--)
+            {
+                int other = random.nextInt(n + 1);
+                int color = tileColors[n];
+                int special = tileSpecials[n];
+                tileColors[n] = tileColors[other];
+                tileSpecials[n] = tileSpecials[other];
+                tileColors[other] = color;
+                tileSpecials[other] = special;
+            }
+            t = 0;
+            for (int i = 0; i < columns; i++)
+            {
+                long occupied = getOccupied(i);
+                for (int j = 0; j < rows; j++)
+                {
+                    if (((occupied >>> j) & 1) != 0)
+                    {
+                        setTile(i, j, tileColors[t], tileSpecials[t]);
+                        t++;
+                    }
+                }
+            }
+            if (findMatches() == 0)
+                return true;
+        }
+        return false;
+    }
+
+    // MATCHING METHODS
+        // - findMatches
+        // - clearMatches
+        // - applyGravity
+        // - resolve
+
+    /**
+     * Finds every line of 3 or more tiles of the same color, and the
+     * specials that clearing them would make. The results may be checked
+     * with isMatched, getNumMatched and getNumNewSpecials.
+     *
+     * @return The number of tiles found in matches.
+     */
+    public int findMatches()
+    {
+        long[] bombs = newSpecials[BOMB_SPECIAL - 1];
+        long[] wrapped = newSpecials[WRAPPED_SPECIAL - 1];
+        long[] stripedRows = newSpecials[STRIPED_ROW_SPECIAL - 1];
+        long[] stripedColumns = newSpecials[STRIPED_COLUMN_SPECIAL - 1];
+        for (int i = 0; i < columns; i++)
+        {
+            matched[i] = 0;
+            for (int s = 0; s < NUM_SPECIALS; s++)
+            {
+                newSpecials[s][i] = 0;
+            }
+        }
+
+        for (int c = 0; c < numColors; c++)
+        {
+            long[] board = colorBoards[c];
+
+            // LINES ACROSS, WHERE BIT r IS SET IN h3 IF ROW r OF THIS
+            // COLUMN AND THE NEXT 2 ARE ALL THIS COLOR
+            for (int i = 0; i < columns; i++)
+            {
+                across[i] = 0;
+            }
+            for (int i = 0; (i + 2) < columns; i++)
+            {
+                long h3 = board[i] & board[i + 1] & board[i + 2];
+                if (h3 == 0)
+                    continue;
+                across[i] |= h3;
+                across[i + 1] |= h3;
+                across[i + 2] |= h3;
+
+                // ONLY THE START OF A LONGER LINE MAKES A SPECIAL
+                long starts = (i > 0) ? ~board[i - 1] : -1L;
+                long h4 = ((i + 3) < columns) ? (h3 & board[i + 3]) : 0;
+                long h5 = ((i + 4) < columns) ? (h4 & board[i + 4]) : 0;
+                bombs[i + 2] |= h5 & starts;
+                stripedColumns[i + 1] |= h4 & ~h5 & starts;
+            }
+
+            // LINES DOWN, WHERE BIT r IS SET IN v3 IF ROWS r, r+1
+            // AND r+2 OF THE COLUMN ARE ALL THIS COLOR
+            for (int i = 0; i < columns; i++)
+            {
+                long column = board[i];
+                long v3 = column & (column >>> 1) & (column >>> 2);
+                if ((v3 == 0) && (across[i] == 0))
+                    continue;
+                long down = v3 | (v3 << 1) | (v3 << 2);
+
+                long starts = ~(column << 1);
+                long v4 = v3 & (column >>> 3);
+                long v5 = v4 & (column >>> 4);
+                bombs[i] |= (v5 & starts) << 2;
+                stripedRows[i] |= (v4 & ~v5 & starts) << 1;
+
+                // WHERE A LINE ACROSS MEETS A LINE DOWN IT'S AN L OR T
+                wrapped[i] |= across[i] & down;
+                matched[i] |= across[i] | down;
+            }
+        }
+
+        // ONE SPECIAL PER CELL, THE BIGGEST WINS
+        numMatched = 0;
+        numNewSpecials = 0;
+        for (int i = 0; i < columns; i++)
+        {
+            wrapped[i] &= ~bombs[i];
+            stripedRows[i] &= ~(bombs[i] | wrapped[i]);
+            stripedColumns[i] &= ~(bombs[i] | wrapped[i] | stripedRows[i]);
+            numMatched += Long.bitCount(matched[i]);
+            for (int s = 0; s < NUM_SPECIALS; s++)
+            {
+                numNewSpecials += Long.bitCount(newSpecials[s][i]);
+            }
+        }
+        return numMatched;
+    }
+
+    /**
+     * Clears the tiles found by the last findMatches, setting off any
+     * specials among them, which may clear more tiles and set off more
+     * specials. The specials that the matches make are put on the board
+     * instead of being cleared.
+     *
+     * @return The number of tiles cleared.
+     */
+    public int clearMatches()
+    {
+        for (int i = 0; i < columns; i++)
+        {
+            toClear[i] = matched[i];
+            activated[i] = 0;
+        }
+
+        // KEEP SETTING OFF SPECIALS UNTIL NO MORE ARE CLEARED
+        boolean specialsWentOff = true;
+        while (specialsWentOff)
+        {
+            specialsWentOff = false;
+            long rowsToClear = 0;
+            for (int c = 0; c < numColors; c++)
+            {
+                bombColors[c] = false;
+            }
+            for (int i = 0; i < columns; i++)
+            {
+                long goingOff = toClear[i] & ~activated[i];
+                if (goingOff == 0)
+                    continue;
+                long stripedRows = goingOff & specialBoards[STRIPED_ROW_SPECIAL - 1][i];
+                long stripedColumns = goingOff & specialBoards[STRIPED_COLUMN_SPECIAL - 1][i];
+                long wrapped = goingOff & specialBoards[WRAPPED_SPECIAL - 1][i];
+                long bombs = goingOff & specialBoards[BOMB_SPECIAL - 1][i];
+                activated[i] |= goingOff;
+                if ((stripedRows | stripedColumns | wrapped | bombs) == 0)
+                    continue;
+                specialsWentOff = true;
+
+                rowsToClear |= stripedRows;
+                if (stripedColumns != 0)
+                    toClear[i] |= playable[i];
+                if (wrapped != 0)
+                {
+                    long block = wrapped | (wrapped << 1) | (wrapped >>> 1);
+                    for (int n = Math.max(0, i - 1); n <= Math.min(columns - 1, i + 1); n++)
+                    {
+                        toClear[n] |= block & playable[n];
+                    }
+                }
+                for (int c = 0; c < numColors; c++)
+                {
+                    if ((colorBoards[c][i] & bombs) != 0)
+                        bombColors[c] = true;
+                }
+            }
+
+            // NOW SPREAD WHAT GOES ACROSS COLUMNS
+            for (int i = 0; i < columns; i++)
+            {
+                toClear[i] |= rowsToClear & playable[i];
+                for (int c = 0; c < numColors; c++)
+                {
+                    if (bombColors[c])
+                        toClear[i] |= colorBoards[c][i];
+                }
+            }
+        }
+
+        // AND TAKE THE TILES AWAY, EXCEPT WHERE NEW SPECIALS GO
+        numCleared = 0;
+        for (int i = 0; i < columns; i++)
+        {
+            long made = 0;
+            for (int s = 0; s < NUM_SPECIALS; s++)
+            {
+                made |= newSpecials[s][i];
+            }
+            cleared[i] = toClear[i] & ~made & getOccupied(i);
+            numCleared += Long.bitCount(cleared[i]);
+            changed[i] |= cleared[i] | made;
+            removeTiles(i, cleared[i]);
+            for (int s = 0; s < NUM_SPECIALS; s++)
+            {
+                specialBoards[s][i] = (specialBoards[s][i] & ~made) | newSpecials[s][i];
+            }
+        }
+        return numCleared;
+    }
+
+    /**
+     * Lets tiles fall down into the empty cells below them, and then fills
+     * the empty cells left at the top with random tiles. Tiles fall past
+     * cells that aren't part of the board. Where each tile came from may be
+     * found with hasFallen and getFallenFrom.
+     *
+     * @param random Picks the colors of the new tiles.
+     */
+    public void applyGravity(Random random)
+    {
+        for (int i = 0; i < columns; i++)
+        {
+            fallen[i] = 0;
+            long occupied = getOccupied(i);
+            if ((playable[i] & ~occupied) == 0)
+                continue;
+            changed[i] |= playable[i] & ~occupied;
+
+            // PAIR THE TILES WITH THE PLAYABLE CELLS, BOTH FROM THE
+            // BOTTOM UP, AND NOTE THE TILES THAT HAVE TO MOVE
+            long tilesLeft = occupied;
+            long slotsLeft = playable[i];
+            long movedFrom = 0;
+            int numMoves = 0;
+            while (tilesLeft != 0)
+            {
+                int from = 63 - Long.numberOfLeadingZeros(tilesLeft);
+                int to = 63 - Long.numberOfLeadingZeros(slotsLeft);
+                tilesLeft &= ~(1L << from);
+                slotsLeft &= ~(1L << to);
+                if (from != to)
+                {
+                    moveFrom[numMoves] = from;
+                    moveTo[numMoves] = to;
+                    movedFrom |= 1L << from;
+                    fallen[i] |= 1L << to;
+                    fallenFrom[i][to] = from;
+                    numMoves++;
+                }
+            }
+
+            // MOVE THOSE TILES IN EVERY BITBOARD
+            if (numMoves > 0)
+            {
+                for (int c = 0; c < numColors; c++)
+                {
+                    colorBoards[c][i] = moveBits(colorBoards[c][i], movedFrom, numMoves);
+                }
+                for (int s = 0; s < NUM_SPECIALS; s++)
+                {
+                    specialBoards[s][i] = moveBits(specialBoards[s][i], movedFrom, numMoves);
+                }
+            }
+
+            // THE SLOTS LEFT ARE AT THE TOP, SO FILL THEM WITH NEW TILES
+            // THAT START JUST ABOVE THE BOARD
+            int startRow = -1;
+            while (slotsLeft != 0)
+            {
+                int to = 63 - Long.numberOfLeadingZeros(slotsLeft);
+                slotsLeft &= ~(1L << to);
+                colorBoards[random.nextInt(numColors)][i] |= 1L << to;
+                fallen[i] |= 1L << to;
+                fallenFrom[i][to] = startRow;
+                startRow--;
+            }
+            changed[i] |= fallen[i];
+        }
+    }
+
+    /**
+     * Clears matches, lets tiles fall and refills the board over and over
+     * until nothing matches, which is what happens after a swap.
+     *
+     * @param random Picks the colors of the new tiles.
+     *
+     * @return The number of times tiles were cleared, so 0 if nothing
+     * matched and more than 1 if there were cascades.
+     */
+    public int resolve(Random random)
+    {
+        int numCascades = 0;
+        while ((numCascades < MAX_CASCADES) && (findMatches() > 0))
+        {
+            clearMatches();
+            applyGravity(random);
+            numCascades++;
+        }
+        return numCascades;
+    }
+
+    // PRIVATE HELPER METHODS
+
+    /**
+     * The cells in a column that have tiles in them.
+     */
+    private long getOccupied(int col)
+    {
+        long occupied = 0;
+        for (int c = 0; c < numColors; c++)
+        {
+            occupied |= colorBoards[c][col];
+        }
+        return occupied;
+    }
+
+    /**
+     * Takes the tiles in the given cells of a column off the board.
+     */
+    private void removeTiles(int col, long cells)
+    {
+        for (int c = 0; c < numColors; c++)
+        {
+            colorBoards[c][col] &= ~cells;
+        }
+        for (int s = 0; s < NUM_SPECIALS; s++)
+        {
+            specialBoards[s][col] &= ~cells;
+        }
+    }
+
+    /**
+     * Moves the bits of one column's bitboard to where applyGravity
+     * worked out they fall to.
+     */
+    private long moveBits(long bits, long movedFrom, int numMoves)
+    {
+        long moved = bits & ~movedFrom;
+        for (int m = 0; m < numMoves; m++)
+        {
+            if (((bits >>> moveFrom[m]) & 1) != 0)
+                moved |= 1L << moveTo[m];
+        }
+        return moved;
+    }
+
+    /**
+     * Swaps the bits for two cells in one bitboard.
+     */
+    private static void swapBits(long[] board, int col1, int row1, int col2, int row2)
+    {
+        long bit1 = (board[col1] >>> row1) & 1;
+        long bit2 = (board[col2] >>> row2) & 1;
+        if (bit1 != bit2)
+        {
+            board[col1] ^= 1L << row1;
+            board[col2] ^= 1L << row2;
+        }
+    }
+
+    /**
+     * Tests if putting a tile of the given color in a cell would finish
+     * a line of 3 with the 2 cells to its left or the 2 above it, which
+     * are the ones fill has already filled.
+     */
+    private boolean wouldMakeLine(int col, int row, int color)
+    {
+        long[] board = colorBoards[color];
+        long cell = 1L << row;
+        if ((col >= 2) && ((board[col - 1] & board[col - 2] & cell) != 0))
+            return true;
+        return (row >= 2) && (((board[col] >>> (row - 1)) & (board[col] >>> (row - 2)) & 1) != 0);
+    }
+}
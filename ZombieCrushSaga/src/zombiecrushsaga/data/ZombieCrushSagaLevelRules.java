@@ -0,0 +1,191 @@
+package zombiecrushsaga.data;
+
+import java.util.ArrayList;
+import java.util.Random;
+import static zombiecrushsaga.ZombieCrushSagaConstants.*;
+
+/**
+ * This class runs the rules of a level, meaning the crush board, the swaps
+ * the player may make on it, and the score, without anything to do with
+ * drawing or sound. The simulator uses it to play levels thousands of
+ * times with no window open.
+ *
+ * @author Richard McKenna
+ */
+public class ZombieCrushSagaLevelRules
+{
+    // THE BOARD AND THE SWAPS THAT CAN BE MADE ON IT
+    private ZombieCrushSagaBoard board;
+    private ZombieCrushSagaSwapFinder swapFinder;
+
+    // PICKS THE COLORS OF NEW TILES
+    private Random random;
+
+    // HOW THE PLAYER IS DOING
+    private int score;
+    private int movesMade;
+
+    /**
+     * This constructor builds the board for a level. Only the cells the
+     * level uses are part of the board. No tiles are dealt until deal is
+     * called.
+     *
+     * @param levelGrid The level layout, indexed [column][row], where
+     * cells with a value above 0 are part of the board.
+     *
+     * @param gridColumns The number of columns in the layout.
+     *
+     * @param gridRows The number of rows in the layout.
+     *
+     * @param initRandom Picks the colors of the tiles. Using the same seed
+     * and the same swaps plays the same game.
+     */
+    public ZombieCrushSagaLevelRules(int[][] levelGrid, int gridColumns, int gridRows, Random initRandom)
+    {
+        random = initRandom;
+        board = new ZombieCrushSagaBoard(gridColumns, gridRows, NUM_CRUSH_COLORS);
+        for (int i = 0; i < gridColumns; i++)
+        {
+            long playableRows = 0;
+            for (int j = 0; j < gridRows; j++)
+            {
+                if (levelGrid[i][j] > 0)
+                    playableRows |= 1L << j;
+            }
+            board.setPlayable(i, playableRows);
+        }
+        swapFinder = new ZombieCrushSagaSwapFinder(board);
+    }
+
+    // ACCESSOR METHODS
+        // - getBoard
+        // - getSwapFinder
+        // - getScore
+        // - getMovesMade
+        // - findBestSwap
+        // - findLegalSwaps
+
+    /**
+     * Accessor method for the crush board.
+     *
+     * @return The board.
+     */
+    public ZombieCrushSagaBoard getBoard()
+    {
+        return board;
+    }
+
+    /**
+     * Accessor method for the swaps that may be made on the board.
+     *
+     * @return The swap finder.
+     */
+    public ZombieCrushSagaSwapFinder getSwapFinder()
+    {
+        return swapFinder;
+    }
+
+    /**
+     * Accessor method for the points scored since the tiles were dealt.
+     *
+     * @return The score.
+     */
+    public int getScore()
+    {
+        return score;
+    }
+
+    /**
+     * Accessor method for the number of swaps made since the tiles were
+     * dealt.
+     *
+     * @return The number of moves made.
+     */
+    public int getMovesMade()
+    {
+        return movesMade;
+    }
+
+    /**
+     * Finds the swap that clears the most tiles and makes the best special.
+     *
+     * @return The best swap, or null if there are none.
+     */
+    public ZombieCrushSagaMove findBestSwap()
+    {
+        swapFinder.update();
+        return swapFinder.getBestSwap();
+    }
+
+    /**
+     * Finds every swap that makes a match.
+     *
+     * @return The legal swaps.
+     */
+    public ArrayList<ZombieCrushSagaMove> findLegalSwaps()
+    {
+        swapFinder.update();
+        return swapFinder.getLegalSwaps();
+    }
+
+    // MUTATOR METHODS
+        // - deal
+        // - makeSwap
+        // - reshuffleIfStuck
+
+    /**
+     * Deals new tiles, with nothing already matched but at least one move
+     * to make, and starts the score over.
+     */
+    public void deal()
+    {
+        board.fill(random);
+        swapFinder.reshuffleIfStuck(random);
+        score = 0;
+        movesMade = 0;
+    }
+
+    /**
+     * Swaps two neighbouring tiles and clears everything it matches, along
+     * with any cascades that follow. Each tile cleared is worth
+     * CRUSH_TILE_SCORE, times how far into the cascade it was cleared. If
+     * the board is left with no moves, it's reshuffled.
+     *
+     * @param move The swap to make.
+     *
+     * @return The points scored, or -1 if the swap doesn't make a match,
+     * in which case nothing is changed.
+     */
+    public int makeSwap(ZombieCrushSagaMove move)
+    {
+        swapFinder.update();
+        if (!swapFinder.isLegalSwap(move.col1, move.row1, move.col2, move.row2))
+        {
+            return -1;
+        }
+        board.swap(move.col1, move.row1, move.col2, move.row2);
+        int points = 0;
+        int cascade = 1;
+        while ((cascade <= ZombieCrushSagaBoard.MAX_CASCADES) && (board.findMatches() > 0))
+        {
+            points += board.clearMatches() * CRUSH_TILE_SCORE * cascade;
+            board.applyGravity(random);
+            cascade++;
+        }
+        score += points;
+        movesMade++;
+        swapFinder.reshuffleIfStuck(random);
+        return points;
+    }
+
+    /**
+     * Makes sure the board has a move, reshuffling it if it doesn't.
+     *
+     * @return true if the board had to be changed, false if it already had
+     * a move.
+     */
+    public boolean reshuffleIfStuck()
+    {
+        return swapFinder.reshuffleIfStuck(random);
+    }
+}
@@ -2,7 +2,8 @@ package zombiecrushsaga.data;
 
 /**
  * This class represents a single move. It stores the grid locations
- * of the two tiles being matched.
+ * of the two tiles being matched, or swapped on the crush board, along
+ * with how good a swap it is.
  * 
  * @author Richard McKenna
  */
@@ -12,4 +13,5 @@ public class ZombieCrushSagaMove
     public int row1;
     public int col2;
     public int row2;    
+    public int score;
 }
@@ -0,0 +1,474 @@
+package zombiecrushsaga.data;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import mini_game.MiniGameLevelFile;
+
+/**
+ * This class plays levels over and over with a bot, with no window or
+ * sound, to find out how hard they are, so that each level's target score
+ * and number of moves may be picked. For each level and each number of
+ * moves it reports how many games reached the target score, and the spread
+ * of the scores.
+ *
+ * Games are spread over every core with fork/join. Each game gets its own
+ * seed, made from the simulation's seed, the level and the game's number,
+ * so the same simulation always gives the same results no matter how many
+ * cores there are or which one plays which game.
+ *
+ * This class may also be run on its own, with level files.
+ *
+ * @author Richard McKenna
+ */
+public class ZombieCrushSagaSimulator
+{
+    // THE BOTS THAT MAY PLAY THE GAMES. THE GREEDY ONE ALWAYS MAKES THE
+    // SWAP WE'D GIVE AS A HINT, THE RANDOM ONE PICKS ANY SWAP THAT
+    // MAKES A MATCH, WHICH IS MORE LIKE A NEW PLAYER
+    public static final int GREEDY_POLICY = 0;
+    public static final int RANDOM_POLICY = 1;
+    public static final String[] POLICY_NAMES = { "greedy", "random" };
+
+    // THE PERCENTILES OF THE SCORES THAT GET REPORTED
+    public static final int[] REPORTED_PERCENTILES = { 10, 25, 50, 75, 90 };
+
+    // THE DEFAULTS FOR RUNNING ON ITS OWN
+    public static final int DEFAULT_NUM_GAMES = 1000;
+    public static final int[] DEFAULT_MOVE_BUDGETS = { 10, 20, 30, 40, 50 };
+
+    // A FORK/JOIN TASK WITH THIS MANY GAMES OR FEWER PLAYS THEM ITSELF
+    // INSTEAD OF SPLITTING THEM UP
+    private static final int GAMES_PER_TASK = 16;
+
+    // THE LEVELS, BY LEVEL NUMBER
+    private ArrayList<int[][]> levelGrids;
+    private ArrayList<String> levelNames;
+
+    // HOW THE GAMES ARE PLAYED
+    private int numGames;
+    private int[] moveBudgets;
+    private int policy;
+    private long seed;
+
+    // EVERY GAME'S SCORE, INDEXED [level][move budget][game]. EACH GAME
+    // WRITES ONLY ITS OWN SCORES, SO THE TASKS NEVER SHARE ANYTHING
+    private int[][][] scores;
+
+    /**
+     * This constructor sets up a simulation, which isn't run until run is
+     * called.
+     *
+     * @param initNumGames The number of games to play on each level.
+     *
+     * @param initMoveBudgets The numbers of moves to report scores for, in
+     * increasing order. Every game is played for the last of these.
+     *
+     * @param initPolicy The bot that plays, GREEDY_POLICY or RANDOM_POLICY.
+     *
+     * @param initSeed Where the seeds of the games come from.
+     */
+    public ZombieCrushSagaSimulator(int initNumGames, int[] initMoveBudgets, int initPolicy, long initSeed)
+    {
+        numGames = initNumGames;
+        moveBudgets = initMoveBudgets;
+        policy = initPolicy;
+        seed = initSeed;
+        levelGrids = new ArrayList();
+        levelNames = new ArrayList();
+    }
+
+    // ACCESSOR METHODS
+        // - getNumLevels
+        // - getLevelName
+        // - getScores
+        // - getPassRate
+        // - getMeanScore
+        // - getPercentileScore
+
+    /**
+     * Accessor method for the number of levels added.
+     *
+     * @return The number of levels.
+     */
+    public int getNumLevels()
+    {
+        return levelNames.size();
+    }
+
+    /**
+     * Accessor method for a level's name.
+     *
+     * @param level The level number.
+     *
+     * @return The name it was added with.
+     */
+    public String getLevelName(int level)
+    {
+        return levelNames.get(level);
+    }
+
+    /**
+     * Accessor method for the scores from the last run.
+     *
+     * @param level The level number.
+     *
+     * @param budget Which of the move budgets.
+     *
+     * @return The score of each game after that many moves, sorted from
+     * lowest to highest.
+     */
+    public int[] getScores(int level, int budget)
+    {
+        return scores[level][budget];
+    }
+
+    /**
+     * Finds how many games reached a score in the last run.
+     *
+     * @param level The level number.
+     *
+     * @param budget Which of the move budgets.
+     *
+     * @param targetScore The score to reach.
+     *
+     * @return The fraction of games that reached it in that many moves.
+     */
+    public double getPassRate(int level, int budget, int targetScore)
+    {
+        // THE SCORES ARE SORTED, SO FIND THE FIRST ONE THAT PASSES
+        int[] budgetScores = scores[level][budget];
+        int low = 0;
+        int high = budgetScores.length;
+        while (low < high)
+        {
+            int mid = (low + high) >>> 1;
+            if (budgetScores[mid] < targetScore)
+                low = mid + 1;
+            else
+                high = mid;
+        }
+        return (double)(budgetScores.length - low) / budgetScores.length;
+    }
+
+    /**
+     * Finds the average score in the last run.
+     *
+     * @param level The level number.
+     *
+     * @param budget Which of the move budgets.
+     *
+     * @return The average score after that many moves.
+     */
+    public double getMeanScore(int level, int budget)
+    {
+        long total = 0;
+        for (int score : scores[level][budget])
+        {
+            total += score;
+        }
+        return (double)total / scores[level][budget].length;
+    }
+
+    /**
+     * Finds a percentile of the scores in the last run.
+     *
+     * @param level The level number.
+     *
+     * @param budget Which of the move budgets.
+     *
+     * @param percentile The percentile, from 0 to 100.
+     *
+     * @return The score that percentile of games didn't beat.
+     */
+    public int getPercentileScore(int level, int budget, int percentile)
+    {
+        int[] budgetScores = scores[level][budget];
+        int index = (int)(((long)percentile * (budgetScores.length - 1)) / 100);
+        return budgetScores[index];
+    }
+
+    // SIMULATION METHODS
+        // - addLevel
+        // - loadLevel
+        // - run
+        // - printReport
+        // - main
+
+    /**
+     * Adds a level to be played.
+     *
+     * @param levelName The name to report the level under.
+     *
+     * @param levelGrid The level layout, indexed [column][row].
+     */
+    public void addLevel(String levelName, int[][] levelGrid)
+    {
+        levelNames.add(levelName);
+        levelGrids.add(levelGrid);
+    }
+
+    /**
+     * Reads a level file, in any format MiniGameLevelFile reads, and adds
+     * it to be played under its file name.
+     *
+     * @param levelFile The level file.
+     *
+     * @throws IOException If the file couldn't be read.
+     */
+    public void loadLevel(File levelFile) throws IOException
+    {
+        MiniGameLevelFile level = MiniGameLevelFile.read(MiniGameLevelFile.map(levelFile));
+        if (level.getGridRows() > ZombieCrushSagaBoard.MAX_ROWS)
+        {
+            throw new IOException("Bad level dimensions " + level.getGridColumns() + "x" + level.getGridRows());
+        }
+        addLevel(levelFile.getName(), level.getGrid());
+    }
+
+    /**
+     * Plays every game on every level, using all the cores.
+     */
+    public void run()
+    {
+        scores = new int[levelGrids.size()][moveBudgets.length][numGames];
+        ForkJoinPool pool = new ForkJoinPool();
+        try
+        {
+            pool.invoke(new GamesTask(0, levelGrids.size() * numGames));
+        }
+        finally
+        {
+            pool.shutdown();
+        }
+
+        // SORTED SCORES MAKE THE PASS RATES AND PERCENTILES EASY
+        for (int[][] levelScores : scores)
+        {
+            for (int[] budgetScores : levelScores)
+            {
+                Arrays.sort(budgetScores);
+            }
+        }
+    }
+
+    /**
+     * Prints a table for each level, with a line for each move budget.
+     *
+     * @param out Where to print it.
+     *
+     * @param targetScore The score a game has to reach to pass, or 0 to
+     * leave out the pass rates.
+     */
+    public void printReport(PrintStream out, int targetScore)
+    {
+        for (int level = 0; level < levelNames.size(); level++)
+        {
+            out.println(levelNames.get(level) + ": " + numGames + " games, "
+                    + POLICY_NAMES[policy] + " bot, seed " + seed);
+            StringBuilder header = new StringBuilder(String.format("%6s", "moves"));
+            if (targetScore > 0)
+                header.append(String.format(" %7s", "pass"));
+            header.append(String.format(" %8s", "mean"));
+            for (int percentile : REPORTED_PERCENTILES)
+            {
+                header.append(String.format(" %7s", "p" + percentile));
+            }
+            out.println(header);
+            for (int budget = 0; budget < moveBudgets.length; budget++)
+            {
+                StringBuilder line = new StringBuilder(String.format("%6d", moveBudgets[budget]));
+                if (targetScore > 0)
+                    line.append(String.format(" %6.1f%%", 100 * getPassRate(level, budget, targetScore)));
+                line.append(String.format(" %8.0f", getMeanScore(level, budget)));
+                for (int percentile : REPORTED_PERCENTILES)
+                {
+                    line.append(String.format(" %7d", getPercentileScore(level, budget, percentile)));
+                }
+                out.println(line);
+            }
+            out.println();
+        }
+    }
+
+    /**
+     * Simulates levels and prints the report.
+     *
+     * @param args Optionally -games followed by how many games to play on
+     * each level, -moves followed by the move budgets separated by commas,
+     * -target followed by the score to pass, -policy followed by greedy or
+     * random, and -seed followed by the seed, then the level files.
+     */
+    public static void main(String[] args)
+    {
+        int numGames = DEFAULT_NUM_GAMES;
+        int[] moveBudgets = DEFAULT_MOVE_BUDGETS;
+        int targetScore = 0;
+        int policy = GREEDY_POLICY;
+        long seed = 0;
+        int a = 0;
+        try
+        {
+            for (; (a < (args.length - 1)) && args[a].startsWith("-"); a += 2)
+            {
+                if (args[a].equals("-games"))
+                    numGames = Integer.parseInt(args[a + 1]);
+                else if (args[a].equals("-moves"))
+                    moveBudgets = parseMoveBudgets(args[a + 1]);
+                else if (args[a].equals("-target"))
+                    targetScore = Integer.parseInt(args[a + 1]);
+                else if (args[a].equals("-policy"))
+                    policy = Arrays.asList(POLICY_NAMES).indexOf(args[a + 1]);
+                else if (args[a].equals("-seed"))
+                    seed = Long.parseLong(args[a + 1]);
+                else
+                    policy = -1;
+            }
+        }
+        catch(NumberFormatException nfe)
+        {
+            numGames = 0;
+        }
+        if ((a == args.length) || (numGames <= 0) || (moveBudgets == null) || (policy < 0))
+        {
+            System.out.println("Usage: ZombieCrushSagaSimulator [-games numGames] [-moves budget,budget...]"
+                    + " [-target score] [-policy greedy|random] [-seed seed] levelFile...");
+            return;
+        }
+
+        ZombieCrushSagaSimulator simulator = new ZombieCrushSagaSimulator(numGames, moveBudgets, policy, seed);
+        try
+        {
+            for (; a < args.length; a++)
+            {
+                simulator.loadLevel(new File(args[a]));
+            }
+        }
+        catch(IOException ioe)
+        {
+            System.out.println("Couldn't load " + args[a] + ": " + ioe.getMessage());
+            return;
+        }
+        long startTime = System.currentTimeMillis();
+        simulator.run();
+        simulator.printReport(System.out, targetScore);
+        System.out.println((simulator.getNumLevels() * numGames) + " games in "
+                + (System.currentTimeMillis() - startTime) + " ms on "
+                + Runtime.getRuntime().availableProcessors() + " cores");
+    }
+
+    // PRIVATE HELPER METHODS
+
+    /**
+     * Plays one game, recording its score at each move budget.
+     */
+    private void playGame(int level, int game)
+    {
+        int[][] levelGrid = levelGrids.get(level);
+        Random random = new Random(makeGameSeed(level, game));
+        ZombieCrushSagaLevelRules rules = new ZombieCrushSagaLevelRules(
+                levelGrid, levelGrid.length, levelGrid[0].length, random);
+        rules.deal();
+        int budget = 0;
+        int maxMoves = moveBudgets[moveBudgets.length - 1];
+        for (int move = 1; move <= maxMoves; move++)
+        {
+            // A LEVEL WITH NOWHERE TO SWAP JUST KEEPS ITS SCORE
+            ZombieCrushSagaMove swap = chooseSwap(rules, random);
+            if (swap != null)
+                rules.makeSwap(swap);
+            while ((budget < moveBudgets.length) && (moveBudgets[budget] == move))
+            {
+                scores[level][budget][game] = rules.getScore();
+                budget++;
+            }
+        }
+    }
+
+    /**
+     * Picks the bot's next swap.
+     */
+    private ZombieCrushSagaMove chooseSwap(ZombieCrushSagaLevelRules rules, Random random)
+    {
+        if (policy == GREEDY_POLICY)
+        {
+            return rules.findBestSwap();
+        }
+        ArrayList<ZombieCrushSagaMove> legalSwaps = rules.findLegalSwaps();
+        if (legalSwaps.isEmpty())
+        {
+            return null;
+        }
+        return legalSwaps.get(random.nextInt(legalSwaps.size()));
+    }
+
+    /**
+     * Makes a game's seed by mixing the simulation's seed with the level
+     * and game numbers, so nearby games don't get nearby seeds.
+     */
+    private long makeGameSeed(int level, int game)
+    {
+        long gameSeed = seed + (((long)level << 32) | game) * 0x9E3779B97F4A7C15L;
+        gameSeed = (gameSeed ^ (gameSeed >>> 30)) * 0xBF58476D1CE4E5B9L;
+        gameSeed = (gameSeed ^ (gameSeed >>> 27)) * 0x94D049BB133111EBL;
+        return gameSeed ^ (gameSeed >>> 31);
+    }
+
+    /**
+     * Reads move budgets separated by commas, which have to be positive
+     * and increasing.
+     */
+    private static int[] parseMoveBudgets(String text)
+    {
+        String[] parts = text.split(",");
+        int[] moveBudgets = new int[parts.length];
+        for (int i = 0; i < parts.length; i++)
+        {
+            moveBudgets[i] = Integer.parseInt(parts[i].trim());
+            if ((moveBudgets[i] <= 0) || ((i > 0) && (moveBudgets[i] <= moveBudgets[i - 1])))
+                return null;
+        }
+        return moveBudgets;
+    }
+
+    /**
+     * This task plays a range of games, numbered across all the levels,
+     * splitting the range in half for other cores to help with until the
+     * pieces are small.
+     */
+    private class GamesTask extends RecursiveAction
+    {
+        private static final long serialVersionUID = 1L;
+
+        private int firstGame;
+        private int lastGame;
+
+        public GamesTask(int initFirstGame, int initLastGame)
+        {
+            firstGame = initFirstGame;
+            lastGame = initLastGame;
+        }
+
+        @Override
+        protected void compute()
+        {
+            if ((lastGame - firstGame) <= GAMES_PER_TASK)
+            {
+                for (int g = firstGame; g < lastGame; g++)
+                {
+                    playGame(g / numGames, g % numGames);
+                }
+            }
+            else
+            {
+                int middleGame = (firstGame + lastGame) >>> 1;
+                invokeAll(new GamesTask(firstGame, middleGame), new GamesTask(middleGame, lastGame));
+            }
+        }
+    }
+}
@@ -0,0 +1,423 @@
+package zombiecrushsaga.data;
+
+import java.util.ArrayList;
+import java.util.Random;
+import static zombiecrushsaga.data.ZombieCrushSagaBoard.*;
+
+/**
+ * This class keeps track of every swap of neighbouring tiles on a crush
+ * board that would make a match, and how good each one is. It finds the
+ * best swap, which is the one a hint would show, and tells when the board
+ * has no moves left so it can be reshuffled.
+ *
+ * Each swap is scored by the number of tiles it would clear plus a bonus
+ * for any special it would make. Scores are kept between calls to update,
+ * which only scores again the swaps near cells that have changed on the
+ * board since, so after a cascade only the part of the board it touched is
+ * looked at again. Which swaps are legal is kept in bitboards like the
+ * board's own, so checking if there are any moves left is one test per
+ * column.
+ *
+ * @author Richard McKenna
+ */
+public class ZombieCrushSagaSwapFinder
+{
+    // HOW MUCH MAKING EACH KIND OF SPECIAL ADDS TO A SWAP'S SCORE,
+    // INDEXED BY THE KIND OF SPECIAL
+    public static final int[] SPECIAL_SCORES = { 0, 4, 4, 6, 10 };
+
+    // HOW MANY TIMES WE RESHUFFLE A BOARD WITH NO MOVES BEFORE
+    // DEALING NEW TILES INSTEAD
+    public static final int MAX_RESHUFFLES = 20;
+
+    // A SWAP'S SCORE COMES FROM THE LINES THROUGH ITS CELLS. WHETHER IT
+    // MAKES A MATCH ONLY DEPENDS ON TILES 2 CELLS AWAY, BUT WHETHER IT MAKES
+    // A LINE OF 4 OR 5, AND SO A SPECIAL, DEPENDS ON TILES UP TO 4 CELLS
+    // ACROSS OR DOWN FROM EITHER OF ITS CELLS, SO A CHANGE ANYWHERE ELSE
+    // DOESN'T MATTER
+    private static final int SWAP_REACH = 4;
+
+    // THE BOARD WE'RE FINDING SWAPS FOR
+    private ZombieCrushSagaBoard board;
+    private int columns;
+    private int rows;
+
+    // THE LEGAL SWAPS, BY COLUMN. BIT r IN legalAcross IS SET IF SWAPPING
+    // ROW r OF THE COLUMN WITH THE NEXT COLUMN MAKES A MATCH, AND BIT r IN
+    // legalDown IF SWAPPING ROW r WITH ROW r+1 DOES
+    private long[] legalAcross;
+    private long[] legalDown;
+
+    // THE SCORE OF EACH LEGAL SWAP, INDEXED [column][row]
+    private int[][] acrossScores;
+    private int[][] downScores;
+
+    // THE NUMBER OF SWAPS SCORED IN THE LAST update
+    private int numScored;
+
+    // THE SWAP BEING SCORED
+    private int swapCol1;
+    private int swapRow1;
+    private int swapColor1;
+    private int swapCol2;
+    private int swapRow2;
+    private int swapColor2;
+
+    // USED BY update, KEPT SO WE DON'T MAKE GARBAGE
+    private long[] changedCells;
+    private long[] stale;
+
+    /**
+     * This constructor sets up the finder for a board. Nothing is scored
+     * until update is called.
+     *
+     * @param initBoard The board to find swaps on.
+     */
+    public ZombieCrushSagaSwapFinder(ZombieCrushSagaBoard initBoard)
+    {
+        board = initBoard;
+        columns = board.getColumns();
+        rows = board.getRows();
+        legalAcross = new long[columns];
+        legalDown = new long[columns];
+        acrossScores = new int[columns][rows];
+        downScores = new int[columns][rows];
+        changedCells = new long[columns];
+        stale = new long[columns];
+    }
+
+    // ACCESSOR METHODS
+        // - getNumScored
+        // - hasLegalSwap
+        // - getNumLegalSwaps
+        // - isLegalSwap
+        // - getLegalSwaps
+        // - getBestSwap
+
+    /**
+     * Accessor method for how many swaps the last update had to score.
+     *
+     * @return The number of swaps scored.
+     */
+    public int getNumScored()
+    {
+        return numScored;
+    }
+
+    /**
+     * Tests if there's any swap that makes a match, as of the last update.
+     *
+     * @return true if there's at least one move, false if the board is
+     * stuck.
+     */
+    public boolean hasLegalSwap()
+    {
+        for (int i = 0; i < columns; i++)
+        {
+            if ((legalAcross[i] | legalDown[i]) != 0)
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Counts the swaps that make a match, as of the last update.
+     *
+     * @return The number of legal swaps.
+     */
+    public int getNumLegalSwaps()
+    {
+        int numLegalSwaps = 0;
+        for (int i = 0; i < columns; i++)
+        {
+            numLegalSwaps += Long.bitCount(legalAcross[i]) + Long.bitCount(legalDown[i]);
+        }
+        return numLegalSwaps;
+    }
+
+    /**
+     * Tests if swapping two cells makes a match, as of the last update.
+     *
+     * @param col1 The first cell's column.
+     *
+     * @param row1 The first cell's row.
+     *
+     * @param col2 The second cell's column.
+     *
+     * @param row2 The second cell's row.
+     *
+     * @return true if the cells are next to each other and swapping
+     * them makes a match, false otherwise.
+     */
+    public boolean isLegalSwap(int col1, int row1, int col2, int row2)
+    {
+        if ((row1 == row2) && (Math.abs(col1 - col2) == 1))
+            return ((legalAcross[Math.min(col1, col2)] >>> row1) & 1) != 0;
+        if ((col1 == col2) && (Math.abs(row1 - row2) == 1))
+            return ((legalDown[col1] >>> Math.min(row1, row2)) & 1) != 0;
+        return false;
+    }
+
+    /**
+     * Lists every swap that makes a match, as of the last update.
+     *
+     * @return The legal swaps, each with its score.
+     */
+    public ArrayList<ZombieCrushSagaMove> getLegalSwaps()
+    {
+        ArrayList<ZombieCrushSagaMove> legalSwaps = new ArrayList();
+        for (int i = 0; i < columns; i++)
+        {
+            for (long across = legalAcross[i]; across != 0; across &= across - 1)
+            {
+                int row = Long.numberOfTrailingZeros(across);
+                legalSwaps.add(makeMove(i, row, i + 1, row, acrossScores[i][row]));
+            }
+            for (long down = legalDown[i]; down != 0; down &= down - 1)
+            {
+                int row = Long.numberOfTrailingZeros(down);
+                legalSwaps.add(makeMove(i, row, i, row + 1, downScores[i][row]));
+            }
+        }
+        return legalSwaps;
+    }
+
+    /**
+     * Finds the swap with the best score, as of the last update, which
+     * is the swap a hint would show.
+     *
+     * @return The best swap, or null if there are none.
+     */
+    public ZombieCrushSagaMove getBestSwap()
+    {
+        ZombieCrushSagaMove bestSwap = null;
+        for (int i = 0; i < columns; i++)
+        {
+            for (long across = legalAcross[i]; across != 0; across &= across - 1)
+            {
+                int row = Long.numberOfTrailingZeros(across);
+                if ((bestSwap == null) || (acrossScores[i][row] > bestSwap.score))
+                    bestSwap = makeMove(i, row, i + 1, row, acrossScores[i][row]);
+            }
+            for (long down = legalDown[i]; down != 0; down &= down - 1)
+            {
+                int row = Long.numberOfTrailingZeros(down);
+                if ((bestSwap == null) || (downScores[i][row] > bestSwap.score))
+                    bestSwap = makeMove(i, row, i, row + 1, downScores[i][row]);
+            }
+        }
+        return bestSwap;
+    }
+
+    // MUTATOR METHODS
+        // - update
+        // - reshuffleIfStuck
+
+    /**
+     * Brings the legal swaps up to date with the board, scoring again only
+     * the swaps close enough to a changed cell to be affected by it.
+     */
+    public void update()
+    {
+        boolean anyChanged = false;
+        for (int i = 0; i < columns; i++)
+        {
+            changedCells[i] = board.takeChangedCells(i);
+            anyChanged |= (changedCells[i] != 0);
+        }
+        numScored = 0;
+        if (!anyChanged)
+            return;
+
+        // A CELL'S SWAPS ARE STALE IF A CHANGE IS WITHIN REACH ACROSS
+        // OR DOWN FROM IT, SO SPREAD EACH CHANGE IN A PLUS SHAPE
+        for (int i = 0; i < columns; i++)
+        {
+            long changed = changedCells[i];
+            stale[i] = changed;
+            for (int d = 1; d <= SWAP_REACH; d++)
+            {
+                stale[i] |= (changed << d) | (changed >>> d);
+                if ((i - d) >= 0)
+                    stale[i] |= changedCells[i - d];
+                if ((i + d) < columns)
+                    stale[i] |= changedCells[i + d];
+            }
+        }
+
+        // NOW SCORE AGAIN EVERY SWAP WITH A CELL NEAR A CHANGE
+        for (int i = 0; i < columns; i++)
+        {
+            long staleAcross = ((i + 1) < columns) ? (stale[i] | stale[i + 1]) : 0;
+            long staleDown = stale[i] | (stale[i] >>> 1);
+            legalAcross[i] &= ~staleAcross;
+            legalDown[i] &= ~staleDown;
+
+            // ONLY CELLS ON THE BOARD CAN BE SWAPPED
+            long playable = board.getPlayableRows(i);
+            if ((i + 1) < columns)
+                staleAcross &= playable & board.getPlayableRows(i + 1);
+            staleDown &= playable & (playable >>> 1);
+
+            for (; staleAcross != 0; staleAcross &= staleAcross - 1)
+            {
+                int row = Long.numberOfTrailingZeros(staleAcross);
+                int score = scoreSwap(i, row, i + 1, row);
+                if (score > 0)
+                {
+                    legalAcross[i] |= 1L << row;
+                    acrossScores[i][row] = score;
+                }
+            }
+            for (; staleDown != 0; staleDown &= staleDown - 1)
+            {
+                int row = Long.numberOfTrailingZeros(staleDown);
+                int score = scoreSwap(i, row, i, row + 1);
+                if (score > 0)
+                {
+                    legalDown[i] |= 1L << row;
+                    downScores[i][row] = score;
+                }
+            }
+        }
+    }
+
+    /**
+     * Makes sure the board has a move, reshuffling its tiles if it doesn't,
+     * and dealing new ones if reshuffling doesn't help.
+     *
+     * @param random Used to reshuffle and deal.
+     *
+     * @return true if the board had to be changed, false if it already had
+     * a move.
+     */
+    public boolean reshuffleIfStuck(Random random)
+    {
+        update();
+        if (hasLegalSwap())
+        {
+            return false;
+        }
+        for (int attempt = 0; attempt < (2 * MAX_RESHUFFLES); attempt++)
+        {
+            // SHUFFLE FIRST, SO THE PLAYER KEEPS THEIR SPECIALS,
+            // BUT IF THAT DOESN'T WORK, DEAL NEW TILES
+            if (attempt < MAX_RESHUFFLES)
+            {
+                if (!board.shuffle(random))
+                    board.resolve(random);
+            }
+            else
+            {
+                board.fill(random);
+            }
+            update();
+            if (hasLegalSwap())
+                break;
+        }
+        return true;
+    }
+
+    // PRIVATE HELPER METHODS
+
+    /**
+     * Scores swapping the tiles in two neighbouring cells.
+     *
+     * @return The score, or 0 if the swap doesn't make a match.
+     */
+    private int scoreSwap(int col1, int row1, int col2, int row2)
+    {
+        numScored++;
+        swapCol1 = col1;
+        swapRow1 = row1;
+        swapColor1 = board.getColor(col1, row1);
+        swapCol2 = col2;
+        swapRow2 = row2;
+        swapColor2 = board.getColor(col2, row2);
+        if ((swapColor1 == NO_COLOR) || (swapColor2 == NO_COLOR) || (swapColor1 == swapColor2))
+        {
+            return 0;
+        }
+
+        // EACH TILE MAY MAKE A MATCH WHERE IT ENDS UP
+        return scoreCell(col2, row2, swapColor1) + scoreCell(col1, row1, swapColor2);
+    }
+
+    /**
+     * Scores the lines a tile of the given color makes where it ends up
+     * after the swap being scored.
+     */
+    private int scoreCell(int col, int row, int color)
+    {
+        // COUNT THE SAME COLOR ABOVE AND BELOW IN ONE GO EACH
+        long column = getSwappedRows(color, col);
+        int above = (row > 0) ? Long.numberOfLeadingZeros(~(column << (64 - row))) : 0;
+        int below = (row < 63) ? Long.numberOfTrailingZeros(~(column >>> (row + 1))) : 0;
+        int down = above + 1 + below;
+
+        // AND TO THE LEFT AND RIGHT, A COLUMN AT A TIME
+        int across = 1;
+        for (int i = col - 1; (i >= 0) && (((getSwappedRows(color, i) >>> row) & 1) != 0); i--)
+        {
+            across++;
+        }
+        for (int i = col + 1; (i < columns) && (((getSwappedRows(color, i) >>> row) & 1) != 0); i++)
+        {
+            across++;
+        }
+
+        // THE SAME SPECIALS THE BOARD WOULD MAKE
+        int cleared = 0;
+        int special = NO_SPECIAL;
+        if (down >= 3)
+            cleared += down;
+        if (across >= 3)
+            cleared += across;
+        if ((down >= 3) && (across >= 3))
+        {
+            cleared--;
+            special = WRAPPED_SPECIAL;
+        }
+        if (Math.max(down, across) >= 5)
+            special = BOMB_SPECIAL;
+        else if ((special == NO_SPECIAL) && (down == 4))
+            special = STRIPED_ROW_SPECIAL;
+        else if ((special == NO_SPECIAL) && (across == 4))
+            special = STRIPED_COLUMN_SPECIAL;
+        return (cleared == 0) ? 0 : (cleared + SPECIAL_SCORES[special]);
+    }
+
+    /**
+     * Gets one column of a color's bitboard as it would be after the swap
+     * being scored.
+     */
+    private long getSwappedRows(int color, int col)
+    {
+        long column = board.getColorRows(color, col);
+        if (col == swapCol1)
+        {
+            long cell = 1L << swapRow1;
+            column = (color == swapColor2) ? (column | cell) : (column & ~cell);
+        }
+        if (col == swapCol2)
+        {
+            long cell = 1L << swapRow2;
+            column = (color == swapColor1) ? (column | cell) : (column & ~cell);
+        }
+        return column;
+    }
+
+    /**
+     * Makes a move for a swap.
+     */
+    private ZombieCrushSagaMove makeMove(int col1, int row1, int col2, int row2, int score)
+    {
+        ZombieCrushSagaMove move = new ZombieCrushSagaMove();
+        move.col1 = col1;
+        move.row1 = row1;
+        move.col2 = col2;
+        move.row2 = row2;
+        move.score = score;
+        return move;
+    }
+}
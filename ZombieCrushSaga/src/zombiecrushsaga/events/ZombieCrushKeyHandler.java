@@ -0,0 +1,49 @@
+package zombiecrushsaga.events;
+
+import java.awt.event.KeyAdapter;
+import java.awt.event.KeyEvent;
+import static zombiecrushsaga.ZombieCrushSagaConstants.SAGA_SCREEN_STATE;
+import zombiecrushsaga.ui.ZombieCrushSagaMiniGame;
+
+/**
+ * This event handler lets us provide additional custom responses
+ * to key presses while Zombie Crush Saga is running.
+ * 
+ * @author Richard McKenna
+ */
+public class ZombieCrushKeyHandler extends KeyAdapter
+{
+    // THE ZOMBIE CRUSH GAME ON WHICH WE'LL RESPOND
+    private ZombieCrushSagaMiniGame game;
+
+    /**
+     * This constructor simply inits the object by 
+     * keeping the game for later.
+     * 
+     * @param initGame The Zombie Crush game.
+     */    
+    public ZombieCrushKeyHandler(ZombieCrushSagaMiniGame initGame)
+    {
+        game = initGame;
+    }
+    
+    /**
+     * This method provides a custom game response to when the user
+     * presses a keyboard key.
+     * 
+     * @param ke Event object containing information about the event,
+     * like which key was pressed.
+     */
+    @Override
+    public void keyPressed(KeyEvent ke)
+    {
+        // THE ARROW KEYS SCROLL THE SAGA MAP, JUST LIKE ITS BUTTONS
+        if (game.isCurrentScreenState(SAGA_SCREEN_STATE))
+        {
+            if (ke.getKeyCode() == KeyEvent.VK_UP)
+                game.scrollUp();
+            else if (ke.getKeyCode() == KeyEvent.VK_DOWN)
+                game.scrollDown();
+        }
+    }
+}
@@ -7,6 +7,7 @@ import java.io.DataOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
+import mini_game.MiniGameLevelFile;
 import zombiecrushsaga.ZombieCrushSaga.ZombieCrushSagaPropertyType;
 import zombiecrushsaga.data.ZombieCrushSagaLevelRecord;
 import zombiecrushsaga.data.ZombieCrushSagaDataModel;
@@ -45,48 +46,17 @@ public class ZombieCrushSagaFileManager
      */
     public void loadLevel(String levelFile)
     {
-        // LOAD THE RAW DATA SO WE CAN USE IT
-        // OUR LEVEL FILES WILL HAVE THE DIMENSIONS FIRST,
-        // FOLLOWED BY THE GRID VALUES
+        // LOAD THE RAW DATA SO WE CAN USE IT. LEVEL FILES ARE SHARED
+        // WITH THE LEVEL EDITOR, SO THE FRAMEWORK READS THEM FOR US,
+        // WITH OR WITHOUT A HEADER
         try
         {
             File fileToOpen = new File(levelFile);
-
-            // LET'S USE A FAST LOADING TECHNIQUE. WE'LL LOAD ALL OF THE
-            // BYTES AT ONCE INTO A BYTE ARRAY, AND THEN PICK THAT APART.
-            // THIS IS FAST BECAUSE IT ONLY HAS TO DO FILE READING ONCE
-            byte[] bytes = new byte[Long.valueOf(fileToOpen.length()).intValue()];
-            ByteArrayInputStream bais = new ByteArrayInputStream(bytes);
-            FileInputStream fis = new FileInputStream(fileToOpen);
-            BufferedInputStream bis = new BufferedInputStream(fis);
-            
-            // HERE IT IS, THE ONLY READY REQUEST WE NEED
-            bis.read(bytes);
-            bis.close();
-            
-            // NOW WE NEED TO LOAD THE DATA FROM THE BYTE ARRAY
-            DataInputStream dis = new DataInputStream(bais);
-            
-            // NOTE THAT WE NEED TO LOAD THE DATA IN THE SAME
-            // ORDER AND FORMAT AS WE SAVED IT
-            
-            // FIRST READ THE GRID DIMENSIONS
-            int initGridColumns = dis.readInt();
-            int initGridRows = dis.readInt();
-            int[][] newGrid = new int[initGridColumns][initGridRows];
-            
-            // AND NOW ALL THE CELL VALUES
-            for (int i = 0; i < initGridColumns; i++)
-            {                        
-                for (int j = 0; j < initGridRows; j++)
-                {
-                    newGrid[i][j] = dis.readInt();
-                }
-            }
+            MiniGameLevelFile level = MiniGameLevelFile.read(MiniGameLevelFile.map(fileToOpen));
             
             // EVERYTHING WENT AS PLANNED SO LET'S MAKE IT PERMANENT
             ZombieCrushSagaDataModel dataModel = (ZombieCrushSagaDataModel)miniGame.getDataModel();
-            dataModel.initLevelGrid(newGrid, initGridColumns, initGridRows);
+            dataModel.initLevelGrid(level.getGrid(), level.getGridColumns(), level.getGridRows());
             dataModel.setCurrentLevel(levelFile);
             
             miniGame.updateBoundaries();
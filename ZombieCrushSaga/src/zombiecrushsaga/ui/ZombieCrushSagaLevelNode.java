@@ -0,0 +1,178 @@
+package zombiecrushsaga.ui;
+
+import java.awt.image.BufferedImage;
+import mini_game.MiniGameImageCache;
+import mini_game.Sprite;
+import mini_game.SpriteType;
+import zombiecrushsaga.events.SelectLevelHandler;
+import static zombiecrushsaga.ZombieCrushSagaConstants.*;
+
+/**
+ * This class represents a level's node on the saga map, which the player
+ * clicks to play the level. A node starts out as just the names of its
+ * level and images and where it goes on the map, which costs next to
+ * nothing, so a saga may have hundreds of them. Its images are only loaded,
+ * and its button made, when it comes close to the screen, and they're let
+ * go again once it's far away.
+ *
+ * @author Richard McKenna
+ */
+public class ZombieCrushSagaLevelNode
+{
+    // THE LEVEL THIS NODE PLAYS, AND ITS IMAGES
+    private String levelFile;
+    private String imageFile;
+    private String mouseOverImageFile;
+
+    // WHERE IT GOES ON THE SAGA MAP, NOT THE SCREEN
+    private float mapX;
+    private float mapY;
+
+    // ITS BUTTON, WHICH IS null UNTIL IT'S LOADED
+    private Sprite button;
+
+    // true WHILE THE BUTTON IS ON THE SCREEN, AND SO MAY BE CLICKED
+    private boolean shown;
+
+    /**
+     * This constructor declares a node without loading anything.
+     *
+     * @param initLevelFile The level to load when the node is clicked.
+     *
+     * @param initImageFile Full path and name of the node's image.
+     *
+     * @param initMouseOverImageFile Full path and name of the node's image
+     * when the mouse is over it.
+     *
+     * @param initMapX Where the node's left edge is on the saga map.
+     *
+     * @param initMapY Where the node's top edge is on the saga map.
+     */
+    public ZombieCrushSagaLevelNode(String initLevelFile, String initImageFile, String initMouseOverImageFile,
+                                    float initMapX, float initMapY)
+    {
+        levelFile = initLevelFile;
+        imageFile = initImageFile;
+        mouseOverImageFile = initMouseOverImageFile;
+        mapX = initMapX;
+        mapY = initMapY;
+    }
+
+    // ACCESSOR METHODS
+        // - getLevelFile
+        // - getMapY
+        // - getButton
+        // - isLoaded
+        // - isShown
+
+    /**
+     * Accessor method for the level this node plays.
+     *
+     * @return The level file.
+     */
+    public String getLevelFile()
+    {
+        return levelFile;
+    }
+
+    /**
+     * Accessor method for where the node is on the saga map.
+     *
+     * @return The y-axis location of its top edge on the map.
+     */
+    public float getMapY()
+    {
+        return mapY;
+    }
+
+    /**
+     * Accessor method for the node's button.
+     *
+     * @return The button, or null if the node isn't loaded.
+     */
+    public Sprite getButton()
+    {
+        return button;
+    }
+
+    /**
+     * Accessor method for whether the node's images are loaded.
+     *
+     * @return true if it's loaded, false otherwise.
+     */
+    public boolean isLoaded()
+    {
+        return button != null;
+    }
+
+    /**
+     * Accessor method for whether the node's button is on the screen.
+     *
+     * @return true if it may be clicked, false otherwise.
+     */
+    public boolean isShown()
+    {
+        return shown;
+    }
+
+    // MUTATOR METHODS
+        // - setShown
+        // - load
+        // - unload
+        // - scrollTo
+
+    /**
+     * Mutator method for noting whether the node's button is on the screen.
+     *
+     * @param initShown true if it's been put on the screen, false if it's
+     * been taken off.
+     */
+    public void setShown(boolean initShown)
+    {
+        shown = initShown;
+    }
+
+    /**
+     * Loads the node's images and makes its button, which clicking loads
+     * the node's level.
+     *
+     * @param game The game, which loads the images.
+     *
+     * @param sagaY Where the top of the saga map is on the screen.
+     */
+    public void load(ZombieCrushSagaMiniGame game, float sagaY)
+    {
+        SpriteType sT = new SpriteType(LEVEL_SELECT_BUTTON_TYPE);
+        BufferedImage img = game.loadImageWithColorKey(imageFile, COLOR_KEY);
+        sT.addState(VISIBLE_STATE, img);
+        img = game.loadImageWithColorKey(mouseOverImageFile, COLOR_KEY);
+        sT.addState(MOUSE_OVER_STATE, img);
+        button = new Sprite(sT, mapX, sagaY + mapY, 0, 0, VISIBLE_STATE);
+        button.setActionListener(new SelectLevelHandler(game, levelFile));
+    }
+
+    /**
+     * Lets go of the node's button and takes its images out of the game's
+     * image cache, so their memory may be reclaimed.
+     *
+     * @param imageCache The cache the images were loaded into.
+     */
+    public void unload(MiniGameImageCache imageCache)
+    {
+        button = null;
+        imageCache.evictImageWithColorKey(imageFile, COLOR_KEY);
+        imageCache.evictImageWithColorKey(mouseOverImageFile, COLOR_KEY);
+    }
+
+    /**
+     * Moves the node's button to where it is on the screen with the saga
+     * map scrolled to sagaY.
+     *
+     * @param sagaY Where the top of the saga map is on the screen.
+     */
+    public void scrollTo(float sagaY)
+    {
+        if (button.getY() != (sagaY + mapY))
+            button.setY(sagaY + mapY);
+    }
+}
@@ -22,6 +22,7 @@ import javax.swing.JFrame;
 import zombiecrushsaga.data.ZombieCrushSagaDataModel;
 import mini_game.MiniGame;
 import static zombiecrushsaga.ZombieCrushSagaConstants.*;
+import mini_game.MiniGameStripedImage;
 import mini_game.Sprite;
 import mini_game.SpriteType;
 import properties_manager.PropertiesManager;
@@ -52,10 +53,23 @@ public class ZombieCrushSagaMiniGame extends MiniGame
     // THE SCREEN CURRENTLY BEING PLAYED
     private String currentScreenState;
     
+    // THE SAGA MAP, WHICH IS ONLY DECODED A STRIP AT A TIME AS IT
+    // SCROLLS INTO VIEW, AND HOW FAR AND HOW FAST IT'S SCROLLING
+    private MiniGameStripedImage sagaMap;
+    private float sagaY;
+    private float sagaVelocity;
+    
+    // EVERY LEVEL'S NODE ON THE SAGA MAP, FROM THE BOTTOM OF THE MAP UP,
+    // AND THE ONES NEAR ENOUGH TO THE SCREEN TO HAVE THEIR IMAGES LOADED
+    private ArrayList<ZombieCrushSagaLevelNode> levelNodes;
+    private ArrayList<ZombieCrushSagaLevelNode> loadedLevelNodes;
+    
     // ACCESSOR METHODS
         // - getPlayerRecord
         // - getErrorHandler
         // - getFileManager
+        // - getSagaMap
+        // - getSagaY
         // - isCurrentScreenState
     
     /**
@@ -89,6 +103,27 @@ public class ZombieCrushSagaMiniGame extends MiniGame
         return fileManager;
     }
 
+    /**
+     * Accessor method for getting the saga map.
+     * 
+     * @return The saga map, which is drawn a strip at a time.
+     */
+    public MiniGameStripedImage getSagaMap()
+    {
+        return sagaMap;
+    }
+
+    /**
+     * Accessor method for how far the saga map is scrolled.
+     * 
+     * @return Where the top of the saga map is on the screen, which is
+     * 0 or less.
+     */
+    public float getSagaY()
+    {
+        return sagaY;
+    }
+
     /**
      * Used for testing to see if the current screen state matches
      * the testScreenState argument. If it mates, true is returned,
@@ -182,8 +217,8 @@ public class ZombieCrushSagaMiniGame extends MiniGame
     {
         PropertiesManager props = PropertiesManager.getPropertiesManager();
         
-        // CHANGE THE BACKGROUND
-        guiDecor.get(SAGA_TYPE).setState(SAGA_SCREEN_STATE);
+        // CHANGE THE BACKGROUND, THE SAGA MAP COVERS THE WHOLE SCREEN
+        guiDecor.get(BACKGROUND_TYPE).setState(INVISIBLE_STATE);
         guiDecor.get(TOOLBAR_TYPE).setState(VISIBLE_STATE);
         
         // DISABLE SPLASH SCREEN, WE CAN NEVER GO BACK
@@ -205,22 +240,24 @@ public class ZombieCrushSagaMiniGame extends MiniGame
         currentScreenState = SAGA_SCREEN_STATE;
     }
     
+    /**
+     * This method pushes the saga map down the screen, so the player sees
+     * more of the top of it. It keeps moving for a bit, slowing down.
+     */
     public void scrollUp()
     {
-
-        if(SAGA_Y < 0)
-        SAGA_Y = SAGA_Y + 50;
-        guiDecor.get(SAGA_TYPE).setY(SAGA_Y);
+        sagaVelocity = Math.min(sagaVelocity + SAGA_SCROLL_IMPULSE, SAGA_MAX_SCROLL_VELOCITY);
     }
     
+    /**
+     * This method pushes the saga map up the screen, so the player sees
+     * more of the bottom of it. It keeps moving for a bit, slowing down.
+     */
     public void scrollDown()
     {
-   
-        if(SAGA_Y > -2900)
-        SAGA_Y = SAGA_Y - 50;
-        guiDecor.get(SAGA_TYPE).setY(SAGA_Y);    
-        
+        sagaVelocity = Math.max(sagaVelocity - SAGA_SCROLL_IMPULSE, -SAGA_MAX_SCROLL_VELOCITY);
     }
+    
     /**
      * This method switches the application to the splash screen, making
      * all the appropriate UI controls visible & invisible.
@@ -299,6 +336,11 @@ public class ZombieCrushSagaMiniGame extends MiniGame
     @Override
     public void initData()
     {        
+        // KEEP THE KEYED ART BETWEEN RUNS
+        PropertiesManager props = PropertiesManager.getPropertiesManager();
+        String imgPath = props.getProperty(ZombieCrushSagaPropertyType.IMG_PATH);
+        imageCache.setColorKeyCacheDir(new File(imgPath + KEYED_IMAGE_DIR));
+
         // INIT OUR ERROR HANDLER
         errorHandler = new ZombieCrushSagaErrorHandler(window);
         
@@ -312,7 +354,6 @@ public class ZombieCrushSagaMiniGame extends MiniGame
         data = new ZombieCrushSagaDataModel(this);
 
         // LOAD THE GAME DIMENSIONS
-        PropertiesManager props = PropertiesManager.getPropertiesManager();
         int gameWidth = Integer.parseInt(props.getProperty(ZombieCrushSagaPropertyType.GAME_WIDTH.toString()));
         int gameHeight = Integer.parseInt(props.getProperty(ZombieCrushSagaPropertyType.GAME_HEIGHT.toString()));
         data.setGameDimensions(gameWidth, gameHeight);
@@ -356,11 +397,28 @@ public class ZombieCrushSagaMiniGame extends MiniGame
         s = new Sprite(sT, 0, 0, 0, 0, SPLASH_SCREEN_STATE);
         guiDecor.put(BACKGROUND_TYPE, s);
         
-        img = loadImage(imgPath + props.getProperty(ZombieCrushSagaPropertyType.SAGA_SCREEN_IMAGE_NAME));
-        sT = new SpriteType(SAGA_TYPE);
-        sT.addState(SAGA_SCREEN_STATE, img);
-        s = new Sprite(sT, SAGA_X, SAGA_Y, 0, 0, INVISIBLE_STATE);
-        guiDecor.put(SAGA_TYPE, s);
+        // THE SAGA MAP IS TOO BIG TO LOAD ALL AT ONCE, SO IT'S LOADED A
+        // STRIP AT A TIME WHEN DRAWN. IT STARTS SCROLLED TO THE BOTTOM
+        int maxSagaStrips = (data.getGameHeight() / SAGA_STRIP_HEIGHT) + SAGA_SPARE_STRIPS;
+        sagaMap = loadStripedImage(imgPath + props.getProperty(ZombieCrushSagaPropertyType.SAGA_SCREEN_IMAGE_NAME),
+                SAGA_STRIP_HEIGHT, maxSagaStrips);
+        sagaY = getMinSagaY();
+        sagaVelocity = 0;
+        
+        // DECLARE A NODE FOR EACH LEVEL, BUT DON'T LOAD ANY OF THEIR
+        // IMAGES UNTIL THEY'RE ABOUT TO SCROLL ONTO THE SCREEN
+        ArrayList<String> levels = props.getPropertyOptionsList(ZombieCrushSagaPropertyType.LEVEL_OPTIONS);
+        ArrayList<String> levelImageNames = props.getPropertyOptionsList(ZombieCrushSagaPropertyType.LEVEL_IMAGE_OPTIONS);
+        ArrayList<String> levelMouseOverImageNames = props.getPropertyOptionsList(ZombieCrushSagaPropertyType.LEVEL_MOUSE_OVER_IMAGE_OPTIONS);
+        levelNodes = new ArrayList();
+        loadedLevelNodes = new ArrayList();
+        for (int i = 0; i < levels.size(); i++)
+        {
+            x = LEVEL_NODE_XS[i % LEVEL_NODE_XS.length];
+            y = sagaMap.getHeight() - LEVEL_NODE_BOTTOM_MARGIN - LEVEL_NODE_HEIGHT - (i * LEVEL_NODE_SPACING);
+            levelNodes.add(new ZombieCrushSagaLevelNode(levels.get(i), imgPath + levelImageNames.get(i),
+                    imgPath + levelMouseOverImageNames.get(i), x, y));
+        }
         
 
         
@@ -460,6 +518,10 @@ public class ZombieCrushSagaMiniGame extends MiniGame
         
         ScrollUpHandler suh = new ScrollUpHandler(this);
         guiButtons.get(SCROLL_UP_TYPE).setActionListener(suh);
+        
+        // KEY LISTENER - LET'S US PROVIDE CUSTOM RESPONSES
+        ZombieCrushKeyHandler zkh = new ZombieCrushKeyHandler(this);
+        this.setKeyListener(zkh);
     }
     
     /**
@@ -479,6 +541,15 @@ public class ZombieCrushSagaMiniGame extends MiniGame
     @Override
     public void updateGUI()
     {
+        // KEEP THE SAGA MAP MOVING IF IT WAS SCROLLED
+        if (isCurrentScreenState(SAGA_SCREEN_STATE))
+        {
+            updateSagaScroll();
+        }
+        
+        // AND ONLY LET THE LEVEL NODES ON THE SCREEN BE CLICKED
+        updateLevelNodes();
+        
         // GO THROUGH THE VISIBLE BUTTONS TO TRIGGER MOUSE OVERS
         Iterator<Sprite> buttonsIt = guiButtons.values().iterator();
         while (buttonsIt.hasNext())
@@ -486,21 +557,146 @@ public class ZombieCrushSagaMiniGame extends MiniGame
             Sprite button = buttonsIt.next();
             
             // ARE WE ENTERING A BUTTON?
-            if (button.getState().equals(VISIBLE_STATE))
+            if (button.isInState(VISIBLE_STATE_ID))
             {
                 if (button.containsPoint(data.getLastMouseX(), data.getLastMouseY()))
                 {
-                    button.setState(MOUSE_OVER_STATE);
+                    button.setStateID(MOUSE_OVER_STATE_ID);
                 }
             }
             // ARE WE EXITING A BUTTON?
-            else if (button.getState().equals(MOUSE_OVER_STATE))
+            else if (button.isInState(MOUSE_OVER_STATE_ID))
             {
                  if (!button.containsPoint(data.getLastMouseX(), data.getLastMouseY()))
                 {
-                    button.setState(VISIBLE_STATE);
+                    button.setStateID(VISIBLE_STATE_ID);
+                }
+            }
+        }
+    }
+    
+    /**
+     * This helper method moves the saga map along as it scrolls, slowing
+     * it down, and stopping it at the top and bottom of the map.
+     */
+    private void updateSagaScroll()
+    {
+        if (sagaVelocity == 0)
+            return;
+        sagaY += sagaVelocity;
+        sagaVelocity *= SAGA_SCROLL_FRICTION;
+        if (Math.abs(sagaVelocity) < SAGA_MIN_SCROLL_VELOCITY)
+            sagaVelocity = 0;
+        if (sagaY > 0)
+        {
+            sagaY = 0;
+            sagaVelocity = 0;
+        }
+        else if (sagaY < getMinSagaY())
+        {
+            sagaY = getMinSagaY();
+            sagaVelocity = 0;
+        }
+    }
+    
+    /**
+     * This helper method finds how far up the saga map may be scrolled,
+     * which is when its bottom is at the bottom of the screen.
+     */
+    private float getMinSagaY()
+    {
+        return Math.min(0, data.getGameHeight() - sagaMap.getHeight());
+    }
+    
+    /**
+     * This helper method keeps the level nodes up to date with the saga
+     * map. Nodes close to the screen get loaded and ones far from it get
+     * unloaded, and only the ones on the screen are buttons, so only they
+     * get tested for clicks. Only the nodes near the screen are looked at.
+     */
+    private void updateLevelNodes()
+    {
+        // THE PART OF THE MAP ON THE SCREEN
+        float screenTop = -sagaY;
+        float screenBottom = data.getGameHeight() - sagaY;
+        boolean onSagaScreen = isCurrentScreenState(SAGA_SCREEN_STATE);
+        
+        // LOAD THE NODES THAT ARE CLOSE, WHICH ARE NEXT TO EACH OTHER
+        if (onSagaScreen)
+        {
+            int firstNode = countLevelNodesBelow(screenBottom + LEVEL_NODE_LOAD_MARGIN);
+            int lastNode = countLevelNodesBelow(screenTop - LEVEL_NODE_LOAD_MARGIN - LEVEL_NODE_HEIGHT);
+            for (int i = firstNode; i < lastNode; i++)
+            {
+                ZombieCrushSagaLevelNode node = levelNodes.get(i);
+                if (!node.isLoaded())
+                {
+                    node.load(this, sagaY);
+                    loadedLevelNodes.add(node);
                 }
             }
         }
-    }    
+        
+        // THEN SHOW, HIDE, OR UNLOAD EACH LOADED ONE
+        Iterator<ZombieCrushSagaLevelNode> nodesIt = loadedLevelNodes.iterator();
+        while (nodesIt.hasNext())
+        {
+            ZombieCrushSagaLevelNode node = nodesIt.next();
+            float nodeTop = node.getMapY();
+            float nodeBottom = nodeTop + LEVEL_NODE_HEIGHT;
+            if ((nodeTop >= (screenBottom + LEVEL_NODE_EVICT_MARGIN))
+                    || (nodeBottom <= (screenTop - LEVEL_NODE_EVICT_MARGIN)))
+            {
+                hideLevelNode(node);
+                node.unload(imageCache);
+                nodesIt.remove();
+            }
+            else if (onSagaScreen && (nodeTop < screenBottom) && (nodeBottom > screenTop))
+            {
+                node.scrollTo(sagaY);
+                if (!node.isShown())
+                {
+                    guiButtons.put(node.getLevelFile(), node.getButton());
+                    node.setShown(true);
+                }
+            }
+            else
+            {
+                hideLevelNode(node);
+            }
+        }
+    }
+    
+    /**
+     * This helper method takes a level node's button off the screen, so
+     * it can't be clicked.
+     */
+    private void hideLevelNode(ZombieCrushSagaLevelNode node)
+    {
+        if (node.isShown())
+        {
+            guiButtons.remove(node.getLevelFile());
+            node.setShown(false);
+        }
+    }
+    
+    /**
+     * This helper method counts the level nodes at or below mapY on the
+     * saga map. Since the nodes go from the bottom of the map up, they're
+     * the first ones, so we can search for the last of them.
+     */
+    private int countLevelNodesBelow(float mapY)
+    {
+        int low = 0;
+        int high = levelNodes.size();
+        while (low < high)
+        {
+            int mid = (low + high) >>> 1;
+            if (levelNodes.get(mid).getMapY() >= mapY)
+                low = mid + 1;
+            else
+                high = mid;
+        }
+        return low;
+    }
 }
\ No newline at end of file
@@ -3,14 +3,17 @@ package zombiecrushsaga.ui;
 import java.awt.Color;
 import java.awt.Font;
 import java.awt.Graphics;
-import java.awt.Image;
 import java.awt.image.BufferedImage;
+import java.io.IOException;
 import java.text.NumberFormat;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
 import javax.swing.JPanel;
 import mini_game.MiniGame;
+import mini_game.MiniGameFrameBuilder;
+import mini_game.MiniGameFrameSnapshot;
+import mini_game.MiniGameStripedImage;
 import mini_game.Sprite;
 import mini_game.SpriteType;
 import zombiecrushsaga.data.ZombieCrushSagaDataModel;
@@ -24,7 +27,7 @@ import properties_manager.PropertiesManager;
  * 
  * @author Pam
  */
-public class ZombieCrushSagaPanel extends JPanel
+public class ZombieCrushSagaPanel extends JPanel implements MiniGameFrameBuilder
 {
     // THIS IS ACTUALLY OUR Mahjong Solitaire APP, WE NEED THIS
     // BECAUSE IT HAS THE GUI STUFF THAT WE NEED TO RENDER
@@ -86,50 +89,52 @@ public class ZombieCrushSagaPanel extends JPanel
     }
 
     /**
-     * This is where rendering starts. This method is called each frame, and the
-     * entire game application is rendered here with the help of a number of
-     * helper methods.
+     * This is where rendering starts. This method is called each frame, and it
+     * simply paints the most recently published frame snapshot.
      * 
      * @param g The Graphics context for this panel.
      */
     @Override
     public void paintComponent(Graphics g)
     {
-        try
-        {
-            // MAKE SURE WE HAVE EXCLUSIVE ACCESS TO THE GAME DATA
-            game.beginUsingData();
-        
-            // CLEAR THE PANEL
-            super.paintComponent(g);
-        
-            // RENDER THE BACKGROUND, WHICHEVER SCREEN WE'RE ON
-            renderBackground(g);
+        // CLEAR THE PANEL
+        super.paintComponent(g);
 
-            // AND THE BUTTONS AND DECOR
-            renderGUIControls(g);
-                
-            // AND THE TILES
-            renderTiles(g);
+        // AND DRAW THE LATEST FRAME, NO LOCK NEEDED
+        game.renderFrameSnapshot(g, 0.0f);
+    }
 
-            // AND THE DIALOGS, IF THERE ARE ANY
-            renderDialogs(g);
+    /**
+     * Called each frame by the update thread while it holds the data lock,
+     * this method records the entire game application into the frame with the
+     * help of a number of helper methods.
+     * 
+     * @param frame The snapshot to record this frame into.
+     */
+    @Override
+    public void buildFrame(MiniGameFrameSnapshot frame)
+    {
+        // RENDER THE BACKGROUND, WHICHEVER SCREEN WE'RE ON
+        renderBackground(frame);
 
-            // AND THE TIME AND TILES STATS
-            renderStats(g);
-                
-            // RENDERING THE GRID WHERE ALL THE TILES GO CAN BE HELPFUL
-            // DURING DEBUGGIN TO BETTER UNDERSTAND HOW THEY RE LAID OUT
-            renderGrid(g);
-        
-            // AND FINALLY, TEXT FOR DEBUGGING
-            renderDebuggingText(g);
-        }
-        finally
-        {
-            // RELEASE THE LOCK
-            game.endUsingData();    
-        }
+        // AND THE BUTTONS AND DECOR
+        renderGUIControls(frame);
+
+        // AND THE TILES
+        renderTiles(frame);
+
+        // AND THE DIALOGS, IF THERE ARE ANY
+        renderDialogs(frame);
+
+        // AND THE TIME AND TILES STATS
+        renderStats(frame);
+
+        // RENDERING THE GRID WHERE ALL THE TILES GO CAN BE HELPFUL
+        // DURING DEBUGGIN TO BETTER UNDERSTAND HOW THEY RE LAID OUT
+        renderGrid(frame);
+
+        // AND FINALLY, TEXT FOR DEBUGGING
+        renderDebuggingText(frame);
     }
     
     // RENDERING HELPER METHODS
@@ -143,34 +148,50 @@ public class ZombieCrushSagaPanel extends JPanel
     /**
      * Renders the background image, which is different depending on the screen. 
      * 
-     * @param g the Graphics context of this panel.
+     * @param frame the snapshot of this frame.
      */
-    public void renderBackground(Graphics g)
+    public void renderBackground(MiniGameFrameSnapshot frame)
     {
         // THERE IS ONLY ONE CURRENTLY SET
         //Sprite bg = game.getGUIDecor().get(BACKGROUND_TYPE);
-        //renderSprite(g, bg);
+        //renderSprite(frame, bg);
+
+        // ON THE SAGA SCREEN IT'S THE SAGA MAP, BUT ONLY THE STRIPS
+        // OF IT THAT ARE ON THE SCREEN
+        ZombieCrushSagaMiniGame zombieGame = (ZombieCrushSagaMiniGame)game;
+        MiniGameStripedImage sagaMap = zombieGame.getSagaMap();
+        if (zombieGame.isCurrentScreenState(SAGA_SCREEN_STATE) && (sagaMap != null))
+        {
+            try
+            {
+                sagaMap.addToFrame(frame, SAGA_X, Math.round(zombieGame.getSagaY()), 0, data.getGameHeight());
+            }
+            catch(IOException ioe)
+            {
+                // A STRIP WE CAN'T READ IS JUST LEFT BLANK
+            }
+        }
     }
 
     /**
      * Renders all the GUI decor and buttons.
      * 
-     * @param g this panel's rendering context.
+     * @param frame the snapshot of this frame.
      */
-    public void renderGUIControls(Graphics g)
+    public void renderGUIControls(MiniGameFrameSnapshot frame)
     {
         // GET EACH DECOR IMAGE ONE AT A TIME
         Collection<Sprite> decorSprites = game.getGUIDecor().values();
         for (Sprite s : decorSprites)
         {
-            renderSprite(g, s);
+            renderSprite(frame, s);
         }
         
         // AND NOW RENDER THE BUTTONS
         Collection<Sprite> buttonSprites = game.getGUIButtons().values();
         for (Sprite s : buttonSprites)
         {
-            renderSprite(g, s);
+            renderSprite(frame, s);
         }
     }
 
@@ -180,9 +201,9 @@ public class ZombieCrushSagaPanel extends JPanel
      * the game progresses. This means things like the game time
      * and the number of tiles remaining.
      * 
-     * @param g the Graphics context for this panel
+     * @param frame the snapshot of this frame.
      */
-    public void renderStats(Graphics g)
+    public void renderStats(MiniGameFrameSnapshot frame)
     {
 
         
@@ -192,9 +213,9 @@ public class ZombieCrushSagaPanel extends JPanel
      * Renders all the game tiles, doing so carefully such
      * that they are rendered in the proper order.
      * 
-     * @param g the Graphics context of this panel.
+     * @param frame the snapshot of this frame.
      */
-    public void renderTiles(Graphics g)
+    public void renderTiles(MiniGameFrameSnapshot frame)
     {
 
     }
@@ -202,11 +223,11 @@ public class ZombieCrushSagaPanel extends JPanel
     /**
      * Helper method for rendering the tiles that are currently moving.
      * 
-     * @param g Rendering context for this panel.
+     * @param frame the snapshot of this frame.
      * 
      * @param tileToRender Tile to render to this panel.
      */
-    public void renderTile(Graphics g, ZombieCrushSagaTile tileToRender)
+    public void renderTile(MiniGameFrameSnapshot frame, ZombieCrushSagaTile tileToRender)
     {
       
     }
@@ -214,30 +235,28 @@ public class ZombieCrushSagaPanel extends JPanel
     /**
      * Renders the game dialog boxes.
      * 
-     * @param g This panel's graphics context.
+     * @param frame the snapshot of this frame.
      */
-    public void renderDialogs(Graphics g)
+    public void renderDialogs(MiniGameFrameSnapshot frame)
     {
        
        
     }
     
     /**
-     * Renders the s Sprite into the Graphics context g. Note
+     * Records the s Sprite into the frame. Note
      * that each Sprite knows its own x,y coordinate location.
      * 
-     * @param g the Graphics context of this panel
+     * @param frame the snapshot of this frame.
      * 
      * @param s the Sprite to be rendered
      */
-    public void renderSprite(Graphics g, Sprite s)
+    public void renderSprite(MiniGameFrameSnapshot frame, Sprite s)
     {
         // ONLY RENDER THE VISIBLE ONES
-        if (!s.getState().equals(INVISIBLE_STATE))
+        if (!s.isInState(INVISIBLE_STATE_ID))
         {
-            SpriteType bgST = s.getSpriteType();
-            Image img = bgST.getStateImage(s.getState());
-            g.drawImage(img, (int)s.getX(), (int)s.getY(), bgST.getWidth(), bgST.getHeight(), null); 
+            frame.addSprite(s);
         }
     }
 
@@ -245,9 +264,9 @@ public class ZombieCrushSagaPanel extends JPanel
      * This method renders grid lines in the game tile grid to help
      * during debugging.
      * 
-     * @param g Graphics context for this panel.
+     * @param frame the snapshot of this frame.
      */
-    public void renderGrid(Graphics g)
+    public void renderGrid(MiniGameFrameSnapshot frame)
     {
 
     }
@@ -257,9 +276,9 @@ public class ZombieCrushSagaPanel extends JPanel
      * that the rendering will only actually be done
      * if data has activated debug text rendering.
      * 
-     * @param g the Graphics context for this panel
+     * @param frame the snapshot of this frame.
      */
-    public void renderDebuggingText(Graphics g)
+    public void renderDebuggingText(MiniGameFrameSnapshot frame)
     {
         
     }
@@ -74,6 +74,7 @@ public class Zombiquarium extends MiniGame
     public static final float ZOMBIE_MAX_VELOCITY = 3.0f;
     public static final float ZOMBIE_MIN_VELOCITY = 0.7f;
     public static final float ZOMBIE_SIGHT_DISTANCE = 100.0f;
+    public static final float SPRITE_GRID_CELL_SIZE = 100.0f;
     public static final float MAX_BRAINS = 3;
     public static final Insets ZOMBIE_MOUTH_AABB = new Insets(34, 4, 50, 26);
     
@@ -109,6 +110,16 @@ public class Zombiquarium extends MiniGame
     public static final String MOUSE_OVER_STATE = "MOUSE_OVER_STATE";
     public static final String INVISIBLE_STATE = "INVISIBLE_STATE";
     public static final String VISIBLE_STATE = "VISIBLE_STATE";
+
+    // AND THE IDS OF THE STATES WE TEST AND CHANGE EVERY FRAME,
+    // SINCE COMPARING NUMBERS IS MUCH CHEAPER THAN COMPARING STRINGS
+    public static final int NORMAL_ZOMBIE_LEFT_STATE_ID = SpriteType.getStateID(NORMAL_ZOMBIE_LEFT_STATE);
+    public static final int NORMAL_ZOMBIE_RIGHT_STATE_ID = SpriteType.getStateID(NORMAL_ZOMBIE_RIGHT_STATE);
+    public static final int DYING_ZOMBIE_LEFT_STATE_ID = SpriteType.getStateID(DYING_ZOMBIE_LEFT_STATE);
+    public static final int DYING_ZOMBIE_RIGHT_STATE_ID = SpriteType.getStateID(DYING_ZOMBIE_RIGHT_STATE);
+    public static final int DEAD_ZOMBIE_LEFT_STATE_ID = SpriteType.getStateID(DEAD_ZOMBIE_LEFT_STATE);
+    public static final int DEAD_ZOMBIE_RIGHT_STATE_ID = SpriteType.getStateID(DEAD_ZOMBIE_RIGHT_STATE);
+    public static final int INVISIBLE_STATE_ID = SpriteType.getStateID(INVISIBLE_STATE);
     
     // THESE ARE THE GUI SPRITE TYPES
     public static final String NORTH_TOOLBAR_TYPE = "NORTH_TOOLBAR";
@@ -8,6 +8,8 @@ import java.util.Vector;
 import mini_game.MiniGame;
 import mini_game.MiniGameDataModel;
 import mini_game.Sprite;
+import mini_game.SpriteGrid;
+import mini_game.SpriteStore;
 import mini_game.SpriteType;
 
 import zombiquarium.sprites.Zombie;
@@ -30,6 +32,16 @@ public class ZombiquariumDataModel extends MiniGameDataModel
     private Vector<Sprite> zombies;
     private Vector<Sprite> brains;
     private Vector<Sprite> suns;
+
+    // THE BRAINS AND SUNS ARE ALSO KEPT IN GRIDS, SO THAT CLICKS
+    // AND ZOMBIES ONLY HAVE TO LOOK AT THOSE NEARBY
+    private SpriteGrid brainGrid;
+    private SpriteGrid sunGrid;
+
+    // AND THEIR POSITIONS AND VELOCITIES ARE KEPT IN STORES, SO
+    // THAT THEY CAN ALL BE MOVED AT ONCE EACH FRAME
+    private SpriteStore brainStore;
+    private SpriteStore sunStore;
     
     // EACH FRAME, WE MAY NEED TO REMOVE BRAINS AND ZOMBIES DURING
     // THE UPDATE OPERATION AND WE DO SO WITH AN ITERATOR, 
@@ -54,6 +66,10 @@ public class ZombiquariumDataModel extends MiniGameDataModel
         zombies = new Vector();
         brains = new Vector();
         suns = new Vector();
+        brainGrid = new SpriteGrid(SPRITE_GRID_CELL_SIZE);
+        sunGrid = new SpriteGrid(SPRITE_GRID_CELL_SIZE);
+        brainStore = new SpriteStore();
+        sunStore = new SpriteStore();
 
         // AND THE ONES FOR KEEPEING TRACK OF REMOVALS
         brainsToRemove = new Vector();
@@ -61,6 +77,7 @@ public class ZombiquariumDataModel extends MiniGameDataModel
     }
 
     // ACCESSOR METHODS
+        // getBrainGrid
         // getClickedSun
         // getCurrentSun
         // getNumBrains
@@ -71,25 +88,28 @@ public class ZombiquariumDataModel extends MiniGameDataModel
         // getZombiesIterator
     
     /**
-     * This accessor method looks through the active suns and finds the first
-     * one that has the x,y point inside its bounding box, returning that
-     * Sprite. If no Sprite contains that point, null is returned.
+     * Accessor method for the grid of active brains, which zombies use to find
+     * the brains near them.
+     *
+     * @return the SpriteGrid containing all the active brains.
+     */
+    public SpriteGrid getBrainGrid()
+    {
+        return brainGrid;
+    }
+
+    /**
+     * This accessor method looks through the active suns near the x,y point
+     * and finds the first one that has the point inside its bounding box,
+     * returning that Sprite. If no Sprite contains that point, null is
+     * returned.
      *
      * @return the Sprite with a bounding box containing (x,y)
      */
     public Sprite getClickedSun(float x, float y)
     {
-        // GO THROUGH ALL THE SPRITES IN suns
-        for (Sprite s : suns)
-        {
-            // IF IT CONTAINS THE POINT, RETURN IT
-            if (s.containsPoint(x, y))
-            {
-                return s;
-            }
-        }
-        // NO SPRITE WAS FOUND TO CONTAIN THE POINT, SO RETURN null
-        return null;
+        // ONLY THE SUNS IN THE GRID CELL UNDER THE POINT ARE TESTED
+        return sunGrid.getSpriteAt(x, y);
     }
 
     /**
@@ -193,31 +213,43 @@ public class ZombiquariumDataModel extends MiniGameDataModel
     }
 
     /**
-     * Adds the brainToAdd parameter to the data structure storing the active
-     * sprites. Once added, it will be rendered and zombies may try to eat it.
+     * Makes a new brain at the given location and adds it to the data
+     * structure storing the active sprites, as long as the player can afford
+     * it. Once added, it will be rendered and zombies may try to eat it.
      *
-     * @param brainToAdd initialized Brain to be added to the game.
+     * @param x the x-axis location of the new brain.
+     *
+     * @param y the y-axis location of the new brain.
      */
-    public void addBrain(Sprite brainToAdd)
+    public void addBrain(float x, float y)
     {
         // A BRAIN CAN ONLY BE BOUGHT WITH ENOUGH SUN
         if (currentSun >= COST_OF_BRAIN)
         {
             // BRAIN PURCHASED, NOW MAKE IT PART OF THE GAME
+            SpriteType brainType = getSpriteType(BRAIN_TYPE);
+            Sprite brainToAdd = brainStore.addSprite(brainType, x, y, 0, .2f, DEFAULT_STATE);
             brains.add(brainToAdd);
+            brainGrid.add(brainToAdd);
             currentSun -= COST_OF_BRAIN;
         }
     }
 
     /**
-     * Adds the sunToAdd parameter to the data structure storing the active
-     * sprites. Once added, it will be rendered and the player may click on it.
+     * Makes a new sun at the given location and adds it to the data structure
+     * storing the active sprites. Once added, it will be rendered and the
+     * player may click on it.
      *
-     * @param sunToAdd initialized Sun to be added to the game.
+     * @param x the x-axis location of the new sun.
+     *
+     * @param y the y-axis location of the new sun.
      */
-    public void addSun(Sprite sunToAdd)
+    public void addSun(float x, float y)
     {
+        SpriteType sunType = getSpriteType(SUN_TYPE);
+        Sprite sunToAdd = sunStore.addSprite(sunType, x, y, 0, SUN_FALL_VELOCITY, DEFAULT_STATE);
         suns.add(sunToAdd);
+        sunGrid.add(sunToAdd);
     }
 
     /**
@@ -294,9 +326,7 @@ public class ZombiquariumDataModel extends MiniGameDataModel
                 && (y >= (zGame.getBoundaryTop() + zH))
                 && (y <= (zGame.getBoundaryBottom() - zH)))
         {
-            SpriteType brainType = getSpriteType(BRAIN_TYPE);
-            Sprite newBrain = new Sprite(brainType, x, y, 0, .2f, DEFAULT_STATE);
-            addBrain(newBrain);
+            addBrain(x, y);
         }
     }
 
@@ -338,6 +368,8 @@ public class ZombiquariumDataModel extends MiniGameDataModel
     {
         currentSun += VALUE_OF_SUN;
         suns.remove(sunToRemove);
+        sunGrid.remove(sunToRemove);
+        sunStore.remove(sunToRemove);
     }
 
     /**
@@ -354,6 +386,10 @@ public class ZombiquariumDataModel extends MiniGameDataModel
         zombies.clear();
         brains.clear();
         suns.clear();
+        brainGrid.clear();
+        sunGrid.clear();
+        brainStore.clear();
+        sunStore.clear();
 
         // WE START THE GAME WITH 2 ZOMBIES SWIMMING
         for (int i = 0; i < 2; i++)
@@ -380,7 +416,7 @@ public class ZombiquariumDataModel extends MiniGameDataModel
      */
     public boolean containsBrain(Sprite testBrain)
     {
-        return brains.contains(testBrain);
+        return brainGrid.contains(testBrain);
     }
 
     /**
@@ -428,10 +464,11 @@ public class ZombiquariumDataModel extends MiniGameDataModel
         brainsToRemove.clear();
         zombiesToRemove.clear();
 
-        // UPDATE ALL SPRITES
+        // UPDATE ALL SPRITES. BRAINS AND SUNS ONLY FALL, SO
+        // THEIR STORES CAN MOVE ALL OF THEM AT ONCE
         updateAll(game, zombies);
-        updateAll(game, brains);
-        updateAll(game, suns);
+        brainStore.updateAll();
+        sunStore.updateAll();
 
         // REMOVE BRAINS THAT HAVE SUNK TOO LOW
         for (Sprite b : brains)
@@ -447,6 +484,11 @@ public class ZombiquariumDataModel extends MiniGameDataModel
 
         // REMOVE THE EATEN BRAINS
         removeMarkedSprites(brains, brainsToRemove);
+        for (Sprite b : brainsToRemove)
+        {
+            brainGrid.remove(b);
+            brainStore.remove(b);
+        }
         if (zombiesToRemove.size() > 0)
         {
             removeMarkedSprites(zombies, zombiesToRemove);
@@ -472,7 +514,7 @@ public class ZombiquariumDataModel extends MiniGameDataModel
     {
         debugText.clear();
         debugText.add("ZOMBIQUARIUM STATS");
-        debugText.add("Frame Rate: " + game.getFrameRate() + " FPS");
+        debugText.add("Frame Rate: " + game.getMetrics().getMeasuredFrameRate() + " / " + game.getFrameRate() + " FPS");
         debugText.add("Num Zombies: " + zombies.size());
         debugText.add("Num Suns: " + suns.size());
         debugText.add("Num Brains: " + brains.size());
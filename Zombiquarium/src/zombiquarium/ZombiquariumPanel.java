@@ -1,26 +1,26 @@
 package zombiquarium;
 
 import java.awt.Graphics;
-import java.awt.Image;
 import java.util.Collection;
-import java.util.ConcurrentModificationException;
 import java.util.Iterator;
 import javax.swing.JPanel;
 
 import mini_game.MiniGame;
+import mini_game.MiniGameFrameBuilder;
+import mini_game.MiniGameFrameSnapshot;
 import mini_game.Sprite;
-import mini_game.SpriteType;
 import static zombiquarium.Zombiquarium.*;
 
 /**
  * This is where all rendering for the Zombiquarium game application will be
  * done. This includes all rendering of the game background, GUI controls, game
- * sprites, and even debugging text.
+ * sprites, and even debugging text. Note that each frame is recorded into a
+ * snapshot by the update thread and then painted from that snapshot.
  *
  * @author Richard McKenna
  * @version 1.0
  */
-public class ZombiquariumPanel extends JPanel
+public class ZombiquariumPanel extends JPanel implements MiniGameFrameBuilder
 {
     // THIS IS ACTUALLY OUR Zombiquarium APP, WE NEED THIS
     // BECAUSE IT HAS THE GUI STUFF THAT WE NEED TO RENDER
@@ -59,87 +59,100 @@ public class ZombiquariumPanel extends JPanel
     }
 
     /**
-     * This method does the actual rendering. I put this in a separate method
-     * because it allows us to render content to an image as well as to this
-     * panel.
+     * This method does the actual rendering, drawing the most recently
+     * published frame. I put this in a separate method because it allows us
+     * to render content to an image as well as to this panel.
      *
      * @param g Graphics context to render to.
      */
     public void renderToGraphicsContext(Graphics g)
+    {
+        game.renderFrameSnapshot(g, game.getRenderInterpolation());
+    }
+
+    /**
+     * Called each frame by the update thread while it holds the data lock,
+     * this method records everything to be drawn into the frame. Note that the
+     * order of recording is the order of rendering.
+     *
+     * @param frame the snapshot to record this frame into.
+     */
+    @Override
+    public void buildFrame(MiniGameFrameSnapshot frame)
     {
         // RENDER THE FISH TANK
-        renderBackground(g);
+        renderBackground(frame);
 
         // AND THE SUNS, BRAINS, AND ZOMBIES
-        renderGameSprites(g);
+        renderGameSprites(frame);
 
         // AND THE BUTTONS AND DECOR
-        renderGUIControls(g);
+        renderGUIControls(frame);
 
         // NOW THE CHANGING NUMBER IN THE GUI
-        renderStats(g);
+        renderStats(frame);
 
         // AND FINALLY, TEXT FOR DEBUGGING
-        renderDebuggingText(g);
+        renderDebuggingText(frame);
     }
 
     /**
      * Renders the fishtank background image.
      *
-     * @param g the Graphics context of this panel.
+     * @param frame the snapshot of this frame.
      */
-    public void renderBackground(Graphics g)
+    public void renderBackground(MiniGameFrameSnapshot frame)
     {
         Sprite bg = game.getGUIDecor().get(BACKGROUND_TYPE);
-        renderSprite(g, bg);
+        renderSprite(frame, bg);
     }
 
     /**
      * Renders all the game sprites, including Zombies, Brains, and Suns, in
      * that order.
      *
-     * @param g the Graphics context of this panel.
+     * @param frame the snapshot of this frame.
      */
-    public void renderGameSprites(Graphics g)
+    public void renderGameSprites(MiniGameFrameSnapshot frame)
     {
         // ZOMBIES ARE DRAWN FIRST BECAUSE THEY SHOW UP UNDER BRAINS AND SUNS
         Iterator<Sprite> zombiesIt = data.getZombiesIterator();
-        renderSprites(g, zombiesIt);
+        renderSprites(frame, zombiesIt);
 
         // BRAINS APPEAR SECOND
         Iterator<Sprite> brainsIt = data.getBrainsIterator();
-        renderSprites(g, brainsIt);
+        renderSprites(frame, brainsIt);
 
         // AND SUNS LAST
         Iterator<Sprite> sunsIt = data.getSunsIterator();
-        renderSprites(g, sunsIt);
+        renderSprites(frame, sunsIt);
     }
 
     /**
      * Renders all the Sprites produced by the spritesIt argument, in order,
-     * into g's Graphics context.
+     * into the frame.
      *
-     * @param g this panel's rendering context.
+     * @param frame the snapshot of this frame.
      *
      * @param spritesIt an Iterator that can access all the Sprites for
      * rendering, one at a time.
      */
-    public void renderSprites(Graphics g,
+    public void renderSprites(MiniGameFrameSnapshot frame,
             Iterator<Sprite> spritesIt)
     {
         while (spritesIt.hasNext())
         {
             Sprite spriteToRender = spritesIt.next();
-            renderSprite(g, spriteToRender);
+            renderSprite(frame, spriteToRender);
         }
     }
 
     /**
      * Renders all the GUI decor and buttons.
      *
-     * @param g this panel's rendering context.
+     * @param frame the snapshot of this frame.
      */
-    public void renderGUIControls(Graphics g)
+    public void renderGUIControls(MiniGameFrameSnapshot frame)
     {
         // GET EACH DECOR IMAGE ONE AT A TIME
         Collection<Sprite> decorSprites = game.getGUIDecor().values();
@@ -149,7 +162,7 @@ public class ZombiquariumPanel extends JPanel
             // ON TOP OF EVERYTHING ELSE
             if (!s.getSpriteType().getSpriteTypeID().equals(BACKGROUND_TYPE))
             {
-                renderSprite(g, s);
+                renderSprite(frame, s);
             }
         }
 
@@ -157,7 +170,7 @@ public class ZombiquariumPanel extends JPanel
         Collection<Sprite> buttonSprites = game.getGUIButtons().values();
         for (Sprite s : buttonSprites)
         {
-            renderSprite(g, s);
+            renderSprite(frame, s);
         }
     }
 
@@ -166,19 +179,17 @@ public class ZombiquariumPanel extends JPanel
      * progresses. This means things like the amount of sun the player has
      * accumulated and how close the player is to winning in the progress bar.
      *
-     * @param g the Graphics context for this panel
+     * @param frame the snapshot of this frame.
      */
-    public void renderStats(Graphics g)
+    public void renderStats(MiniGameFrameSnapshot frame)
     {
         // FIRST THE SUN STATS TOP LEFT
         String sunText = "" + data.getCurrentSun();
-        g.setFont(SUN_FONT);
-        g.setColor(SUN_TEXT_COLOR);
-        int width = (g.getFontMetrics(SUN_FONT)).stringWidth(sunText);
+        int width = getFontMetrics(SUN_FONT).stringWidth(sunText);
         int centerX = 40;
         int x = centerX - (width / 2);
         int y = 76;
-        g.drawString(sunText, x, y);
+        frame.addText(sunText, SUN_FONT, SUN_TEXT_COLOR, x, y);
 
         // AND THEN THE PROGRESS BAR ON THE BOTTOM
 
@@ -190,33 +201,30 @@ public class ZombiquariumPanel extends JPanel
         float barWidth = barPercentage * (PROGRESS_BAR_CORNERS.right - PROGRESS_BAR_CORNERS.left);
         int barX = progX + PROGRESS_BAR_CORNERS.left;
         int barY = progY + PROGRESS_BAR_CORNERS.top;
-        g.setColor(PROGRSS_BAR_COLOR);
-        g.fillRect(barX, barY, (int) barWidth, (int) barHeight);
+        frame.addFilledRect(PROGRSS_BAR_COLOR, barX, barY, (int) barWidth, (int) barHeight, 0);
 
         // AND THEN THE TEXT ON THE PROGRESS BAR
         String progressText = data.getCurrentSun() + "/" + COST_OF_TROPHY + " Sun";
-        g.setFont(PROGRESS_METER_FONT);
-        g.setColor(PROGRESS_METER_TEXT_COLOR);
         x = data.getGameWidth() - 100;
         y = data.getGameHeight() - 10;
-        g.drawString(progressText, x, y);
+        frame.addText(progressText, PROGRESS_METER_FONT, PROGRESS_METER_TEXT_COLOR, x, y);
     }
 
     /**
-     * Renders the s Sprite into the Graphics context g. Note that each Sprite
-     * knows its own x,y coordinate location.
+     * Records the s Sprite into the frame. Note that each Sprite knows its own
+     * x,y coordinate location and velocity, which the frame uses to push it
+     * forward by the game loop's interpolation so moving sprites glide
+     * between updates.
      *
-     * @param g the Graphics context of this panel
+     * @param frame the snapshot of this frame.
      *
      * @param s the Sprite to be rendered
      */
-    public void renderSprite(Graphics g, Sprite s)
+    public void renderSprite(MiniGameFrameSnapshot frame, Sprite s)
     {
-        if (!s.getState().equals(INVISIBLE_STATE))
+        if (!s.isInState(INVISIBLE_STATE_ID))
         {
-            SpriteType bgST = s.getSpriteType();
-            Image img = bgST.getStateImage(s.getState());
-            g.drawImage(img, (int) s.getX(), (int) s.getY(), bgST.getWidth(), bgST.getHeight(), null);
+            frame.addSprite(s);
         }
     }
 
@@ -224,38 +232,22 @@ public class ZombiquariumPanel extends JPanel
      * Renders the debugging text to the panel. Note that the rendering will
      * only actually be done if data has activated debug text rendering.
      *
-     * @param g the Graphics context for this panel
+     * @param frame the snapshot of this frame.
      */
-    public void renderDebuggingText(Graphics g)
+    public void renderDebuggingText(MiniGameFrameSnapshot frame)
     {
         if (data.isDebugTextRenderingActive())
         {
-            g.setFont(DEBUGGING_TEXT_FONT);
-            g.setColor(debugTextColor);
+            // NOTE THAT WE HAVE THE LOCK, SO NO ONE
+            // CAN CHANGE THE TEXT WHILE WE COPY IT
             Iterator<String> it = data.getDebugText().iterator();
             int x = data.getDebugTextX();
             int y = data.getDebugTextY();
             while (it.hasNext())
             {
-                try
-                {
-                    String text = it.next();
-                    g.drawString(text, x, y);
-                    y += 20;
-                } catch (ConcurrentModificationException cme)
-                {
-                    // A RACE CONDITION HAS OCCURRED, BUT
-                    // SINCE THIS IS JUST DISPLAYING SOMETHING
-                    // THAT IS NOT OF CONSEQUENCE, WE'LL IGNORE
-                    // IT
-                    System.out.println("RACE CONDITION, DO YOU KNOW WHY?");
-                    try
-                    {
-                        Thread.sleep(1000);
-                    } catch (InterruptedException ie)
-                    {
-                    }
-                }
+                String text = it.next();
+                frame.addText(text, DEBUGGING_TEXT_FONT, debugTextColor, x, y);
+                y += 20;
             }
         }
     }
@@ -2,8 +2,6 @@ package zombiquarium.sprites;
 
 import static zombiquarium.Zombiquarium.*;
 
-import java.util.Iterator;
-
 import mini_game.MiniGame;
 import mini_game.Sprite;
 import mini_game.SpriteType;
@@ -77,8 +75,8 @@ public class Zombie extends Sprite
     private void correctAABB()
     {
         aabbY = ZOMBIE_MOUTH_AABB.top;
-        if (state.equals(NORMAL_ZOMBIE_LEFT_STATE)
-                || state.equals(DYING_ZOMBIE_LEFT_STATE))
+        if ((stateID == NORMAL_ZOMBIE_LEFT_STATE_ID)
+                || (stateID == DYING_ZOMBIE_LEFT_STATE_ID))
         {
             aabbX = ZOMBIE_MOUTH_AABB.left;
         } 
@@ -127,14 +125,14 @@ public class Zombie extends Sprite
     public void initSwim()
     {
         // LET'S START THE ZOMBIE SWIMMING LEFT AT A FUZZY VELOCITY
-        state = NORMAL_ZOMBIE_LEFT_STATE;
+        stateID = NORMAL_ZOMBIE_LEFT_STATE_ID;
         float range = ZOMBIE_MAX_VELOCITY - ZOMBIE_MIN_VELOCITY;
         vX = -(float) ((Math.random() * range) + ZOMBIE_MIN_VELOCITY);
 
         // AND RANDOMLY CHANGE IT TO RIGHT FOR SOME
         if (Math.random() > 0.5)
         {
-            state = NORMAL_ZOMBIE_RIGHT_STATE;
+            stateID = NORMAL_ZOMBIE_RIGHT_STATE_ID;
             vX *= -1;
         }
 
@@ -153,8 +151,8 @@ public class Zombie extends Sprite
      */
     public boolean isDead()
     {
-        return (state.equals(DEAD_ZOMBIE_LEFT_STATE)
-                || state.equals(DEAD_ZOMBIE_RIGHT_STATE));
+        return ((stateID == DEAD_ZOMBIE_LEFT_STATE_ID)
+                || (stateID == DEAD_ZOMBIE_RIGHT_STATE_ID));
     }
 
     /**
@@ -259,30 +257,30 @@ public class Zombie extends Sprite
             if (targetBrain == null)
             {
                 // WE JUST LEAVE DEAD ZOMBIES WHERE THEY ARE
-                if ((!state.equals(DEAD_ZOMBIE_LEFT_STATE))
-                        && (!state.equals(DEAD_ZOMBIE_RIGHT_STATE)))
+                if ((!(stateID == DEAD_ZOMBIE_LEFT_STATE_ID))
+                        && (!(stateID == DEAD_ZOMBIE_RIGHT_STATE_ID)))
                 {
                     if (x <= game.getBoundaryLeft())
                     {
                         vX *= -1;
                         vY = 0;
-                        if (state.equals(NORMAL_ZOMBIE_LEFT_STATE))
+                        if ((stateID == NORMAL_ZOMBIE_LEFT_STATE_ID))
                         {
-                            state = NORMAL_ZOMBIE_RIGHT_STATE;
-                        } else if (state.equals(DYING_ZOMBIE_LEFT_STATE))
+                            stateID = NORMAL_ZOMBIE_RIGHT_STATE_ID;
+                        } else if ((stateID == DYING_ZOMBIE_LEFT_STATE_ID))
                         {
-                            state = DYING_ZOMBIE_RIGHT_STATE;
+                            stateID = DYING_ZOMBIE_RIGHT_STATE_ID;
                         }
                     } else if (x >= (game.getBoundaryRight() - spriteType.getWidth()))
                     {
                         vX *= -1;
                         vY = 0;
-                        if (state.equals(NORMAL_ZOMBIE_RIGHT_STATE))
+                        if ((stateID == NORMAL_ZOMBIE_RIGHT_STATE_ID))
                         {
-                            state = NORMAL_ZOMBIE_LEFT_STATE;
-                        } else if (state.equals(DYING_ZOMBIE_RIGHT_STATE))
+                            stateID = NORMAL_ZOMBIE_LEFT_STATE_ID;
+                        } else if ((stateID == DYING_ZOMBIE_RIGHT_STATE_ID))
                         {
-                            state = DYING_ZOMBIE_LEFT_STATE;
+                            stateID = DYING_ZOMBIE_LEFT_STATE_ID;
                         }
                     }
                     correctAABB();
@@ -296,9 +294,7 @@ public class Zombie extends Sprite
         spawnSunTimeLeft--;
         if (spawnSunTimeLeft == 0)
         {
-            SpriteType sunType = data.getSpriteType(SUN_TYPE);
-            Sprite newSun = new Sprite(sunType, x, y, 0, SUN_FALL_VELOCITY, DEFAULT_STATE);
-            data.addSun(newSun);
+            data.addSun(x, y);
             spawnSunTimeLeft = ZOMBIE_SUN_GEN_INTERVAL;
         }
     }
@@ -311,24 +307,24 @@ public class Zombie extends Sprite
         // IS THE ZOMBIE DYING?
         if (health < ZOMBIE_DYING_THRESHOLD)
         {
-            if (state.equals(NORMAL_ZOMBIE_LEFT_STATE))
+            if ((stateID == NORMAL_ZOMBIE_LEFT_STATE_ID))
             {
-                state = DYING_ZOMBIE_LEFT_STATE;
-            } else if (state.equals(NORMAL_ZOMBIE_RIGHT_STATE))
+                stateID = DYING_ZOMBIE_LEFT_STATE_ID;
+            } else if ((stateID == NORMAL_ZOMBIE_RIGHT_STATE_ID))
             {
-                state = DYING_ZOMBIE_RIGHT_STATE;
+                stateID = DYING_ZOMBIE_RIGHT_STATE_ID;
             }
         }
 
         // IS THIS POOR SNORKLING ZOMBIE DEAD?
         if (health <= 0)
         {
-            if (state.equals(DYING_ZOMBIE_LEFT_STATE))
+            if ((stateID == DYING_ZOMBIE_LEFT_STATE_ID))
             {
-                state = DEAD_ZOMBIE_LEFT_STATE;
+                stateID = DEAD_ZOMBIE_LEFT_STATE_ID;
             } else
             {
-                state = DEAD_ZOMBIE_RIGHT_STATE;
+                stateID = DEAD_ZOMBIE_RIGHT_STATE_ID;
             }
             vX = 0;
             vY = 0;
@@ -343,30 +339,11 @@ public class Zombie extends Sprite
 
     private void chooseTargetBrain(ZombiquariumDataModel data)
     {
-        Iterator<Sprite> brainsIt = data.getBrainsIterator();
-        float minDistance = -1.0f;
-        // FIND THE FIRST ONE THE ZOMBIE CAN SEE
-        while (brainsIt.hasNext() && minDistance < 0.0f)
-        {
-            Sprite testBrain = brainsIt.next();
-            float testDistance = calculateDistanceToSprite(testBrain);
-            if (testDistance <= ZOMBIE_SIGHT_DISTANCE)
-            {
-                minDistance = testDistance;
-                targetBrain = testBrain;
-            }
-        }
-
-        // NOW SEE IF THERE IS A REMAINING ONE THAT'S CLOSER
-        while (brainsIt.hasNext())
-        {
-            Sprite testBrain = brainsIt.next();
-            float testDistance = calculateDistanceToSprite(testBrain);
-            if (testDistance < minDistance)
-            {
-                targetBrain = testBrain;
-                minDistance = testDistance;
-            }
-        }
+        // FIND THE CLOSEST ONE THE ZOMBIE CAN SEE, MEASURING FROM
+        // THE CENTER OF ITS MOUTH. ONLY BRAINS IN NEARBY GRID
+        // CELLS ARE LOOKED AT
+        float mouthX = x + aabbX + (aabbWidth / 2);
+        float mouthY = y + aabbY + (aabbHeight / 2);
+        targetBrain = data.getBrainGrid().getNearestSprite(mouthX, mouthY, ZOMBIE_SIGHT_DISTANCE);
     }
 }
\ No newline at end of file